@@ -3,6 +3,7 @@ package com.zekai.api;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.ComponentScan;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * ========================================
@@ -23,6 +24,7 @@ import org.springframework.context.annotation.ComponentScan;
  */
 @SpringBootApplication
 @ComponentScan(basePackages = {"com.zekai"})
+@EnableScheduling
 public class ExamSystemApiApplication {
 
     public static void main(String[] args) {
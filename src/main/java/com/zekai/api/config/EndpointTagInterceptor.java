@@ -0,0 +1,33 @@
+package com.zekai.api.config;
+
+import com.zekai.util.ConnectionMetrics;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * 端点标记拦截器
+ * 在请求线程上记录当前Controller方法名 (如 "StudentController.startQuiz")，
+ * 使该请求获取的数据库连接按端点统计
+ */
+@Component
+public class EndpointTagInterceptor implements HandlerInterceptor {
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (handler instanceof HandlerMethod) {
+            HandlerMethod method = (HandlerMethod) handler;
+            ConnectionMetrics.setCurrentEndpoint(
+                    method.getBeanType().getSimpleName() + "." + method.getMethod().getName());
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response,
+                                Object handler, Exception ex) {
+        ConnectionMetrics.clearCurrentEndpoint();
+    }
+}
@@ -0,0 +1,78 @@
+package com.zekai.api.config;
+
+import com.zekai.util.ReadWriteRouting;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * 读写分离拦截器
+ * 将JWT中的userId绑定到请求线程；非GET请求视为写操作，
+ * 在请求开始和结束时都标记，使该用户随后的只读请求在窗口期内读主库
+ *
+ * 写操作同时把读主库的截止时间写入 Cookie (PRIMARY_UNTIL_COOKIE)，客户端随后的请求带回，
+ * 负载均衡把读请求转到其他实例 (无粘性会话) 时也能读到自己的写入
+ */
+@Component
+public class ReadYourWritesInterceptor implements HandlerInterceptor {
+
+    /** 读主库截止时间 (epoch 毫秒) 的 Cookie 名 */
+    public static final String PRIMARY_UNTIL_COOKIE = "exam_primary_until";
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        Object userId = request.getAttribute("userId");
+        ReadWriteRouting.setCurrentSession(userId instanceof Long ? (Long) userId : null);
+        ReadWriteRouting.setClientPrimaryUntil(primaryUntil(request));
+        if (isWrite(request)) {
+            ReadWriteRouting.markWrite();
+            // 响应体写出后不能再加 Cookie，在请求开始时设置
+            response.addCookie(primaryUntilCookie(ReadWriteRouting.primaryUntilMillis()));
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response,
+                                Object handler, Exception ex) {
+        if (isWrite(request)) {
+            ReadWriteRouting.markWrite();
+        }
+        ReadWriteRouting.clearCurrentSession();
+    }
+
+    private boolean isWrite(HttpServletRequest request) {
+        String method = request.getMethod();
+        return !"GET".equals(method) && !"HEAD".equals(method) && !"OPTIONS".equals(method);
+    }
+
+    /**
+     * @return 客户端带回的截止时间，没有或格式错误时为 0
+     */
+    private long primaryUntil(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return 0;
+        }
+        for (Cookie cookie : cookies) {
+            if (PRIMARY_UNTIL_COOKIE.equals(cookie.getName())) {
+                try {
+                    return Long.parseLong(cookie.getValue());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 0;
+    }
+
+    private Cookie primaryUntilCookie(long until) {
+        Cookie cookie = new Cookie(PRIMARY_UNTIL_COOKIE, Long.toString(until));
+        cookie.setPath("/");
+        cookie.setHttpOnly(true);
+        cookie.setMaxAge((int) (ReadWriteRouting.readYourWritesWindowMillis() / 1000) + 1);
+        return cookie;
+    }
+}
@@ -4,6 +4,7 @@ import com.zekai.api.dto.ApiResponse;
 import com.zekai.api.dto.LoginRequest;
 import com.zekai.api.dto.LoginResponse;
 import com.zekai.api.security.JwtUtil;
+import com.zekai.api.sql.SqlCatalog;
 import com.zekai.util.DatabaseUtil;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -65,19 +66,11 @@ public class AuthController {
 
             // 根据角色选择不同的查询SQL
             if ("student".equalsIgnoreCase(request.getRole())) {
-                sql = "SELECT u.user_id, u.username, u.role, u.full_name, s.student_id " +
-                      "FROM users u " +
-                      "LEFT JOIN students s ON u.user_id = s.user_id " +
-                      "WHERE u.username = ? AND u.password_hash = SHA2(?, 256) AND u.is_active = TRUE";
+                sql = SqlCatalog.AUTH_LOGIN_STUDENT;
             } else if ("teacher".equalsIgnoreCase(request.getRole())) {
-                sql = "SELECT u.user_id, u.username, u.role, u.full_name, t.teacher_id " +
-                      "FROM users u " +
-                      "LEFT JOIN teachers t ON u.user_id = t.user_id " +
-                      "WHERE u.username = ? AND u.password_hash = SHA2(?, 256) AND u.is_active = TRUE";
+                sql = SqlCatalog.AUTH_LOGIN_TEACHER;
             } else {
-                sql = "SELECT u.user_id, u.username, u.role, u.full_name, u.user_id as admin_id " +
-                      "FROM users u " +
-                      "WHERE u.username = ? AND u.password_hash = SHA2(?, 256) AND u.is_active = TRUE";
+                sql = SqlCatalog.AUTH_LOGIN_ADMIN;
             }
 
             PreparedStatement pstmt = conn.prepareStatement(sql);
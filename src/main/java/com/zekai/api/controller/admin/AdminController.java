@@ -1,7 +1,21 @@
 package com.zekai.api.controller.admin;
 
 import com.zekai.api.dto.ApiResponse;
+import com.zekai.api.service.AnswerWriter;
+import com.zekai.api.service.ExamPaperService;
+import com.zekai.api.service.ExamWarmupService;
+import com.zekai.api.service.GradingJobService;
+import com.zekai.api.service.GradingService;
+import com.zekai.api.service.SubmissionGradingQueue;
+import com.zekai.api.sql.SqlCatalog;
+import com.zekai.config.SchemaMigrationRunner;
+import com.zekai.util.ConnectionMetrics;
 import com.zekai.util.DatabaseUtil;
+import com.zekai.util.ReadWriteRouting;
+import com.zekai.util.SchemaMigrator;
+import com.zekai.util.SqlTimingLog;
+import com.zekai.util.TransactionTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
 import java.sql.*;
@@ -15,6 +29,27 @@ import java.util.*;
 @RequestMapping("/admin")
 public class AdminController {
 
+    @Autowired
+    private SchemaMigrationRunner schemaMigrationRunner;
+
+    @Autowired
+    private ExamPaperService examPaperService;
+
+    @Autowired
+    private ExamWarmupService examWarmupService;
+
+    @Autowired
+    private AnswerWriter answerWriter;
+
+    @Autowired
+    private GradingService gradingService;
+
+    @Autowired
+    private SubmissionGradingQueue gradingQueue;
+
+    @Autowired
+    private GradingJobService gradingJobs;
+
     /**
      * Feature 33: 更新题目统计
      * POST /admin/questions/update-statistics
@@ -22,14 +57,10 @@ public class AdminController {
     @PostMapping("/questions/update-statistics")
     public ApiResponse<?> updateQuestionStatistics() {
         try (Connection conn = DatabaseUtil.getConnection()) {
-            String sql = "UPDATE questions q " +
-                        "SET times_used = (SELECT COUNT(DISTINCT sa.student_quiz_id) FROM student_answers sa WHERE sa.question_id = q.question_id), " +
-                        "    total_attempts = (SELECT COUNT(*) FROM student_answers sa WHERE sa.question_id = q.question_id), " +
-                        "    correct_count = (SELECT COUNT(*) FROM student_answers sa WHERE sa.question_id = q.question_id AND sa.is_correct = TRUE) " +
-                        "WHERE q.question_id IN (SELECT DISTINCT question_id FROM student_answers)";
+            String sql = SqlCatalog.QUESTION_UPDATE_STATISTICS;
 
-            Statement stmt = conn.createStatement();
-            int updated = stmt.executeUpdate(sql);
+            PreparedStatement pstmt = conn.prepareStatement(sql);
+            int updated = pstmt.executeUpdate();
 
             Map<String, Object> data = new HashMap<>();
             data.put("updatedQuestions", updated);
@@ -48,21 +79,8 @@ public class AdminController {
     public ApiResponse<?> adaptiveDifficultyRating(
             @RequestParam(defaultValue = "10") Integer minAttempts) {
 
-        try (Connection conn = DatabaseUtil.getConnection()) {
-            String sql = "SELECT q.question_id, q.question_text, q.difficulty_level, " +
-                        "q.total_attempts, q.correct_count, " +
-                        "CASE WHEN q.total_attempts > 0 " +
-                        "THEN ROUND(q.correct_count * 100.0 / q.total_attempts, 2) " +
-                        "ELSE 0 END as correct_rate, " +
-                        "CASE " +
-                        "  WHEN q.total_attempts = 0 THEN 'No Data' " +
-                        "  WHEN ROUND(q.correct_count * 100.0 / q.total_attempts, 0) >= 80 THEN 'Too Easy' " +
-                        "  WHEN ROUND(q.correct_count * 100.0 / q.total_attempts, 0) >= 60 THEN 'Appropriate' " +
-                        "  WHEN ROUND(q.correct_count * 100.0 / q.total_attempts, 0) >= 40 THEN 'Slightly Hard' " +
-                        "  ELSE 'Too Hard' " +
-                        "END as actual_difficulty " +
-                        "FROM questions q " +
-                        "WHERE q.times_used >= ? AND q.is_deleted = FALSE";
+        try (Connection conn = DatabaseUtil.getReadConnection()) {
+            String sql = SqlCatalog.QUESTION_DIFFICULTY_RATING;
 
             PreparedStatement pstmt = conn.prepareStatement(sql);
             pstmt.setInt(1, minAttempts);
@@ -99,16 +117,8 @@ public class AdminController {
             @RequestParam(defaultValue = "10") Integer limit,
             @RequestParam(defaultValue = "times_used") String orderBy) {
 
-        try (Connection conn = DatabaseUtil.getConnection()) {
-            String validOrderBy = orderBy.matches("times_used|total_attempts|correct_rate") ? orderBy : "times_used";
-
-            String sql = "SELECT q.question_id, q.question_text, q.times_used, q.total_attempts, " +
-                        "CASE WHEN q.total_attempts > 0 " +
-                        "THEN ROUND(q.correct_count * 100.0 / q.total_attempts, 2) " +
-                        "ELSE 0 END as correct_rate " +
-                        "FROM questions q " +
-                        "WHERE q.times_used > 0 AND q.is_deleted = FALSE " +
-                        "ORDER BY " + validOrderBy + " DESC LIMIT ?";
+        try (Connection conn = DatabaseUtil.getReadConnection()) {
+            String sql = SqlCatalog.questionRanking(orderBy);
 
             PreparedStatement pstmt = conn.prepareStatement(sql);
             pstmt.setInt(1, limit);
@@ -143,13 +153,8 @@ public class AdminController {
      */
     @GetMapping("/subjects/hierarchy")
     public ApiResponse<?> getSubjectHierarchy() {
-        try (Connection conn = DatabaseUtil.getConnection()) {
-            String sql = "SELECT s.subject_id, s.subject_name, s.level, s.parent_subject_id, " +
-                        "COUNT(q.question_id) as question_count " +
-                        "FROM subjects s " +
-                        "LEFT JOIN questions q ON s.subject_id = q.subject_id AND q.is_deleted = FALSE " +
-                        "GROUP BY s.subject_id, s.subject_name, s.level, s.parent_subject_id " +
-                        "ORDER BY s.level, s.subject_id";
+        try (Connection conn = DatabaseUtil.getReadConnection()) {
+            String sql = SqlCatalog.SUBJECT_HIERARCHY;
 
             PreparedStatement pstmt = conn.prepareStatement(sql);
             ResultSet rs = pstmt.executeQuery();
@@ -183,21 +188,10 @@ public class AdminController {
             @RequestParam(required = false) String role,
             @RequestParam(required = false) Boolean isActive) {
 
-        try (Connection conn = DatabaseUtil.getConnection()) {
-            StringBuilder sql = new StringBuilder(
-                "SELECT user_id, username, role, full_name, email, is_active, created_at " +
-                "FROM users WHERE 1=1"
-            );
-
-            if (role != null) {
-                sql.append(" AND role = ?");
-            }
-            if (isActive != null) {
-                sql.append(" AND is_active = ?");
-            }
-            sql.append(" ORDER BY created_at DESC");
+        try (Connection conn = DatabaseUtil.getReadConnection()) {
+            String sql = SqlCatalog.userList(role != null, isActive != null);
 
-            PreparedStatement pstmt = conn.prepareStatement(sql.toString());
+            PreparedStatement pstmt = conn.prepareStatement(sql);
             int paramIndex = 1;
             if (role != null) {
                 pstmt.setString(paramIndex++, role);
@@ -222,8 +216,7 @@ public class AdminController {
             }
 
             // 获取统计
-            sql = new StringBuilder("SELECT role, COUNT(*) as count FROM users GROUP BY role");
-            pstmt = conn.prepareStatement(sql.toString());
+            pstmt = conn.prepareStatement(SqlCatalog.USER_COUNT_BY_ROLE);
             rs = pstmt.executeQuery();
 
             Map<String, Integer> statistics = new HashMap<>();
@@ -253,7 +246,7 @@ public class AdminController {
         try (Connection conn = DatabaseUtil.getConnection()) {
             Boolean isActive = (Boolean) request.get("isActive");
 
-            String sql = "UPDATE users SET is_active = ? WHERE user_id = ?";
+            String sql = SqlCatalog.USER_SET_ACTIVE;
             PreparedStatement pstmt = conn.prepareStatement(sql);
             pstmt.setBoolean(1, isActive);
             pstmt.setLong(2, userId);
@@ -275,11 +268,11 @@ public class AdminController {
      */
     @GetMapping("/dashboard")
     public ApiResponse<?> getSystemDashboard() {
-        try (Connection conn = DatabaseUtil.getConnection()) {
+        try (Connection conn = DatabaseUtil.getReadConnection()) {
             Map<String, Object> dashboard = new HashMap<>();
 
             // 用户统计
-            String sql = "SELECT role, COUNT(*) as count FROM users GROUP BY role";
+            String sql = SqlCatalog.USER_COUNT_BY_ROLE;
             PreparedStatement pstmt = conn.prepareStatement(sql);
             ResultSet rs = pstmt.executeQuery();
 
@@ -294,7 +287,7 @@ public class AdminController {
             dashboard.put("users", userStats);
 
             // 课程统计
-            sql = "SELECT COUNT(*) as total FROM courses";
+            sql = SqlCatalog.DASHBOARD_COURSE_COUNT;
             pstmt = conn.prepareStatement(sql);
             rs = pstmt.executeQuery();
             if (rs.next()) {
@@ -304,8 +297,7 @@ public class AdminController {
             }
 
             // 题目统计
-            sql = "SELECT COUNT(*) as total, question_type FROM questions " +
-                  "WHERE is_deleted = FALSE GROUP BY question_type";
+            sql = SqlCatalog.DASHBOARD_QUESTION_COUNT;
             pstmt = conn.prepareStatement(sql);
             rs = pstmt.executeQuery();
 
@@ -320,7 +312,7 @@ public class AdminController {
             dashboard.put("questions", questionStats);
 
             // 测验统计
-            sql = "SELECT COUNT(*) as total FROM quizzes";
+            sql = SqlCatalog.DASHBOARD_QUIZ_COUNT;
             pstmt = conn.prepareStatement(sql);
             rs = pstmt.executeQuery();
             if (rs.next()) {
@@ -330,10 +322,7 @@ public class AdminController {
             }
 
             // 提交统计
-            sql = "SELECT COUNT(*) as total_submissions, " +
-                  "AVG(score) as avg_score, " +
-                  "SUM(CASE WHEN score >= (SELECT passing_score FROM quizzes WHERE quiz_id = student_quizzes.quiz_id) THEN 1 ELSE 0 END) * 100.0 / COUNT(*) as pass_rate " +
-                  "FROM student_quizzes WHERE graded = TRUE";
+            sql = SqlCatalog.DASHBOARD_SUBMISSION_STATS;
             pstmt = conn.prepareStatement(sql);
             rs = pstmt.executeQuery();
             if (rs.next()) {
@@ -357,10 +346,11 @@ public class AdminController {
     @DeleteMapping("/questions/{questionId}")
     public ApiResponse<?> softDeleteQuestion(@PathVariable Long questionId) {
         try (Connection conn = DatabaseUtil.getConnection()) {
-            String sql = "UPDATE questions SET is_deleted = TRUE WHERE question_id = ?";
+            String sql = SqlCatalog.QUESTION_SOFT_DELETE;
             PreparedStatement pstmt = conn.prepareStatement(sql);
             pstmt.setLong(1, questionId);
             pstmt.executeUpdate();
+            examPaperService.invalidateQuestion(questionId);
 
             Map<String, Object> data = new HashMap<>();
             data.put("questionId", questionId);
@@ -379,10 +369,11 @@ public class AdminController {
     @PostMapping("/questions/{questionId}/restore")
     public ApiResponse<?> restoreQuestion(@PathVariable Long questionId) {
         try (Connection conn = DatabaseUtil.getConnection()) {
-            String sql = "UPDATE questions SET is_deleted = FALSE WHERE question_id = ?";
+            String sql = SqlCatalog.QUESTION_RESTORE;
             PreparedStatement pstmt = conn.prepareStatement(sql);
             pstmt.setLong(1, questionId);
             pstmt.executeUpdate();
+            examPaperService.invalidateQuestion(questionId);
 
             Map<String, Object> data = new HashMap<>();
             data.put("questionId", questionId);
@@ -393,5 +384,148 @@ public class AdminController {
             return ApiResponse.error("恢复失败: " + e.getMessage());
         }
     }
-}
 
+    /**
+     * 系统监控 - 连接池与各端点连接持有时间
+     * GET /admin/metrics/connections
+     */
+    @GetMapping("/metrics/connections")
+    public ApiResponse<?> getConnectionMetrics() {
+        Map<String, Object> data = ConnectionMetrics.snapshot(DatabaseUtil.getDataSource());
+        if (DatabaseUtil.getReplicaDataSource() != null) {
+            data.put("replicaPool", ConnectionMetrics.poolSnapshot(DatabaseUtil.getReplicaDataSource()));
+        }
+        data.put("sessionsPinnedToPrimary", ReadWriteRouting.pinnedSessions());
+        data.put("transactions", TransactionTemplate.snapshot());
+
+        return ApiResponse.success(data);
+    }
+
+    /**
+     * 系统监控 - 清空连接统计
+     * POST /admin/metrics/connections/reset
+     */
+    @PostMapping("/metrics/connections/reset")
+    public ApiResponse<?> resetConnectionMetrics() {
+        ConnectionMetrics.reset();
+        TransactionTemplate.reset();
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("reset", true);
+
+        return ApiResponse.success("统计已清空", data);
+    }
+
+    /**
+     * 系统监控 - 最近SQL耗时、慢查询与各语句延迟分布
+     * GET /admin/metrics/sql?limit=50
+     */
+    @GetMapping("/metrics/sql")
+    public ApiResponse<?> getSqlMetrics(@RequestParam(defaultValue = "50") int limit) {
+        // 用目录名代替 SQL 文本作为统计的键，便于阅读
+        Map<String, String> names = new HashMap<>();
+        SqlCatalog.statements().forEach((name, sql) -> names.put(sql, name));
+
+        Map<String, Object> statements = new LinkedHashMap<>();
+        SqlTimingLog.statementSummaries().forEach((sql, summary) ->
+                statements.put(names.getOrDefault(sql, sql), summary));
+
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("slowThresholdMs", SqlTimingLog.getSlowThresholdMillis());
+        data.put("slowCount", SqlTimingLog.getSlowCount());
+        data.put("errorCount", SqlTimingLog.getErrorCount());
+        data.put("statements", statements);
+        data.put("slow", SqlTimingLog.slowStatements(limit));
+        data.put("recent", SqlTimingLog.recentStatements(limit));
+
+        return ApiResponse.success(data);
+    }
+
+    /**
+     * 系统监控 - 清空SQL耗时统计
+     * POST /admin/metrics/sql/reset
+     */
+    @PostMapping("/metrics/sql/reset")
+    public ApiResponse<?> resetSqlMetrics() {
+        SqlTimingLog.reset();
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("reset", true);
+
+        return ApiResponse.success("统计已清空", data);
+    }
+
+    /**
+     * 系统监控 - 试卷缓存命中率
+     * GET /admin/metrics/paper-cache
+     */
+    @GetMapping("/metrics/paper-cache")
+    public ApiResponse<?> getPaperCacheMetrics() {
+        return ApiResponse.success(examPaperService.stats());
+    }
+
+    /**
+     * 系统监控 - 清空试卷缓存
+     * POST /admin/metrics/paper-cache/clear
+     */
+    @PostMapping("/metrics/paper-cache/clear")
+    public ApiResponse<?> clearPaperCache() {
+        examPaperService.invalidateAll();
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("cleared", true);
+
+        return ApiResponse.success("试卷缓存已清空", data);
+    }
+
+    /**
+     * 系统监控 - 答案写入 (模式、保存延迟、缓冲与刷新)
+     * GET /admin/metrics/answers
+     */
+    @GetMapping("/metrics/answers")
+    public ApiResponse<?> getAnswerMetrics() {
+        return ApiResponse.success(answerWriter.stats());
+    }
+
+    /**
+     * 系统监控 - 评分 (已评分数、全测验评分进度、提交后评分队列、评分任务)
+     * GET /admin/metrics/grading
+     */
+    @GetMapping("/metrics/grading")
+    public ApiResponse<?> getGradingMetrics() {
+        Map<String, Object> data = new LinkedHashMap<>(gradingService.stats());
+        data.put("onSubmit", gradingQueue.stats());
+        data.put("jobs", gradingJobs.stats());
+        return ApiResponse.success(data);
+    }
+
+    /**
+     * 系统监控 - 即将开始的测验是否已预热
+     * GET /admin/exams/readiness
+     */
+    @GetMapping("/exams/readiness")
+    public ApiResponse<?> getExamReadiness() {
+        try (Connection conn = DatabaseUtil.getConnection()) {
+            return ApiResponse.success(examWarmupService.readiness(conn));
+        } catch (Exception e) {
+            return ApiResponse.error("查询失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 数据库结构 - 已执行的迁移版本
+     * GET /admin/schema/migrations
+     */
+    @GetMapping("/schema/migrations")
+    public ApiResponse<?> getSchemaMigrations() {
+        try (Connection conn = DatabaseUtil.getReadConnection()) {
+            Map<String, Object> data = new LinkedHashMap<>();
+            data.put("appliedAtStartup", schemaMigrationRunner.getAppliedAtStartup());
+            data.put("history", SchemaMigrator.history(conn));
+
+            return ApiResponse.success(data);
+        } catch (Exception e) {
+            return ApiResponse.error("查询失败: " + e.getMessage());
+        }
+    }
+}
@@ -1,8 +1,22 @@
 package com.zekai.api.controller.student;
 
 import com.zekai.api.dto.ApiResponse;
+import com.zekai.api.service.AnswerWriter;
+import com.zekai.api.service.EncodedPaper;
+import com.zekai.api.service.ExamPaperService;
+import com.zekai.api.service.ExamWarmupService;
+import com.zekai.api.service.GradingJobService;
+import com.zekai.api.service.SubmissionGradingQueue;
+import com.zekai.api.sql.SqlCatalog;
 import com.zekai.util.DatabaseUtil;
+import com.zekai.util.ReadWriteRouting;
+import com.zekai.util.SingleFlight;
+import com.zekai.util.TransactionTemplate;
 import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.sql.*;
@@ -16,6 +30,26 @@ import java.util.*;
 @RequestMapping("/student")
 public class StudentController {
 
+    /** 批量提交答案接口一次最多的条目数 */
+    private static final int MAX_BATCH_ANSWERS = 500;
+
+    @Autowired
+    private ExamPaperService examPaperService;
+
+    @Autowired
+    private ExamWarmupService examWarmupService;
+
+    @Autowired
+    private AnswerWriter answerWriter;
+
+    @Autowired
+    private SubmissionGradingQueue gradingQueue;
+
+    @Autowired
+    private GradingJobService gradingJobs;
+
+    private final SingleFlight<Long, List<Map<String, Object>>> classroomStudentsFlight = new SingleFlight<>();
+
     /**
      * Feature 1: 创建学生账户
      * POST /student/register
@@ -32,8 +66,7 @@ public class StudentController {
             String major = (String) request.get("major");
 
             // 创建用户
-            String sql = "INSERT INTO users (username, password_hash, email, full_name, role) " +
-                        "VALUES (?, SHA2(?, 256), ?, ?, 'student')";
+            String sql = SqlCatalog.USER_INSERT_STUDENT;
             PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
             pstmt.setString(1, username);
             pstmt.setString(2, password);
@@ -46,8 +79,7 @@ public class StudentController {
             if (rs.next()) userId = rs.getLong(1);
 
             // 创建学生记录
-            sql = "INSERT INTO students (user_id, student_number, grade, major, enrollment_date) " +
-                  "VALUES (?, ?, ?, ?, CURRENT_DATE)";
+            sql = SqlCatalog.STUDENT_INSERT;
             pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
             pstmt.setLong(1, userId);
             pstmt.setString(2, studentNumber);
@@ -84,8 +116,7 @@ public class StudentController {
         Long classroomId = ((Number) request.get("classroomId")).longValue();
 
         try (Connection conn = DatabaseUtil.getConnection()) {
-            String sql = "INSERT INTO enrollments (student_id, classroom_id, status) " +
-                        "VALUES (?, ?, 'active')";
+            String sql = SqlCatalog.ENROLLMENT_INSERT;
             PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
             pstmt.setLong(1, studentId);
             pstmt.setLong(2, classroomId);
@@ -94,6 +125,7 @@ public class StudentController {
             ResultSet rs = pstmt.getGeneratedKeys();
             long enrollmentId = 0;
             if (rs.next()) enrollmentId = rs.getLong(1);
+            examWarmupService.enrollmentChanged(classroomId, studentId, true);
 
             Map<String, Object> data = new HashMap<>();
             data.put("enrollmentId", enrollmentId);
@@ -113,27 +145,12 @@ public class StudentController {
      */
     @GetMapping("/classrooms/{classroomId}/students")
     public ApiResponse<?> getClassroomStudents(@PathVariable Long classroomId) {
-        try (Connection conn = DatabaseUtil.getConnection()) {
-            String sql = "SELECT s.student_id, u.full_name, s.student_number, s.grade, s.major " +
-                        "FROM enrollments e " +
-                        "JOIN students s ON e.student_id = s.student_id " +
-                        "JOIN users u ON s.user_id = u.user_id " +
-                        "WHERE e.classroom_id = ? AND e.status = 'active'";
-
-            PreparedStatement pstmt = conn.prepareStatement(sql);
-            pstmt.setLong(1, classroomId);
-            ResultSet rs = pstmt.executeQuery();
-
-            List<Map<String, Object>> students = new ArrayList<>();
-            while (rs.next()) {
-                Map<String, Object> student = new HashMap<>();
-                student.put("studentId", rs.getLong("student_id"));
-                student.put("fullName", rs.getString("full_name"));
-                student.put("studentNumber", rs.getString("student_number"));
-                student.put("grade", rs.getString("grade"));
-                student.put("major", rs.getString("major"));
-                students.add(student);
-            }
+        try {
+            // 同一教室的并发请求共享一次查询；连接在加载者内获取，等待者不占用连接。
+            // 刚写入过的用户必须读主库，不加入合并 (加载者可能读的是副本)
+            List<Map<String, Object>> students = ReadWriteRouting.mustReadPrimary()
+                    ? loadClassroomStudents(classroomId)
+                    : classroomStudentsFlight.execute(classroomId, () -> loadClassroomStudents(classroomId));
 
             Map<String, Object> data = new HashMap<>();
             data.put("classroomId", classroomId);
@@ -157,12 +174,12 @@ public class StudentController {
         Long studentId = (Long) request.getAttribute("roleId");
 
         try (Connection conn = DatabaseUtil.getConnection()) {
-            String sql = "UPDATE enrollments SET status = 'dropped' " +
-                        "WHERE student_id = ? AND classroom_id = ?";
+            String sql = SqlCatalog.ENROLLMENT_DROP;
             PreparedStatement pstmt = conn.prepareStatement(sql);
             pstmt.setLong(1, studentId);
             pstmt.setLong(2, classroomId);
             pstmt.executeUpdate();
+            examWarmupService.enrollmentChanged(classroomId, studentId, false);
 
             Map<String, Object> data = new HashMap<>();
             data.put("classroomId", classroomId);
@@ -174,6 +191,28 @@ public class StudentController {
         }
     }
 
+    private static List<Map<String, Object>> loadClassroomStudents(long classroomId) throws SQLException {
+        try (Connection conn = DatabaseUtil.getReadConnection()) {
+            String sql = SqlCatalog.CLASSROOM_ACTIVE_STUDENTS;
+
+            PreparedStatement pstmt = conn.prepareStatement(sql);
+            pstmt.setLong(1, classroomId);
+            ResultSet rs = pstmt.executeQuery();
+
+            List<Map<String, Object>> list = new ArrayList<>();
+            while (rs.next()) {
+                Map<String, Object> student = new HashMap<>();
+                student.put("studentId", rs.getLong("student_id"));
+                student.put("fullName", rs.getString("full_name"));
+                student.put("studentNumber", rs.getString("student_number"));
+                student.put("grade", rs.getString("grade"));
+                student.put("major", rs.getString("major"));
+                list.add(student);
+            }
+            return list;
+        }
+    }
+
     /**
      * Feature 24: 查看可用测验
      * GET /student/quizzes
@@ -182,15 +221,8 @@ public class StudentController {
     public ApiResponse<?> getAvailableQuizzes(HttpServletRequest request) {
         Long studentId = (Long) request.getAttribute("roleId");
 
-        try (Connection conn = DatabaseUtil.getConnection()) {
-            String sql = "SELECT q.quiz_id, q.title, q.duration_minutes, q.total_points, " +
-                        "q.start_time, q.end_time, c.course_name, sq.status as quiz_status " +
-                        "FROM enrollments e " +
-                        "JOIN classrooms cl ON e.classroom_id = cl.classroom_id " +
-                        "JOIN courses c ON cl.course_id = c.course_id " +
-                        "JOIN quizzes q ON cl.classroom_id = q.classroom_id " +
-                        "LEFT JOIN student_quizzes sq ON q.quiz_id = sq.quiz_id AND sq.student_id = e.student_id " +
-                        "WHERE e.student_id = ? AND e.status = 'active'";
+        try (Connection conn = DatabaseUtil.getReadConnection()) {
+            String sql = SqlCatalog.STUDENT_AVAILABLE_QUIZZES;
 
             PreparedStatement pstmt = conn.prepareStatement(sql);
             pstmt.setLong(1, studentId);
@@ -222,82 +254,86 @@ public class StudentController {
     /**
      * Feature 21: 开始测验
      * POST /student/quizzes/{quizId}/start
+     *
+     * exam.warmup.enforce-start-checks=true 时用 ExamWarmupService 预热的数据校验时间窗口和选课；
+     * 预编码模式下直接输出缓存的响应字节 (客户端接受 gzip 时输出预压缩版本)
      */
     @PostMapping("/quizzes/{quizId}/start")
-    public ApiResponse<?> startQuiz(
+    public ResponseEntity<?> startQuiz(
             @PathVariable Long quizId,
             HttpServletRequest request) {
 
         Long studentId = (Long) request.getAttribute("roleId");
 
+        long studentQuizId = 0;
         try (Connection conn = DatabaseUtil.getConnection()) {
+            if (examWarmupService.isEnforcingStartChecks()) {
+                ExamWarmupService.QuizSession session = examWarmupService.session(conn, quizId);
+                if (session == null) {
+                    return ResponseEntity.ok(ApiResponse.error(404, "测验不存在"));
+                }
+                if (!session.isOpen(examWarmupService.now())) {
+                    return ResponseEntity.ok(ApiResponse.error(403, "不在测验时间内"));
+                }
+                if (!examWarmupService.isEnrolled(conn, session, studentId)) {
+                    return ResponseEntity.ok(ApiResponse.error(403, "未选修该测验所属课程"));
+                }
+            }
+
             // 创建学生测验会话
-            String sql = "INSERT INTO student_quizzes (quiz_id, student_id, start_time, status) " +
-                        "VALUES (?, ?, NOW(), 'in_progress')";
+            String sql = SqlCatalog.STUDENT_QUIZ_START;
             PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
             pstmt.setLong(1, quizId);
             pstmt.setLong(2, studentId);
             pstmt.executeUpdate();
 
             ResultSet rs = pstmt.getGeneratedKeys();
-            long studentQuizId = 0;
             if (rs.next()) studentQuizId = rs.getLong(1);
+        } catch (Exception e) {
+            return ResponseEntity.ok(ApiResponse.error("开始失败: " + e.getMessage()));
+        }
 
-            // 获取题目列表
-            sql = "SELECT qq.question_id, qq.question_order, qq.points, " +
-                  "q.question_text, q.question_type " +
-                  "FROM quiz_questions qq " +
-                  "JOIN questions q ON qq.question_id = q.question_id " +
-                  "WHERE qq.quiz_id = ? ORDER BY qq.question_order";
-
-            pstmt = conn.prepareStatement(sql);
-            pstmt.setLong(1, quizId);
-            rs = pstmt.executeQuery();
-
-            List<Map<String, Object>> questions = new ArrayList<>();
-            while (rs.next()) {
-                Map<String, Object> question = new HashMap<>();
-                long questionId = rs.getLong("question_id");
-                question.put("questionId", questionId);
-                question.put("questionOrder", rs.getInt("question_order"));
-                question.put("questionText", rs.getString("question_text"));
-                question.put("questionType", rs.getString("question_type"));
-                question.put("points", rs.getInt("points"));
-
-                // 获取选项
-                String optSql = "SELECT option_id, option_text, option_order " +
-                               "FROM question_options WHERE question_id = ? ORDER BY option_order";
-                PreparedStatement optPstmt = conn.prepareStatement(optSql);
-                optPstmt.setLong(1, questionId);
-                ResultSet optRs = optPstmt.executeQuery();
-
-                List<Map<String, Object>> options = new ArrayList<>();
-                while (optRs.next()) {
-                    Map<String, Object> option = new HashMap<>();
-                    option.put("optionId", optRs.getLong("option_id"));
-                    option.put("optionText", optRs.getString("option_text"));
-                    option.put("optionOrder", optRs.getInt("option_order"));
-                    options.add(option);
-                }
-                question.put("options", options);
-                questions.add(question);
+        try {
+            // 试卷在归还连接之后获取：缓存未命中时由合并加载的加载者自行取连接，等待者不占用连接
+            if (examPaperService.isPreEncoded()) {
+                EncodedPaper paper = examPaperService.getEncodedPaper(quizId);
+                return encodedPaperResponse(paper, studentQuizId, request);
             }
 
+            // 获取整张试卷 (进程内缓存，未命中时一条查询)
+            List<Map<String, Object>> questions = examPaperService.getPaper(quizId);
+
             Map<String, Object> data = new HashMap<>();
             data.put("studentQuizId", studentQuizId);
             data.put("quizId", quizId);
             data.put("status", "in_progress");
             data.put("questions", questions);
 
-            return ApiResponse.success("测验已开始", data);
+            return ResponseEntity.ok(ApiResponse.success("测验已开始", data));
         } catch (Exception e) {
-            return ApiResponse.error("开始失败: " + e.getMessage());
+            return ResponseEntity.ok(ApiResponse.error("开始失败: " + e.getMessage()));
+        }
+    }
+
+    private static ResponseEntity<byte[]> encodedPaperResponse(
+            EncodedPaper paper, long studentQuizId, HttpServletRequest request) {
+        long timestamp = System.currentTimeMillis();
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+        if (paper.hasGzip() && EncodedPaper.acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING))) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                    .body(paper.toGzip(studentQuizId, timestamp));
         }
+        return response.body(paper.toJson(studentQuizId, timestamp));
     }
 
     /**
      * Feature 22: 提交答案
      * POST /student/quizzes/{studentQuizId}/answers
+     *
+     * 可选的 seq 为客户端按题目递增的序号：重复的保存不写库直接返回成功，过期的保存返回 409
      */
     @PostMapping("/quizzes/{studentQuizId}/answers")
     public ApiResponse<?> submitAnswer(
@@ -308,29 +344,25 @@ public class StudentController {
         Long selectedOptionId = request.get("selectedOptionId") != null ?
             ((Number) request.get("selectedOptionId")).longValue() : null;
         String answerText = (String) request.get("answerText");
-
-        try (Connection conn = DatabaseUtil.getConnection()) {
-            String sql = "INSERT INTO student_answers (student_quiz_id, question_id, selected_option_id, answer_text) " +
-                        "VALUES (?, ?, ?, ?) " +
-                        "ON DUPLICATE KEY UPDATE selected_option_id = ?, answer_text = ?";
-            PreparedStatement pstmt = conn.prepareStatement(sql);
-            pstmt.setLong(1, studentQuizId);
-            pstmt.setLong(2, questionId);
-            if (selectedOptionId != null) {
-                pstmt.setLong(3, selectedOptionId);
-                pstmt.setLong(5, selectedOptionId);
-            } else {
-                pstmt.setNull(3, Types.BIGINT);
-                pstmt.setNull(5, Types.BIGINT);
+        Long seq = request.get("seq") != null ? ((Number) request.get("seq")).longValue() : null;
+
+        try {
+            // sync 模式直接写库；group-commit 模式与同时到达的保存合并提交；
+            // write-behind 模式写入内存缓冲区，稍后批量写入
+            AnswerWriter.SaveResult result = answerWriter.save(
+                new AnswerWriter.Answer(studentQuizId, questionId, selectedOptionId, answerText), seq);
+            if (result == AnswerWriter.SaveResult.STALE) {
+                return ApiResponse.error(409, "答案已过期: 已保存序号更大的作答");
             }
-            pstmt.setString(4, answerText);
-            pstmt.setString(6, answerText);
-            pstmt.executeUpdate();
 
             Map<String, Object> data = new HashMap<>();
             data.put("studentQuizId", studentQuizId);
             data.put("questionId", questionId);
             data.put("saved", true);
+            if (seq != null) {
+                data.put("seq", seq);
+                data.put("duplicate", result == AnswerWriter.SaveResult.DUPLICATE);
+            }
 
             return ApiResponse.success("答案已保存", data);
         } catch (Exception e) {
@@ -338,22 +370,130 @@ public class StudentController {
         }
     }
 
+    /**
+     * 批量提交答案 (离线客户端同步一整页作答)
+     * POST /student/quizzes/{studentQuizId}/answers/batch
+     *
+     * 请求体 {answers: [{questionId, selectedOptionId, answerText, seq}, ...]}，
+     * 有效条目以一次批量 upsert 写入 (seq 可选，过期/重复的条目不写库)；
+     * 批量写入失败时逐条重试，每条返回自己的结果
+     */
+    @PostMapping("/quizzes/{studentQuizId}/answers/batch")
+    public ApiResponse<?> submitAnswers(
+            @PathVariable Long studentQuizId,
+            @RequestBody Map<String, Object> request) {
+
+        if (!(request.get("answers") instanceof List<?> items) || items.isEmpty()) {
+            return ApiResponse.error(400, "answers不能为空");
+        }
+        if (items.size() > MAX_BATCH_ANSWERS) {
+            return ApiResponse.error(400, "一次最多提交" + MAX_BATCH_ANSWERS + "个答案");
+        }
+
+        List<Map<String, Object>> results = new ArrayList<>();
+        List<AnswerWriter.Answer> answers = new ArrayList<>();
+        List<Long> seqs = new ArrayList<>();
+        List<Map<String, Object>> pendingResults = new ArrayList<>();
+        for (int i = 0; i < items.size(); i++) {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("index", i);
+            results.add(result);
+            try {
+                Map<?, ?> item = (Map<?, ?>) items.get(i);
+                Long questionId = ((Number) item.get("questionId")).longValue();
+                Long selectedOptionId = item.get("selectedOptionId") != null ?
+                    ((Number) item.get("selectedOptionId")).longValue() : null;
+                String answerText = (String) item.get("answerText");
+                Long seq = item.get("seq") != null ? ((Number) item.get("seq")).longValue() : null;
+                result.put("questionId", questionId);
+                answers.add(new AnswerWriter.Answer(studentQuizId, questionId, selectedOptionId, answerText));
+                seqs.add(seq);
+                pendingResults.add(result);
+            } catch (ClassCastException | NullPointerException e) {
+                result.put("saved", false);
+                result.put("error", "无效的答案: 需要questionId");
+            }
+        }
+
+        try {
+            List<AnswerWriter.SaveResult> saveResults = answerWriter.saveAll(studentQuizId, answers, seqs);
+            for (int i = 0; i < saveResults.size(); i++) {
+                putSaveResult(pendingResults.get(i), saveResults.get(i));
+            }
+        } catch (Exception e) {
+            // 整批失败时逐条保存，找出失败的条目
+            for (int i = 0; i < answers.size(); i++) {
+                Map<String, Object> result = pendingResults.get(i);
+                try {
+                    putSaveResult(result, answerWriter.save(answers.get(i), seqs.get(i)));
+                } catch (Exception itemError) {
+                    result.put("saved", false);
+                    result.put("error", "保存失败: " + itemError.getMessage());
+                }
+            }
+        }
+
+        long saved = results.stream().filter(result -> Boolean.TRUE.equals(result.get("saved"))).count();
+        Map<String, Object> data = new HashMap<>();
+        data.put("studentQuizId", studentQuizId);
+        data.put("saved", saved);
+        data.put("failed", results.size() - saved);
+        data.put("results", results);
+
+        return ApiResponse.success(saved == results.size() ? "答案已保存" : "部分答案保存失败", data);
+    }
+
+    private static void putSaveResult(Map<String, Object> result, AnswerWriter.SaveResult saveResult) {
+        if (saveResult == AnswerWriter.SaveResult.STALE) {
+            result.put("saved", false);
+            result.put("error", "答案已过期: 已保存序号更大的作答");
+        } else {
+            result.put("saved", true);
+            if (saveResult == AnswerWriter.SaveResult.DUPLICATE) {
+                result.put("duplicate", true);
+            }
+        }
+    }
+
     /**
      * Feature 23: 完成测验
      * POST /student/quizzes/{studentQuizId}/submit
      */
     @PostMapping("/quizzes/{studentQuizId}/submit")
     public ApiResponse<?> submitQuiz(@PathVariable Long studentQuizId) {
-        try (Connection conn = DatabaseUtil.getConnection()) {
-            String sql = "UPDATE student_quizzes SET submit_time = NOW(), status = 'submitted' " +
-                        "WHERE student_quiz_id = ?";
-            PreparedStatement pstmt = conn.prepareStatement(sql);
-            pstmt.setLong(1, studentQuizId);
-            pstmt.executeUpdate();
+        try {
+            // 缓冲中的答案必须在测验提交前写入；刷新使用自己的连接，在取连接之前完成
+            answerWriter.flushSession(studentQuizId);
+
+            String sql = SqlCatalog.STUDENT_QUIZ_SUBMIT;
+            if (gradingJobs.isEnabled()) {
+                // 提交与评分任务在同一事务中写入 (只占用模板的连接)
+                TransactionTemplate.execute(conn -> {
+                    try (PreparedStatement submit = conn.prepareStatement(sql)) {
+                        submit.setLong(1, studentQuizId);
+                        submit.executeUpdate();
+                    }
+                    gradingJobs.enqueue(conn, studentQuizId);
+                    return null;
+                });
+            } else {
+                try (Connection conn = DatabaseUtil.getConnection();
+                     PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setLong(1, studentQuizId);
+                    pstmt.executeUpdate();
+                }
+            }
+            answerWriter.sessionSubmitted(studentQuizId);
 
             Map<String, Object> data = new HashMap<>();
             data.put("studentQuizId", studentQuizId);
             data.put("status", "submitted");
+            if (gradingJobs.isEnabled()) {
+                data.put("grading", "queued");
+            } else if (gradingQueue.isEnabled()) {
+                // 客观题在后台评分，客户端轮询 /grading
+                data.put("grading", gradingQueue.enqueue(studentQuizId).name().toLowerCase());
+            }
 
             return ApiResponse.success("测验已提交", data);
         } catch (Exception e) {
@@ -361,6 +501,57 @@ public class StudentController {
         }
     }
 
+    /**
+     * 查询提交后的评分状态 (轮询)
+     * GET /student/quizzes/{studentQuizId}/grading
+     *
+     * 本实例的评分队列知道该提交时返回队列状态 (queued/grading/graded/failed/deferred)，
+     * 否则按数据库中的 graded 和评分任务状态返回
+     */
+    @GetMapping("/quizzes/{studentQuizId}/grading")
+    public ApiResponse<?> getGradingStatus(@PathVariable Long studentQuizId) {
+        Map<String, Object> status = gradingQueue.status(studentQuizId);
+        if (status != null) {
+            return ApiResponse.success(status);
+        }
+
+        try (Connection conn = DatabaseUtil.getReadConnection()) {
+            Map<String, Object> data = DatabaseUtil.queryOne(conn, SqlCatalog.STUDENT_QUIZ_GRADING_STATUS, rs -> {
+                Map<String, Object> row = new LinkedHashMap<>();
+                row.put("studentQuizId", studentQuizId);
+                row.put("state", rs.getBoolean("graded") ? "graded" : jobState(rs.getString("job_status")));
+                row.put("graded", rs.getBoolean("graded"));
+                row.put("status", rs.getString("status"));
+                return row;
+            }, studentQuizId);
+            if (data == null) {
+                return ApiResponse.error(404, "测验提交不存在");
+            }
+            return ApiResponse.success(data);
+        } catch (Exception e) {
+            return ApiResponse.error("查询失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 评分任务状态对应的评分状态 (没有任务时为 pending)
+     */
+    private static String jobState(String jobStatus) {
+        if (jobStatus == null) {
+            return "pending";
+        }
+        switch (jobStatus) {
+            case "pending":
+                return "queued";
+            case "running":
+                return "grading";
+            case "done":
+                return "graded";
+            default:
+                return jobStatus;
+        }
+    }
+
     /**
      * Feature 28: 查看成绩
      * GET /student/grades
@@ -369,15 +560,8 @@ public class StudentController {
     public ApiResponse<?> getGrades(HttpServletRequest request) {
         Long studentId = (Long) request.getAttribute("roleId");
 
-        try (Connection conn = DatabaseUtil.getConnection()) {
-            String sql = "SELECT q.quiz_id, q.title, c.course_name, sq.score, q.total_points, " +
-                        "sq.percentage, sq.submit_time, " +
-                        "CASE WHEN sq.score >= q.passing_score THEN 'Passed' ELSE 'Failed' END as result " +
-                        "FROM student_quizzes sq " +
-                        "JOIN quizzes q ON sq.quiz_id = q.quiz_id " +
-                        "JOIN classrooms cl ON q.classroom_id = cl.classroom_id " +
-                        "JOIN courses c ON cl.course_id = c.course_id " +
-                        "WHERE sq.student_id = ? AND sq.published = TRUE AND sq.graded = TRUE";
+        try (Connection conn = DatabaseUtil.getReadConnection()) {
+            String sql = SqlCatalog.STUDENT_PUBLISHED_GRADES;
 
             PreparedStatement pstmt = conn.prepareStatement(sql);
             pstmt.setLong(1, studentId);
@@ -412,15 +596,8 @@ public class StudentController {
      */
     @GetMapping("/quizzes/{studentQuizId}/details")
     public ApiResponse<?> getAnswerDetails(@PathVariable Long studentQuizId) {
-        try (Connection conn = DatabaseUtil.getConnection()) {
-            String sql = "SELECT q.question_text, qo.option_text, sa.is_correct, " +
-                        "sa.points_earned, qq.points " +
-                        "FROM student_answers sa " +
-                        "JOIN questions q ON sa.question_id = q.question_id " +
-                        "LEFT JOIN question_options qo ON sa.selected_option_id = qo.option_id " +
-                        "JOIN quiz_questions qq ON sa.question_id = qq.question_id " +
-                        "WHERE sa.student_quiz_id = ? AND qq.quiz_id = " +
-                        "(SELECT quiz_id FROM student_quizzes WHERE student_quiz_id = ?)";
+        try (Connection conn = DatabaseUtil.getReadConnection()) {
+            String sql = SqlCatalog.STUDENT_ANSWER_DETAILS;
 
             PreparedStatement pstmt = conn.prepareStatement(sql);
             pstmt.setLong(1, studentQuizId);
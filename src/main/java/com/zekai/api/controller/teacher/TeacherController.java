@@ -1,12 +1,36 @@
 package com.zekai.api.controller.teacher;
 
 import com.zekai.api.dto.ApiResponse;
+import com.zekai.api.service.ExamPaperService;
+import com.zekai.api.service.GradingJobService;
+import com.zekai.api.service.GradingService;
+import com.zekai.api.sql.SqlCatalog;
+import com.zekai.config.DatabaseConfig;
+import com.zekai.util.ConnectionMetrics;
 import com.zekai.util.DatabaseUtil;
+import com.zekai.util.ReadWriteRouting;
+import com.zekai.util.SingleFlight;
+import com.zekai.util.TransactionTemplate;
+import jakarta.annotation.PreDestroy;
 import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 /**
  * 教师端控制器
@@ -16,6 +40,41 @@ import java.util.*;
 @RequestMapping("/teacher")
 public class TeacherController {
 
+    /** MySQL 预编译语句的占位符上限 */
+    private static final int MAX_PLACEHOLDERS = 65535;
+    private static final int QUESTION_INSERT_PARAMS = 5;
+    private static final int OPTION_INSERT_PARAMS = 4;
+    /** 全测验评分的 SSE 连接最长保持时间 */
+    private static final long GRADE_ALL_TIMEOUT_MS = 30 * 60 * 1000L;
+    /** 批量上传题目的 SSE 连接最长保持时间 */
+    private static final long QUESTION_BATCH_TIMEOUT_MS = 10 * 60 * 1000L;
+    /** 同时执行的 SSE 批量上传数 (每个占用一个连接)，其余排队 */
+    private static final int QUESTION_BATCH_THREADS = 2;
+
+    @Value("${exam.batch.question-chunk-size:500}")
+    private int questionChunkSize;
+
+    @Value("${exam.batch.option-chunk-size:2000}")
+    private int optionChunkSize;
+
+    /** SSE 批量上传在这里执行，请求线程返回后逐块推送进度 */
+    private final ExecutorService questionBatchPool = Executors.newFixedThreadPool(QUESTION_BATCH_THREADS, task -> {
+        Thread thread = new Thread(task, "question-batch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    private ExamPaperService examPaperService;
+
+    @Autowired
+    private GradingService gradingService;
+
+    @Autowired
+    private GradingJobService gradingJobs;
+
+    private final SingleFlight<Long, Map<String, Object>> quizDetailsFlight = new SingleFlight<>();
+
     /**
      * Feature 2: 创建教师账户
      * POST /teacher/register
@@ -32,8 +91,7 @@ public class TeacherController {
             String office = (String) request.get("office");
 
             // 创建用户
-            String sql = "INSERT INTO users (username, password_hash, email, full_name, role) " +
-                        "VALUES (?, SHA2(?, 256), ?, ?, 'teacher')";
+            String sql = SqlCatalog.USER_INSERT_TEACHER;
             PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
             pstmt.setString(1, username);
             pstmt.setString(2, password);
@@ -46,8 +104,7 @@ public class TeacherController {
             if (rs.next()) userId = rs.getLong(1);
 
             // 创建教师记录
-            sql = "INSERT INTO teachers (user_id, department, hire_date, phone, office) " +
-                  "VALUES (?, ?, CURRENT_DATE, ?, ?)";
+            sql = SqlCatalog.TEACHER_INSERT;
             pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
             pstmt.setLong(1, userId);
             pstmt.setString(2, department);
@@ -88,8 +145,7 @@ public class TeacherController {
             String description = (String) request.get("description");
             Integer creditHours = (Integer) request.get("creditHours");
 
-            String sql = "INSERT INTO courses (course_code, course_name, description, credit_hours, created_by) " +
-                        "VALUES (?, ?, ?, ?, ?)";
+            String sql = SqlCatalog.COURSE_INSERT;
             PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
             pstmt.setString(1, courseCode);
             pstmt.setString(2, courseName);
@@ -131,8 +187,7 @@ public class TeacherController {
             Integer year = (Integer) request.get("year");
             Integer maxStudents = (Integer) request.get("maxStudents");
 
-            String sql = "INSERT INTO classrooms (course_id, teacher_id, class_name, semester, year, max_students) " +
-                        "VALUES (?, ?, ?, ?, ?, ?)";
+            String sql = SqlCatalog.CLASSROOM_INSERT;
             PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
             pstmt.setLong(1, courseId);
             pstmt.setLong(2, teacherId);
@@ -171,8 +226,7 @@ public class TeacherController {
             Long parentSubjectId = request.get("parentSubjectId") != null ?
                 ((Number) request.get("parentSubjectId")).longValue() : null;
 
-            String sql = "INSERT INTO subjects (subject_name, description, level, parent_subject_id) " +
-                        "VALUES (?, ?, ?, ?)";
+            String sql = SqlCatalog.SUBJECT_INSERT;
             PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
             pstmt.setString(1, subjectName);
             pstmt.setString(2, description);
@@ -217,8 +271,7 @@ public class TeacherController {
             Integer difficultyLevel = (Integer) request.get("difficultyLevel");
 
             // 创建题目
-            String sql = "INSERT INTO questions (subject_id, question_text, question_type, difficulty_level, created_by) " +
-                        "VALUES (?, ?, ?, ?, ?)";
+            String sql = SqlCatalog.QUESTION_INSERT;
             PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
             pstmt.setLong(1, subjectId);
             pstmt.setString(2, questionText);
@@ -234,8 +287,7 @@ public class TeacherController {
             // 添加选项
             List<Map<String, Object>> options = (List<Map<String, Object>>) request.get("options");
             if (options != null && !options.isEmpty()) {
-                sql = "INSERT INTO question_options (question_id, option_text, is_correct, option_order) " +
-                      "VALUES (?, ?, ?, ?)";
+                sql = SqlCatalog.QUESTION_OPTION_INSERT;
                 pstmt = conn.prepareStatement(sql);
 
                 for (Map<String, Object> option : options) {
@@ -263,6 +315,11 @@ public class TeacherController {
     /**
      * Feature 14: 批量上传题目
      * POST /teacher/questions/batch
+     *
+     * 题目按 exam.batch.question-chunk-size 分块，每块一条多行 INSERT，
+     * 由返回的连续自增主键对应回各题；全部选项再按 exam.batch.option-chunk-size 行一条多行 INSERT 写入。
+     * 整个上传在一个事务中完成，响应中附带每块的进度；
+     * 需要边写边看进度时以 Accept: text/event-stream 调用 (见 {@link #batchCreateQuestionsStream})
      */
     @PostMapping("/questions/batch")
     public ApiResponse<?> batchCreateQuestions(
@@ -272,61 +329,190 @@ public class TeacherController {
         Long teacherId = (Long) httpRequest.getAttribute("roleId");
         List<Map<String, Object>> questions = (List<Map<String, Object>>) request.get("questions");
 
-        try (Connection conn = DatabaseUtil.getConnection()) {
-            conn.setAutoCommit(false);
+        try {
+            return ApiResponse.success("批量创建成功", insertQuestions(questions, teacherId, progress -> { }));
+        } catch (Exception e) {
+            return ApiResponse.error("批量创建失败: " + e.getMessage());
+        }
+    }
 
-            List<Long> questionIds = new ArrayList<>();
-
-            for (Map<String, Object> q : questions) {
-                Long subjectId = ((Number) q.get("subjectId")).longValue();
-                String questionText = (String) q.get("questionText");
-                String questionType = (String) q.get("questionType");
-                Integer difficultyLevel = (Integer) q.get("difficultyLevel");
-
-                String sql = "INSERT INTO questions (subject_id, question_text, question_type, difficulty_level, created_by) " +
-                            "VALUES (?, ?, ?, ?, ?)";
-                PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
-                pstmt.setLong(1, subjectId);
-                pstmt.setString(2, questionText);
-                pstmt.setString(3, questionType);
-                pstmt.setInt(4, difficultyLevel);
-                pstmt.setLong(5, teacherId);
-                pstmt.executeUpdate();
+    /**
+     * 批量上传题目 (SSE 推送进度)
+     * POST /teacher/questions/batch  (Accept: text/event-stream)
+     *
+     * 每写完一块题目或一条选项 INSERT 推送一次 progress 事件 (stage 为 questions / options)，
+     * 事务提交后推送 done (内容与 JSON 响应的 data 相同)，失败推送 error。
+     * 进度在事务提交前推送；事务因死锁重试时从第 1 块重新推送。客户端断开不影响上传
+     */
+    @PostMapping(value = "/questions/batch", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter batchCreateQuestionsStream(
+            @RequestBody Map<String, Object> request,
+            HttpServletRequest httpRequest) {
 
-                ResultSet rs = pstmt.getGeneratedKeys();
-                long questionId = 0;
-                if (rs.next()) questionId = rs.getLong(1);
-                questionIds.add(questionId);
-
-                // 添加选项
-                List<Map<String, Object>> options = (List<Map<String, Object>>) q.get("options");
-                if (options != null && !options.isEmpty()) {
-                    sql = "INSERT INTO question_options (question_id, option_text, is_correct, option_order) " +
-                          "VALUES (?, ?, ?, ?)";
-                    pstmt = conn.prepareStatement(sql);
-
-                    for (Map<String, Object> option : options) {
-                        pstmt.setLong(1, questionId);
-                        pstmt.setString(2, (String) option.get("optionText"));
-                        pstmt.setBoolean(3, (Boolean) option.get("isCorrect"));
-                        pstmt.setInt(4, (Integer) option.get("optionOrder"));
-                        pstmt.addBatch();
+        Long teacherId = (Long) httpRequest.getAttribute("roleId");
+        List<Map<String, Object>> questions = (List<Map<String, Object>>) request.get("questions");
+        String endpoint = ConnectionMetrics.currentEndpoint();
+        SseEmitter emitter = new SseEmitter(QUESTION_BATCH_TIMEOUT_MS);
+
+        CompletableFuture.supplyAsync(() -> {
+            ConnectionMetrics.setCurrentEndpoint(endpoint);
+            try {
+                return insertQuestions(questions, teacherId, progress -> {
+                    try {
+                        sendEvent(emitter, "progress", progress);
+                    } catch (UncheckedIOException e) {
+                        // 客户端已断开，上传继续
                     }
-                    pstmt.executeBatch();
+                });
+            } catch (SQLException e) {
+                throw new CompletionException(e);
+            } finally {
+                ConnectionMetrics.clearCurrentEndpoint();
+            }
+        }, questionBatchPool).whenComplete((result, e) -> {
+            try {
+                if (e != null) {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    sendEvent(emitter, "error", ApiResponse.error("批量创建失败: " + cause.getMessage()));
+                } else {
+                    sendEvent(emitter, "done", result);
                 }
+            } catch (UncheckedIOException ignored) {
+                // 客户端已断开
             }
+            emitter.complete();
+        });
+        return emitter;
+    }
 
-            conn.commit();
+    /**
+     * 在一个事务中写入全部题目和选项，每写完一块调用一次 onProgress
+     *
+     * @return 上传结果 (含每块题目的进度)
+     */
+    private Map<String, Object> insertQuestions(List<Map<String, Object>> questions, Long teacherId,
+                                                Consumer<Map<String, Object>> onProgress) throws SQLException {
+        int chunkSize = Math.max(1, Math.min(questionChunkSize, MAX_PLACEHOLDERS / QUESTION_INSERT_PARAMS));
+        int optionRows = Math.max(1, Math.min(optionChunkSize, MAX_PLACEHOLDERS / OPTION_INSERT_PARAMS));
+
+        return TransactionTemplate.execute(conn -> {
+            long started = System.nanoTime();
+            List<Long> questionIds = new ArrayList<>(questions.size());
+            List<Map<String, Object>> chunks = new ArrayList<>();
+
+            for (int from = 0; from < questions.size(); from += chunkSize) {
+                List<Map<String, Object>> chunk = questions.subList(from, Math.min(from + chunkSize, questions.size()));
+                List<Long> ids = insertQuestionChunk(conn, chunk, teacherId);
+                questionIds.addAll(ids);
+
+                Map<String, Object> progress = new LinkedHashMap<>();
+                progress.put("stage", "questions");
+                progress.put("chunk", chunks.size() + 1);
+                progress.put("questions", ids.size());
+                progress.put("firstQuestionId", ids.get(0));
+                progress.put("lastQuestionId", ids.get(ids.size() - 1));
+                progress.put("insertedSoFar", questionIds.size());
+                progress.put("totalQuestions", questions.size());
+                progress.put("elapsedMs", (System.nanoTime() - started) / 1_000_000);
+                chunks.add(progress);
+                onProgress.accept(progress);
+            }
 
-            Map<String, Object> data = new HashMap<>();
-            data.put("totalQuestions", questions.size());
-            data.put("successCount", questionIds.size());
-            data.put("questionIds", questionIds);
+            // 添加选项
+            int optionCount = insertOptions(conn, questions, questionIds, optionRows, (chunk, insertedSoFar) -> {
+                Map<String, Object> progress = new LinkedHashMap<>();
+                progress.put("stage", "options");
+                progress.put("chunk", chunk);
+                progress.put("insertedSoFar", insertedSoFar);
+                progress.put("elapsedMs", (System.nanoTime() - started) / 1_000_000);
+                onProgress.accept(progress);
+            });
+
+            Map<String, Object> result = new HashMap<>();
+            result.put("totalQuestions", questions.size());
+            result.put("successCount", questionIds.size());
+            result.put("questionIds", questionIds);
+            result.put("optionCount", optionCount);
+            result.put("chunkSize", chunkSize);
+            result.put("optionChunkSize", optionRows);
+            result.put("chunks", chunks);
+            result.put("elapsedMs", (System.nanoTime() - started) / 1_000_000);
+            return result;
+        });
+    }
 
-            return ApiResponse.success("批量创建成功", data);
-        } catch (Exception e) {
-            return ApiResponse.error("批量创建失败: " + e.getMessage());
+    /**
+     * 一条多行 INSERT 写入一块题目，返回按输入顺序排列的新题目ID
+     */
+    private List<Long> insertQuestionChunk(Connection conn, List<Map<String, Object>> chunk, Long teacherId)
+            throws SQLException {
+        String sql = SqlCatalog.multiRow(SqlCatalog.QUESTION_INSERT, chunk.size());
+        try (PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            int paramIndex = 1;
+            for (Map<String, Object> q : chunk) {
+                pstmt.setLong(paramIndex++, ((Number) q.get("subjectId")).longValue());
+                pstmt.setString(paramIndex++, (String) q.get("questionText"));
+                pstmt.setString(paramIndex++, (String) q.get("questionType"));
+                pstmt.setInt(paramIndex++, (Integer) q.get("difficultyLevel"));
+                pstmt.setLong(paramIndex++, teacherId);
+            }
+            pstmt.executeUpdate();
+
+            List<Long> ids = new ArrayList<>(chunk.size());
+            try (ResultSet rs = pstmt.getGeneratedKeys()) {
+                while (rs.next()) ids.add(rs.getLong(1));
+            }
+            if (ids.size() != chunk.size()) {
+                throw new SQLException("Expected " + chunk.size() + " generated keys, got " + ids.size());
+            }
+            return ids;
+        }
+    }
+
+    /**
+     * 全部题目的选项合并后按 rowsPerStatement 行一条多行 INSERT 写入，
+     * 每条写完后以 (第几条, 已写入选项数) 调用 onChunk
+     *
+     * @return 写入的选项数
+     */
+    private int insertOptions(Connection conn, List<Map<String, Object>> questions, List<Long> questionIds,
+                              int rowsPerStatement, BiConsumer<Integer, Integer> onChunk)
+            throws SQLException {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < questions.size(); i++) {
+            List<Map<String, Object>> options = (List<Map<String, Object>>) questions.get(i).get("options");
+            if (options == null) continue;
+            for (Map<String, Object> option : options) {
+                rows.add(new Object[]{questionIds.get(i), option.get("optionText"),
+                        option.get("isCorrect"), option.get("optionOrder")});
+            }
         }
+
+        int perStatement = Math.max(1, Math.min(rowsPerStatement, MAX_PLACEHOLDERS / OPTION_INSERT_PARAMS));
+        for (int from = 0; from < rows.size(); from += perStatement) {
+            List<Object[]> chunk = rows.subList(from, Math.min(from + perStatement, rows.size()));
+            String sql = SqlCatalog.multiRow(SqlCatalog.QUESTION_OPTION_INSERT, chunk.size());
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                int paramIndex = 1;
+                for (Object[] row : chunk) {
+                    pstmt.setLong(paramIndex++, (Long) row[0]);
+                    pstmt.setString(paramIndex++, (String) row[1]);
+                    pstmt.setBoolean(paramIndex++, (Boolean) row[2]);
+                    pstmt.setInt(paramIndex++, (Integer) row[3]);
+                }
+                pstmt.executeUpdate();
+            }
+            onChunk.accept(from / perStatement + 1, from + chunk.size());
+        }
+        return rows.size();
+    }
+
+    /**
+     * 停止接收新的 SSE 批量上传；进行中的上传继续执行到结束
+     */
+    @PreDestroy
+    public void shutdown() {
+        questionBatchPool.shutdown();
     }
 
     /**
@@ -338,24 +524,10 @@ public class TeacherController {
             @RequestParam(required = false) Long subjectId,
             @RequestParam(required = false) Integer difficultyLevel) {
 
-        try (Connection conn = DatabaseUtil.getConnection()) {
-            StringBuilder sql = new StringBuilder(
-                "SELECT COUNT(*) as total, " +
-                "question_type, difficulty_level, s.subject_name " +
-                "FROM questions q " +
-                "JOIN subjects s ON q.subject_id = s.subject_id " +
-                "WHERE q.is_deleted = FALSE"
-            );
+        try (Connection conn = DatabaseUtil.getReadConnection()) {
+            String sql = SqlCatalog.questionStatistics(subjectId != null, difficultyLevel != null);
 
-            if (subjectId != null) {
-                sql.append(" AND q.subject_id = ?");
-            }
-            if (difficultyLevel != null) {
-                sql.append(" AND q.difficulty_level = ?");
-            }
-            sql.append(" GROUP BY q.question_type, q.difficulty_level, s.subject_name");
-
-            PreparedStatement pstmt = conn.prepareStatement(sql.toString());
+            PreparedStatement pstmt = conn.prepareStatement(sql);
             int paramIndex = 1;
             if (subjectId != null) {
                 pstmt.setLong(paramIndex++, subjectId);
@@ -409,9 +581,7 @@ public class TeacherController {
             Integer passingScore = (Integer) request.get("passingScore");
 
             // 创建测验
-            String sql = "INSERT INTO quizzes (classroom_id, title, description, created_by, " +
-                        "start_time, end_time, duration_minutes, total_points, passing_score) " +
-                        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+            String sql = SqlCatalog.QUIZ_INSERT;
             PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
             pstmt.setLong(1, classroomId);
             pstmt.setString(2, title);
@@ -431,8 +601,7 @@ public class TeacherController {
             // 添加题目
             List<Map<String, Object>> questions = (List<Map<String, Object>>) request.get("questions");
             if (questions != null && !questions.isEmpty()) {
-                sql = "INSERT INTO quiz_questions (quiz_id, question_id, question_order, points) " +
-                      "VALUES (?, ?, ?, ?)";
+                sql = SqlCatalog.QUIZ_QUESTION_INSERT;
                 pstmt = conn.prepareStatement(sql);
 
                 for (Map<String, Object> q : questions) {
@@ -448,8 +617,7 @@ public class TeacherController {
             // 添加设置
             Map<String, Object> settings = (Map<String, Object>) request.get("settings");
             if (settings != null) {
-                sql = "INSERT INTO quiz_settings (quiz_id, shuffle_questions, shuffle_options, " +
-                      "show_results_immediately, allow_review) VALUES (?, ?, ?, ?, ?)";
+                sql = SqlCatalog.QUIZ_SETTINGS_INSERT;
                 pstmt = conn.prepareStatement(sql);
                 pstmt.setLong(1, quizId);
                 pstmt.setBoolean(2, (Boolean) settings.getOrDefault("shuffleQuestions", false));
@@ -460,6 +628,7 @@ public class TeacherController {
             }
 
             conn.commit();
+            examPaperService.invalidateQuiz(quizId);
 
             Map<String, Object> data = new HashMap<>();
             data.put("quizId", quizId);
@@ -483,41 +652,48 @@ public class TeacherController {
             @RequestParam(required = false) Integer difficultyLevel,
             @RequestParam Integer count) {
 
-        try (Connection conn = DatabaseUtil.getConnection()) {
-            StringBuilder sql = new StringBuilder(
-                "SELECT question_id, question_text, question_type, difficulty_level " +
-                "FROM questions WHERE subject_id = ? AND is_deleted = FALSE"
-            );
-
-            if (questionType != null) {
-                sql.append(" AND question_type = ?");
-            }
-            if (difficultyLevel != null) {
-                sql.append(" AND difficulty_level = ?");
-            }
-            sql.append(" ORDER BY RAND() LIMIT ?");
-
-            PreparedStatement pstmt = conn.prepareStatement(sql.toString());
-            int paramIndex = 1;
-            pstmt.setLong(paramIndex++, subjectId);
-            if (questionType != null) {
-                pstmt.setString(paramIndex++, questionType);
-            }
-            if (difficultyLevel != null) {
-                pstmt.setInt(paramIndex++, difficultyLevel);
+        try (Connection conn = DatabaseUtil.getReadConnection()) {
+            // 1. 流式读取候选ID，蓄水池抽样出 count 个
+            String sql = SqlCatalog.randomQuestionIds(questionType != null, difficultyLevel != null);
+            List<Object> params = new ArrayList<>();
+            params.add(subjectId);
+            if (questionType != null) params.add(questionType);
+            if (difficultyLevel != null) params.add(difficultyLevel);
+
+            List<Long> sample = new ArrayList<>(Math.max(0, count));
+            long[] seen = {0};
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            DatabaseUtil.forEachRow(conn, sql, DatabaseConfig.STREAM_FETCH_SIZE, rs -> {
+                long id = rs.getLong(1);
+                seen[0]++;
+                if (sample.size() < count) {
+                    sample.add(id);
+                } else {
+                    long slot = random.nextLong(seen[0]);
+                    if (slot < count) sample.set((int) slot, id);
+                }
+            }, params.toArray());
+            Collections.shuffle(sample, random);
+
+            // 2. 按抽中的ID取题，保持抽样顺序
+            Map<Long, Map<String, Object>> byId = new HashMap<>();
+            if (!sample.isEmpty()) {
+                sql = SqlCatalog.expandIn(SqlCatalog.QUESTION_BY_IDS, sample.size());
+                for (Map<String, Object> question : DatabaseUtil.queryList(conn, sql, rs -> {
+                    Map<String, Object> question = new HashMap<>();
+                    question.put("questionId", rs.getLong("question_id"));
+                    question.put("questionText", rs.getString("question_text"));
+                    question.put("questionType", rs.getString("question_type"));
+                    question.put("difficultyLevel", rs.getInt("difficulty_level"));
+                    return question;
+                }, sample.toArray())) {
+                    byId.put((Long) question.get("questionId"), question);
+                }
             }
-            pstmt.setInt(paramIndex++, count);
-
-            ResultSet rs = pstmt.executeQuery();
 
             List<Map<String, Object>> questions = new ArrayList<>();
-            while (rs.next()) {
-                Map<String, Object> question = new HashMap<>();
-                question.put("questionId", rs.getLong("question_id"));
-                question.put("questionText", rs.getString("question_text"));
-                question.put("questionType", rs.getString("question_type"));
-                question.put("difficultyLevel", rs.getInt("difficulty_level"));
-                questions.add(question);
+            for (Long id : sample) {
+                if (byId.containsKey(id)) questions.add(byId.get(id));
             }
 
             Map<String, Object> data = new HashMap<>();
@@ -536,28 +712,14 @@ public class TeacherController {
      */
     @GetMapping("/quizzes/{quizId}")
     public ApiResponse<?> getQuizDetails(@PathVariable Long quizId) {
-        try (Connection conn = DatabaseUtil.getConnection()) {
-            String sql = "SELECT q.*, COUNT(qq.question_id) as question_count " +
-                        "FROM quizzes q " +
-                        "LEFT JOIN quiz_questions qq ON q.quiz_id = qq.quiz_id " +
-                        "WHERE q.quiz_id = ? GROUP BY q.quiz_id";
-
-            PreparedStatement pstmt = conn.prepareStatement(sql);
-            pstmt.setLong(1, quizId);
-            ResultSet rs = pstmt.executeQuery();
-
-            if (rs.next()) {
-                Map<String, Object> quiz = new HashMap<>();
-                quiz.put("quizId", rs.getLong("quiz_id"));
-                quiz.put("title", rs.getString("title"));
-                quiz.put("description", rs.getString("description"));
-                quiz.put("startTime", rs.getTimestamp("start_time"));
-                quiz.put("endTime", rs.getTimestamp("end_time"));
-                quiz.put("durationMinutes", rs.getInt("duration_minutes"));
-                quiz.put("totalPoints", rs.getInt("total_points"));
-                quiz.put("passingScore", rs.getInt("passing_score"));
-                quiz.put("questionCount", rs.getInt("question_count"));
-
+        try {
+            // 同一测验的并发请求共享一次查询；连接在加载者内获取，等待者不占用连接。
+            // 刚写入过的用户必须读主库，不加入合并 (加载者可能读的是副本)
+            Map<String, Object> quiz = ReadWriteRouting.mustReadPrimary()
+                    ? loadQuizDetails(quizId)
+                    : quizDetailsFlight.execute(quizId, () -> loadQuizDetails(quizId));
+
+            if (quiz != null) {
                 return ApiResponse.success(quiz);
             }
 
@@ -567,49 +729,49 @@ public class TeacherController {
         }
     }
 
+    private static Map<String, Object> loadQuizDetails(long quizId) throws SQLException {
+        try (Connection conn = DatabaseUtil.getReadConnection()) {
+            String sql = SqlCatalog.QUIZ_DETAILS;
+
+            PreparedStatement pstmt = conn.prepareStatement(sql);
+            pstmt.setLong(1, quizId);
+            ResultSet rs = pstmt.executeQuery();
+
+            if (!rs.next()) {
+                return null;
+            }
+            Map<String, Object> details = new HashMap<>();
+            details.put("quizId", rs.getLong("quiz_id"));
+            details.put("title", rs.getString("title"));
+            details.put("description", rs.getString("description"));
+            details.put("startTime", rs.getTimestamp("start_time"));
+            details.put("endTime", rs.getTimestamp("end_time"));
+            details.put("durationMinutes", rs.getInt("duration_minutes"));
+            details.put("totalPoints", rs.getInt("total_points"));
+            details.put("passingScore", rs.getInt("passing_score"));
+            details.put("questionCount", rs.getInt("question_count"));
+            return details;
+        }
+    }
+
     /**
      * Feature 25: 自动评分客观题
      * POST /teacher/quizzes/{studentQuizId}/grade
      */
     @PostMapping("/quizzes/{studentQuizId}/grade")
     public ApiResponse<?> autoGradeQuiz(@PathVariable Long studentQuizId) {
-        try (Connection conn = DatabaseUtil.getConnection()) {
-            // 获取quiz_id
-            String sql = "SELECT quiz_id FROM student_quizzes WHERE student_quiz_id = ?";
-            PreparedStatement pstmt = conn.prepareStatement(sql);
-            pstmt.setLong(1, studentQuizId);
-            ResultSet rs = pstmt.executeQuery();
-
-            long quizId = 0;
-            if (rs.next()) quizId = rs.getLong("quiz_id");
-
-            // 自动评分
-            sql = "UPDATE student_answers sa " +
-                  "INNER JOIN question_options qo ON sa.selected_option_id = qo.option_id " +
-                  "INNER JOIN quiz_questions qq ON sa.question_id = qq.question_id " +
-                  "SET sa.is_correct = qo.is_correct, " +
-                  "    sa.points_earned = CASE WHEN qo.is_correct THEN qq.points ELSE 0 END " +
-                  "WHERE sa.student_quiz_id = ? AND qq.quiz_id = ?";
-            pstmt = conn.prepareStatement(sql);
-            pstmt.setLong(1, studentQuizId);
-            pstmt.setLong(2, quizId);
-            int graded = pstmt.executeUpdate();
-
-            // 计算总分
-            sql = "UPDATE student_quizzes sq " +
-                  "SET sq.score = (SELECT COALESCE(SUM(points_earned), 0) FROM student_answers WHERE student_quiz_id = ?), " +
-                  "    sq.percentage = (SELECT COALESCE(SUM(points_earned), 0) * 100.0 / 100 FROM student_answers WHERE student_quiz_id = ?), " +
-                  "    sq.graded = TRUE, sq.status = 'completed' " +
-                  "WHERE sq.student_quiz_id = ?";
-            pstmt = conn.prepareStatement(sql);
-            pstmt.setLong(1, studentQuizId);
-            pstmt.setLong(2, studentQuizId);
-            pstmt.setLong(3, studentQuizId);
-            pstmt.executeUpdate();
+        try {
+            // 答案键与作答在 Java 中比对，逐题结果和总分各一条批量 UPDATE 写回
+            GradingService.GradeResult result = gradingService.gradeSubmission(studentQuizId);
+            if (result == null) {
+                return ApiResponse.error(404, "测验提交不存在");
+            }
 
             Map<String, Object> data = new HashMap<>();
             data.put("studentQuizId", studentQuizId);
-            data.put("gradedQuestions", graded);
+            data.put("gradedQuestions", result.getGradedAnswers());
+            data.put("score", result.getScore());
+            data.put("percentage", result.getPercentage());
             data.put("status", "graded");
 
             return ApiResponse.success("评分完成", data);
@@ -618,6 +780,118 @@ public class TeacherController {
         }
     }
 
+    /**
+     * 评分测验的全部提交 (SSE 推送进度)
+     * POST /teacher/quizzes/{quizId}/grade-all
+     *
+     * 尚未评分的提交分块并行评分，每块单独提交，每完成一块推送一次 progress 事件，
+     * 全部完成后推送 done；中断后重新调用只评分剩余的提交。
+     * 启用评分任务队列时改为创建评分任务，推送一次 queued (各状态任务数) 后结束，
+     * 进度通过 GET /teacher/quizzes/{quizId}/grading-jobs 查询
+     */
+    @PostMapping(value = "/quizzes/{quizId}/grade-all", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter gradeAllSubmissions(@PathVariable Long quizId) {
+        SseEmitter emitter = new SseEmitter(GRADE_ALL_TIMEOUT_MS);
+        try {
+            if (gradingJobs.isEnabled()) {
+                sendEvent(emitter, "queued", gradingJobs.enqueueQuiz(quizId));
+                emitter.complete();
+                return emitter;
+            }
+            CompletableFuture<Map<String, Object>> run = gradingService.gradeQuiz(quizId,
+                    progress -> sendEvent(emitter, "progress", progress));
+            if (run == null) {
+                sendEvent(emitter, "error", ApiResponse.error(404, "测验不存在"));
+                emitter.complete();
+                return emitter;
+            }
+            run.whenComplete((result, e) -> {
+                if (e != null) {
+                    sendEvent(emitter, "error", ApiResponse.error("评分失败: " + e.getMessage()));
+                } else {
+                    sendEvent(emitter, "done", result);
+                }
+                emitter.complete();
+            });
+        } catch (IllegalStateException e) {
+            sendEvent(emitter, "error", ApiResponse.error(409, "该测验正在评分"));
+            emitter.complete();
+        } catch (Exception e) {
+            sendEvent(emitter, "error", ApiResponse.error("评分失败: " + e.getMessage()));
+            emitter.complete();
+        }
+        return emitter;
+    }
+
+    /**
+     * 测验的评分任务进度
+     * GET /teacher/quizzes/{quizId}/grading-jobs
+     */
+    @GetMapping("/quizzes/{quizId}/grading-jobs")
+    public ApiResponse<?> getGradingJobs(@PathVariable Long quizId) {
+        try {
+            return ApiResponse.success(gradingJobs.quizStatus(quizId));
+        } catch (Exception e) {
+            return ApiResponse.error("查询失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 修正题目的正确选项并增量重新评分
+     * PUT /teacher/questions/{questionId}/correct-options
+     *
+     * 只重新评分已评分提交中该题目的作答，并按得分差调整这些提交的总分
+     */
+    @PutMapping("/questions/{questionId}/correct-options")
+    @SuppressWarnings("unchecked")
+    public ApiResponse<?> updateCorrectOptions(@PathVariable Long questionId,
+                                               @RequestBody Map<String, Object> request) {
+        try {
+            List<Long> optionIds = new ArrayList<>();
+            for (Object id : (List<Object>) request.get("correctOptionIds")) {
+                optionIds.add(((Number) id).longValue());
+            }
+            int options = gradingService.updateCorrectOptions(questionId, optionIds);
+            if (options == 0) {
+                return ApiResponse.error(404, "题目不存在或没有选项");
+            }
+
+            Map<String, Object> data = new LinkedHashMap<>(gradingService.regradeQuestion(questionId));
+            data.put("correctOptionIds", optionIds);
+            return ApiResponse.success("答案已修正并重新评分", data);
+        } catch (IllegalArgumentException e) {
+            return ApiResponse.error(400, "选项不属于该题目");
+        } catch (Exception e) {
+            return ApiResponse.error("重新评分失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 按题目当前的答案键增量重新评分 (答案键在别处修改后，或修正后重新评分中断时)
+     * POST /teacher/questions/{questionId}/regrade
+     */
+    @PostMapping("/questions/{questionId}/regrade")
+    public ApiResponse<?> regradeQuestion(@PathVariable Long questionId) {
+        try {
+            return ApiResponse.success("重新评分完成", gradingService.regradeQuestion(questionId));
+        } catch (Exception e) {
+            return ApiResponse.error("重新评分失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 评分线程并发推送进度，逐个发送；客户端断开时抛出 UncheckedIOException (评分继续)
+     */
+    private static void sendEvent(SseEmitter emitter, String name, Object data) {
+        synchronized (emitter) {
+            try {
+                emitter.send(SseEmitter.event().name(name).data(data, MediaType.APPLICATION_JSON));
+            } catch (IOException | IllegalStateException e) {
+                throw new UncheckedIOException(e instanceof IOException ? (IOException) e : new IOException(e));
+            }
+        }
+    }
+
     /**
      * Feature 27: 发布成绩
      * POST /teacher/quizzes/{quizId}/publish
@@ -625,8 +899,7 @@ public class TeacherController {
     @PostMapping("/quizzes/{quizId}/publish")
     public ApiResponse<?> publishGrades(@PathVariable Long quizId) {
         try (Connection conn = DatabaseUtil.getConnection()) {
-            String sql = "UPDATE student_quizzes SET published = TRUE " +
-                        "WHERE quiz_id = ? AND graded = TRUE";
+            String sql = SqlCatalog.GRADE_PUBLISH;
             PreparedStatement pstmt = conn.prepareStatement(sql);
             pstmt.setLong(1, quizId);
             int published = pstmt.executeUpdate();
@@ -647,14 +920,8 @@ public class TeacherController {
      */
     @GetMapping("/quizzes/{quizId}/grades")
     public ApiResponse<?> getClassGrades(@PathVariable Long quizId) {
-        try (Connection conn = DatabaseUtil.getConnection()) {
-            String sql = "SELECT u.full_name, s.student_number, sq.score, q.total_points, sq.percentage " +
-                        "FROM student_quizzes sq " +
-                        "JOIN students s ON sq.student_id = s.student_id " +
-                        "JOIN users u ON s.user_id = u.user_id " +
-                        "JOIN quizzes q ON sq.quiz_id = q.quiz_id " +
-                        "WHERE sq.quiz_id = ? AND sq.graded = TRUE " +
-                        "ORDER BY sq.score DESC";
+        try (Connection conn = DatabaseUtil.getReadConnection()) {
+            String sql = SqlCatalog.CLASS_GRADES;
 
             PreparedStatement pstmt = conn.prepareStatement(sql);
             pstmt.setLong(1, quizId);
@@ -687,13 +954,8 @@ public class TeacherController {
      */
     @GetMapping("/questions/{questionId}/analysis")
     public ApiResponse<?> analyzeQuestionDifficulty(@PathVariable Long questionId) {
-        try (Connection conn = DatabaseUtil.getConnection()) {
-            String sql = "SELECT q.question_id, q.question_text, q.difficulty_level, " +
-                        "q.times_used, q.total_attempts, q.correct_count, " +
-                        "CASE WHEN q.total_attempts > 0 " +
-                        "THEN ROUND(q.correct_count * 100.0 / q.total_attempts, 2) " +
-                        "ELSE 0 END as correct_rate " +
-                        "FROM questions q WHERE q.question_id = ?";
+        try (Connection conn = DatabaseUtil.getReadConnection()) {
+            String sql = SqlCatalog.QUESTION_ANALYSIS;
 
             PreparedStatement pstmt = conn.prepareStatement(sql);
             pstmt.setLong(1, questionId);
@@ -724,15 +986,8 @@ public class TeacherController {
      */
     @GetMapping("/quizzes/{quizId}/report")
     public ApiResponse<?> generateGradeReport(@PathVariable Long quizId) {
-        try (Connection conn = DatabaseUtil.getConnection()) {
-            String sql = "SELECT COUNT(DISTINCT sq.student_id) as total_students, " +
-                        "ROUND(AVG(sq.score), 2) as avg_score, " +
-                        "MIN(sq.score) as min_score, " +
-                        "MAX(sq.score) as max_score, " +
-                        "SUM(CASE WHEN sq.score >= q.passing_score THEN 1 ELSE 0 END) as passed_count " +
-                        "FROM student_quizzes sq " +
-                        "JOIN quizzes q ON sq.quiz_id = q.quiz_id " +
-                        "WHERE sq.quiz_id = ? AND sq.graded = TRUE";
+        try (Connection conn = DatabaseUtil.getReadConnection()) {
+            String sql = SqlCatalog.GRADE_REPORT;
 
             PreparedStatement pstmt = conn.prepareStatement(sql);
             pstmt.setLong(1, quizId);
@@ -764,15 +1019,8 @@ public class TeacherController {
     public ApiResponse<?> getTeacherQuizzes(HttpServletRequest request) {
         Long teacherId = (Long) request.getAttribute("roleId");
 
-        try (Connection conn = DatabaseUtil.getConnection()) {
-            String sql = "SELECT q.quiz_id, q.title, c.course_name, " +
-                        "COUNT(DISTINCT sq.student_quiz_id) as submissions " +
-                        "FROM quizzes q " +
-                        "JOIN classrooms cl ON q.classroom_id = cl.classroom_id " +
-                        "JOIN courses c ON cl.course_id = c.course_id " +
-                        "LEFT JOIN student_quizzes sq ON q.quiz_id = sq.quiz_id " +
-                        "WHERE q.created_by = ? " +
-                        "GROUP BY q.quiz_id, q.title, c.course_name";
+        try (Connection conn = DatabaseUtil.getReadConnection()) {
+            String sql = SqlCatalog.TEACHER_QUIZZES;
 
             PreparedStatement pstmt = conn.prepareStatement(sql);
             pstmt.setLong(1, teacherId);
@@ -0,0 +1,253 @@
+package com.zekai.api.service;
+
+import com.zekai.util.ConcurrentHistogram;
+import com.zekai.util.TransactionTemplate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ========================================
+ * ANSWER GROUP COMMIT - 答案组提交
+ * ========================================
+ *
+ * 考试高峰时大量学生在同一时刻保存答案，每个请求各自提交一个事务。
+ * 组提交把请求线程的作答放入队列，由一个提交线程收集一个时间窗口
+ * (window-ms，从一组的第一条开始计算) 内到达的全部作答，
+ * 以一条多行 upsert、一个事务写入，再逐个唤醒等待的请求。
+ *
+ * 整组写入失败时逐条单独重试，每个请求得到自己的结果 (一条坏数据不拖累同组的其他请求)。
+ * 请求在返回前已提交，持久性与 sync 模式相同。
+ *
+ * 提交线程不会因为一组的意外错误退出：该组的请求收到错误，线程继续处理下一组；
+ * 请求最多等待 {@link #COMMIT_WAIT_SECONDS} 秒。停止时不中断提交线程 (中断会让
+ * 正在提交的一组在重试等待或取连接时失败)，而是清除运行标志，由提交线程提交完队列中的作答后退出。
+ *
+ * @author Exam System Team
+ */
+class AnswerGroupCommit {
+
+    private static final Logger log = LoggerFactory.getLogger(AnswerGroupCommit.class);
+
+    /** 请求等待所在组提交的最长时间 */
+    static final long COMMIT_WAIT_SECONDS = 30;
+
+    /** 提交线程等待新作答时检查运行标志的间隔 */
+    private static final long POLL_MILLIS = 100;
+
+    private static final Comparator<Request> LOCK_ORDER =
+            Comparator.comparingLong((Request r) -> r.answer.studentQuizId).thenComparingLong(r -> r.answer.questionId);
+
+    /**
+     * 一个等待提交的作答
+     */
+    private static final class Request {
+        final AnswerWriter.Answer answer;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Request(AnswerWriter.Answer answer) {
+            this.answer = answer;
+        }
+    }
+
+    private final long windowNanos;
+    private final int maxBatch;
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final Thread committer;
+    private volatile boolean running = true;
+
+    private final LongAdder commits = new LongAdder();
+    private final LongAdder committedRows = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+    private final ConcurrentHistogram batchSizes = new ConcurrentHistogram();
+    private final ConcurrentHistogram commitLatency = new ConcurrentHistogram();
+
+    /**
+     * @param windowMillis 一组从第一条作答开始等待的时间；0 表示只合并提交期间排队的作答
+     * @param maxBatch     一组的最大作答数
+     */
+    AnswerGroupCommit(long windowMillis, int maxBatch) {
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.maxBatch = maxBatch;
+        this.committer = new Thread(this::run, "answer-group-commit");
+        this.committer.setDaemon(true);
+        this.committer.start();
+    }
+
+    /**
+     * 加入下一组并等待该组提交
+     *
+     * @throws SQLException 这一条作答写入失败
+     */
+    void commit(AnswerWriter.Answer answer) throws SQLException {
+        if (!running) {
+            throw new SQLException("Answer group commit is shut down");
+        }
+        Request request = new Request(answer);
+        queue.add(request);
+        // 与 shutdown 竞争：入队前 running 仍为 true，但最后一次 drainTo 可能已经完成。
+        // 入队后再检查一次；队列里还能移除就说明没有人会提交它，直接失败，不永远等待
+        if (!running && queue.remove(request)) {
+            throw new SQLException("Answer group commit is shut down");
+        }
+        try {
+            request.done.get(COMMIT_WAIT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for group commit", e);
+        } catch (TimeoutException e) {
+            // 仍在队列中说明提交线程没有取走它，不会再写入；否则结果未知，客户端重试 (带 seq 时重复的保存被忽略)
+            throw new SQLException(queue.remove(request)
+                    ? "Answer group commit did not pick up the answer within " + COMMIT_WAIT_SECONDS + "s"
+                    : "Answer group commit did not finish within " + COMMIT_WAIT_SECONDS + "s", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new SQLException(cause);
+        }
+    }
+
+    /**
+     * 停止提交线程；已排队的作答先提交完 (不中断正在提交的一组)。
+     * 之后才入队的作答由 commit 自己发现并失败
+     */
+    void shutdown() {
+        running = false;
+        try {
+            committer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // 提交线程在等待时间内未退出时，剩余的作答在这里提交
+        List<Request> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        if (!rest.isEmpty()) {
+            commitSafely(rest);
+        }
+    }
+
+    Map<String, Object> stats() {
+        long commitCount = commits.sum();
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("windowMs", TimeUnit.NANOSECONDS.toMillis(windowNanos));
+        data.put("maxBatch", maxBatch);
+        data.put("queued", queue.size());
+        data.put("commits", commitCount);
+        data.put("committedRows", committedRows.sum());
+        data.put("rowsPerCommit", commitCount == 0 ? 0.0 : Math.round(committedRows.sum() * 100.0 / commitCount) / 100.0);
+        data.put("batchSize", batchSizes.snapshot(1.0));
+        data.put("fallbacks", fallbacks.sum());
+        data.put("commitLatency", commitLatency.snapshot(1000.0));
+        return data;
+    }
+
+    // ==================== 提交线程 ====================
+
+    private void run() {
+        List<Request> batch = new ArrayList<>();
+        // 停止后继续，直到队列中的作答都已提交
+        while (running || !queue.isEmpty()) {
+            try {
+                Request first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < maxBatch) {
+                    long remaining = deadline - System.nanoTime();
+                    Request next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // 停止不使用中断；提交已收集的这一组后继续
+            }
+            if (!batch.isEmpty()) {
+                commitSafely(batch);
+                batch = new ArrayList<>();
+            }
+        }
+    }
+
+    /**
+     * commitBatch 之外的错误 (如 Error) 不让提交线程退出：这一组尚未完成的请求收到该错误
+     */
+    private void commitSafely(List<Request> batch) {
+        try {
+            commitBatch(batch);
+        } catch (Throwable t) {
+            log.error("Group commit of {} answers failed unexpectedly", batch.size(), t);
+            for (Request request : batch) {
+                request.done.completeExceptionally(t);
+            }
+        }
+    }
+
+    private void commitBatch(List<Request> batch) {
+        // 同一题目在一组内只写最后一次，所有请求都随这一组完成
+        Map<List<Long>, Request> latest = new LinkedHashMap<>();
+        for (Request request : batch) {
+            latest.put(List.of(request.answer.studentQuizId, request.answer.questionId), request);
+        }
+        List<Request> rows = new ArrayList<>(latest.values());
+        rows.sort(LOCK_ORDER);
+        List<AnswerWriter.Answer> answers = new ArrayList<>(rows.size());
+        for (Request request : rows) {
+            answers.add(request.answer);
+        }
+
+        long start = System.nanoTime();
+        try {
+            TransactionTemplate.execute(conn -> AnswerWriter.upsert(conn, answers));
+            commits.increment();
+            committedRows.add(answers.size());
+            batchSizes.record(batch.size());
+            commitLatency.record((System.nanoTime() - start) / 1000);
+            for (Request request : batch) {
+                request.done.complete(null);
+            }
+        } catch (SQLException | RuntimeException e) {
+            if (batch.size() == 1) {
+                batch.get(0).done.completeExceptionally(e);
+                return;
+            }
+            fallbacks.increment();
+            log.warn("Group commit of {} answers failed, retrying one by one: {}", batch.size(), e.getMessage());
+            for (Request request : batch) {
+                commitOne(request);
+            }
+        }
+    }
+
+    private void commitOne(Request request) {
+        try {
+            TransactionTemplate.execute(conn -> AnswerWriter.upsert(conn, List.of(request.answer)));
+            commits.increment();
+            committedRows.increment();
+            request.done.complete(null);
+        } catch (SQLException | RuntimeException e) {
+            request.done.completeExceptionally(e);
+        }
+    }
+}
@@ -0,0 +1,401 @@
+package com.zekai.api.service;
+
+import com.zekai.util.ConcurrentHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * ========================================
+ * ANSWER JOURNAL - 答案本地日志
+ * ========================================
+ *
+ * write-behind 模式下答案在写入 MySQL 之前就已确认，本地日志保证确认过的答案
+ * 在 JVM 崩溃后不丢失：
+ *
+ * - 只追加的段文件 (answers-{id}.journal)，预分配并以内存映射写入
+ * - 记录格式 [int 长度][int CRC32][作答内容]，长度为 0 (预分配的空白) 表示段结束，
+ *   CRC 不符的记录视为崩溃时写了一半的尾部
+ * - 组提交：并发保存各自追加后等待同一次 force，一次 fsync 确认一批记录
+ * - 段写满后轮转；段内记录都已写库 (或被同一题目的新作答覆盖) 且更早的段都已删除后删除该段。
+ *   只从最旧的段开始删除：较新的段先释放时保留到旧段删除，否则旧段中被覆盖的作答
+ *   会在崩溃恢复时重放，覆盖已写库的新作答；保留下来的新段在恢复时排在旧段之后重放
+ * - 启动时读取残留的段，交给 AnswerWriter 放回缓冲区并写库，写库成功后删除
+ *
+ * 记录在哪个段由 {@link AnswerWriter.Answer} 携带，写库或被覆盖时调用 {@link #release}。
+ *
+ * @author Exam System Team
+ */
+public class AnswerJournal implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(AnswerJournal.class);
+
+    private static final String PREFIX = "answers-";
+    private static final String SUFFIX = ".journal";
+    private static final int HEADER_BYTES = 8;
+    private static final int HAS_OPTION = 1;
+    private static final int HAS_TEXT = 2;
+
+    /**
+     * 一个段文件；live 为尚未写库的记录数
+     */
+    static final class Segment {
+        final long id;
+        final Path path;
+        final AtomicInteger live = new AtomicInteger();
+        final AtomicBoolean deleted = new AtomicBoolean();
+        /** 活动段的映射；恢复出来的旧段为 null */
+        final MappedByteBuffer buffer;
+        final FileChannel channel;
+        /** 已写入的字节数 (追加锁内更新) */
+        volatile int written;
+        /** 已 force 的字节数 (同步锁内读写) */
+        int forced;
+        /** 已轮转 (不再追加)，轮转前已 force */
+        volatile boolean sealed;
+
+        Segment(long id, Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+    }
+
+    private final Path dir;
+    private final int segmentBytes;
+    private final boolean fsync;
+    private final FileChannel lockChannel;
+    private final FileLock dirLock;
+
+    /** 保护活动段的追加与轮转 */
+    private final ReentrantLock appendLock = new ReentrantLock();
+    /** 同一时间只有一个线程在 force，其余线程等待后检查自己的记录是否已被覆盖 */
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private final Map<Long, Segment> segments = Collections.synchronizedMap(new LinkedHashMap<>());
+    private final List<AnswerWriter.Answer> recovered;
+    private volatile Segment active;
+    private long nextSegmentId;
+    private volatile boolean closed;
+
+    private final LongAdder appends = new LongAdder();
+    private final LongAdder syncs = new LongAdder();
+    private final LongAdder deletedSegments = new LongAdder();
+    private final ConcurrentHistogram syncLatency = new ConcurrentHistogram();
+
+    /**
+     * 打开日志目录并读取残留的段 (见 {@link #recovered()})
+     *
+     * @param dir          日志目录，不存在时创建；同一目录只能被一个进程打开
+     * @param segmentBytes 段文件大小
+     * @param fsync        确认前是否 force 到磁盘；false 时只保证 JVM 崩溃不丢失 (操作系统崩溃可能丢失)
+     * @throws IOException 目录不可用或已被其他进程占用
+     */
+    public AnswerJournal(Path dir, int segmentBytes, boolean fsync) throws IOException {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.fsync = fsync;
+        Files.createDirectories(dir);
+        this.lockChannel = FileChannel.open(dir.resolve("LOCK"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        this.dirLock = lockChannel.tryLock();
+        if (dirLock == null) {
+            lockChannel.close();
+            throw new IOException("Answer journal directory is in use by another process: " + dir);
+        }
+        this.recovered = Collections.unmodifiableList(recover());
+        this.active = openSegment(segmentBytes);
+    }
+
+    /**
+     * @return 启动时从残留的段读出的答案 (按写入顺序)，每条都已计入所在段
+     */
+    public List<AnswerWriter.Answer> recovered() {
+        return recovered;
+    }
+
+    // ==================== 追加 ====================
+
+    /**
+     * 追加一条作答记录 (不等待落盘)；调用方随后调用 {@link #sync}
+     *
+     * @return 携带所在段的作答
+     */
+    public AnswerWriter.Answer append(AnswerWriter.Answer answer) throws IOException {
+        byte[] payload = encode(answer);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        appendLock.lock();
+        try {
+            if (closed) {
+                throw new IOException("Answer journal is closed");
+            }
+            Segment segment = active;
+            int position = segment.written;
+            if (position + HEADER_BYTES + payload.length > segment.buffer.capacity()) {
+                segment = rotate(HEADER_BYTES + payload.length);
+                position = 0;
+            }
+            // 先写内容和 CRC，最后写长度
+            segment.buffer.putInt(position + 4, (int) crc.getValue());
+            segment.buffer.put(position + HEADER_BYTES, payload);
+            segment.buffer.putInt(position, payload.length);
+            segment.live.incrementAndGet();
+            segment.written = position + HEADER_BYTES + payload.length;
+            appends.increment();
+            return answer.journaled(segment, segment.written);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * 等待记录落盘。并发调用合并为一次 force：持有同步锁的线程 force 到当前写入位置，
+     * 之后拿到锁的线程发现自己的记录已被覆盖即返回
+     */
+    public void sync(AnswerWriter.Answer answer) throws IOException {
+        Segment segment = answer.segment;
+        if (!fsync || segment == null || segment.sealed) {
+            return;
+        }
+        syncLock.lock();
+        try {
+            if (segment.sealed || segment.forced >= answer.journalOffset) {
+                return;
+            }
+            long start = System.nanoTime();
+            int upTo = segment.written;
+            segment.buffer.force(segment.forced, upTo - segment.forced);
+            segment.forced = upTo;
+            syncs.increment();
+            syncLatency.record((System.nanoTime() - start) / 1000);
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    /**
+     * 记录已写库或已被同一题目的新作答覆盖；段内记录全部释放且段已轮转时，
+     * 删除从最旧的段开始连续释放完的段文件
+     */
+    public void release(AnswerWriter.Answer answer) {
+        Segment segment = answer.segment;
+        if (segment != null && segment.live.decrementAndGet() == 0 && segment.sealed) {
+            deleteReleased();
+        }
+    }
+
+    // ==================== 统计 ====================
+
+    public Map<String, Object> stats() {
+        long appendCount = appends.sum();
+        long syncCount = syncs.sum();
+        int liveRecords = 0;
+        synchronized (segments) {
+            for (Segment segment : segments.values()) {
+                liveRecords += segment.live.get();
+            }
+        }
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("dir", dir.toString());
+        data.put("fsync", fsync);
+        data.put("segments", segments.size());
+        data.put("liveRecords", liveRecords);
+        data.put("recovered", recovered.size());
+        data.put("appends", appendCount);
+        data.put("syncs", syncCount);
+        data.put("recordsPerSync", syncCount == 0 ? 0.0 : Math.round(appendCount * 100.0 / syncCount) / 100.0);
+        data.put("syncLatency", syncLatency.snapshot(1000.0));
+        data.put("deletedSegments", deletedSegments.sum());
+        return data;
+    }
+
+    /**
+     * force 活动段并释放目录锁；未写库的记录保留在段文件中，下次启动时恢复
+     */
+    @Override
+    public void close() throws IOException {
+        appendLock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            Segment segment = active;
+            segment.buffer.force();
+            segment.channel.close();
+            segment.sealed = true;
+            deleteReleased();
+            dirLock.release();
+            lockChannel.close();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    // ==================== 内部方法 ====================
+
+    /**
+     * 轮转：force 并封存当前段，打开新段 (追加锁内调用)
+     *
+     * @param minBytes 新段至少需要容纳的字节数 (超过段大小的单条记录)
+     */
+    private Segment rotate(int minBytes) throws IOException {
+        Segment old = active;
+        old.buffer.force();
+        old.channel.close();
+        old.sealed = true;
+        Segment segment = openSegment(Math.max(segmentBytes, minBytes));
+        active = segment;
+        if (old.live.get() == 0) {
+            deleteReleased();
+        }
+        return segment;
+    }
+
+    private Segment openSegment(int bytes) throws IOException {
+        long id = nextSegmentId++;
+        Path path = dir.resolve(String.format("%s%016d%s", PREFIX, id, SUFFIX));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+        Segment segment = new Segment(id, path, channel, buffer);
+        segments.put(id, segment);
+        return segment;
+    }
+
+    /**
+     * 按段号顺序删除已封存且记录全部释放的段，遇到第一个仍有记录 (或仍在追加) 的段停止
+     */
+    private void deleteReleased() {
+        List<Segment> released = new ArrayList<>();
+        synchronized (segments) {
+            for (Segment segment : segments.values()) {
+                if (!segment.sealed || segment.live.get() != 0) {
+                    break;
+                }
+                released.add(segment);
+            }
+        }
+        for (Segment segment : released) {
+            delete(segment);
+        }
+    }
+
+    private void delete(Segment segment) {
+        if (!segment.deleted.compareAndSet(false, true)) {
+            return;
+        }
+        segments.remove(segment.id);
+        try {
+            Files.deleteIfExists(segment.path);
+            deletedSegments.increment();
+        } catch (IOException e) {
+            log.warn("Failed to delete answer journal segment {}: {}", segment.path, e.getMessage());
+        }
+    }
+
+    /**
+     * 按段号顺序读出残留段中的全部记录；残留段作为已封存的段保留到其记录全部写库
+     */
+    private List<AnswerWriter.Answer> recover() throws IOException {
+        List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, PREFIX + "*" + SUFFIX)) {
+            stream.forEach(paths::add);
+        }
+        Collections.sort(paths);
+
+        List<AnswerWriter.Answer> answers = new ArrayList<>();
+        for (Path path : paths) {
+            String name = path.getFileName().toString();
+            long id = Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+            nextSegmentId = Math.max(nextSegmentId, id + 1);
+
+            Segment segment = new Segment(id, path, null, null);
+            segment.sealed = true;
+            segments.put(id, segment);
+            int before = answers.size();
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+            int position = 0;
+            while (position + HEADER_BYTES <= buffer.limit()) {
+                int length = buffer.getInt(position);
+                if (length <= 0 || position + HEADER_BYTES + length > buffer.limit()) {
+                    break;
+                }
+                CRC32 crc = new CRC32();
+                crc.update(buffer.array(), position + HEADER_BYTES, length);
+                if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+                    log.warn("Answer journal segment {} has a torn record at offset {}, ignoring the rest",
+                            path.getFileName(), position);
+                    break;
+                }
+                answers.add(decode(buffer, position + HEADER_BYTES).journaled(segment, 0));
+                position += HEADER_BYTES + length;
+            }
+            segment.live.set(answers.size() - before);
+            if (segment.live.get() == 0) {
+                delete(segment);
+            }
+        }
+        if (!answers.isEmpty()) {
+            log.info("Recovered {} answers from {} journal segments in {}", answers.size(), segments.size(), dir);
+        }
+        return answers;
+    }
+
+    private static byte[] encode(AnswerWriter.Answer answer) {
+        byte[] text = answer.answerText != null ? answer.answerText.getBytes(StandardCharsets.UTF_8) : null;
+        int flags = (answer.selectedOptionId != null ? HAS_OPTION : 0) | (text != null ? HAS_TEXT : 0);
+        ByteBuffer buffer = ByteBuffer.allocate(8 + 8 + 1
+                + (answer.selectedOptionId != null ? 8 : 0)
+                + (text != null ? 4 + text.length : 0));
+        buffer.putLong(answer.studentQuizId);
+        buffer.putLong(answer.questionId);
+        buffer.put((byte) flags);
+        if (answer.selectedOptionId != null) {
+            buffer.putLong(answer.selectedOptionId);
+        }
+        if (text != null) {
+            buffer.putInt(text.length);
+            buffer.put(text);
+        }
+        return buffer.array();
+    }
+
+    private static AnswerWriter.Answer decode(ByteBuffer buffer, int position) {
+        ByteBuffer record = buffer.duplicate();
+        record.position(position);
+        long studentQuizId = record.getLong();
+        long questionId = record.getLong();
+        int flags = record.get();
+        Long selectedOptionId = (flags & HAS_OPTION) != 0 ? record.getLong() : null;
+        String answerText = null;
+        if ((flags & HAS_TEXT) != 0) {
+            byte[] text = new byte[record.getInt()];
+            record.get(text);
+            answerText = new String(text, StandardCharsets.UTF_8);
+        }
+        return new AnswerWriter.Answer(studentQuizId, questionId, selectedOptionId, answerText);
+    }
+}
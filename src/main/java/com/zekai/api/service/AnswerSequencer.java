@@ -0,0 +1,213 @@
+package com.zekai.api.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ========================================
+ * ANSWER SEQUENCER - 自动保存序号
+ * ========================================
+ *
+ * 网络不稳定时客户端会重试、乱序发送自动保存，旧的作答可能覆盖新的作答。
+ * 客户端为每个 (studentQuizId, questionId) 附带递增的序号 (seq)，
+ * 这里记录每道题已接受的最大序号：
+ *
+ * - seq 大于已接受的最大序号：接受并写入
+ * - seq 等于最大序号：重复 (重试)，不写库直接返回成功
+ * - seq 小于最大序号：过期，拒绝
+ *
+ * 每个测验会话一个紧凑的开放寻址表 (long 数组，无装箱)。提交测验后会话只保留一个已提交标记
+ * (之后带序号的保存都视为过期，迟到的重试不会在提交后写入)，长时间空闲后才移除。
+ * 移除在会话锁内进行并标记该会话；调用方加锁后发现已移除时重新获取，
+ * 不会出现两个调用方各持有一个同一会话的序号表。
+ * 序号只保存在本实例内存中，重启后从第一次保存重新开始记录。
+ *
+ * @author Exam System Team
+ */
+class AnswerSequencer {
+
+    /**
+     * 检查结果
+     */
+    enum Verdict {
+        ACCEPT, DUPLICATE, STALE
+    }
+
+    /**
+     * 一个测验会话的 questionId → 最大序号；检查和写入期间调用方持有该对象的锁
+     */
+    static final class Session {
+        /** 开放寻址 (线性探测)，0 表示空槽 (questionId 从 1 开始) */
+        private long[] keys = new long[16];
+        private long[] seqs = new long[16];
+        private int size;
+        /** 测验已提交：之后带序号的保存都过期 */
+        private boolean submitted;
+        /** 已被空闲清理移除，调用方应重新获取 */
+        private boolean removed;
+        volatile long lastAccess = System.currentTimeMillis();
+
+        /**
+         * @return 会话已从表中移除 (调用方持有锁时检查)
+         */
+        boolean isRemoved() {
+            return removed;
+        }
+
+        Verdict check(long questionId, long seq) {
+            if (submitted) {
+                return Verdict.STALE;
+            }
+            int slot = find(questionId);
+            if (keys[slot] == 0) {
+                return Verdict.ACCEPT;
+            }
+            long highest = seqs[slot];
+            return seq > highest ? Verdict.ACCEPT : seq == highest ? Verdict.DUPLICATE : Verdict.STALE;
+        }
+
+        /**
+         * 记录已写入的序号 (只增不减)
+         */
+        void accept(long questionId, long seq) {
+            int slot = find(questionId);
+            if (keys[slot] == 0) {
+                keys[slot] = questionId;
+                seqs[slot] = seq;
+                if (++size * 2 > keys.length) {
+                    grow();
+                }
+            } else if (seq > seqs[slot]) {
+                seqs[slot] = seq;
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        /**
+         * 标记为已提交并释放序号表
+         */
+        private void submit() {
+            submitted = true;
+            keys = new long[1];
+            seqs = new long[1];
+            size = 0;
+        }
+
+        private int find(long questionId) {
+            int mask = keys.length - 1;
+            int slot = Long.hashCode(questionId * 0x9E3779B97F4A7C15L) & mask;
+            while (keys[slot] != 0 && keys[slot] != questionId) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            long[] oldSeqs = seqs;
+            keys = new long[oldKeys.length * 2];
+            seqs = new long[oldKeys.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    int slot = find(oldKeys[i]);
+                    keys[slot] = oldKeys[i];
+                    seqs[slot] = oldSeqs[i];
+                }
+            }
+        }
+    }
+
+    private final long idleMillis;
+    private final Map<Long, Session> sessions = new ConcurrentHashMap<>();
+
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder stale = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+
+    /**
+     * @param idleMinutes 会话多久没有带序号的保存后移除
+     */
+    AnswerSequencer(long idleMinutes) {
+        this.idleMillis = TimeUnit.MINUTES.toMillis(idleMinutes);
+    }
+
+    /**
+     * @return 会话的序号表 (不存在时创建)；调用方在检查和写入期间持有它的锁，
+     * 加锁后 {@link Session#isRemoved()} 为 true 时重新获取
+     */
+    Session session(long studentQuizId) {
+        Session session = sessions.computeIfAbsent(studentQuizId, k -> new Session());
+        session.lastAccess = System.currentTimeMillis();
+        return session;
+    }
+
+    /**
+     * 统计被丢弃的保存
+     */
+    void rejected(Verdict verdict) {
+        if (verdict == Verdict.DUPLICATE) {
+            duplicates.increment();
+        } else if (verdict == Verdict.STALE) {
+            stale.increment();
+        }
+    }
+
+    /**
+     * 测验已提交：释放序号表，保留已提交标记直到空闲清理
+     */
+    void submitted(long studentQuizId) {
+        while (true) {
+            Session session = session(studentQuizId);
+            synchronized (session) {
+                if (!session.removed) {
+                    session.submit();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 移除长时间空闲的会话；在会话锁内再次检查，刚被获取的会话不移除
+     */
+    void evictIdle() {
+        long cutoff = System.currentTimeMillis() - idleMillis;
+        for (Map.Entry<Long, Session> entry : sessions.entrySet()) {
+            Session session = entry.getValue();
+            if (session.lastAccess >= cutoff) {
+                continue;
+            }
+            synchronized (session) {
+                if (session.lastAccess < cutoff && sessions.remove(entry.getKey(), session)) {
+                    session.removed = true;
+                    evicted.increment();
+                }
+            }
+        }
+    }
+
+    Map<String, Object> stats() {
+        long entries = 0;
+        long submitted = 0;
+        for (Session session : sessions.values()) {
+            synchronized (session) {
+                entries += session.size();
+                submitted += session.submitted ? 1 : 0;
+            }
+        }
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("sessions", sessions.size());
+        data.put("entries", entries);
+        data.put("submittedSessions", submitted);
+        data.put("duplicates", duplicates.sum());
+        data.put("stale", stale.sum());
+        data.put("evictedSessions", evicted.sum());
+        return data;
+    }
+}
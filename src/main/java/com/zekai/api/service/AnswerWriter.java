@@ -0,0 +1,746 @@
+package com.zekai.api.service;
+
+import com.zekai.api.sql.SqlCatalog;
+import com.zekai.config.SchemaMigrationRunner;
+import com.zekai.util.ConcurrentHistogram;
+import com.zekai.util.TransactionTemplate;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * ========================================
+ * ANSWER WRITER - 答案写入
+ * ========================================
+ *
+ * 学生作答 (自动保存) 的写入路径，由 exam.answers.write-mode 选择：
+ *
+ * - sync：每次保存一个事务、一条 upsert (原实现)
+ * - group-commit：不同学生同时到达的保存由 {@link AnswerGroupCommit} 合并为一个事务，
+ *   每个请求在提交后返回自己的结果
+ * - write-behind：答案先进入按测验会话 (studentQuizId) 划分的内存缓冲区，
+ *   同一题目的多次保存只保留最后一次；缓冲区按时间间隔 (flush-interval-ms)、
+ *   按待写数量 (flush-size) 以及提交测验前 (flushSession) 以多行 upsert 写入
+ *
+ * 一次刷新把取出的全部会话写入一个事务。连接不可用或锁冲突时答案放回缓冲区，下一次刷新重试
+ * (期间到达的新答案优先)，失败后短时间内不再由保存线程触发刷新，MySQL 短暂不可用时保存照常确认。
+ * 其他失败 (某行被拒绝、语句超过 max_allowed_packet 等) 按会话、再按行单独重试，
+ * 与 {@link AnswerGroupCommit} 相同：一条坏数据不拖累其他学生的答案；单独写入仍被拒绝的行
+ * 记录错误日志后丢弃 (rejectedRows)，不再无限重试。
+ * 启用本地日志 (exam.answers.journal) 后，答案先追加到 {@link AnswerJournal} 并落盘再确认，
+ * JVM 崩溃后由下次启动恢复并写库。
+ *
+ * write-behind 的缓冲区只在接收保存的节点上，提交测验时只刷新本节点的缓冲区。
+ * 多节点部署必须按 studentQuizId 粘性路由 (exam.answers.sticky-routing)，
+ * 否则在其他节点上提交和评分 (评分任务队列) 会缺少最后的作答；启用评分任务队列时启动检查这一点。
+ *
+ * 带序号 (seq) 的保存先经 {@link AnswerSequencer} 检查，过期或重复的保存不写库；
+ * 检查和写入在同一个会话锁内完成，乱序到达的并发保存不会让旧作答覆盖新作答。
+ *
+ * @author Exam System Team
+ */
+@Service
+@DependsOn(SchemaMigrationRunner.BEAN_NAME)
+public class AnswerWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(AnswerWriter.class);
+
+    /** 每条多行 upsert 的最大行数 (每行 4 个占位符) */
+    static final int MAX_ROWS_PER_STATEMENT = 500;
+
+    /** 写库失败后，保存线程在这段时间内不再触发刷新 (只由定时刷新重试) */
+    private static final long FLUSH_RETRY_BACKOFF_MS = 1000;
+
+    private static final Comparator<Answer> LOCK_ORDER =
+            Comparator.comparingLong((Answer a) -> a.studentQuizId).thenComparingLong(a -> a.questionId);
+
+    /**
+     * 写入模式
+     */
+    public enum Mode {
+        SYNC, GROUP_COMMIT, WRITE_BEHIND;
+
+        static Mode parse(String value) {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        }
+    }
+
+    /**
+     * 带序号保存的结果
+     */
+    public enum SaveResult {
+        /** 已写入 (或已进入缓冲区) */
+        SAVED,
+        /** 与已接受的最大序号相同 (重试)，未写库 */
+        DUPLICATE,
+        /** 小于已接受的最大序号，已拒绝 */
+        STALE
+    }
+
+    /**
+     * 一道题的作答 (不可变)
+     */
+    public static final class Answer {
+        final long studentQuizId;
+        final long questionId;
+        final Long selectedOptionId;
+        final String answerText;
+        /** 本地日志中所在的段及记录结束位置；未写日志时为 null */
+        final AnswerJournal.Segment segment;
+        final int journalOffset;
+
+        public Answer(long studentQuizId, long questionId, Long selectedOptionId, String answerText) {
+            this(studentQuizId, questionId, selectedOptionId, answerText, null, 0);
+        }
+
+        private Answer(long studentQuizId, long questionId, Long selectedOptionId, String answerText,
+                       AnswerJournal.Segment segment, int journalOffset) {
+            this.studentQuizId = studentQuizId;
+            this.questionId = questionId;
+            this.selectedOptionId = selectedOptionId;
+            this.answerText = answerText;
+            this.segment = segment;
+            this.journalOffset = journalOffset;
+        }
+
+        Answer journaled(AnswerJournal.Segment segment, int journalOffset) {
+            return new Answer(studentQuizId, questionId, selectedOptionId, answerText, segment, journalOffset);
+        }
+
+        public long getStudentQuizId() {
+            return studentQuizId;
+        }
+
+        public long getQuestionId() {
+            return questionId;
+        }
+    }
+
+    /**
+     * 一个测验会话的待写答案 (questionId → 最后一次作答)；所有访问持有该对象的锁。
+     * 被取空后标记 closed 并从 buffers 移除，之后的写入会创建新的缓冲区
+     */
+    private static final class SessionBuffer {
+        final Map<Long, Answer> answers = new LinkedHashMap<>();
+        boolean closed;
+    }
+
+    private final Mode mode;
+    private final int flushSize;
+    /** 本地日志；sync 模式或未启用时为 null */
+    private final AnswerJournal journal;
+    /** 组提交；仅 group-commit 模式 */
+    private final AnswerGroupCommit groupCommit;
+    private final AnswerSequencer sequencer;
+
+    private final Map<Long, SessionBuffer> buffers = new ConcurrentHashMap<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    /** 全量刷新 (定时、按数量触发) 同一时间只有一个 */
+    private final ReentrantLock flushLock = new ReentrantLock();
+    /**
+     * 正在写库的会话 → 该次写入完成时释放的门闩。同一会话同一时间只有一次写入在途，
+     * 同一答案的新旧两次写入按顺序提交；不同会话的刷新互不等待
+     */
+    private final Map<Long, CountDownLatch> inFlight = new ConcurrentHashMap<>();
+    private volatile long flushRetryAt;
+
+    private final LongAdder saves = new LongAdder();
+    private final LongAdder bulkSaves = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder flushedRows = new LongAdder();
+    private final LongAdder flushFailures = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+    private final LongAdder rejectedRows = new LongAdder();
+    private final ConcurrentHistogram saveLatency = new ConcurrentHistogram();
+    private final ConcurrentHistogram bulkLatency = new ConcurrentHistogram();
+    private final ConcurrentHistogram flushLatency = new ConcurrentHistogram();
+
+    @Autowired
+    public AnswerWriter(
+            @Value("${exam.answers.write-mode:sync}") String mode,
+            @Value("${exam.answers.flush-size:500}") int flushSize,
+            @Value("${exam.answers.journal.enabled:false}") boolean journalEnabled,
+            @Value("${exam.answers.journal.dir:data/answer-journal}") String journalDir,
+            @Value("${exam.answers.journal.segment-size-mb:64}") int segmentSizeMb,
+            @Value("${exam.answers.journal.fsync:true}") boolean fsync,
+            @Value("${exam.answers.group-commit.window-ms:2}") long groupCommitWindowMs,
+            @Value("${exam.answers.group-commit.max-batch:500}") int groupCommitMaxBatch,
+            @Value("${exam.answers.seq-idle-minutes:180}") long seqIdleMinutes,
+            @Value("${exam.answers.sticky-routing:false}") boolean stickyRouting,
+            @Value("${exam.grading.jobs.enabled:false}") boolean gradingJobsEnabled) throws IOException {
+        this(checkDeployment(mode, stickyRouting, gradingJobsEnabled), flushSize, journalEnabled && Mode.parse(mode) == Mode.WRITE_BEHIND
+                ? new AnswerJournal(Paths.get(journalDir), segmentSizeMb * 1024 * 1024, fsync)
+                : null, groupCommitWindowMs, groupCommitMaxBatch, seqIdleMinutes);
+    }
+
+    /**
+     * write-behind 与评分任务队列 (多节点) 同时启用时要求声明粘性路由：
+     * 同一 studentQuizId 的保存和提交由同一节点处理，提交前的 flushSession 才能写入全部作答
+     *
+     * @throws IllegalStateException 未声明粘性路由
+     */
+    private static String checkDeployment(String mode, boolean stickyRouting, boolean gradingJobsEnabled) {
+        if (Mode.parse(mode) == Mode.WRITE_BEHIND && gradingJobsEnabled && !stickyRouting) {
+            throw new IllegalStateException("exam.answers.write-mode=write-behind buffers answers on the node "
+                    + "that received them; with exam.grading.jobs.enabled a submit or grading on another node "
+                    + "would miss them. Route requests by studentQuizId and set exam.answers.sticky-routing=true, "
+                    + "or use sync/group-commit.");
+        }
+        return mode;
+    }
+
+    /**
+     * @param mode      sync / write-behind
+     * @param flushSize 待写答案达到该数量时由保存线程立即刷新
+     */
+    public AnswerWriter(String mode, int flushSize) {
+        this(mode, flushSize, null);
+    }
+
+    /**
+     * @param journal 本地日志 (仅 write-behind 模式使用)；其中恢复出来的答案放回缓冲区，由下一次刷新写库
+     */
+    public AnswerWriter(String mode, int flushSize, AnswerJournal journal) {
+        this(mode, flushSize, journal, 2, MAX_ROWS_PER_STATEMENT, 180);
+    }
+
+    private AnswerWriter(String mode, int flushSize, AnswerJournal journal,
+                         long groupCommitWindowMs, int groupCommitMaxBatch, long seqIdleMinutes) {
+        this.mode = Mode.parse(mode);
+        this.flushSize = flushSize;
+        this.journal = this.mode == Mode.WRITE_BEHIND ? journal : null;
+        this.groupCommit = this.mode == Mode.GROUP_COMMIT
+                ? new AnswerGroupCommit(groupCommitWindowMs, groupCommitMaxBatch)
+                : null;
+        this.sequencer = new AnswerSequencer(seqIdleMinutes);
+        if (this.journal != null) {
+            for (Answer answer : this.journal.recovered()) {
+                buffer(answer, true);
+            }
+        }
+    }
+
+    // ==================== 保存 ====================
+
+    /**
+     * 保存一道题的作答
+     *
+     * @throws SQLException sync 模式下写入失败
+     */
+    public void save(Answer answer) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            if (mode == Mode.SYNC) {
+                // 与评分的 UPDATE ... JOIN 竞争同一行时可能死锁，由 TransactionTemplate 重试
+                TransactionTemplate.execute(conn -> upsert(conn, List.of(answer)));
+            } else if (mode == Mode.GROUP_COMMIT) {
+                groupCommit.commit(answer);
+            } else {
+                try {
+                    Answer buffered = buffer(answer, true);
+                    if (journal != null) {
+                        journal.sync(buffered);
+                    }
+                } catch (IOException | UncheckedIOException e) {
+                    // 没有写入本地日志的答案不能确认
+                    throw new SQLException("Answer journal write failed: " + e.getMessage(), e);
+                }
+                if (pending.get() >= flushSize && System.currentTimeMillis() >= flushRetryAt) {
+                    flushIfIdle();
+                }
+            }
+            saves.increment();
+        } finally {
+            saveLatency.record((System.nanoTime() - start) / 1000);
+        }
+    }
+
+    /**
+     * 带序号保存一道题的作答；seq 为 null 时与 {@link #save(Answer)} 相同
+     *
+     * @throws SQLException 写入失败 (序号未被记录，客户端可用同一序号重试)
+     */
+    public SaveResult save(Answer answer, Long seq) throws SQLException {
+        if (seq == null) {
+            save(answer);
+            return SaveResult.SAVED;
+        }
+        while (true) {
+            AnswerSequencer.Session session = sequencer.session(answer.studentQuizId);
+            synchronized (session) {
+                if (session.isRemoved()) {
+                    // 获取后被空闲清理移除，使用新的序号表
+                    continue;
+                }
+                AnswerSequencer.Verdict verdict = session.check(answer.questionId, seq);
+                if (verdict != AnswerSequencer.Verdict.ACCEPT) {
+                    sequencer.rejected(verdict);
+                    return verdict == AnswerSequencer.Verdict.DUPLICATE ? SaveResult.DUPLICATE : SaveResult.STALE;
+                }
+                save(answer);
+                session.accept(answer.questionId, seq);
+                return SaveResult.SAVED;
+            }
+        }
+    }
+
+    /**
+     * 带序号批量保存同一测验会话的作答：过期/重复的条目被跳过，其余以 {@link #saveAll(List)} 写入
+     *
+     * @param seqs 与 answers 一一对应，条目可为 null (不检查序号)
+     * @return 每条的结果
+     * @throws SQLException 写入失败 (全部条目的序号都未被记录)
+     */
+    public List<SaveResult> saveAll(long studentQuizId, List<Answer> answers, List<Long> seqs) throws SQLException {
+        if (seqs.stream().allMatch(Objects::isNull)) {
+            saveAll(answers);
+            return new ArrayList<>(Collections.nCopies(answers.size(), SaveResult.SAVED));
+        }
+        while (true) {
+            AnswerSequencer.Session session = sequencer.session(studentQuizId);
+            synchronized (session) {
+                if (session.isRemoved()) {
+                    continue;
+                }
+                List<SaveResult> results = new ArrayList<>(answers.size());
+                List<Answer> accepted = new ArrayList<>();
+                // 本批内已接受的序号，同一题目在一批内出现多次时按顺序比较
+                Map<Long, Long> batchHighest = new HashMap<>();
+                for (int i = 0; i < answers.size(); i++) {
+                    Answer answer = answers.get(i);
+                    Long seq = seqs.get(i);
+                    AnswerSequencer.Verdict verdict = AnswerSequencer.Verdict.ACCEPT;
+                    if (seq != null) {
+                        Long inBatch = batchHighest.get(answer.questionId);
+                        verdict = inBatch == null ? session.check(answer.questionId, seq)
+                                : seq > inBatch ? AnswerSequencer.Verdict.ACCEPT
+                                : seq.equals(inBatch) ? AnswerSequencer.Verdict.DUPLICATE
+                                : AnswerSequencer.Verdict.STALE;
+                    }
+                    if (verdict == AnswerSequencer.Verdict.ACCEPT) {
+                        accepted.add(answer);
+                        if (seq != null) {
+                            batchHighest.put(answer.questionId, seq);
+                        }
+                        results.add(SaveResult.SAVED);
+                    } else {
+                        sequencer.rejected(verdict);
+                        results.add(verdict == AnswerSequencer.Verdict.DUPLICATE ? SaveResult.DUPLICATE : SaveResult.STALE);
+                    }
+                }
+                saveAll(accepted);
+                batchHighest.forEach(session::accept);
+                return results;
+            }
+        }
+    }
+
+    /**
+     * 测验已提交，释放该会话的序号表；之后带序号的保存 (迟到的重试) 返回 STALE，直到会话空闲被移除
+     */
+    public void sessionSubmitted(long studentQuizId) {
+        sequencer.submitted(studentQuizId);
+    }
+
+    /**
+     * 移除长时间空闲的测验会话的序号表
+     */
+    @Scheduled(fixedDelayString = "${exam.answers.seq-evict-interval-ms:60000}")
+    public void evictIdleSequences() {
+        sequencer.evictIdle();
+    }
+
+    /**
+     * 一次保存多道题的作答 (批量提交接口)，全部成功或全部失败：
+     * sync / group-commit 模式以一个事务、多行 upsert 写入 (本身已是一组，不再进入组提交队列)；
+     * write-behind 模式逐条写入缓冲区，启用日志时最后一次落盘确认整批
+     *
+     * @throws SQLException 写入失败，调用方可逐条 {@link #save} 得到每条的结果
+     */
+    public void saveAll(List<Answer> answers) throws SQLException {
+        if (answers.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            if (mode != Mode.WRITE_BEHIND) {
+                List<Answer> rows = new ArrayList<>(answers);
+                rows.sort(LOCK_ORDER);
+                TransactionTemplate.execute(conn -> upsert(conn, rows));
+            } else {
+                try {
+                    Answer last = null;
+                    for (Answer answer : answers) {
+                        last = buffer(answer, true);
+                    }
+                    if (journal != null) {
+                        // 同一段内 force 到最后一条即覆盖整批；跨段时前面的段已在轮转时 force
+                        journal.sync(last);
+                    }
+                } catch (IOException | UncheckedIOException e) {
+                    throw new SQLException("Answer journal write failed: " + e.getMessage(), e);
+                }
+                if (pending.get() >= flushSize && System.currentTimeMillis() >= flushRetryAt) {
+                    flushIfIdle();
+                }
+            }
+            saves.add(answers.size());
+            bulkSaves.increment();
+        } finally {
+            bulkLatency.record((System.nanoTime() - start) / 1000);
+        }
+    }
+
+    // ==================== 刷新 ====================
+
+    /**
+     * 定时刷新全部缓冲区 (仅 write-behind 模式)
+     */
+    @Scheduled(fixedDelayString = "${exam.answers.flush-interval-ms:200}")
+    public void flushScheduled() {
+        if (mode != Mode.WRITE_BEHIND || pending.get() == 0) {
+            return;
+        }
+        try {
+            flushAll();
+        } catch (SQLException e) {
+            log.warn("Answer flush failed, {} answers kept for retry: {}", pending.get(), e.getMessage());
+        }
+    }
+
+    /**
+     * 把全部缓冲区写入数据库
+     *
+     * @return 写入的答案数
+     * @throws SQLException 连接不可用或锁冲突 (未写入的答案已放回缓冲区)
+     */
+    public int flushAll() throws SQLException {
+        flushLock.lock();
+        CountDownLatch done = new CountDownLatch(1);
+        List<Long> claimed = new ArrayList<>();
+        try {
+            List<Answer> drained = new ArrayList<>();
+            for (Map.Entry<Long, SessionBuffer> entry : buffers.entrySet()) {
+                // 正在由 flushSession 写入的会话留给下一次刷新
+                if (inFlight.putIfAbsent(entry.getKey(), done) == null) {
+                    claimed.add(entry.getKey());
+                    drain(entry.getKey(), entry.getValue(), drained);
+                }
+            }
+            return write(drained);
+        } finally {
+            for (Long studentQuizId : claimed) {
+                inFlight.remove(studentQuizId, done);
+            }
+            done.countDown();
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * 把一个测验会话的缓冲区写入数据库；提交测验前调用
+     *
+     * @return 写入的答案数 (不含被拒绝丢弃的行)
+     * @throws SQLException 连接不可用或锁冲突 (答案已放回缓冲区)
+     */
+    public int flushSession(long studentQuizId) throws SQLException {
+        if (mode != Mode.WRITE_BEHIND) {
+            return 0;
+        }
+        // 只等待包含本会话的在途写入 (其中可能有本会话较早的答案)，不等待全量刷新
+        CountDownLatch done = new CountDownLatch(1);
+        CountDownLatch other;
+        while ((other = inFlight.putIfAbsent(studentQuizId, done)) != null) {
+            try {
+                other.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for answer flush", e);
+            }
+        }
+        try {
+            SessionBuffer buffer = buffers.get(studentQuizId);
+            if (buffer == null) {
+                return 0;
+            }
+            List<Answer> drained = new ArrayList<>();
+            drain(studentQuizId, buffer, drained);
+            return write(drained);
+        } finally {
+            inFlight.remove(studentQuizId, done);
+            done.countDown();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (groupCommit != null) {
+            groupCommit.shutdown();
+        }
+        if (mode != Mode.WRITE_BEHIND) {
+            return;
+        }
+        try {
+            flushAll();
+        } catch (SQLException e) {
+            log.error("Answer flush on shutdown failed, {} buffered answers were not written{}: {}",
+                    pending.get(), journal != null ? " (kept in the journal)" : "", e.getMessage());
+        }
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                log.warn("Failed to close answer journal: {}", e.getMessage());
+            }
+        }
+    }
+
+    // ==================== 统计 ====================
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * @return 保存/刷新计数与延迟 (ms)
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("mode", mode.name().toLowerCase(Locale.ROOT).replace('_', '-'));
+        data.put("saves", saves.sum());
+        data.put("saveLatency", saveLatency.snapshot(1000.0));
+        data.put("bulkSaves", bulkSaves.sum());
+        data.put("bulkLatency", bulkLatency.snapshot(1000.0));
+        data.put("pending", pending.get());
+        data.put("bufferedSessions", buffers.size());
+        data.put("coalesced", coalesced.sum());
+        data.put("flushes", flushes.sum());
+        data.put("flushedRows", flushedRows.sum());
+        data.put("flushFailures", flushFailures.sum());
+        data.put("fallbacks", fallbacks.sum());
+        data.put("rejectedRows", rejectedRows.sum());
+        data.put("flushLatency", flushLatency.snapshot(1000.0));
+        if (journal != null) {
+            data.put("journal", journal.stats());
+        }
+        if (groupCommit != null) {
+            data.put("groupCommit", groupCommit.stats());
+        }
+        data.put("sequences", sequencer.stats());
+        return data;
+    }
+
+    // ==================== 内部方法 ====================
+
+    /**
+     * @param overwrite true 时为新保存：先追加日志 (启用时)，再覆盖同一题目已缓冲的答案；
+     *                  放回失败的答案或恢复的答案时为 false
+     * @return 缓冲的作答 (携带日志位置)
+     */
+    private Answer buffer(Answer answer, boolean overwrite) {
+        while (true) {
+            SessionBuffer buffer = buffers.computeIfAbsent(answer.studentQuizId, k -> new SessionBuffer());
+            synchronized (buffer) {
+                if (buffer.closed) {
+                    continue;
+                }
+                if (overwrite && journal != null && answer.segment == null) {
+                    // 在会话锁内追加，日志顺序与缓冲区中的覆盖顺序一致
+                    try {
+                        answer = journal.append(answer);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                Answer previous = overwrite
+                        ? buffer.answers.put(answer.questionId, answer)
+                        : buffer.answers.putIfAbsent(answer.questionId, answer);
+                if (previous == null) {
+                    pending.incrementAndGet();
+                } else if (overwrite) {
+                    coalesced.increment();
+                    release(previous);
+                } else {
+                    // 放回时已有更新的作答，这一条不再需要
+                    release(answer);
+                }
+                return answer;
+            }
+        }
+    }
+
+    private void release(Answer answer) {
+        if (journal != null) {
+            journal.release(answer);
+        }
+    }
+
+    private void drain(long studentQuizId, SessionBuffer buffer, List<Answer> into) {
+        synchronized (buffer) {
+            into.addAll(buffer.answers.values());
+            pending.addAndGet(-buffer.answers.size());
+            buffer.answers.clear();
+            buffer.closed = true;
+            buffers.remove(studentQuizId, buffer);
+        }
+    }
+
+    private void flushIfIdle() {
+        if (!flushLock.tryLock()) {
+            return;
+        }
+        try {
+            flushAll();
+        } catch (SQLException e) {
+            log.warn("Answer flush failed, {} answers kept for retry: {}", pending.get(), e.getMessage());
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private int write(List<Answer> answers) throws SQLException {
+        if (answers.isEmpty()) {
+            return 0;
+        }
+        // 固定的加锁顺序，减少与评分事务及其他刷新的死锁
+        answers.sort(LOCK_ORDER);
+        try {
+            return writeTransaction(answers);
+        } catch (SQLException | RuntimeException e) {
+            flushFailures.increment();
+            if (TransactionTemplate.isTransient(e)) {
+                putBack(answers);
+                throw e;
+            }
+            fallbacks.increment();
+            log.warn("Flushing {} answers failed, retrying session by session: {}", answers.size(), e.getMessage());
+            return writeIsolated(answers);
+        }
+    }
+
+    /**
+     * 整批失败后按会话写入，会话失败时逐行写入；单独写入仍失败的行丢弃。
+     * 期间遇到连接不可用或锁冲突时，尚未写入的答案放回缓冲区并抛出
+     */
+    private int writeIsolated(List<Answer> answers) throws SQLException {
+        Map<Long, List<Answer>> bySession = new LinkedHashMap<>();
+        for (Answer answer : answers) {
+            bySession.computeIfAbsent(answer.studentQuizId, k -> new ArrayList<>()).add(answer);
+        }
+        List<List<Answer>> sessions = new ArrayList<>(bySession.values());
+        int written = 0;
+        for (int s = 0; s < sessions.size(); s++) {
+            List<Answer> session = sessions.get(s);
+            if (session.size() > 1) {
+                try {
+                    written += writeTransaction(session);
+                    continue;
+                } catch (SQLException | RuntimeException e) {
+                    if (TransactionTemplate.isTransient(e)) {
+                        putBack(remaining(sessions, s, 0));
+                        throw e;
+                    }
+                }
+            }
+            for (int r = 0; r < session.size(); r++) {
+                Answer row = session.get(r);
+                try {
+                    written += writeTransaction(List.of(row));
+                } catch (SQLException | RuntimeException e) {
+                    if (TransactionTemplate.isTransient(e)) {
+                        putBack(remaining(sessions, s, r));
+                        throw e;
+                    }
+                    rejectedRows.increment();
+                    release(row);
+                    log.error("Answer rejected by the database and dropped: studentQuizId={}, questionId={}: {}",
+                            row.studentQuizId, row.questionId, e.getMessage());
+                }
+            }
+        }
+        return written;
+    }
+
+    private int writeTransaction(List<Answer> answers) throws SQLException {
+        long start = System.nanoTime();
+        TransactionTemplate.execute(conn -> upsert(conn, answers));
+        for (Answer answer : answers) {
+            release(answer);
+        }
+        flushes.increment();
+        flushedRows.add(answers.size());
+        flushLatency.record((System.nanoTime() - start) / 1000);
+        return answers.size();
+    }
+
+    /**
+     * @return 从第 session 个会话的第 row 行开始尚未处理的答案
+     */
+    private static List<Answer> remaining(List<List<Answer>> sessions, int session, int row) {
+        List<Answer> rest = new ArrayList<>(sessions.get(session).subList(row, sessions.get(session).size()));
+        for (int s = session + 1; s < sessions.size(); s++) {
+            rest.addAll(sessions.get(s));
+        }
+        return rest;
+    }
+
+    private void putBack(List<Answer> answers) {
+        flushRetryAt = System.currentTimeMillis() + FLUSH_RETRY_BACKOFF_MS;
+        for (Answer answer : answers) {
+            buffer(answer, false);
+        }
+    }
+
+    /**
+     * 以多行 upsert 写入答案，每条语句最多 {@link #MAX_ROWS_PER_STATEMENT} 行
+     */
+    static int upsert(Connection conn, List<Answer> answers) throws SQLException {
+        int affected = 0;
+        for (int from = 0; from < answers.size(); from += MAX_ROWS_PER_STATEMENT) {
+            List<Answer> chunk = answers.subList(from, Math.min(answers.size(), from + MAX_ROWS_PER_STATEMENT));
+            try (PreparedStatement pstmt = conn.prepareStatement(SqlCatalog.answerUpsert(chunk.size()))) {
+                int index = 1;
+                for (Answer answer : chunk) {
+                    pstmt.setLong(index++, answer.studentQuizId);
+                    pstmt.setLong(index++, answer.questionId);
+                    if (answer.selectedOptionId != null) {
+                        pstmt.setLong(index++, answer.selectedOptionId);
+                    } else {
+                        pstmt.setNull(index++, Types.BIGINT);
+                    }
+                    pstmt.setString(index++, answer.answerText);
+                }
+                affected += pstmt.executeUpdate();
+            }
+        }
+        return affected;
+    }
+}
@@ -0,0 +1,217 @@
+package com.zekai.api.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * ========================================
+ * ENCODED PAPER - 预编码试卷响应
+ * ========================================
+ *
+ * 开始测验的响应中只有 studentQuizId 和 timestamp 因学生而异，
+ * 其余部分 (题目、选项) 在第一次开始测验时编码一次：
+ *
+ *   {"code":200,"message":"测验已开始","data":{"quizId":..,"status":"in_progress",
+ *    "questions":[...],"studentQuizId":  ← 预编码前缀
+ *   123},"timestamp":1700000000000}      ← 每个请求拼接的后缀
+ *
+ * gzip 版本把前缀预先压缩成以 SYNC_FLUSH 结束的 deflate 块，
+ * 每个请求只追加一个 stored 块 (后缀原文) 和 gzip 尾部，
+ * CRC32 从前缀的 CRC 继续计算，不需要重新压缩或扫描前缀。
+ *
+ * @author Exam System Team
+ */
+public final class EncodedPaper {
+
+    private static final byte[] GZIP_HEADER = {
+            0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff
+    };
+    /** CRC-32 (反射多项式 0xEDB88320) 查表，用于从前缀的 CRC 继续计算 */
+    private static final int[] CRC_TABLE = new int[256];
+
+    static {
+        for (int n = 0; n < 256; n++) {
+            int c = n;
+            for (int k = 0; k < 8; k++) {
+                c = (c & 1) != 0 ? 0xEDB88320 ^ (c >>> 1) : c >>> 1;
+            }
+            CRC_TABLE[n] = c;
+        }
+    }
+
+    private final byte[] prefix;
+    /** 前缀的 deflate 数据 (无 zlib/gzip 头，以 SYNC_FLUSH 字节对齐结束)；未启用 gzip 时为 null */
+    private final byte[] deflatedPrefix;
+    private final int prefixCrc;
+
+    private EncodedPaper(byte[] prefix, byte[] deflatedPrefix, int prefixCrc) {
+        this.prefix = prefix;
+        this.deflatedPrefix = deflatedPrefix;
+        this.prefixCrc = prefixCrc;
+    }
+
+    /**
+     * 编码试卷
+     *
+     * @param mapper    用于编码的 ObjectMapper (与 Spring MVC 使用同一个)
+     * @param quizId    测验ID
+     * @param questions 已组装的试卷
+     * @param gzip      是否同时预压缩
+     */
+    public static EncodedPaper encode(ObjectMapper mapper, long quizId,
+                                      List<Map<String, Object>> questions, boolean gzip) throws IOException {
+        String json = "{\"code\":200,\"message\":" + mapper.writeValueAsString("测验已开始") +
+                ",\"data\":{\"quizId\":" + quizId +
+                ",\"status\":\"in_progress\",\"questions\":" + mapper.writeValueAsString(questions) +
+                ",\"studentQuizId\":";
+        byte[] prefix = json.getBytes(StandardCharsets.UTF_8);
+
+        CRC32 crc = new CRC32();
+        crc.update(prefix);
+        return new EncodedPaper(prefix, gzip ? deflate(prefix) : null, (int) crc.getValue());
+    }
+
+    /**
+     * @return 是否有预压缩版本
+     */
+    public boolean hasGzip() {
+        return deflatedPrefix != null;
+    }
+
+    /**
+     * @return 未压缩的前缀长度 (字节)
+     */
+    public int size() {
+        return prefix.length;
+    }
+
+    /**
+     * @return 预压缩的前缀长度 (字节)，未启用 gzip 时为 0
+     */
+    public int gzipSize() {
+        return deflatedPrefix != null ? deflatedPrefix.length : 0;
+    }
+
+    /**
+     * 按 Accept-Encoding 判断客户端是否接受 gzip：逐个解析 coding;q=值，
+     * gzip (或 x-gzip) 的 q=0 表示拒绝；未列出 gzip 时看 "*"。q 值无法解析时视为不接受
+     *
+     * @param acceptEncoding 请求头原文，可为 null
+     */
+    public static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Double gzip = null;
+        Double any = null;
+        for (String element : acceptEncoding.split(",")) {
+            String[] parts = element.split(";");
+            String coding = parts[0].trim().toLowerCase();
+            double q = 1.0;
+            for (int i = 1; i < parts.length; i++) {
+                int eq = parts[i].indexOf('=');
+                if (eq > 0 && parts[i].substring(0, eq).trim().equalsIgnoreCase("q")) {
+                    try {
+                        q = Double.parseDouble(parts[i].substring(eq + 1).trim());
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            if (coding.equals("gzip") || coding.equals("x-gzip")) {
+                gzip = gzip == null ? q : Math.max(gzip, q);
+            } else if (coding.equals("*")) {
+                any = q;
+            }
+        }
+        if (gzip != null) {
+            return gzip > 0;
+        }
+        return any != null && any > 0;
+    }
+
+    /**
+     * 完整的 UTF-8 JSON 响应体
+     */
+    public byte[] toJson(long studentQuizId, long timestamp) {
+        byte[] suffix = suffix(studentQuizId, timestamp);
+        byte[] body = new byte[prefix.length + suffix.length];
+        System.arraycopy(prefix, 0, body, 0, prefix.length);
+        System.arraycopy(suffix, 0, body, prefix.length, suffix.length);
+        return body;
+    }
+
+    /**
+     * 完整的 gzip 压缩响应体 (单个 gzip member)
+     *
+     * @throws IllegalStateException 编码时未启用 gzip
+     */
+    public byte[] toGzip(long studentQuizId, long timestamp) {
+        if (deflatedPrefix == null) {
+            throw new IllegalStateException("Paper was encoded without gzip");
+        }
+        byte[] suffix = suffix(studentQuizId, timestamp);
+        int crc = continueCrc(prefixCrc, suffix);
+        int length = prefix.length + suffix.length;
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(
+                GZIP_HEADER.length + deflatedPrefix.length + 5 + suffix.length + 8);
+        out.writeBytes(GZIP_HEADER);
+        out.writeBytes(deflatedPrefix);
+        // 最后一个 stored 块：BFINAL=1, BTYPE=00；SYNC_FLUSH 之后已字节对齐
+        out.write(0x01);
+        out.write(suffix.length & 0xff);
+        out.write((suffix.length >>> 8) & 0xff);
+        out.write(~suffix.length & 0xff);
+        out.write((~suffix.length >>> 8) & 0xff);
+        out.writeBytes(suffix);
+        writeIntLE(out, crc);
+        writeIntLE(out, length);
+        return out.toByteArray();
+    }
+
+    // ==================== 内部方法 ====================
+
+    private static byte[] suffix(long studentQuizId, long timestamp) {
+        return (studentQuizId + "},\"timestamp\":" + timestamp + "}").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] deflate(byte[] input) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+        try {
+            deflater.setInput(input);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(input.length / 4 + 64);
+            byte[] buffer = new byte[8192];
+            int n;
+            do {
+                n = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                out.write(buffer, 0, n);
+            } while (n == buffer.length || !deflater.needsInput());
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static int continueCrc(int crc, byte[] data) {
+        int c = ~crc;
+        for (byte b : data) {
+            c = CRC_TABLE[(c ^ b) & 0xff] ^ (c >>> 8);
+        }
+        return ~c;
+    }
+
+    private static void writeIntLE(ByteArrayOutputStream out, int value) {
+        out.write(value & 0xff);
+        out.write((value >>> 8) & 0xff);
+        out.write((value >>> 16) & 0xff);
+        out.write((value >>> 24) & 0xff);
+    }
+}
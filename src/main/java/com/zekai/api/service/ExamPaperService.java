@@ -0,0 +1,429 @@
+package com.zekai.api.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zekai.api.sql.SqlCatalog;
+import com.zekai.util.DatabaseUtil;
+import com.zekai.util.SingleFlight;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ========================================
+ * EXAM PAPER SERVICE - 试卷加载
+ * ========================================
+ *
+ * 一次查询取出整张试卷：quiz_questions 连接 questions 和 question_options，
+ * 按 (题目顺序, 选项顺序) 排好后在内存中组装。
+ * 无论试卷有多少道题，都只执行一条语句 (原实现为 1 + 题目数 条)。
+ *
+ * 同一测验的试卷对所有学生都相同，组装好的试卷按 quizId 缓存在进程内：
+ * - 容量上限 (LRU 淘汰) 和存活时间 (TTL) 双重限制
+ * - 测验变更 (invalidateQuiz) 或其中任一题目变更 (invalidateQuestion) 时失效
+ * - 缓存的试卷不可修改，可被多个响应共享
+ * - 未命中时同一测验的并发加载合并为一次 (SingleFlight)；不带连接的 getPaper/getEncodedPaper
+ *   由加载者自行取连接，等待者不占用连接。带连接的重载供已持有连接的调用方 (预热扫描、测试)
+ *   使用，加载在该连接上进行
+ *
+ * 预编码模式 (exam.paper-cache.pre-encoded) 下，缓存项在第一次开始测验时
+ * 额外编码为 UTF-8 字节 (可选预压缩 gzip)，见 {@link EncodedPaper}，
+ * 之后的请求不再经过 Jackson。
+ *
+ * @author Exam System Team
+ */
+@Service
+public class ExamPaperService {
+
+    public static final int DEFAULT_MAX_ENTRIES = 256;
+    public static final long DEFAULT_TTL_SECONDS = 300;
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final boolean preEncoded;
+    private final boolean gzip;
+    private final ObjectMapper objectMapper;
+
+    /** quizId → 缓存的试卷，按访问顺序排列 (最久未用的在前)；所有访问持有 lock */
+    private final LinkedHashMap<Long, CachedPaper> papers = new LinkedHashMap<>(16, 0.75f, true);
+    /** questionId → 包含该题目的已缓存 quizId */
+    private final Map<Long, Set<Long>> quizzesByQuestion = new HashMap<>();
+    private final Object lock = new Object();
+
+    /** 每次失效递增；加载期间发生过失效的结果不写入缓存，避免缓存旧试卷 */
+    private final AtomicLong generation = new AtomicLong();
+
+    private final SingleFlight<Long, CachedPaper> loads = new SingleFlight<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public ExamPaperService() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_TTL_SECONDS);
+    }
+
+    public ExamPaperService(int maxEntries, long ttlSeconds) {
+        this(maxEntries, ttlSeconds, false, false, new ObjectMapper());
+    }
+
+    /**
+     * @param maxEntries   最多缓存的试卷数 (0 表示不缓存)
+     * @param ttlSeconds   试卷在缓存中的最长存活时间
+     * @param preEncoded   开始测验时直接输出预编码的响应字节
+     * @param gzip         预编码时同时预压缩 gzip
+     * @param objectMapper 编码试卷使用的 ObjectMapper
+     */
+    @Autowired
+    public ExamPaperService(
+            @Value("${exam.paper-cache.max-entries:" + DEFAULT_MAX_ENTRIES + "}") int maxEntries,
+            @Value("${exam.paper-cache.ttl-seconds:" + DEFAULT_TTL_SECONDS + "}") long ttlSeconds,
+            @Value("${exam.paper-cache.pre-encoded:false}") boolean preEncoded,
+            @Value("${exam.paper-cache.gzip:true}") boolean gzip,
+            ObjectMapper objectMapper) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttlSeconds * 1_000_000_000L;
+        this.preEncoded = preEncoded;
+        this.gzip = gzip;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 缓存中的一张试卷
+     */
+    private static final class CachedPaper {
+        final long quizId;
+        final List<Map<String, Object>> questions;
+        final Set<Long> questionIds;
+        final long loadedAt;
+        private EncodedPaper encoded;
+
+        CachedPaper(long quizId, List<Map<String, Object>> questions, Set<Long> questionIds, long loadedAt) {
+            this.quizId = quizId;
+            this.questions = questions;
+            this.questionIds = questionIds;
+            this.loadedAt = loadedAt;
+        }
+
+        /**
+         * 第一次调用时编码，之后复用
+         */
+        synchronized EncodedPaper encoded(ObjectMapper mapper, boolean gzip) throws IOException {
+            if (encoded == null) {
+                encoded = EncodedPaper.encode(mapper, quizId, questions, gzip);
+            }
+            return encoded;
+        }
+    }
+
+    // ==================== 读取 ====================
+
+    /**
+     * 获取试卷 (不含正确答案)，优先使用缓存
+     *
+     * @param conn   数据库连接，未命中时用于加载 (不会被关闭)
+     * @param quizId 测验ID
+     * @return 按题目顺序排列的不可修改题目列表，每题含 options 列表
+     * @throws SQLException 查询失败
+     */
+    public List<Map<String, Object>> getPaper(Connection conn, long quizId) throws SQLException {
+        return entry(conn, quizId).questions;
+    }
+
+    /**
+     * 获取试卷，未命中时由加载者自行取连接 (调用方不应持有连接等待)
+     *
+     * @param quizId 测验ID
+     * @return 按题目顺序排列的不可修改题目列表，每题含 options 列表
+     * @throws SQLException 查询失败
+     */
+    public List<Map<String, Object>> getPaper(long quizId) throws SQLException {
+        return entry(null, quizId).questions;
+    }
+
+    /**
+     * 获取预编码的开始测验响应，缓存项第一次被请求时编码
+     *
+     * @param conn   数据库连接，未命中时用于加载 (不会被关闭)
+     * @param quizId 测验ID
+     * @throws SQLException 查询失败
+     * @throws IOException  编码失败
+     */
+    public EncodedPaper getEncodedPaper(Connection conn, long quizId) throws SQLException, IOException {
+        return entry(conn, quizId).encoded(objectMapper, gzip);
+    }
+
+    /**
+     * 获取预编码的开始测验响应，未命中时由加载者自行取连接
+     *
+     * @param quizId 测验ID
+     * @throws SQLException 查询失败
+     * @throws IOException  编码失败
+     */
+    public EncodedPaper getEncodedPaper(long quizId) throws SQLException, IOException {
+        return entry(null, quizId).encoded(objectMapper, gzip);
+    }
+
+    /**
+     * @return 试卷是否在缓存中且未过期 (不计入命中统计)
+     */
+    public boolean isCached(long quizId) {
+        synchronized (lock) {
+            CachedPaper cached = papers.get(quizId);
+            return cached != null && System.nanoTime() - cached.loadedAt < ttlNanos;
+        }
+    }
+
+    /**
+     * @return 开始测验是否直接输出预编码的响应字节
+     */
+    public boolean isPreEncoded() {
+        return preEncoded;
+    }
+
+    /**
+     * 从数据库加载试卷 (不含正确答案)，不经过缓存
+     *
+     * @param conn   数据库连接 (不会被关闭)
+     * @param quizId 测验ID
+     * @return 按题目顺序排列的题目列表，每题含 options 列表
+     * @throws SQLException 查询失败
+     */
+    public List<Map<String, Object>> loadPaper(Connection conn, long quizId) throws SQLException {
+        Map<Long, Map<String, Object>> questions = new LinkedHashMap<>();
+
+        DatabaseUtil.forEachRow(conn, SqlCatalog.QUIZ_PAPER, 0, rs -> {
+            long questionId = rs.getLong("question_id");
+            Map<String, Object> question = questions.get(questionId);
+            if (question == null) {
+                question = new HashMap<>();
+                question.put("questionId", questionId);
+                question.put("questionOrder", rs.getInt("question_order"));
+                question.put("questionText", rs.getString("question_text"));
+                question.put("questionType", rs.getString("question_type"));
+                question.put("points", rs.getInt("points"));
+                question.put("options", new ArrayList<Map<String, Object>>());
+                questions.put(questionId, question);
+            }
+
+            // 简答/论述题没有选项，LEFT JOIN 得到一行空选项
+            long optionId = rs.getLong("option_id");
+            if (!rs.wasNull()) {
+                Map<String, Object> option = new HashMap<>();
+                option.put("optionId", optionId);
+                option.put("optionText", rs.getString("option_text"));
+                option.put("optionOrder", rs.getInt("option_order"));
+                @SuppressWarnings("unchecked")
+                List<Map<String, Object>> options = (List<Map<String, Object>>) question.get("options");
+                options.add(option);
+            }
+        }, quizId);
+
+        return new ArrayList<>(questions.values());
+    }
+
+    // ==================== 失效 ====================
+
+    /**
+     * 测验或其题目列表变更后调用
+     */
+    public void invalidateQuiz(long quizId) {
+        generation.incrementAndGet();
+        synchronized (lock) {
+            if (remove(quizId)) {
+                invalidations.increment();
+            }
+        }
+    }
+
+    /**
+     * 题目变更 (删除/恢复/修改) 后调用，使包含该题目的全部试卷失效
+     */
+    public void invalidateQuestion(long questionId) {
+        generation.incrementAndGet();
+        synchronized (lock) {
+            Set<Long> quizIds = quizzesByQuestion.get(questionId);
+            if (quizIds == null) {
+                return;
+            }
+            for (Long quizId : new ArrayList<>(quizIds)) {
+                if (remove(quizId)) {
+                    invalidations.increment();
+                }
+            }
+        }
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        synchronized (lock) {
+            invalidations.add(papers.size());
+            papers.clear();
+            quizzesByQuestion.clear();
+        }
+    }
+
+    // ==================== 统计 ====================
+
+    /**
+     * @return 缓存容量、命中率及淘汰/失效次数
+     */
+    public Map<String, Object> stats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+
+        Map<String, Object> data = new LinkedHashMap<>();
+        synchronized (lock) {
+            data.put("size", papers.size());
+        }
+        data.put("maxEntries", maxEntries);
+        data.put("ttlSeconds", ttlNanos / 1_000_000_000L);
+        data.put("preEncoded", preEncoded);
+        data.put("gzip", preEncoded && gzip);
+        data.put("hits", hitCount);
+        data.put("misses", missCount);
+        data.put("hitRate", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        data.put("evictions", evictions.sum());
+        data.put("invalidations", invalidations.sum());
+        data.put("loads", loads.snapshot());
+        return data;
+    }
+
+    // ==================== 内部方法 ====================
+
+    /**
+     * @param conn 加载使用的连接；为 null 时加载者自行从连接池获取
+     */
+    private CachedPaper entry(Connection conn, long quizId) throws SQLException {
+        CachedPaper cached = lookup(quizId);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+
+        // 冷缓存时同一测验的并发请求只有一个访问数据库，其余等待并共享结果
+        return loads.execute(quizId, () -> {
+            // 上一轮加载可能在本请求查缓存之后、成为加载者之前刚写入缓存
+            CachedPaper current = lookup(quizId);
+            if (current != null) {
+                return current;
+            }
+            if (conn != null) {
+                return load(conn, quizId);
+            }
+            try (Connection own = DatabaseUtil.getConnection()) {
+                return load(own, quizId);
+            }
+        });
+    }
+
+    /**
+     * @return 未过期的缓存项，没有时为 null (过期项顺便移除)
+     */
+    private CachedPaper lookup(long quizId) {
+        if (maxEntries <= 0) {
+            return null;
+        }
+        synchronized (lock) {
+            CachedPaper cached = papers.get(quizId);
+            if (cached == null) {
+                return null;
+            }
+            if (System.nanoTime() - cached.loadedAt < ttlNanos) {
+                return cached;
+            }
+            remove(quizId);
+            return null;
+        }
+    }
+
+    private CachedPaper load(Connection conn, long quizId) throws SQLException {
+        long loadGeneration = generation.get();
+        List<Map<String, Object>> questions = freeze(loadPaper(conn, quizId));
+        Set<Long> questionIds = new HashSet<>();
+        for (Map<String, Object> question : questions) {
+            questionIds.add((Long) question.get("questionId"));
+        }
+        CachedPaper loaded = new CachedPaper(quizId, questions, questionIds, System.nanoTime());
+
+        // 不存在或没有题目的测验不缓存：题目可能随后才添加
+        if (maxEntries > 0 && !questions.isEmpty()) {
+            put(loaded, loadGeneration);
+        }
+        return loaded;
+    }
+
+    private void put(CachedPaper paper, long loadGeneration) {
+        synchronized (lock) {
+            if (generation.get() != loadGeneration) {
+                return;
+            }
+            remove(paper.quizId);
+            papers.put(paper.quizId, paper);
+            for (Long questionId : paper.questionIds) {
+                quizzesByQuestion.computeIfAbsent(questionId, k -> new HashSet<>()).add(paper.quizId);
+            }
+
+            while (papers.size() > maxEntries) {
+                Long eldest = papers.keySet().iterator().next();
+                remove(eldest);
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * 移除一张试卷及其反向索引，调用方须持有 lock
+     */
+    private boolean remove(long quizId) {
+        CachedPaper removed = papers.remove(quizId);
+        if (removed == null) {
+            return false;
+        }
+        for (Long questionId : removed.questionIds) {
+            Set<Long> quizIds = quizzesByQuestion.get(questionId);
+            if (quizIds != null) {
+                quizIds.remove(quizId);
+                if (quizIds.isEmpty()) {
+                    quizzesByQuestion.remove(questionId);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 将组装好的试卷转为不可修改结构，供多个响应共享
+     */
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> freeze(List<Map<String, Object>> questions) {
+        List<Map<String, Object>> frozen = new ArrayList<>(questions.size());
+        for (Map<String, Object> question : questions) {
+            List<Map<String, Object>> options = new ArrayList<>();
+            for (Map<String, Object> option : (List<Map<String, Object>>) question.get("options")) {
+                options.add(Collections.unmodifiableMap(option));
+            }
+            question.put("options", Collections.unmodifiableList(options));
+            frozen.add(Collections.unmodifiableMap(question));
+        }
+        return Collections.unmodifiableList(frozen);
+    }
+}
@@ -0,0 +1,363 @@
+package com.zekai.api.service;
+
+import com.zekai.api.sql.SqlCatalog;
+import com.zekai.util.DatabaseUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ========================================
+ * EXAM WARMUP SERVICE - 考前预热
+ * ========================================
+ *
+ * 负载在测验 start_time 那一刻集中到来。定时任务扫描即将开始的测验，
+ * 提前 (exam.warmup.lead-time-seconds) 把开始测验所需的数据装入内存：
+ * - 试卷 (ExamPaperService 缓存，预编码模式下同时编码)
+ * - 时间窗口和测验设置
+ * - 教室的在读学生集合
+ *
+ * 开始测验总是使用预热的试卷。exam.warmup.enforce-start-checks=true 时 (默认关闭)，
+ * 开始测验还通过 {@link #session} 校验时间窗口和选课，预热后不再访问数据库：
+ * - 时间窗口按数据库时钟判断 ({@link #now})：start_time/end_time 是教师输入的本地时间，
+ *   与扫描使用的 NOW() 一致，与 JVM 时区和连接的 serverTimezone 无关
+ * - 在读学生集合每次扫描从数据库重新读取；其他实例上的退课最多在一个扫描间隔后生效
+ *   (本实例上的选课/退课立即更新)
+ * 未预热的测验在第一次开始时按需加载并保留到测验结束。
+ *
+ * @author Exam System Team
+ */
+@Service
+public class ExamWarmupService {
+
+    private static final Logger log = LoggerFactory.getLogger(ExamWarmupService.class);
+    /** 开始测验时，距上次校准超过该时间则重新读取数据库时钟 */
+    private static final long CLOCK_SYNC_MAX_AGE_MS = 5 * 60 * 1000L;
+
+    private final ExamPaperService examPaperService;
+    private final boolean enabled;
+    private final long leadTimeSeconds;
+    private final boolean enforceStartChecks;
+
+    /** quizId → 开始测验所需的数据；测验结束后由扫描移除 */
+    private final Map<Long, QuizSession> sessions = new ConcurrentHashMap<>();
+
+    /** 数据库时钟 (按读取 DATETIME 的同一换算) 与 JVM 时钟之差 */
+    private volatile long clockOffsetMillis;
+    private volatile long clockSyncedAt;
+
+    private final LongAdder warmed = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private volatile long lastScanAt;
+    private volatile String lastScanError;
+
+    /**
+     * @param enabled            是否定时预热
+     * @param leadTimeSeconds    提前多少秒预热
+     * @param enforceStartChecks 开始测验时是否校验时间窗口和选课
+     */
+    @Autowired
+    public ExamWarmupService(
+            ExamPaperService examPaperService,
+            @Value("${exam.warmup.enabled:true}") boolean enabled,
+            @Value("${exam.warmup.lead-time-seconds:600}") long leadTimeSeconds,
+            @Value("${exam.warmup.enforce-start-checks:false}") boolean enforceStartChecks) {
+        this.examPaperService = examPaperService;
+        this.enabled = enabled;
+        this.leadTimeSeconds = leadTimeSeconds;
+        this.enforceStartChecks = enforceStartChecks;
+    }
+
+    /**
+     * 一场测验开始时需要的数据 (选课集合可在原处更新，每次扫描整体替换)
+     */
+    public static final class QuizSession {
+        final long quizId;
+        final long classroomId;
+        final String title;
+        final Timestamp startTime;
+        final Timestamp endTime;
+        final int durationMinutes;
+        final Map<String, Object> settings;
+        volatile Set<Long> enrolledStudents;
+        final long warmedAt;
+
+        QuizSession(long quizId, long classroomId, String title, Timestamp startTime, Timestamp endTime,
+                    int durationMinutes, Map<String, Object> settings, Set<Long> enrolledStudents) {
+            this.quizId = quizId;
+            this.classroomId = classroomId;
+            this.title = title;
+            this.startTime = startTime;
+            this.endTime = endTime;
+            this.durationMinutes = durationMinutes;
+            this.settings = settings;
+            this.enrolledStudents = enrolledStudents;
+            this.warmedAt = System.currentTimeMillis();
+        }
+
+        /**
+         * @param nowMillis 按数据库时钟的当前时间 ({@link ExamWarmupService#now})
+         * @return 当前是否在测验时间窗口内
+         */
+        public boolean isOpen(long nowMillis) {
+            return nowMillis >= startTime.getTime() && nowMillis < endTime.getTime();
+        }
+
+        public boolean hasEnded(long nowMillis) {
+            return nowMillis >= endTime.getTime();
+        }
+
+        public long getClassroomId() {
+            return classroomId;
+        }
+
+        public Map<String, Object> getSettings() {
+            return settings;
+        }
+    }
+
+    // ==================== 预热 ====================
+
+    /**
+     * 扫描即将开始 (及刚开始) 的测验并预热，同时移除已结束的测验
+     */
+    @Scheduled(fixedDelayString = "${exam.warmup.scan-interval-ms:30000}",
+            initialDelayString = "${exam.warmup.initial-delay-ms:10000}")
+    public void warmUpcoming() {
+        if (!enabled) {
+            return;
+        }
+        long scanAt = System.currentTimeMillis();
+        try (Connection conn = DatabaseUtil.getConnection()) {
+            syncClock(conn);
+            long now = now();
+            sessions.values().removeIf(session -> session.hasEnded(now));
+            refreshEnrollments(conn);
+
+            List<Long> quizIds = DatabaseUtil.queryList(conn, SqlCatalog.QUIZ_UPCOMING,
+                    rs -> rs.getLong("quiz_id"), leadTimeSeconds, leadTimeSeconds);
+            for (Long quizId : quizIds) {
+                try {
+                    warm(conn, quizId);
+                } catch (Exception e) {
+                    failures.increment();
+                    log.warn("Exam warmup failed for quiz {}: {}", quizId, e.getMessage());
+                }
+            }
+            lastScanError = null;
+        } catch (SQLException e) {
+            lastScanError = e.getMessage();
+            log.warn("Exam warmup scan failed: {}", e.getMessage());
+        }
+        lastScanAt = scanAt;
+    }
+
+    /**
+     * 预热一场测验：加载时间窗口/设置/选课 (尚未加载时)，并确保试卷在缓存中
+     *
+     * @return 测验数据，测验不存在时为 null
+     */
+    public QuizSession warm(Connection conn, long quizId) throws Exception {
+        QuizSession session = sessions.get(quizId);
+        if (session == null) {
+            session = load(conn, quizId);
+            if (session == null) {
+                return null;
+            }
+            sessions.put(quizId, session);
+            warmed.increment();
+        }
+        // 每次扫描都访问一次，试卷缓存过期后在这里重新加载，而不是在开考时
+        if (examPaperService.isPreEncoded()) {
+            examPaperService.getEncodedPaper(conn, quizId);
+        } else {
+            examPaperService.getPaper(conn, quizId);
+        }
+        return session;
+    }
+
+    // ==================== 开始测验 ====================
+
+    /**
+     * @return 开始测验时是否校验时间窗口和选课 (exam.warmup.enforce-start-checks)
+     */
+    public boolean isEnforcingStartChecks() {
+        return enforceStartChecks;
+    }
+
+    /**
+     * 开始测验使用：返回已预热的测验数据，未预热时按需加载
+     *
+     * @return 测验数据，测验不存在时为 null
+     */
+    public QuizSession session(Connection conn, long quizId) throws SQLException {
+        if (System.currentTimeMillis() - clockSyncedAt > CLOCK_SYNC_MAX_AGE_MS) {
+            // 预热未启用或扫描失败时，开始测验前自行校准
+            syncClock(conn);
+        }
+        QuizSession session = sessions.get(quizId);
+        if (session != null) {
+            return session;
+        }
+        session = load(conn, quizId);
+        if (session != null && !session.hasEnded(now())) {
+            QuizSession existing = sessions.putIfAbsent(quizId, session);
+            return existing != null ? existing : session;
+        }
+        return session;
+    }
+
+    /**
+     * 学生是否在读该测验的教室。集合中没有时回查一次数据库，
+     * 以接纳预热之后 (或其他实例上) 才选课的学生
+     */
+    public boolean isEnrolled(Connection conn, QuizSession session, long studentId) throws SQLException {
+        if (session.enrolledStudents.contains(studentId)) {
+            return true;
+        }
+        boolean active = DatabaseUtil.queryOne(conn, SqlCatalog.ENROLLMENT_ACTIVE,
+                rs -> Boolean.TRUE, studentId, session.classroomId) != null;
+        if (active) {
+            session.enrolledStudents.add(studentId);
+        }
+        return active;
+    }
+
+    /**
+     * 选课/退课后调用，更新已预热测验的在读学生集合
+     */
+    public void enrollmentChanged(long classroomId, long studentId, boolean active) {
+        for (QuizSession session : sessions.values()) {
+            if (session.classroomId == classroomId) {
+                if (active) {
+                    session.enrolledStudents.add(studentId);
+                } else {
+                    session.enrolledStudents.remove(studentId);
+                }
+            }
+        }
+    }
+
+    // ==================== 就绪状态 ====================
+
+    /**
+     * @param conn 数据库连接 (查询即将开始的测验)
+     * @return 预热窗口内每场测验是否已就绪
+     */
+    public Map<String, Object> readiness(Connection conn) throws SQLException {
+        syncClock(conn);
+        long now = now();
+        List<Map<String, Object>> exams = DatabaseUtil.queryList(conn, SqlCatalog.QUIZ_UPCOMING, rs -> {
+            long quizId = rs.getLong("quiz_id");
+            Timestamp startTime = rs.getTimestamp("start_time");
+            QuizSession session = sessions.get(quizId);
+            boolean paperCached = examPaperService.isCached(quizId);
+
+            Map<String, Object> exam = new LinkedHashMap<>();
+            exam.put("quizId", quizId);
+            exam.put("title", rs.getString("title"));
+            exam.put("startTime", startTime);
+            exam.put("endTime", rs.getTimestamp("end_time"));
+            exam.put("startsInSeconds", (startTime.getTime() - now) / 1000);
+            exam.put("warm", session != null && paperCached);
+            exam.put("sessionLoaded", session != null);
+            exam.put("paperCached", paperCached);
+            if (session != null) {
+                exam.put("enrolledStudents", session.enrolledStudents.size());
+                exam.put("settings", session.settings);
+                exam.put("warmedAt", new Timestamp(session.warmedAt));
+            }
+            return exam;
+        }, leadTimeSeconds, leadTimeSeconds);
+
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("enabled", enabled);
+        data.put("leadTimeSeconds", leadTimeSeconds);
+        data.put("enforceStartChecks", enforceStartChecks);
+        data.put("lastScanAt", lastScanAt > 0 ? new Timestamp(lastScanAt) : null);
+        data.put("lastScanError", lastScanError);
+        data.put("clockOffsetMs", clockOffsetMillis);
+        data.put("sessions", sessions.size());
+        data.put("warmed", warmed.sum());
+        data.put("failures", failures.sum());
+        data.put("exams", exams);
+        return data;
+    }
+
+    /**
+     * @return 按数据库时钟的当前时间，可直接与读出的 start_time/end_time 比较
+     */
+    public long now() {
+        return System.currentTimeMillis() + clockOffsetMillis;
+    }
+
+    // ==================== 内部方法 ====================
+
+    /**
+     * 读取数据库的 NOW()，记录它与 JVM 时钟之差 (以往返中点为准)
+     */
+    private void syncClock(Connection conn) throws SQLException {
+        long before = System.currentTimeMillis();
+        Timestamp dbNow = DatabaseUtil.queryOne(conn, SqlCatalog.DB_NOW, rs -> rs.getTimestamp("db_now"));
+        long after = System.currentTimeMillis();
+        if (dbNow != null) {
+            clockOffsetMillis = dbNow.getTime() - (before + after) / 2;
+            clockSyncedAt = after;
+        }
+    }
+
+    /**
+     * 重新读取已加载测验的在读学生集合 (每个教室一次查询)，使其他实例上的选课/退课生效
+     */
+    private void refreshEnrollments(Connection conn) throws SQLException {
+        Map<Long, Set<Long>> byClassroom = new HashMap<>();
+        for (QuizSession session : sessions.values()) {
+            Set<Long> students = byClassroom.get(session.classroomId);
+            if (students == null) {
+                students = ConcurrentHashMap.newKeySet();
+                students.addAll(DatabaseUtil.queryList(conn, SqlCatalog.CLASSROOM_ACTIVE_STUDENT_IDS,
+                        rs -> rs.getLong(1), session.classroomId));
+                byClassroom.put(session.classroomId, students);
+            }
+            session.enrolledStudents = students;
+        }
+    }
+
+    private QuizSession load(Connection conn, long quizId) throws SQLException {
+        QuizSession session = DatabaseUtil.queryOne(conn, SqlCatalog.QUIZ_SESSION, rs -> {
+            Map<String, Object> settings = new LinkedHashMap<>();
+            // 没有设置行时使用表的默认值
+            settings.put("shuffleQuestions", rs.getObject("shuffle_questions") != null && rs.getBoolean("shuffle_questions"));
+            settings.put("shuffleOptions", rs.getObject("shuffle_options") != null && rs.getBoolean("shuffle_options"));
+            settings.put("showResultsImmediately", rs.getObject("show_results_immediately") != null && rs.getBoolean("show_results_immediately"));
+            settings.put("allowReview", rs.getObject("allow_review") == null || rs.getBoolean("allow_review"));
+
+            return new QuizSession(quizId, rs.getLong("classroom_id"), rs.getString("title"),
+                    rs.getTimestamp("start_time"), rs.getTimestamp("end_time"), rs.getInt("duration_minutes"),
+                    Collections.unmodifiableMap(settings), ConcurrentHashMap.newKeySet());
+        }, quizId);
+        if (session == null) {
+            return null;
+        }
+
+        List<Long> students = DatabaseUtil.queryList(conn, SqlCatalog.CLASSROOM_ACTIVE_STUDENT_IDS,
+                rs -> rs.getLong(1), session.classroomId);
+        session.enrolledStudents.addAll(students);
+        return session;
+    }
+}
@@ -0,0 +1,368 @@
+package com.zekai.api.service;
+
+import com.zekai.api.sql.SqlCatalog;
+import com.zekai.config.SchemaMigrationRunner;
+import com.zekai.util.DatabaseUtil;
+import com.zekai.util.TransactionTemplate;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ========================================
+ * GRADING JOB SERVICE - 评分任务队列 (MySQL)
+ * ========================================
+ *
+ * 多节点部署时评分工作保存在 grading_jobs 表中，由各节点共享：
+ *
+ * - 提交测验 (与提交在同一事务中) 和全测验评分写入任务
+ * - 每个节点的评分线程以 SELECT ... FOR UPDATE SKIP LOCKED 认领一批 pending 任务，
+ *   标记 running、写入本次认领的 claim_token 和租约到期时间后立即提交；
+ *   认领只锁 grading_jobs 的行且跳过已锁定的行，节点之间互不等待
+ * - 按测验分组评分：同一事务中先锁定仍属于本次认领的任务行，评分后标记 done。
+ *   租约过期后被其他节点重新认领的任务不会被原节点再评分
+ * - 评分失败的任务放回 pending (整组失败时逐个重试)，达到 max-attempts 后标记 failed
+ * - 认领后节点崩溃：租约 (lease-seconds) 过期后由任意节点的定时任务放回 pending
+ *
+ * 增加评分吞吐只需增加应用节点 (或每节点的 workers)。
+ *
+ * @author Exam System Team
+ */
+@Service
+@DependsOn(SchemaMigrationRunner.BEAN_NAME)
+public class GradingJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(GradingJobService.class);
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    /**
+     * 一个已认领的任务
+     */
+    private static final class Job {
+        final long jobId;
+        final long studentQuizId;
+        final long quizId;
+
+        Job(long jobId, long studentQuizId, long quizId) {
+            this.jobId = jobId;
+            this.studentQuizId = studentQuizId;
+            this.quizId = quizId;
+        }
+    }
+
+    private final GradingService gradingService;
+    private final boolean enabled;
+    private final int batchSize;
+    private final int leaseSeconds;
+    private final long pollIntervalMillis;
+    private final int maxAttempts;
+    private final int retentionHours;
+    /** 写入 claimed_by，便于排查 */
+    private final String nodeId = ManagementFactory.getRuntimeMXBean().getName();
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running = true;
+
+    private final LongAdder claimed = new LongAdder();
+    private final LongAdder graded = new LongAdder();
+    private final LongAdder lost = new LongAdder();
+    private final LongAdder released = new LongAdder();
+    private final LongAdder reaped = new LongAdder();
+
+    /**
+     * @param enabled        是否使用评分任务队列 (启用后提交测验和全测验评分都写入任务)
+     * @param workerCount    本节点的评分线程数
+     * @param batchSize      一次认领的最大任务数
+     * @param leaseSeconds   认领后多久未完成视为节点崩溃
+     * @param pollIntervalMs 没有待评分任务时的轮询间隔
+     * @param maxAttempts    一个任务的最大尝试次数
+     * @param retentionHours 已完成的任务保留多久
+     */
+    @Autowired
+    public GradingJobService(
+            GradingService gradingService,
+            @Value("${exam.grading.jobs.enabled:false}") boolean enabled,
+            @Value("${exam.grading.jobs.workers:2}") int workerCount,
+            @Value("${exam.grading.jobs.batch-size:50}") int batchSize,
+            @Value("${exam.grading.jobs.lease-seconds:60}") int leaseSeconds,
+            @Value("${exam.grading.jobs.poll-interval-ms:500}") long pollIntervalMs,
+            @Value("${exam.grading.jobs.max-attempts:3}") int maxAttempts,
+            @Value("${exam.grading.jobs.retention-hours:24}") int retentionHours) {
+        this.gradingService = gradingService;
+        this.enabled = enabled;
+        this.batchSize = Math.max(1, Math.min(batchSize, GradingService.MAX_ROWS_PER_STATEMENT));
+        this.leaseSeconds = leaseSeconds;
+        this.pollIntervalMillis = pollIntervalMs;
+        this.maxAttempts = maxAttempts;
+        this.retentionHours = retentionHours;
+        if (enabled) {
+            for (int i = 0; i < workerCount; i++) {
+                Thread worker = new Thread(this::run, "grading-job-" + i);
+                worker.setDaemon(true);
+                worker.start();
+                workers.add(worker);
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // ==================== 创建任务 ====================
+
+    /**
+     * 在调用方的事务中为一份提交创建任务 (与提交测验一起提交)
+     */
+    public void enqueue(Connection conn, long studentQuizId) throws SQLException {
+        update(conn, SqlCatalog.GRADING_JOB_ENQUEUE, studentQuizId);
+    }
+
+    /**
+     * 为测验全部已提交、未评分的提交创建任务
+     *
+     * @return 该测验的任务数 (按状态)
+     */
+    public Map<String, Object> enqueueQuiz(long quizId) throws SQLException {
+        TransactionTemplate.execute(conn -> update(conn, SqlCatalog.GRADING_JOBS_ENQUEUE_QUIZ, quizId));
+        return quizStatus(quizId);
+    }
+
+    /**
+     * @return 测验的任务数：{pending, running, done, failed, total}
+     */
+    public Map<String, Object> quizStatus(long quizId) throws SQLException {
+        try (Connection conn = DatabaseUtil.getConnection()) {
+            Map<String, Object> data = counts(conn, SqlCatalog.GRADING_JOBS_QUIZ_COUNTS, quizId);
+            data.put("quizId", quizId);
+            return data;
+        }
+    }
+
+    // ==================== 认领与评分 ====================
+
+    /**
+     * 认领并评分一批任务
+     *
+     * @return 认领的任务数 (0 表示没有待评分任务)
+     */
+    public int runOnce() throws SQLException {
+        String token = UUID.randomUUID().toString();
+        List<Job> jobs = TransactionTemplate.execute(conn -> {
+            List<Job> batch = DatabaseUtil.queryList(conn, SqlCatalog.GRADING_JOBS_CLAIM_SELECT,
+                    rs -> new Job(rs.getLong("job_id"), rs.getLong("student_quiz_id"), rs.getLong("quiz_id")),
+                    batchSize);
+            if (!batch.isEmpty()) {
+                List<Object> params = new ArrayList<>();
+                params.add(token);
+                params.add(nodeId);
+                params.add(leaseSeconds);
+                for (Job job : batch) {
+                    params.add(job.jobId);
+                }
+                update(conn, SqlCatalog.expandIn(SqlCatalog.GRADING_JOBS_CLAIM, batch.size()), params.toArray());
+            }
+            return batch;
+        });
+        if (jobs.isEmpty()) {
+            return 0;
+        }
+        claimed.add(jobs.size());
+
+        Map<Long, List<Job>> byQuiz = new LinkedHashMap<>();
+        for (Job job : jobs) {
+            byQuiz.computeIfAbsent(job.quizId, k -> new ArrayList<>()).add(job);
+        }
+        for (Map.Entry<Long, List<Job>> group : byQuiz.entrySet()) {
+            gradeClaimed(token, group.getKey(), group.getValue());
+        }
+        return jobs.size();
+    }
+
+    /**
+     * 评分一个测验的已认领任务并标记完成；失败时逐个重试，单个任务失败放回队列
+     */
+    private void gradeClaimed(String token, long quizId, List<Job> jobs) {
+        try {
+            int done = TransactionTemplate.execute(conn -> {
+                List<Long> owned = DatabaseUtil.queryList(conn,
+                        SqlCatalog.expandIn(SqlCatalog.GRADING_JOBS_LOCK_OWNED, jobs.size()),
+                        rs -> rs.getLong("job_id"), withJobIds(jobs, token));
+                if (owned.isEmpty()) {
+                    return 0;
+                }
+                List<Long> submissions = new ArrayList<>(owned.size());
+                for (Job job : jobs) {
+                    if (owned.contains(job.jobId)) {
+                        submissions.add(job.studentQuizId);
+                    }
+                }
+                GradingService.AnswerKey key = gradingService.loadAnswerKey(conn, quizId);
+                if (key == null) {
+                    throw new SQLException("Quiz " + quizId + " not found");
+                }
+                gradingService.grade(conn, key, submissions);
+
+                List<Object> params = new ArrayList<>();
+                params.add(token);
+                params.addAll(owned);
+                update(conn, SqlCatalog.expandIn(SqlCatalog.GRADING_JOBS_DONE, owned.size()), params.toArray());
+                return owned.size();
+            });
+            graded.add(done);
+            // 租约已过期并被其他节点重新认领的任务
+            lost.add(jobs.size() - done);
+        } catch (SQLException | RuntimeException e) {
+            if (jobs.size() > 1) {
+                log.warn("Grading {} jobs of quiz {} failed, retrying one by one: {}",
+                        jobs.size(), quizId, e.getMessage());
+                for (Job job : jobs) {
+                    gradeClaimed(token, quizId, List.of(job));
+                }
+            } else {
+                release(token, jobs.get(0), e);
+            }
+        }
+    }
+
+    private void release(String token, Job job, Exception cause) {
+        String error = String.valueOf(cause.getMessage());
+        if (error.length() > MAX_ERROR_LENGTH) {
+            error = error.substring(0, MAX_ERROR_LENGTH);
+        }
+        Object[] params = {maxAttempts, error, token, job.jobId};
+        try {
+            TransactionTemplate.execute(conn -> update(conn, SqlCatalog.GRADING_JOBS_RELEASE, params));
+            released.increment();
+        } catch (SQLException | RuntimeException e) {
+            // 放回失败时任务保持 running，租约过期后由 reap 放回
+            log.warn("Releasing grading job {} failed: {}", job.jobId, e.getMessage());
+        }
+    }
+
+    /**
+     * 租约过期的任务放回队列，并删除完成已久的任务；任意节点执行结果相同
+     */
+    @Scheduled(fixedDelayString = "${exam.grading.jobs.reap-interval-ms:15000}")
+    public void reap() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            int expired = TransactionTemplate.execute(conn -> update(conn, SqlCatalog.GRADING_JOBS_REAP, maxAttempts));
+            if (expired > 0) {
+                reaped.add(expired);
+                log.warn("Returned {} grading jobs with expired leases to the queue", expired);
+            }
+            TransactionTemplate.execute(conn -> update(conn, SqlCatalog.GRADING_JOBS_PURGE, retentionHours));
+        } catch (SQLException | RuntimeException e) {
+            log.warn("Reaping grading jobs failed: {}", e.getMessage());
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("enabled", enabled);
+        data.put("node", nodeId);
+        data.put("workers", workers.size());
+        data.put("claimed", claimed.sum());
+        data.put("graded", graded.sum());
+        data.put("lostLeases", lost.sum());
+        data.put("released", released.sum());
+        data.put("reaped", reaped.sum());
+        if (enabled) {
+            try (Connection conn = DatabaseUtil.getConnection()) {
+                data.put("jobs", counts(conn, SqlCatalog.GRADING_JOBS_COUNTS));
+            } catch (SQLException e) {
+                data.put("jobsError", e.getMessage());
+            }
+        }
+        return data;
+    }
+
+    /**
+     * 停止评分线程；正在评分的一批完成后退出，已认领未完成的任务由租约过期放回
+     */
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // ==================== 评分线程 ====================
+
+    private void run() {
+        while (running) {
+            int jobs = 0;
+            try {
+                jobs = runOnce();
+            } catch (SQLException | RuntimeException e) {
+                log.warn("Claiming grading jobs failed: {}", e.getMessage());
+            }
+            if (jobs == 0) {
+                try {
+                    Thread.sleep(pollIntervalMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    // ==================== 辅助方法 ====================
+
+    private static Object[] withJobIds(List<Job> jobs, Object first) {
+        Object[] params = new Object[jobs.size() + 1];
+        params[0] = first;
+        for (int i = 0; i < jobs.size(); i++) {
+            params[i + 1] = jobs.get(i).jobId;
+        }
+        return params;
+    }
+
+    private static int update(Connection conn, String sql, Object... params) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            DatabaseUtil.bindParams(pstmt, params);
+            return pstmt.executeUpdate();
+        }
+    }
+
+    private static Map<String, Object> counts(Connection conn, String sql, Object... params) throws SQLException {
+        Map<String, Object> data = new LinkedHashMap<>();
+        for (String status : new String[]{"pending", "running", "done", "failed"}) {
+            data.put(status, 0L);
+        }
+        long[] total = {0};
+        DatabaseUtil.forEachRow(conn, sql, 0, rs -> {
+            data.put(rs.getString("status"), rs.getLong("jobs"));
+            total[0] += rs.getLong("jobs");
+        }, params);
+        data.put("total", total[0]);
+        return data;
+    }
+}
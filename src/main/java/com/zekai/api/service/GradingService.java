@@ -0,0 +1,608 @@
+package com.zekai.api.service;
+
+import com.zekai.api.sql.SqlCatalog;
+import com.zekai.config.DatabaseConfig;
+import com.zekai.util.DatabaseUtil;
+import com.zekai.util.TransactionTemplate;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * ========================================
+ * GRADING SERVICE - 评分引擎
+ * ========================================
+ *
+ * 客观题在 Java 中评分，代替 UPDATE ... JOIN 和相关子查询：
+ * - 一场测验的答案键只加载一次：题号有序数组 + 每题分值 + 每题有序的正确选项数组
+ * - 一批提交的作答用一条 IN 查询读出 (一致性读，不加锁)
+ * - 逐题结果和总分各以一条批量 UPDATE 写回，行锁只在这两条语句执行期间持有
+ *
+ * 评分规则与原语句一致：选择了选项且题目属于该测验的作答按正确选项评分，
+ * 其余作答 (主观题等) 保留已有得分；总分为全部作答得分之和，
+ * 百分比按测验的 total_points 计算 (未设置时按各题分值之和)。
+ *
+ * 答案键修正后 ({@link #regradeQuestion}) 只重新评分引用该题目的作答，按得分差调整受影响提交的总分。
+ *
+ * 全测验评分 ({@link #gradeQuiz}) 把尚未评分的提交分块，在专用的 ForkJoinPool 上并行评分，
+ * 每块一个事务、单独提交并报告进度；中断后重新运行只会取到尚未评分的提交。
+ *
+ * @author Exam System Team
+ */
+@Service
+public class GradingService {
+
+    /** 每条批量 UPDATE 的最大行数 */
+    static final int MAX_ROWS_PER_STATEMENT = 500;
+
+    public static final int DEFAULT_PARALLELISM = 4;
+    public static final int DEFAULT_CHUNK_SIZE = 200;
+
+    private static final Logger log = LoggerFactory.getLogger(GradingService.class);
+    private static final BigDecimal HUNDRED = BigDecimal.valueOf(100);
+
+    private final int chunkSize;
+    /** 全测验评分的工作线程；并行度不应超过连接池大小 */
+    private final ForkJoinPool pool;
+    /** quizId → 正在进行的全测验评分，同一测验同时只有一个 */
+    private final Map<Long, QuizRun> runs = new ConcurrentHashMap<>();
+
+    private final LongAdder gradedSubmissions = new LongAdder();
+    private final LongAdder gradedAnswers = new LongAdder();
+
+    public GradingService() {
+        this(DEFAULT_PARALLELISM, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param parallelism 全测验评分同时评分的块数 (每块占用一个连接)
+     * @param chunkSize   每块 (每个事务) 的提交数，不超过 {@link #MAX_ROWS_PER_STATEMENT}
+     */
+    @Autowired
+    public GradingService(
+            @Value("${exam.grading.parallelism:" + DEFAULT_PARALLELISM + "}") int parallelism,
+            @Value("${exam.grading.chunk-size:" + DEFAULT_CHUNK_SIZE + "}") int chunkSize) {
+        this.chunkSize = Math.max(1, Math.min(chunkSize, MAX_ROWS_PER_STATEMENT));
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * 一场测验的答案键 (不可变)
+     */
+    public static final class AnswerKey {
+        final long quizId;
+        final int totalPoints;
+        /** 升序题号 */
+        final long[] questionIds;
+        /** 与 questionIds 对应的分值 */
+        final int[] points;
+        /** 与 questionIds 对应的升序正确选项；没有正确选项时为空数组 */
+        final long[][] correctOptions;
+
+        AnswerKey(long quizId, int totalPoints, long[] questionIds, int[] points, long[][] correctOptions) {
+            this.quizId = quizId;
+            this.totalPoints = totalPoints;
+            this.questionIds = questionIds;
+            this.points = points;
+            this.correctOptions = correctOptions;
+        }
+
+        public long getQuizId() {
+            return quizId;
+        }
+
+        public int getQuestionCount() {
+            return questionIds.length;
+        }
+
+        /**
+         * @return 题目在答案键中的下标，不属于该测验时为负数
+         */
+        int indexOf(long questionId) {
+            return Arrays.binarySearch(questionIds, questionId);
+        }
+
+        boolean isCorrect(int index, long optionId) {
+            return Arrays.binarySearch(correctOptions[index], optionId) >= 0;
+        }
+    }
+
+    /**
+     * 一份提交的评分结果
+     */
+    public static final class GradeResult {
+        final long studentQuizId;
+        final int gradedAnswers;
+        final BigDecimal score;
+        final BigDecimal percentage;
+
+        GradeResult(long studentQuizId, int gradedAnswers, BigDecimal score, BigDecimal percentage) {
+            this.studentQuizId = studentQuizId;
+            this.gradedAnswers = gradedAnswers;
+            this.score = score;
+            this.percentage = percentage;
+        }
+
+        public long getStudentQuizId() {
+            return studentQuizId;
+        }
+
+        public int getGradedAnswers() {
+            return gradedAnswers;
+        }
+
+        public BigDecimal getScore() {
+            return score;
+        }
+
+        public BigDecimal getPercentage() {
+            return percentage;
+        }
+    }
+
+    /**
+     * 一次全测验评分的进度
+     */
+    private static final class QuizRun {
+        final long quizId;
+        final int total;
+        final int chunks;
+        final long startedAt = System.currentTimeMillis();
+        final AtomicInteger graded = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        final AtomicInteger chunksDone = new AtomicInteger();
+        final Consumer<Map<String, Object>> listener;
+
+        QuizRun(long quizId, int total, int chunks, Consumer<Map<String, Object>> listener) {
+            this.quizId = quizId;
+            this.total = total;
+            this.chunks = chunks;
+            this.listener = listener;
+        }
+
+        Map<String, Object> progress() {
+            Map<String, Object> data = new LinkedHashMap<>();
+            data.put("quizId", quizId);
+            data.put("total", total);
+            data.put("graded", graded.get());
+            data.put("failed", failed.get());
+            data.put("chunks", chunks);
+            data.put("chunksDone", chunksDone.get());
+            data.put("elapsedMs", System.currentTimeMillis() - startedAt);
+            return data;
+        }
+    }
+
+    // ==================== 答案键 ====================
+
+    /**
+     * 加载测验的答案键 (一条查询)
+     *
+     * @return 答案键，测验不存在时为 null
+     */
+    public AnswerKey loadAnswerKey(Connection conn, long quizId) throws SQLException {
+        Map<Long, Integer> points = new TreeMap<>();
+        Map<Long, List<Long>> options = new TreeMap<>();
+        int[] totalPoints = {-1};
+        DatabaseUtil.forEachRow(conn, SqlCatalog.QUIZ_ANSWER_KEY, 0, rs -> {
+            totalPoints[0] = rs.getInt("total_points");
+            long questionId = rs.getLong("question_id");
+            points.put(questionId, rs.getInt("points"));
+            List<Long> correct = options.computeIfAbsent(questionId, k -> new ArrayList<>());
+            long optionId = rs.getLong("option_id");
+            if (!rs.wasNull()) {
+                correct.add(optionId);
+            }
+        }, quizId);
+        if (totalPoints[0] < 0) {
+            return null;
+        }
+
+        long[] questionIds = new long[points.size()];
+        int[] questionPoints = new int[points.size()];
+        long[][] correctOptions = new long[points.size()][];
+        int i = 0;
+        int sum = 0;
+        for (Map.Entry<Long, Integer> entry : points.entrySet()) {
+            questionIds[i] = entry.getKey();
+            questionPoints[i] = entry.getValue();
+            correctOptions[i] = options.get(entry.getKey()).stream().mapToLong(Long::longValue).sorted().toArray();
+            sum += entry.getValue();
+            i++;
+        }
+        return new AnswerKey(quizId, totalPoints[0] > 0 ? totalPoints[0] : sum, questionIds, questionPoints, correctOptions);
+    }
+
+    // ==================== 评分 ====================
+
+    /**
+     * 评分一份提交 (单独的事务，与学生保存答案死锁时整体重试)
+     *
+     * @return 评分结果，提交不存在时为 null
+     */
+    public GradeResult gradeSubmission(long studentQuizId) throws SQLException {
+        return TransactionTemplate.execute(conn -> {
+            Long quizId = DatabaseUtil.queryOne(conn, SqlCatalog.STUDENT_QUIZ_QUIZ_ID,
+                    rs -> rs.getLong("quiz_id"), studentQuizId);
+            if (quizId == null) {
+                return null;
+            }
+            AnswerKey key = loadAnswerKey(conn, quizId);
+            return key == null ? null : grade(conn, key, List.of(studentQuizId)).get(0);
+        });
+    }
+
+    /**
+     * 在调用方的连接 (和事务) 上评分一批同一测验的提交：一次读出全部作答，
+     * 逐题结果与总分各以批量 UPDATE 写回
+     *
+     * @param studentQuizIds 不超过 {@link #MAX_ROWS_PER_STATEMENT} 个
+     * @return 与 studentQuizIds 顺序一致的评分结果
+     */
+    public List<GradeResult> grade(Connection conn, AnswerKey key, List<Long> studentQuizIds) throws SQLException {
+        Map<Long, BigDecimal> scores = new LinkedHashMap<>();
+        Map<Long, Integer> gradedCounts = new LinkedHashMap<>();
+        for (Long id : studentQuizIds) {
+            scores.put(id, BigDecimal.ZERO);
+            gradedCounts.put(id, 0);
+        }
+
+        // [student_quiz_id, question_id, is_correct (0/1), points_earned]
+        List<long[]> graded = new ArrayList<>();
+        String sql = SqlCatalog.expandIn(SqlCatalog.GRADE_SUBMISSION_ANSWERS, studentQuizIds.size());
+        DatabaseUtil.forEachRow(conn, sql, 0, rs -> {
+            long studentQuizId = rs.getLong("student_quiz_id");
+            long questionId = rs.getLong("question_id");
+            long optionId = rs.getLong("selected_option_id");
+            boolean hasOption = !rs.wasNull();
+            int index = key.indexOf(questionId);
+
+            BigDecimal earned;
+            if (hasOption && index >= 0) {
+                boolean correct = key.isCorrect(index, optionId);
+                int points = correct ? key.points[index] : 0;
+                graded.add(new long[]{studentQuizId, questionId, correct ? 1 : 0, points});
+                gradedCounts.merge(studentQuizId, 1, Integer::sum);
+                earned = BigDecimal.valueOf(points);
+            } else {
+                // 主观题等保留已有得分
+                earned = rs.getBigDecimal("points_earned");
+            }
+            if (earned != null) {
+                scores.merge(studentQuizId, earned, BigDecimal::add);
+            }
+        }, studentQuizIds.toArray());
+
+        // 固定的加锁顺序，减少与其他评分批次及学生保存答案的死锁
+        graded.sort(Comparator.<long[]>comparingLong(row -> row[0]).thenComparingLong(row -> row[1]));
+        writeAnswers(conn, graded);
+
+        List<GradeResult> results = new ArrayList<>(studentQuizIds.size());
+        for (Long id : studentQuizIds) {
+            BigDecimal score = scores.get(id);
+            BigDecimal percentage = key.totalPoints > 0
+                    ? score.multiply(HUNDRED).divide(BigDecimal.valueOf(key.totalPoints), 2, RoundingMode.HALF_UP)
+                    : BigDecimal.ZERO;
+            results.add(new GradeResult(id, gradedCounts.get(id), score, percentage));
+        }
+        writeScores(conn, results);
+
+        gradedSubmissions.add(results.size());
+        gradedAnswers.add(graded.size());
+        return results;
+    }
+
+    // ==================== 增量重新评分 ====================
+
+    /**
+     * 修正题目的正确选项 (单独的事务)，之后调用 {@link #regradeQuestion}
+     *
+     * @return 题目的选项数；题目没有选项时为 0
+     * @throws IllegalArgumentException 选项不属于该题目
+     */
+    public int updateCorrectOptions(long questionId, List<Long> correctOptionIds) throws SQLException {
+        return TransactionTemplate.execute(conn -> {
+            List<Long> options = DatabaseUtil.queryList(conn, SqlCatalog.QUESTION_OPTION_IDS,
+                    rs -> rs.getLong("option_id"), questionId);
+            if (options.isEmpty()) {
+                return 0;
+            }
+            if (!options.containsAll(correctOptionIds)) {
+                throw new IllegalArgumentException("Option does not belong to question " + questionId);
+            }
+            // IN () 至少一个元素；没有正确选项时用不存在的 option_id
+            List<Long> correct = correctOptionIds.isEmpty() ? List.of(0L) : correctOptionIds;
+            Object[] params = new Object[correct.size() + 1];
+            for (int i = 0; i < correct.size(); i++) {
+                params[i] = correct.get(i);
+            }
+            params[correct.size()] = questionId;
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    SqlCatalog.expandIn(SqlCatalog.QUESTION_OPTIONS_SET_CORRECT, correct.size()))) {
+                DatabaseUtil.bindParams(pstmt, params);
+                pstmt.executeUpdate();
+            }
+            return options.size();
+        });
+    }
+
+    /**
+     * 按题目当前的正确选项重新评分已评分提交中该题的作答。只读取引用该题目的作答，
+     * 每批 (每个事务) 锁定其中的作答和总分，只写回结果有变化的作答，
+     * 并按得分差调整对应提交的总分和百分比。可重复执行 (结果不变时不写库)
+     *
+     * @return {questionId, submissions, answersChanged, submissionsAdjusted, batches}
+     */
+    public Map<String, Object> regradeQuestion(long questionId) throws SQLException {
+        Set<Long> correctOptions = new HashSet<>();
+        // quizId → [题目分值, 测验总分]
+        Map<Long, int[]> quizPoints = new HashMap<>();
+        Map<Long, Long> affected = new TreeMap<>();
+        try (Connection conn = DatabaseUtil.getConnection()) {
+            DatabaseUtil.forEachRow(conn, SqlCatalog.QUESTION_OPTION_IDS, 0, rs -> {
+                if (rs.getBoolean("is_correct")) {
+                    correctOptions.add(rs.getLong("option_id"));
+                }
+            }, questionId);
+            DatabaseUtil.forEachRow(conn, SqlCatalog.QUESTION_QUIZ_POINTS, 0, rs -> {
+                int total = rs.getInt("total_points");
+                quizPoints.put(rs.getLong("quiz_id"),
+                        new int[]{rs.getInt("points"), total > 0 ? total : rs.getInt("sum_points")});
+            }, questionId);
+            DatabaseUtil.forEachRow(conn, SqlCatalog.REGRADE_AFFECTED_SUBMISSIONS, DatabaseConfig.STREAM_FETCH_SIZE,
+                    rs -> affected.put(rs.getLong("student_quiz_id"), rs.getLong("quiz_id")), questionId);
+        }
+
+        // 按 student_quiz_id 升序分批，加锁顺序与评分一致
+        List<Long> ids = new ArrayList<>(affected.keySet());
+        int[] changed = new int[2];
+        int batches = 0;
+        for (int from = 0; from < ids.size(); from += MAX_ROWS_PER_STATEMENT) {
+            List<Long> batch = ids.subList(from, Math.min(ids.size(), from + MAX_ROWS_PER_STATEMENT));
+            int[] result = TransactionTemplate.execute(conn ->
+                    regradeBatch(conn, questionId, correctOptions, quizPoints, affected, batch));
+            changed[0] += result[0];
+            changed[1] += result[1];
+            batches++;
+        }
+        gradedAnswers.add(changed[0]);
+
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("questionId", questionId);
+        data.put("submissions", ids.size());
+        data.put("answersChanged", changed[0]);
+        data.put("submissionsAdjusted", changed[1]);
+        data.put("batches", batches);
+        return data;
+    }
+
+    /**
+     * @return [变化的作答数, 调整总分的提交数]
+     */
+    private int[] regradeBatch(Connection conn, long questionId, Set<Long> correctOptions,
+                               Map<Long, int[]> quizPoints, Map<Long, Long> quizOf,
+                               List<Long> batch) throws SQLException {
+        Object[] params = new Object[batch.size() + 1];
+        params[0] = questionId;
+        for (int i = 0; i < batch.size(); i++) {
+            params[i + 1] = batch.get(i);
+        }
+
+        // [student_quiz_id, question_id, is_correct (0/1), points_earned]
+        List<long[]> answers = new ArrayList<>();
+        Map<Long, BigDecimal> deltas = new TreeMap<>();
+        DatabaseUtil.forEachRow(conn, SqlCatalog.expandIn(SqlCatalog.REGRADE_ANSWERS_FOR_UPDATE, batch.size()), 0, rs -> {
+            long studentQuizId = rs.getLong("student_quiz_id");
+            long optionId = rs.getLong("selected_option_id");
+            int[] points = quizPoints.get(quizOf.get(studentQuizId));
+            if (rs.wasNull() || points == null) {
+                return;
+            }
+            boolean correct = correctOptions.contains(optionId);
+            int earned = correct ? points[0] : 0;
+            boolean wasCorrect = rs.getBoolean("is_correct");
+            boolean graded = !rs.wasNull();
+            BigDecimal before = rs.getBigDecimal("points_earned");
+            if (graded && wasCorrect == correct && before != null && before.compareTo(BigDecimal.valueOf(earned)) == 0) {
+                return;
+            }
+            answers.add(new long[]{studentQuizId, questionId, correct ? 1 : 0, earned});
+            BigDecimal delta = BigDecimal.valueOf(earned).subtract(before != null ? before : BigDecimal.ZERO);
+            if (delta.signum() != 0) {
+                deltas.merge(studentQuizId, delta, BigDecimal::add);
+            }
+        }, params);
+        if (answers.isEmpty()) {
+            return new int[]{0, 0};
+        }
+        writeAnswers(conn, answers);
+        if (deltas.isEmpty()) {
+            return new int[]{answers.size(), 0};
+        }
+
+        Object[] scoreParams = deltas.keySet().toArray();
+        List<GradeResult> scores = new ArrayList<>(deltas.size());
+        DatabaseUtil.forEachRow(conn, SqlCatalog.expandIn(SqlCatalog.REGRADE_SCORES_FOR_UPDATE, scoreParams.length), 0, rs -> {
+            long studentQuizId = rs.getLong("student_quiz_id");
+            BigDecimal current = rs.getBigDecimal("score");
+            BigDecimal score = (current != null ? current : BigDecimal.ZERO).add(deltas.get(studentQuizId));
+            int totalPoints = quizPoints.get(quizOf.get(studentQuizId))[1];
+            BigDecimal percentage = totalPoints > 0
+                    ? score.multiply(HUNDRED).divide(BigDecimal.valueOf(totalPoints), 2, RoundingMode.HALF_UP)
+                    : BigDecimal.ZERO;
+            scores.add(new GradeResult(studentQuizId, 1, score, percentage));
+        }, scoreParams);
+        writeScores(conn, scores);
+        return new int[]{answers.size(), scores.size()};
+    }
+
+    // ==================== 全测验评分 ====================
+
+    /**
+     * 评分测验中全部已提交、尚未评分的提交。在调用线程上加载答案键和待评分列表，
+     * 之后分块在 ForkJoinPool 上并行评分，每块单独提交；失败的块不影响其他块，
+     * 其中的提交保持未评分，下次运行时重新评分
+     *
+     * @param listener 每完成一块调用一次 (工作线程上，并发调用)，参数为当前进度
+     * @return 全部块完成后得到最终进度；测验不存在时为 null
+     * @throws IllegalStateException 该测验正在评分
+     */
+    public CompletableFuture<Map<String, Object>> gradeQuiz(
+            long quizId, Consumer<Map<String, Object>> listener) throws SQLException {
+        AnswerKey key;
+        List<Long> submissions;
+        try (Connection conn = DatabaseUtil.getConnection()) {
+            key = loadAnswerKey(conn, quizId);
+            if (key == null) {
+                return null;
+            }
+            submissions = DatabaseUtil.queryList(conn, SqlCatalog.QUIZ_UNGRADED_SUBMISSIONS,
+                    rs -> rs.getLong("student_quiz_id"), quizId);
+        }
+
+        int chunks = (submissions.size() + chunkSize - 1) / chunkSize;
+        QuizRun run = new QuizRun(quizId, submissions.size(), chunks, listener);
+        if (runs.putIfAbsent(quizId, run) != null) {
+            throw new IllegalStateException("Quiz " + quizId + " is already being graded");
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                pool.invoke(new GradeChunks(run, key, submissions));
+                return run.progress();
+            } finally {
+                runs.remove(quizId, run);
+            }
+        }, pool);
+    }
+
+    public boolean isGrading(long quizId) {
+        return runs.containsKey(quizId);
+    }
+
+    /**
+     * @return 已评分的提交数和作答数，以及正在进行的全测验评分
+     */
+    public Map<String, Object> stats() {
+        List<Map<String, Object>> running = new ArrayList<>();
+        for (QuizRun run : runs.values()) {
+            running.add(run.progress());
+        }
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("gradedSubmissions", gradedSubmissions.sum());
+        data.put("gradedAnswers", gradedAnswers.sum());
+        data.put("parallelism", pool.getParallelism());
+        data.put("chunkSize", chunkSize);
+        data.put("running", running);
+        return data;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * 二分待评分列表直到不超过一块，叶子在自己的事务中评分并提交
+     */
+    private final class GradeChunks extends RecursiveAction {
+        private final QuizRun run;
+        private final AnswerKey key;
+        private final List<Long> submissions;
+
+        GradeChunks(QuizRun run, AnswerKey key, List<Long> submissions) {
+            this.run = run;
+            this.key = key;
+            this.submissions = submissions;
+        }
+
+        @Override
+        protected void compute() {
+            if (submissions.size() > chunkSize) {
+                // 在块边界上二分，叶子恰好是完整的块
+                int chunks = (submissions.size() + chunkSize - 1) / chunkSize;
+                int mid = (chunks / 2) * chunkSize;
+                invokeAll(new GradeChunks(run, key, submissions.subList(0, mid)),
+                        new GradeChunks(run, key, submissions.subList(mid, submissions.size())));
+                return;
+            }
+            try {
+                TransactionTemplate.execute(conn -> grade(conn, key, submissions));
+                run.graded.addAndGet(submissions.size());
+            } catch (SQLException | RuntimeException e) {
+                run.failed.addAndGet(submissions.size());
+                log.warn("Grading chunk of {} submissions for quiz {} failed: {}",
+                        submissions.size(), run.quizId, e.getMessage());
+            }
+            run.chunksDone.incrementAndGet();
+            if (run.listener != null) {
+                try {
+                    run.listener.accept(run.progress());
+                } catch (RuntimeException e) {
+                    // 进度接收方 (如已断开的客户端) 不影响评分
+                    log.debug("Grading progress listener failed: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    // ==================== 内部方法 ====================
+
+    private static void writeAnswers(Connection conn, List<long[]> rows) throws SQLException {
+        for (int from = 0; from < rows.size(); from += MAX_ROWS_PER_STATEMENT) {
+            List<long[]> chunk = rows.subList(from, Math.min(rows.size(), from + MAX_ROWS_PER_STATEMENT));
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    SqlCatalog.unionRows(SqlCatalog.GRADE_ANSWERS_UPDATE, chunk.size()))) {
+                int index = 1;
+                for (long[] row : chunk) {
+                    pstmt.setLong(index++, row[0]);
+                    pstmt.setLong(index++, row[1]);
+                    pstmt.setBoolean(index++, row[2] == 1);
+                    pstmt.setLong(index++, row[3]);
+                }
+                pstmt.executeUpdate();
+            }
+        }
+    }
+
+    private static void writeScores(Connection conn, List<GradeResult> results) throws SQLException {
+        for (int from = 0; from < results.size(); from += MAX_ROWS_PER_STATEMENT) {
+            List<GradeResult> chunk = results.subList(from, Math.min(results.size(), from + MAX_ROWS_PER_STATEMENT));
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    SqlCatalog.unionRows(SqlCatalog.GRADE_SCORES_UPDATE, chunk.size()))) {
+                int index = 1;
+                for (GradeResult result : chunk) {
+                    pstmt.setLong(index++, result.studentQuizId);
+                    pstmt.setBigDecimal(index++, result.score);
+                    pstmt.setBigDecimal(index++, result.percentage);
+                }
+                pstmt.executeUpdate();
+            }
+        }
+    }
+}
@@ -0,0 +1,336 @@
+package com.zekai.api.service;
+
+import com.zekai.api.sql.SqlCatalog;
+import com.zekai.config.SchemaMigrationRunner;
+import com.zekai.util.ConcurrentHistogram;
+import com.zekai.util.DatabaseUtil;
+import com.zekai.util.TransactionTemplate;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ========================================
+ * SUBMISSION GRADING QUEUE - 提交后异步评分
+ * ========================================
+ *
+ * 学生提交测验时把提交放入有界队列，由固定数量的工作线程在请求线程之外评分客观题，
+ * 提交接口的延迟不受评分影响，成绩在几秒后就绪。客户端通过状态接口轮询。
+ *
+ * - 背压：队列满时不阻塞提交请求，该提交标记为 deferred，保持未评分，
+ *   由教师的单份评分或全测验评分 (grade-all) 处理
+ * - 工作线程一次取出队列中的多份提交，按测验分组，每组一个事务批量评分；
+ *   整组失败时逐份重试
+ * - 评分状态只保存在本实例内存中 (完成后保留 status-retention-minutes)；
+ *   重启时队列中尚未评分的提交同样保持未评分，由 grade-all 补上
+ *
+ * @author Exam System Team
+ */
+@Service
+@DependsOn(SchemaMigrationRunner.BEAN_NAME)
+public class SubmissionGradingQueue {
+
+    private static final Logger log = LoggerFactory.getLogger(SubmissionGradingQueue.class);
+
+    /**
+     * 一份提交的评分状态
+     */
+    public enum State {
+        QUEUED, GRADING, GRADED, FAILED, DEFERRED
+    }
+
+    /**
+     * 一份提交的评分进度
+     */
+    private static final class Job {
+        final long studentQuizId;
+        final long enqueuedAt = System.nanoTime();
+        volatile State state;
+        volatile long finishedAt;
+        volatile String error;
+
+        Job(long studentQuizId, State state) {
+            this.studentQuizId = studentQuizId;
+            this.state = state;
+            if (state == State.DEFERRED) {
+                finishedAt = System.currentTimeMillis();
+            }
+        }
+
+        boolean pending() {
+            return state == State.QUEUED || state == State.GRADING;
+        }
+
+        void finish(State result, String message) {
+            error = message;
+            finishedAt = System.currentTimeMillis();
+            state = result;
+        }
+    }
+
+    private final GradingService gradingService;
+    private final boolean enabled;
+    private final int maxBatch;
+    private final long retentionMillis;
+    private final BlockingQueue<Job> queue;
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running = true;
+
+    /** studentQuizId → 评分状态 */
+    private final Map<Long, Job> jobs = new ConcurrentHashMap<>();
+
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder deferred = new LongAdder();
+    private final LongAdder graded = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final ConcurrentHistogram batchSizes = new ConcurrentHistogram();
+    /** 入队到评分完成 (微秒) */
+    private final ConcurrentHistogram readyLatency = new ConcurrentHistogram();
+
+    /**
+     * @param enabled          是否在提交时入队评分
+     * @param workerCount      评分线程数 (每个线程评分时占用一个连接)
+     * @param capacity         队列容量，满时提交不入队 (deferred)
+     * @param maxBatch         一个线程一次取出的最大提交数
+     * @param retentionMinutes 评分完成后状态保留多久
+     */
+    @Autowired
+    public SubmissionGradingQueue(
+            GradingService gradingService,
+            @Value("${exam.grading.on-submit.enabled:false}") boolean enabled,
+            @Value("${exam.grading.on-submit.workers:2}") int workerCount,
+            @Value("${exam.grading.on-submit.queue-capacity:1000}") int capacity,
+            @Value("${exam.grading.on-submit.max-batch:50}") int maxBatch,
+            @Value("${exam.grading.on-submit.status-retention-minutes:30}") long retentionMinutes) {
+        this.gradingService = gradingService;
+        this.enabled = enabled;
+        this.maxBatch = Math.max(1, Math.min(maxBatch, GradingService.MAX_ROWS_PER_STATEMENT));
+        this.retentionMillis = TimeUnit.MINUTES.toMillis(retentionMinutes);
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        if (enabled) {
+            for (int i = 0; i < workerCount; i++) {
+                Thread worker = new Thread(this::run, "submission-grading-" + i);
+                worker.setDaemon(true);
+                worker.start();
+                workers.add(worker);
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 提交测验后调用，不阻塞
+     *
+     * @return QUEUED (已在队列中或正在评分时返回当前状态)；队列满时 DEFERRED
+     */
+    public State enqueue(long studentQuizId) {
+        Job job = jobs.compute(studentQuizId, (id, current) -> {
+            if (current != null && current.pending()) {
+                return current;
+            }
+            Job next = new Job(id, State.QUEUED);
+            if (!running || !queue.offer(next)) {
+                return new Job(id, State.DEFERRED);
+            }
+            return next;
+        });
+        if (job.state == State.DEFERRED) {
+            deferred.increment();
+        } else {
+            enqueued.increment();
+        }
+        return job.state;
+    }
+
+    /**
+     * @return 本实例已知的评分状态；未入队或状态已过期时为 null
+     */
+    public Map<String, Object> status(long studentQuizId) {
+        Job job = jobs.get(studentQuizId);
+        if (job == null) {
+            return null;
+        }
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("studentQuizId", studentQuizId);
+        data.put("state", job.state.name().toLowerCase());
+        data.put("graded", job.state == State.GRADED);
+        if (job.error != null) {
+            data.put("error", job.error);
+        }
+        return data;
+    }
+
+    /**
+     * 移除完成已久的状态
+     */
+    @Scheduled(fixedDelayString = "${exam.grading.on-submit.evict-interval-ms:60000}")
+    public void evictFinished() {
+        long cutoff = System.currentTimeMillis() - retentionMillis;
+        jobs.values().removeIf(job -> !job.pending() && job.finishedAt < cutoff);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("enabled", enabled);
+        data.put("workers", workers.size());
+        data.put("queued", queue.size());
+        data.put("capacity", queue.size() + queue.remainingCapacity());
+        data.put("enqueued", enqueued.sum());
+        data.put("deferred", deferred.sum());
+        data.put("graded", graded.sum());
+        data.put("failed", failed.sum());
+        data.put("batches", batches.sum());
+        data.put("batchSize", batchSizes.snapshot(1.0));
+        data.put("readyLatency", readyLatency.snapshot(1000.0));
+        data.put("tracked", jobs.size());
+        return data;
+    }
+
+    /**
+     * 停止工作线程；正在评分的一批完成后退出，仍在队列中的提交保持未评分
+     */
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        List<Job> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        for (Job job : rest) {
+            job.finish(State.DEFERRED, null);
+        }
+    }
+
+    // ==================== 工作线程 ====================
+
+    private void run() {
+        List<Job> batch = new ArrayList<>();
+        while (running) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            queue.drainTo(batch, maxBatch - 1);
+            gradeBatch(batch);
+            batch.clear();
+        }
+    }
+
+    private void gradeBatch(List<Job> batch) {
+        batches.increment();
+        batchSizes.record(batch.size());
+        for (Job job : batch) {
+            job.state = State.GRADING;
+        }
+
+        // 一次查询整批提交所属的测验，按测验分组，每个测验加载一次答案键
+        Map<Long, List<Job>> byQuiz = new LinkedHashMap<>();
+        try (Connection conn = DatabaseUtil.getConnection()) {
+            Set<Long> studentQuizIds = new LinkedHashSet<>();
+            for (Job job : batch) {
+                studentQuizIds.add(job.studentQuizId);
+            }
+            Map<Long, Long> quizIds = new HashMap<>();
+            DatabaseUtil.forEachRow(conn, SqlCatalog.expandIn(SqlCatalog.STUDENT_QUIZ_QUIZ_IDS, studentQuizIds.size()), 0,
+                    rs -> quizIds.put(rs.getLong("student_quiz_id"), rs.getLong("quiz_id")),
+                    studentQuizIds.toArray());
+            for (Job job : batch) {
+                Long quizId = quizIds.get(job.studentQuizId);
+                if (quizId == null) {
+                    finish(job, State.FAILED, "测验提交不存在");
+                } else {
+                    byQuiz.computeIfAbsent(quizId, k -> new ArrayList<>()).add(job);
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            for (Job job : batch) {
+                if (job.pending()) {
+                    finish(job, State.FAILED, e.getMessage());
+                }
+            }
+            log.warn("Grading {} submissions failed: {}", batch.size(), e.getMessage());
+            return;
+        }
+
+        for (Map.Entry<Long, List<Job>> group : byQuiz.entrySet()) {
+            List<Job> jobsOfQuiz = group.getValue();
+            List<Long> ids = new ArrayList<>(jobsOfQuiz.size());
+            for (Job job : jobsOfQuiz) {
+                ids.add(job.studentQuizId);
+            }
+            try {
+                boolean found = TransactionTemplate.execute(conn -> {
+                    GradingService.AnswerKey key = gradingService.loadAnswerKey(conn, group.getKey());
+                    if (key == null) {
+                        return false;
+                    }
+                    gradingService.grade(conn, key, ids);
+                    return true;
+                });
+                for (Job job : jobsOfQuiz) {
+                    finish(job, found ? State.GRADED : State.FAILED, found ? null : "测验不存在");
+                }
+            } catch (SQLException | RuntimeException e) {
+                if (jobsOfQuiz.size() > 1) {
+                    log.warn("Grading {} submissions of quiz {} failed, retrying one by one: {}",
+                            jobsOfQuiz.size(), group.getKey(), e.getMessage());
+                }
+                for (Job job : jobsOfQuiz) {
+                    gradeOne(job);
+                }
+            }
+        }
+    }
+
+    private void gradeOne(Job job) {
+        try {
+            GradingService.GradeResult result = gradingService.gradeSubmission(job.studentQuizId);
+            finish(job, result != null ? State.GRADED : State.FAILED, result != null ? null : "测验提交不存在");
+        } catch (SQLException | RuntimeException e) {
+            finish(job, State.FAILED, e.getMessage());
+        }
+    }
+
+    private void finish(Job job, State result, String message) {
+        job.finish(result, message);
+        if (result == State.GRADED) {
+            graded.increment();
+            readyLatency.record((System.nanoTime() - job.enqueuedAt) / 1000);
+        } else {
+            failed.increment();
+        }
+    }
+}
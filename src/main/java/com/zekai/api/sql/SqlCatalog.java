@@ -0,0 +1,643 @@
+package com.zekai.api.sql;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * ========================================
+ * SQL CATALOG - 命名SQL语句目录
+ * ========================================
+ *
+ * 所有Controller使用的SQL集中在此定义，每条语句有唯一名称。
+ * 启动时由 SqlCatalogPreparer 在连接池的连接上逐条预编译：
+ * - 语法或表/列错误在启动时就暴露，而不是在考试当天
+ * - 配合驱动的服务端预编译缓存 (useServerPrepStmts + cachePrepStmts)，
+ *   请求中的 prepareStatement 直接命中缓存，省去解析和执行计划开销
+ *
+ * 动态拼接的查询 (可选过滤条件、排序字段) 的每一种组合都预先登记，
+ * 通过对应的方法按条件取出。
+ *
+ * @author Exam System Team
+ */
+public final class SqlCatalog {
+
+    private static final Map<String, String> STATEMENTS = new LinkedHashMap<>();
+
+    private SqlCatalog() {
+    }
+
+    // ==================== 认证 Auth ====================
+
+    public static final String AUTH_LOGIN_STUDENT = register("AUTH_LOGIN_STUDENT",
+            "SELECT u.user_id, u.username, u.role, u.full_name, s.student_id " +
+            "FROM users u " +
+            "LEFT JOIN students s ON u.user_id = s.user_id " +
+            "WHERE u.username = ? AND u.password_hash = SHA2(?, 256) AND u.is_active = TRUE");
+
+    public static final String AUTH_LOGIN_TEACHER = register("AUTH_LOGIN_TEACHER",
+            "SELECT u.user_id, u.username, u.role, u.full_name, t.teacher_id " +
+            "FROM users u " +
+            "LEFT JOIN teachers t ON u.user_id = t.user_id " +
+            "WHERE u.username = ? AND u.password_hash = SHA2(?, 256) AND u.is_active = TRUE");
+
+    public static final String AUTH_LOGIN_ADMIN = register("AUTH_LOGIN_ADMIN",
+            "SELECT u.user_id, u.username, u.role, u.full_name, u.user_id as admin_id " +
+            "FROM users u " +
+            "WHERE u.username = ? AND u.password_hash = SHA2(?, 256) AND u.is_active = TRUE");
+
+    // ==================== 用户与账户 Users ====================
+
+    public static final String USER_INSERT_STUDENT = register("USER_INSERT_STUDENT",
+            "INSERT INTO users (username, password_hash, email, full_name, role) " +
+            "VALUES (?, SHA2(?, 256), ?, ?, 'student')");
+
+    public static final String USER_INSERT_TEACHER = register("USER_INSERT_TEACHER",
+            "INSERT INTO users (username, password_hash, email, full_name, role) " +
+            "VALUES (?, SHA2(?, 256), ?, ?, 'teacher')");
+
+    public static final String STUDENT_INSERT = register("STUDENT_INSERT",
+            "INSERT INTO students (user_id, student_number, grade, major, enrollment_date) " +
+            "VALUES (?, ?, ?, ?, CURRENT_DATE)");
+
+    public static final String TEACHER_INSERT = register("TEACHER_INSERT",
+            "INSERT INTO teachers (user_id, department, hire_date, phone, office) " +
+            "VALUES (?, ?, CURRENT_DATE, ?, ?)");
+
+    public static final String USER_COUNT_BY_ROLE = register("USER_COUNT_BY_ROLE",
+            "SELECT role, COUNT(*) as count FROM users GROUP BY role");
+
+    public static final String USER_SET_ACTIVE = register("USER_SET_ACTIVE",
+            "UPDATE users SET is_active = ? WHERE user_id = ?");
+
+    private static final String USER_LIST_BASE =
+            "SELECT user_id, username, role, full_name, email, is_active, created_at " +
+            "FROM users WHERE 1=1";
+
+    private static final String[] USER_LIST = {
+            register("USER_LIST", USER_LIST_BASE + " ORDER BY created_at DESC"),
+            register("USER_LIST[role]", USER_LIST_BASE + " AND role = ? ORDER BY created_at DESC"),
+            register("USER_LIST[active]", USER_LIST_BASE + " AND is_active = ? ORDER BY created_at DESC"),
+            register("USER_LIST[role,active]", USER_LIST_BASE + " AND role = ? AND is_active = ? ORDER BY created_at DESC")
+    };
+
+    // ==================== 课程、教室与选课 Courses & Enrollments ====================
+
+    public static final String COURSE_INSERT = register("COURSE_INSERT",
+            "INSERT INTO courses (course_code, course_name, description, credit_hours, created_by) " +
+            "VALUES (?, ?, ?, ?, ?)");
+
+    public static final String CLASSROOM_INSERT = register("CLASSROOM_INSERT",
+            "INSERT INTO classrooms (course_id, teacher_id, class_name, semester, year, max_students) " +
+            "VALUES (?, ?, ?, ?, ?, ?)");
+
+    public static final String ENROLLMENT_INSERT = register("ENROLLMENT_INSERT",
+            "INSERT INTO enrollments (student_id, classroom_id, status) " +
+            "VALUES (?, ?, 'active')");
+
+    public static final String ENROLLMENT_DROP = register("ENROLLMENT_DROP",
+            "UPDATE enrollments SET status = 'dropped' " +
+            "WHERE student_id = ? AND classroom_id = ?");
+
+    public static final String ENROLLMENT_ACTIVE = register("ENROLLMENT_ACTIVE",
+            "SELECT 1 FROM enrollments " +
+            "WHERE student_id = ? AND classroom_id = ? AND status = 'active'");
+
+    public static final String CLASSROOM_ACTIVE_STUDENT_IDS = register("CLASSROOM_ACTIVE_STUDENT_IDS",
+            "SELECT student_id FROM enrollments WHERE classroom_id = ? AND status = 'active'");
+
+    public static final String CLASSROOM_ACTIVE_STUDENTS = register("CLASSROOM_ACTIVE_STUDENTS",
+            "SELECT s.student_id, u.full_name, s.student_number, s.grade, s.major " +
+            "FROM enrollments e " +
+            "JOIN students s ON e.student_id = s.student_id " +
+            "JOIN users u ON s.user_id = u.user_id " +
+            "WHERE e.classroom_id = ? AND e.status = 'active'");
+
+    // ==================== 科目与题库 Subjects & Questions ====================
+
+    public static final String SUBJECT_INSERT = register("SUBJECT_INSERT",
+            "INSERT INTO subjects (subject_name, description, level, parent_subject_id) " +
+            "VALUES (?, ?, ?, ?)");
+
+    public static final String SUBJECT_HIERARCHY = register("SUBJECT_HIERARCHY",
+            "SELECT s.subject_id, s.subject_name, s.level, s.parent_subject_id, " +
+            "COUNT(q.question_id) as question_count " +
+            "FROM subjects s " +
+            "LEFT JOIN questions q ON s.subject_id = q.subject_id AND q.is_deleted = FALSE " +
+            "GROUP BY s.subject_id, s.subject_name, s.level, s.parent_subject_id " +
+            "ORDER BY s.level, s.subject_id");
+
+    public static final String QUESTION_INSERT = register("QUESTION_INSERT",
+            "INSERT INTO questions (subject_id, question_text, question_type, difficulty_level, created_by) " +
+            "VALUES (?, ?, ?, ?, ?)");
+
+    public static final String QUESTION_OPTION_INSERT = register("QUESTION_OPTION_INSERT",
+            "INSERT INTO question_options (question_id, option_text, is_correct, option_order) " +
+            "VALUES (?, ?, ?, ?)");
+
+    public static final String QUESTION_SOFT_DELETE = register("QUESTION_SOFT_DELETE",
+            "UPDATE questions SET is_deleted = TRUE WHERE question_id = ?");
+
+    public static final String QUESTION_RESTORE = register("QUESTION_RESTORE",
+            "UPDATE questions SET is_deleted = FALSE WHERE question_id = ?");
+
+    public static final String QUESTION_ANALYSIS = register("QUESTION_ANALYSIS",
+            "SELECT q.question_id, q.question_text, q.difficulty_level, " +
+            "q.times_used, q.total_attempts, q.correct_count, " +
+            "CASE WHEN q.total_attempts > 0 " +
+            "THEN ROUND(q.correct_count * 100.0 / q.total_attempts, 2) " +
+            "ELSE 0 END as correct_rate " +
+            "FROM questions q WHERE q.question_id = ?");
+
+    public static final String QUESTION_UPDATE_STATISTICS = register("QUESTION_UPDATE_STATISTICS",
+            "UPDATE questions q " +
+            "SET times_used = (SELECT COUNT(DISTINCT sa.student_quiz_id) FROM student_answers sa WHERE sa.question_id = q.question_id), " +
+            "    total_attempts = (SELECT COUNT(*) FROM student_answers sa WHERE sa.question_id = q.question_id), " +
+            "    correct_count = (SELECT COUNT(*) FROM student_answers sa WHERE sa.question_id = q.question_id AND sa.is_correct = TRUE) " +
+            "WHERE q.question_id IN (SELECT DISTINCT question_id FROM student_answers)");
+
+    public static final String QUESTION_DIFFICULTY_RATING = register("QUESTION_DIFFICULTY_RATING",
+            "SELECT q.question_id, q.question_text, q.difficulty_level, " +
+            "q.total_attempts, q.correct_count, " +
+            "CASE WHEN q.total_attempts > 0 " +
+            "THEN ROUND(q.correct_count * 100.0 / q.total_attempts, 2) " +
+            "ELSE 0 END as correct_rate, " +
+            "CASE " +
+            "  WHEN q.total_attempts = 0 THEN 'No Data' " +
+            "  WHEN ROUND(q.correct_count * 100.0 / q.total_attempts, 0) >= 80 THEN 'Too Easy' " +
+            "  WHEN ROUND(q.correct_count * 100.0 / q.total_attempts, 0) >= 60 THEN 'Appropriate' " +
+            "  WHEN ROUND(q.correct_count * 100.0 / q.total_attempts, 0) >= 40 THEN 'Slightly Hard' " +
+            "  ELSE 'Too Hard' " +
+            "END as actual_difficulty " +
+            "FROM questions q " +
+            "WHERE q.times_used >= ? AND q.is_deleted = FALSE");
+
+    private static final String QUESTION_STATISTICS_SELECT =
+            "SELECT COUNT(*) as total, " +
+            "question_type, difficulty_level, s.subject_name " +
+            "FROM questions q " +
+            "JOIN subjects s ON q.subject_id = s.subject_id " +
+            "WHERE q.is_deleted = FALSE";
+    private static final String QUESTION_STATISTICS_GROUP =
+            " GROUP BY q.question_type, q.difficulty_level, s.subject_name";
+
+    private static final String[] QUESTION_STATISTICS = {
+            register("QUESTION_STATISTICS",
+                    QUESTION_STATISTICS_SELECT + QUESTION_STATISTICS_GROUP),
+            register("QUESTION_STATISTICS[subject]",
+                    QUESTION_STATISTICS_SELECT + " AND q.subject_id = ?" + QUESTION_STATISTICS_GROUP),
+            register("QUESTION_STATISTICS[difficulty]",
+                    QUESTION_STATISTICS_SELECT + " AND q.difficulty_level = ?" + QUESTION_STATISTICS_GROUP),
+            register("QUESTION_STATISTICS[subject,difficulty]",
+                    QUESTION_STATISTICS_SELECT + " AND q.subject_id = ? AND q.difficulty_level = ?" + QUESTION_STATISTICS_GROUP)
+    };
+
+    // 随机选题只取候选ID (走 subject 覆盖索引)，在 Java 中抽样后再按ID取题，
+    // 避免 ORDER BY RAND() 对整个候选集排序
+    private static final String QUESTION_RANDOM_BASE =
+            "SELECT question_id FROM questions WHERE subject_id = ? AND is_deleted = FALSE";
+
+    private static final String[] QUESTION_RANDOM = {
+            register("QUESTION_RANDOM_IDS",
+                    QUESTION_RANDOM_BASE),
+            register("QUESTION_RANDOM_IDS[type]",
+                    QUESTION_RANDOM_BASE + " AND question_type = ?"),
+            register("QUESTION_RANDOM_IDS[difficulty]",
+                    QUESTION_RANDOM_BASE + " AND difficulty_level = ?"),
+            register("QUESTION_RANDOM_IDS[type,difficulty]",
+                    QUESTION_RANDOM_BASE + " AND question_type = ? AND difficulty_level = ?")
+    };
+
+    /** 按ID批量取题，IN (?) 由 {@link #expandIn} 展开 */
+    public static final String QUESTION_BY_IDS = register("QUESTION_BY_IDS",
+            "SELECT question_id, question_text, question_type, difficulty_level " +
+            "FROM questions WHERE question_id IN (?)");
+
+    private static final String QUESTION_RANKING_BASE =
+            "SELECT q.question_id, q.question_text, q.times_used, q.total_attempts, " +
+            "CASE WHEN q.total_attempts > 0 " +
+            "THEN ROUND(q.correct_count * 100.0 / q.total_attempts, 2) " +
+            "ELSE 0 END as correct_rate " +
+            "FROM questions q " +
+            "WHERE q.times_used > 0 AND q.is_deleted = FALSE " +
+            "ORDER BY ";
+
+    private static final Map<String, String> QUESTION_RANKING = Map.of(
+            "times_used", register("QUESTION_RANKING[times_used]",
+                    QUESTION_RANKING_BASE + "times_used DESC LIMIT ?"),
+            "total_attempts", register("QUESTION_RANKING[total_attempts]",
+                    QUESTION_RANKING_BASE + "total_attempts DESC LIMIT ?"),
+            "correct_rate", register("QUESTION_RANKING[correct_rate]",
+                    QUESTION_RANKING_BASE + "correct_rate DESC LIMIT ?")
+    );
+
+    // ==================== 测验 Quizzes ====================
+
+    public static final String QUIZ_INSERT = register("QUIZ_INSERT",
+            "INSERT INTO quizzes (classroom_id, title, description, created_by, " +
+            "start_time, end_time, duration_minutes, total_points, passing_score) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)");
+
+    public static final String QUIZ_QUESTION_INSERT = register("QUIZ_QUESTION_INSERT",
+            "INSERT INTO quiz_questions (quiz_id, question_id, question_order, points) " +
+            "VALUES (?, ?, ?, ?)");
+
+    public static final String QUIZ_SETTINGS_INSERT = register("QUIZ_SETTINGS_INSERT",
+            "INSERT INTO quiz_settings (quiz_id, shuffle_questions, shuffle_options, " +
+            "show_results_immediately, allow_review) VALUES (?, ?, ?, ?, ?)");
+
+    public static final String QUIZ_DETAILS = register("QUIZ_DETAILS",
+            "SELECT q.*, COUNT(qq.question_id) as question_count " +
+            "FROM quizzes q " +
+            "LEFT JOIN quiz_questions qq ON q.quiz_id = qq.quiz_id " +
+            "WHERE q.quiz_id = ? GROUP BY q.quiz_id");
+
+    /** 整张试卷一次取出：每个选项一行，无选项的题目一行 (选项列为 NULL) */
+    public static final String QUIZ_PAPER = register("QUIZ_PAPER",
+            "SELECT qq.question_id, qq.question_order, qq.points, " +
+            "q.question_text, q.question_type, " +
+            "qo.option_id, qo.option_text, qo.option_order " +
+            "FROM quiz_questions qq " +
+            "JOIN questions q ON qq.question_id = q.question_id " +
+            "LEFT JOIN question_options qo ON qo.question_id = qq.question_id " +
+            "WHERE qq.quiz_id = ? ORDER BY qq.question_order, qo.option_order");
+
+    /** 开始测验所需的时间窗口和设置 (无设置行时设置列为 NULL) */
+    public static final String QUIZ_SESSION = register("QUIZ_SESSION",
+            "SELECT q.quiz_id, q.classroom_id, q.title, q.start_time, q.end_time, q.duration_minutes, " +
+            "s.shuffle_questions, s.shuffle_options, s.show_results_immediately, s.allow_review " +
+            "FROM quizzes q " +
+            "LEFT JOIN quiz_settings s ON s.quiz_id = q.quiz_id " +
+            "WHERE q.quiz_id = ?");
+
+    /** 数据库时钟 (与 start_time/end_time 经同一时区换算)，用于校准测验时间窗口 */
+    public static final String DB_NOW = register("DB_NOW",
+            "SELECT NOW() AS db_now");
+
+    /** 开始时间在 [当前时间 - 回看秒数, 当前时间 + 提前秒数] 内且尚未结束的测验 */
+    public static final String QUIZ_UPCOMING = register("QUIZ_UPCOMING",
+            "SELECT quiz_id, title, start_time, end_time " +
+            "FROM quizzes " +
+            "WHERE start_time BETWEEN NOW() - INTERVAL ? SECOND AND NOW() + INTERVAL ? SECOND " +
+            "AND end_time > NOW() " +
+            "ORDER BY start_time");
+
+    public static final String STUDENT_AVAILABLE_QUIZZES = register("STUDENT_AVAILABLE_QUIZZES",
+            "SELECT q.quiz_id, q.title, q.duration_minutes, q.total_points, " +
+            "q.start_time, q.end_time, c.course_name, sq.status as quiz_status " +
+            "FROM enrollments e " +
+            "JOIN classrooms cl ON e.classroom_id = cl.classroom_id " +
+            "JOIN courses c ON cl.course_id = c.course_id " +
+            "JOIN quizzes q ON cl.classroom_id = q.classroom_id " +
+            "LEFT JOIN student_quizzes sq ON q.quiz_id = sq.quiz_id AND sq.student_id = e.student_id " +
+            "WHERE e.student_id = ? AND e.status = 'active'");
+
+    public static final String TEACHER_QUIZZES = register("TEACHER_QUIZZES",
+            "SELECT q.quiz_id, q.title, c.course_name, " +
+            "COUNT(DISTINCT sq.student_quiz_id) as submissions " +
+            "FROM quizzes q " +
+            "JOIN classrooms cl ON q.classroom_id = cl.classroom_id " +
+            "JOIN courses c ON cl.course_id = c.course_id " +
+            "LEFT JOIN student_quizzes sq ON q.quiz_id = sq.quiz_id " +
+            "WHERE q.created_by = ? " +
+            "GROUP BY q.quiz_id, q.title, c.course_name");
+
+    // ==================== 作答 Student Quizzes & Answers ====================
+
+    public static final String STUDENT_QUIZ_START = register("STUDENT_QUIZ_START",
+            "INSERT INTO student_quizzes (quiz_id, student_id, start_time, status) " +
+            "VALUES (?, ?, NOW(), 'in_progress')");
+
+    public static final String STUDENT_QUIZ_SUBMIT = register("STUDENT_QUIZ_SUBMIT",
+            "UPDATE student_quizzes SET submit_time = NOW(), status = 'submitted' " +
+            "WHERE student_quiz_id = ?");
+
+    public static final String STUDENT_QUIZ_QUIZ_ID = register("STUDENT_QUIZ_QUIZ_ID",
+            "SELECT quiz_id FROM student_quizzes WHERE student_quiz_id = ?");
+
+    /** 一批提交所属的测验；{@link #expandIn} 展开为批大小 */
+    public static final String STUDENT_QUIZ_QUIZ_IDS = register("STUDENT_QUIZ_QUIZ_IDS",
+            "SELECT student_quiz_id, quiz_id FROM student_quizzes WHERE student_quiz_id IN (?)");
+
+    /** 评分状态 (启用评分任务时同时返回任务状态) */
+    public static final String STUDENT_QUIZ_GRADING_STATUS = register("STUDENT_QUIZ_GRADING_STATUS",
+            "SELECT sq.status, sq.graded, gj.status AS job_status FROM student_quizzes sq " +
+            "LEFT JOIN grading_jobs gj ON gj.student_quiz_id = sq.student_quiz_id " +
+            "WHERE sq.student_quiz_id = ?");
+
+    private static final String STUDENT_ANSWER_ROW =
+            "INSERT INTO student_answers (student_quiz_id, question_id, selected_option_id, answer_text) " +
+            "VALUES (?, ?, ?, ?)";
+    private static final String STUDENT_ANSWER_ON_DUPLICATE =
+            " ON DUPLICATE KEY UPDATE selected_option_id = VALUES(selected_option_id), " +
+            "answer_text = VALUES(answer_text)";
+
+    /** 保存答案 (单行)；{@link #answerUpsert} 展开为 n 行的多行 upsert */
+    public static final String STUDENT_ANSWER_UPSERT = register("STUDENT_ANSWER_UPSERT",
+            STUDENT_ANSWER_ROW + STUDENT_ANSWER_ON_DUPLICATE);
+
+    public static final String STUDENT_ANSWER_DETAILS = register("STUDENT_ANSWER_DETAILS",
+            "SELECT q.question_text, qo.option_text, sa.is_correct, " +
+            "sa.points_earned, qq.points " +
+            "FROM student_answers sa " +
+            "JOIN questions q ON sa.question_id = q.question_id " +
+            "LEFT JOIN question_options qo ON sa.selected_option_id = qo.option_id " +
+            "JOIN quiz_questions qq ON sa.question_id = qq.question_id " +
+            "WHERE sa.student_quiz_id = ? AND qq.quiz_id = " +
+            "(SELECT quiz_id FROM student_quizzes WHERE student_quiz_id = ?)");
+
+    // ==================== 评分与成绩 Grading & Grades ====================
+
+    /** 答案键：每道题的分值与正确选项 (没有正确选项的题目 option_id 为 NULL) */
+    public static final String QUIZ_ANSWER_KEY = register("QUIZ_ANSWER_KEY",
+            "SELECT q.total_points, qq.question_id, qq.points, qo.option_id " +
+            "FROM quizzes q " +
+            "JOIN quiz_questions qq ON qq.quiz_id = q.quiz_id " +
+            "LEFT JOIN question_options qo ON qo.question_id = qq.question_id AND qo.is_correct = TRUE " +
+            "WHERE q.quiz_id = ?");
+
+    /** 测验中已提交、尚未评分的提交 (全测验批量评分；中断后重跑只取未评分的) */
+    public static final String QUIZ_UNGRADED_SUBMISSIONS = register("QUIZ_UNGRADED_SUBMISSIONS",
+            "SELECT student_quiz_id FROM student_quizzes " +
+            "WHERE quiz_id = ? AND graded = FALSE AND status = 'submitted' " +
+            "ORDER BY student_quiz_id");
+
+    /** 一批提交的全部作答；{@link #expandIn} 展开为批大小 */
+    public static final String GRADE_SUBMISSION_ANSWERS = register("GRADE_SUBMISSION_ANSWERS",
+            "SELECT student_quiz_id, question_id, selected_option_id, points_earned " +
+            "FROM student_answers WHERE student_quiz_id IN (?)");
+
+    /** 写回逐题评分 (单行)；{@link #unionRows} 展开为 n 行的批量更新 */
+    public static final String GRADE_ANSWERS_UPDATE = register("GRADE_ANSWERS_UPDATE",
+            "UPDATE student_answers sa " +
+            "JOIN (SELECT ? AS student_quiz_id, ? AS question_id, ? AS is_correct, ? AS points_earned) g " +
+            "ON sa.student_quiz_id = g.student_quiz_id AND sa.question_id = g.question_id " +
+            "SET sa.is_correct = g.is_correct, sa.points_earned = g.points_earned");
+
+    /** 写回总分 (单行)；{@link #unionRows} 展开为 n 行的批量更新 */
+    public static final String GRADE_SCORES_UPDATE = register("GRADE_SCORES_UPDATE",
+            "UPDATE student_quizzes sq " +
+            "JOIN (SELECT ? AS student_quiz_id, ? AS score, ? AS percentage) g " +
+            "ON sq.student_quiz_id = g.student_quiz_id " +
+            "SET sq.score = g.score, sq.percentage = g.percentage, sq.graded = TRUE, sq.status = 'completed'");
+
+    // ==================== 增量重新评分 Regrade ====================
+
+    public static final String QUESTION_OPTION_IDS = register("QUESTION_OPTION_IDS",
+            "SELECT option_id, is_correct FROM question_options WHERE question_id = ?");
+
+    /** 修正答案键：{@link #expandIn} 展开为正确选项数 */
+    public static final String QUESTION_OPTIONS_SET_CORRECT = register("QUESTION_OPTIONS_SET_CORRECT",
+            "UPDATE question_options SET is_correct = (option_id IN (?)) WHERE question_id = ?");
+
+    /** 包含该题目的测验：题目分值与测验总分 (total_points 未设置时按各题分值之和) */
+    public static final String QUESTION_QUIZ_POINTS = register("QUESTION_QUIZ_POINTS",
+            "SELECT qq.quiz_id, qq.points, q.total_points, " +
+            "(SELECT SUM(t.points) FROM quiz_questions t WHERE t.quiz_id = qq.quiz_id) AS sum_points " +
+            "FROM quiz_questions qq JOIN quizzes q ON q.quiz_id = qq.quiz_id " +
+            "WHERE qq.question_id = ?");
+
+    /** 选择了该题目选项、已评分的提交 (idx_sa_question_correct 驱动) */
+    public static final String REGRADE_AFFECTED_SUBMISSIONS = register("REGRADE_AFFECTED_SUBMISSIONS",
+            "SELECT sa.student_quiz_id, sq.quiz_id FROM student_answers sa " +
+            "JOIN student_quizzes sq ON sq.student_quiz_id = sa.student_quiz_id " +
+            "WHERE sa.question_id = ? AND sa.selected_option_id IS NOT NULL AND sq.graded = TRUE");
+
+    /** 锁定一批提交中该题目的作答；{@link #expandIn} 展开为批大小 */
+    public static final String REGRADE_ANSWERS_FOR_UPDATE = register("REGRADE_ANSWERS_FOR_UPDATE",
+            "SELECT student_quiz_id, question_id, selected_option_id, is_correct, points_earned " +
+            "FROM student_answers WHERE question_id = ? AND student_quiz_id IN (?) FOR UPDATE");
+
+    /** 锁定一批提交的总分；{@link #expandIn} 展开为批大小 */
+    public static final String REGRADE_SCORES_FOR_UPDATE = register("REGRADE_SCORES_FOR_UPDATE",
+            "SELECT student_quiz_id, score FROM student_quizzes WHERE student_quiz_id IN (?) FOR UPDATE");
+
+    // ==================== 评分任务 Grading Jobs ====================
+
+    /** 提交测验时创建任务；已完成或失败的任务重新排队，正在评分的不变 */
+    public static final String GRADING_JOB_ENQUEUE = register("GRADING_JOB_ENQUEUE",
+            "INSERT INTO grading_jobs (student_quiz_id, quiz_id) " +
+            "SELECT sq.student_quiz_id, sq.quiz_id FROM student_quizzes sq WHERE sq.student_quiz_id = ? " +
+            "ON DUPLICATE KEY UPDATE " +
+            "attempts = IF(grading_jobs.status = 'running', grading_jobs.attempts, 0), " +
+            "last_error = IF(grading_jobs.status = 'running', grading_jobs.last_error, NULL), " +
+            "status = IF(grading_jobs.status = 'running', 'running', 'pending')");
+
+    /** 为测验全部已提交、未评分的提交创建任务 (全测验评分) */
+    public static final String GRADING_JOBS_ENQUEUE_QUIZ = register("GRADING_JOBS_ENQUEUE_QUIZ",
+            "INSERT INTO grading_jobs (student_quiz_id, quiz_id) " +
+            "SELECT sq.student_quiz_id, sq.quiz_id FROM student_quizzes sq " +
+            "WHERE sq.quiz_id = ? AND sq.graded = FALSE AND sq.status = 'submitted' " +
+            "ON DUPLICATE KEY UPDATE " +
+            "attempts = IF(grading_jobs.status = 'running', grading_jobs.attempts, 0), " +
+            "last_error = IF(grading_jobs.status = 'running', grading_jobs.last_error, NULL), " +
+            "status = IF(grading_jobs.status = 'running', 'running', 'pending')");
+
+    /** 认领：锁定最早的待评分任务，跳过其他节点已锁定的行 */
+    public static final String GRADING_JOBS_CLAIM_SELECT = register("GRADING_JOBS_CLAIM_SELECT",
+            "SELECT job_id, student_quiz_id, quiz_id FROM grading_jobs " +
+            "WHERE status = 'pending' ORDER BY job_id LIMIT ? FOR UPDATE SKIP LOCKED");
+
+    /** 认领：标记为本次认领所有；{@link #expandIn} 展开为认领数 */
+    public static final String GRADING_JOBS_CLAIM = register("GRADING_JOBS_CLAIM",
+            "UPDATE grading_jobs SET status = 'running', claim_token = ?, claimed_by = ?, " +
+            "lease_until = NOW() + INTERVAL ? SECOND, attempts = attempts + 1 " +
+            "WHERE job_id IN (?)");
+
+    /** 评分前锁定仍属于本次认领的任务 (租约过期后被其他节点重新认领的不再评分) */
+    public static final String GRADING_JOBS_LOCK_OWNED = register("GRADING_JOBS_LOCK_OWNED",
+            "SELECT job_id FROM grading_jobs " +
+            "WHERE claim_token = ? AND status = 'running' AND job_id IN (?) FOR UPDATE");
+
+    public static final String GRADING_JOBS_DONE = register("GRADING_JOBS_DONE",
+            "UPDATE grading_jobs SET status = 'done', claim_token = NULL, lease_until = NULL, " +
+            "last_error = NULL, finished_at = NOW() " +
+            "WHERE claim_token = ? AND job_id IN (?)");
+
+    /** 评分失败：放回队列，达到最大尝试次数后标记 failed */
+    public static final String GRADING_JOBS_RELEASE = register("GRADING_JOBS_RELEASE",
+            "UPDATE grading_jobs SET status = IF(attempts >= ?, 'failed', 'pending'), " +
+            "claim_token = NULL, lease_until = NULL, last_error = ? " +
+            "WHERE claim_token = ? AND job_id IN (?)");
+
+    /** 租约过期 (认领的节点崩溃或卡住) 的任务放回队列 */
+    public static final String GRADING_JOBS_REAP = register("GRADING_JOBS_REAP",
+            "UPDATE grading_jobs SET status = IF(attempts >= ?, 'failed', 'pending'), " +
+            "claim_token = NULL, lease_until = NULL, last_error = 'lease expired' " +
+            "WHERE status = 'running' AND lease_until < NOW()");
+
+    /** 删除完成已久的任务 */
+    public static final String GRADING_JOBS_PURGE = register("GRADING_JOBS_PURGE",
+            "DELETE FROM grading_jobs WHERE status = 'done' AND finished_at < NOW() - INTERVAL ? HOUR");
+
+    public static final String GRADING_JOBS_QUIZ_COUNTS = register("GRADING_JOBS_QUIZ_COUNTS",
+            "SELECT status, COUNT(*) AS jobs FROM grading_jobs WHERE quiz_id = ? GROUP BY status");
+
+    public static final String GRADING_JOBS_COUNTS = register("GRADING_JOBS_COUNTS",
+            "SELECT status, COUNT(*) AS jobs FROM grading_jobs GROUP BY status");
+
+    public static final String GRADE_PUBLISH = register("GRADE_PUBLISH",
+            "UPDATE student_quizzes SET published = TRUE " +
+            "WHERE quiz_id = ? AND graded = TRUE");
+
+    public static final String STUDENT_PUBLISHED_GRADES = register("STUDENT_PUBLISHED_GRADES",
+            "SELECT q.quiz_id, q.title, c.course_name, sq.score, q.total_points, " +
+            "sq.percentage, sq.submit_time, " +
+            "CASE WHEN sq.score >= q.passing_score THEN 'Passed' ELSE 'Failed' END as result " +
+            "FROM student_quizzes sq " +
+            "JOIN quizzes q ON sq.quiz_id = q.quiz_id " +
+            "JOIN classrooms cl ON q.classroom_id = cl.classroom_id " +
+            "JOIN courses c ON cl.course_id = c.course_id " +
+            "WHERE sq.student_id = ? AND sq.published = TRUE AND sq.graded = TRUE");
+
+    public static final String CLASS_GRADES = register("CLASS_GRADES",
+            "SELECT u.full_name, s.student_number, sq.score, q.total_points, sq.percentage " +
+            "FROM student_quizzes sq " +
+            "JOIN students s ON sq.student_id = s.student_id " +
+            "JOIN users u ON s.user_id = u.user_id " +
+            "JOIN quizzes q ON sq.quiz_id = q.quiz_id " +
+            "WHERE sq.quiz_id = ? AND sq.graded = TRUE " +
+            "ORDER BY sq.score DESC");
+
+    public static final String GRADE_REPORT = register("GRADE_REPORT",
+            "SELECT COUNT(DISTINCT sq.student_id) as total_students, " +
+            "ROUND(AVG(sq.score), 2) as avg_score, " +
+            "MIN(sq.score) as min_score, " +
+            "MAX(sq.score) as max_score, " +
+            "SUM(CASE WHEN sq.score >= q.passing_score THEN 1 ELSE 0 END) as passed_count " +
+            "FROM student_quizzes sq " +
+            "JOIN quizzes q ON sq.quiz_id = q.quiz_id " +
+            "WHERE sq.quiz_id = ? AND sq.graded = TRUE");
+
+    // ==================== 系统总览 Dashboard ====================
+
+    public static final String DASHBOARD_COURSE_COUNT = register("DASHBOARD_COURSE_COUNT",
+            "SELECT COUNT(*) as total FROM courses");
+
+    public static final String DASHBOARD_QUESTION_COUNT = register("DASHBOARD_QUESTION_COUNT",
+            "SELECT COUNT(*) as total, question_type FROM questions " +
+            "WHERE is_deleted = FALSE GROUP BY question_type");
+
+    public static final String DASHBOARD_QUIZ_COUNT = register("DASHBOARD_QUIZ_COUNT",
+            "SELECT COUNT(*) as total FROM quizzes");
+
+    public static final String DASHBOARD_SUBMISSION_STATS = register("DASHBOARD_SUBMISSION_STATS",
+            "SELECT COUNT(*) as total_submissions, " +
+            "AVG(score) as avg_score, " +
+            "SUM(CASE WHEN score >= (SELECT passing_score FROM quizzes WHERE quiz_id = student_quizzes.quiz_id) THEN 1 ELSE 0 END) * 100.0 / COUNT(*) as pass_rate " +
+            "FROM student_quizzes WHERE graded = TRUE");
+
+    // ==================== 动态查询选择 ====================
+
+    /**
+     * 用户列表，按是否过滤角色/启用状态选择语句
+     * 参数顺序: [role], [is_active]
+     */
+    public static String userList(boolean byRole, boolean byActive) {
+        return USER_LIST[(byRole ? 1 : 0) + (byActive ? 2 : 0)];
+    }
+
+    /**
+     * 题目统计，按是否过滤科目/难度选择语句
+     * 参数顺序: [subject_id], [difficulty_level]
+     */
+    public static String questionStatistics(boolean bySubject, boolean byDifficulty) {
+        return QUESTION_STATISTICS[(bySubject ? 1 : 0) + (byDifficulty ? 2 : 0)];
+    }
+
+    /**
+     * 随机选题的候选ID，按是否过滤题型/难度选择语句
+     * 参数顺序: subject_id, [question_type], [difficulty_level]
+     */
+    public static String randomQuestionIds(boolean byType, boolean byDifficulty) {
+        return QUESTION_RANDOM[(byType ? 1 : 0) + (byDifficulty ? 2 : 0)];
+    }
+
+    /**
+     * 题目使用排名，未知排序字段回退到 times_used
+     */
+    public static String questionRanking(String orderBy) {
+        return QUESTION_RANKING.getOrDefault(orderBy, QUESTION_RANKING.get("times_used"));
+    }
+
+    /**
+     * 把单行 INSERT ... VALUES (?, ...) 展开为 rows 行的多行插入，
+     * 一次往返写入整块数据；InnoDB 为这类语句一次性分配连续的自增主键
+     */
+    public static String multiRow(String singleRowInsert, int rows) {
+        int valuesAt = singleRowInsert.lastIndexOf("VALUES ");
+        if (valuesAt < 0 || rows < 1) {
+            throw new IllegalArgumentException("Not a single-row INSERT: " + singleRowInsert);
+        }
+        String head = singleRowInsert.substring(0, valuesAt + "VALUES ".length());
+        String tuple = singleRowInsert.substring(head.length());
+
+        StringBuilder sql = new StringBuilder(head.length() + rows * (tuple.length() + 2));
+        sql.append(head).append(tuple);
+        for (int i = 1; i < rows; i++) {
+            sql.append(", ").append(tuple);
+        }
+        return sql.toString();
+    }
+
+    /**
+     * n 行答案 upsert：VALUES 部分展开为 n 个元组，ON DUPLICATE KEY UPDATE 只出现一次
+     */
+    public static String answerUpsert(int rows) {
+        return rows == 1 ? STUDENT_ANSWER_UPSERT : multiRow(STUDENT_ANSWER_ROW, rows) + STUDENT_ANSWER_ON_DUPLICATE;
+    }
+
+    /**
+     * 把单行批量更新中的派生表 (SELECT ? AS ..., ...) g 展开为 rows 行 (UNION ALL)，
+     * 一条语句按主键/唯一键连接更新整批行
+     */
+    public static String unionRows(String singleRowUpdate, int rows) {
+        int from = singleRowUpdate.indexOf("(SELECT ");
+        int to = singleRowUpdate.indexOf(") g ");
+        if (from < 0 || to < from || rows < 1) {
+            throw new IllegalArgumentException("No derived row to expand: " + singleRowUpdate);
+        }
+        int columns = (int) singleRowUpdate.substring(from, to).chars().filter(c -> c == '?').count();
+        String row = " UNION ALL SELECT " + String.join(", ", Collections.nCopies(columns, "?"));
+
+        StringBuilder sql = new StringBuilder(singleRowUpdate.length() + (rows - 1) * row.length());
+        sql.append(singleRowUpdate, 0, to);
+        for (int i = 1; i < rows; i++) {
+            sql.append(row);
+        }
+        sql.append(singleRowUpdate, to, singleRowUpdate.length());
+        return sql.toString();
+    }
+
+    /**
+     * 把语句中唯一的 IN (?) 展开为 n 个占位符
+     */
+    public static String expandIn(String sql, int n) {
+        int at = sql.indexOf("IN (?)");
+        if (at < 0 || n < 1) {
+            throw new IllegalArgumentException("No IN (?) to expand: " + sql);
+        }
+        StringBuilder placeholders = new StringBuilder("IN (?");
+        for (int i = 1; i < n; i++) {
+            placeholders.append(", ?");
+        }
+        placeholders.append(')');
+        return sql.substring(0, at) + placeholders + sql.substring(at + "IN (?)".length());
+    }
+
+    // ==================== 目录访问 ====================
+
+    /**
+     * @return 全部语句 (名称 → SQL)，按登记顺序
+     */
+    public static Map<String, String> statements() {
+        return Collections.unmodifiableMap(STATEMENTS);
+    }
+
+    private static String register(String name, String sql) {
+        if (STATEMENTS.putIfAbsent(name, sql) != null) {
+            throw new IllegalStateException("Duplicate SQL catalog entry: " + name);
+        }
+        return sql;
+    }
+}
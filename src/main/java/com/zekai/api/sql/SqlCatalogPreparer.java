@@ -0,0 +1,126 @@
+package com.zekai.api.sql;
+
+import com.mysql.cj.jdbc.JdbcConnection;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zekai.util.DatabaseUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ========================================
+ * SQL CATALOG PREPARER
+ * ========================================
+ *
+ * 应用启动时处理 SqlCatalog 中的全部语句：
+ * 1. 校验：在一个连接上强制服务端预编译每条语句，
+ *    表名/列名/语法错误在启动日志中列出
+ * 2. 预热：在连接池的每个空闲连接上 prepare 一遍，
+ *    使驱动的预编译缓存 (cachePrepStmts) 在第一个请求到来前就已填满
+ *
+ * 在 SchemaMigrationRunner 之后运行
+ *
+ * @author Exam System Team
+ */
+@Component
+@Order(10)
+public class SqlCatalogPreparer implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(SqlCatalogPreparer.class);
+
+    @Value("${exam.sql.prepare-on-startup:true}")
+    private boolean prepareOnStartup;
+
+    @Value("${exam.sql.fail-on-invalid:false}")
+    private boolean failOnInvalid;
+
+    private volatile Map<String, String> invalidStatements = new LinkedHashMap<>();
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        if (!prepareOnStartup) {
+            return;
+        }
+
+        Map<String, String> invalid = validate();
+        invalidStatements = invalid;
+        if (!invalid.isEmpty()) {
+            invalid.forEach((name, error) -> log.warn("SQL catalog entry {} failed to prepare: {}", name, error));
+            if (failOnInvalid) {
+                throw new IllegalStateException(invalid.size() + " SQL catalog entries failed to prepare: " + invalid.keySet());
+            }
+        }
+
+        int warmed = warmPool(DatabaseUtil.getDataSource());
+        log.info("SQL catalog: {} statements validated ({} invalid), pre-prepared on {} pooled connections",
+                SqlCatalog.statements().size(), invalid.size(), warmed);
+    }
+
+    /**
+     * 在服务端预编译每条语句，返回失败的语句及错误信息
+     */
+    public Map<String, String> validate() throws SQLException {
+        Map<String, String> invalid = new LinkedHashMap<>();
+        try (Connection conn = DatabaseUtil.getConnection()) {
+            JdbcConnection mysql = conn.unwrap(JdbcConnection.class);
+            for (Map.Entry<String, String> entry : SqlCatalog.statements().entrySet()) {
+                // serverPrepareStatement 不会像 prepareStatement 那样在失败时静默退回客户端预编译
+                try (PreparedStatement ignored = mysql.serverPrepareStatement(entry.getValue())) {
+                    // prepared successfully
+                } catch (SQLException e) {
+                    invalid.put(entry.getKey(), e.getMessage());
+                }
+            }
+        }
+        return invalid;
+    }
+
+    /**
+     * 在连接池的最小空闲连接数个连接上预编译全部语句，填充驱动缓存
+     *
+     * @return 预热的连接数
+     */
+    private int warmPool(DataSource dataSource) throws SQLException {
+        int connections = dataSource instanceof HikariDataSource
+                ? Math.max(1, ((HikariDataSource) dataSource).getMinimumIdle())
+                : 1;
+
+        // 同时持有这些连接，保证预热的是不同的物理连接
+        List<Connection> held = new ArrayList<>();
+        try {
+            for (int i = 0; i < connections; i++) {
+                held.add(DatabaseUtil.getConnection());
+            }
+            for (Connection conn : held) {
+                for (String sql : SqlCatalog.statements().values()) {
+                    try (PreparedStatement ignored = conn.prepareStatement(sql)) {
+                        // closing returns the server-side statement to the driver cache
+                    }
+                }
+            }
+            return held.size();
+        } finally {
+            held.forEach(DatabaseUtil::closeConnection);
+        }
+    }
+
+    /**
+     * @return 启动校验失败的语句 (名称 → 错误信息)
+     */
+    public Map<String, String> getInvalidStatements() {
+        return invalidStatements;
+    }
+}
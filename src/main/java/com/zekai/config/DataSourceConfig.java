@@ -0,0 +1,146 @@
+package com.zekai.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zekai.util.DatabaseUtil;
+import com.zekai.util.ReadWriteRouting;
+import com.zekai.util.SqlTimingLog;
+import com.zekai.util.TransactionTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+/**
+ * ========================================
+ * DATASOURCE CONFIGURATION
+ * ========================================
+ *
+ * 创建HikariCP连接池，并注册到DatabaseUtil
+ * 所有Controller通过 DatabaseUtil.getConnection() 从连接池获取连接，
+ * 不再为每个请求建立新的TCP/MySQL握手
+ *
+ * 配置来源：application.yml 中的 spring.datasource.*
+ * 未配置的项使用 DatabaseConfig 中的默认值
+ *
+ * 可选只读副本：配置 spring.datasource.replica.url 后，
+ * 只读接口通过 DatabaseUtil.getReadConnection() 访问副本；
+ * 刚写入过的用户在 read-your-writes-window 内仍读主库
+ * (截止时间同时随 Cookie 交给客户端，多实例部署不需要粘性会话，但各实例的时钟偏差应远小于该窗口)
+ *
+ * SQL 耗时记录 (SqlTimingLog) 的慢查询阈值和缓冲区大小
+ * 来自 exam.sql.slow-query-threshold-ms / exam.sql.trace-buffer-size，
+ * 死锁重试参数 (TransactionTemplate) 来自 exam.tx.*
+ *
+ * @author Exam System Team
+ */
+@Configuration
+public class DataSourceConfig {
+
+    @Value("${spring.datasource.url:" + DatabaseConfig.DB_URL + "}")
+    private String url;
+
+    @Value("${spring.datasource.username:" + DatabaseConfig.DB_USER + "}")
+    private String username;
+
+    @Value("${spring.datasource.password:" + DatabaseConfig.DB_PASSWORD + "}")
+    private String password;
+
+    @Value("${spring.datasource.driver-class-name:" + DatabaseConfig.DB_DRIVER + "}")
+    private String driverClassName;
+
+    @Value("${spring.datasource.hikari.maximum-pool-size:" + DatabaseConfig.MAX_POOL_SIZE + "}")
+    private int maximumPoolSize;
+
+    @Value("${spring.datasource.hikari.minimum-idle:" + DatabaseConfig.MIN_IDLE + "}")
+    private int minimumIdle;
+
+    @Value("${spring.datasource.hikari.connection-timeout:" + DatabaseConfig.CONNECTION_TIMEOUT + "}")
+    private long connectionTimeout;
+
+    @Value("${spring.datasource.hikari.max-lifetime:" + DatabaseConfig.MAX_LIFETIME + "}")
+    private long maxLifetime;
+
+    @Value("${spring.datasource.hikari.connection-test-query:" + DatabaseConfig.VALIDATION_QUERY + "}")
+    private String connectionTestQuery;
+
+    @Value("${spring.datasource.hikari.auto-commit:" + DatabaseConfig.AUTO_COMMIT + "}")
+    private boolean autoCommit;
+
+    @Value("${spring.datasource.hikari.data-source-properties.prepStmtCacheSize:" + DatabaseConfig.PREP_STMT_CACHE_SIZE + "}")
+    private int prepStmtCacheSize;
+
+    @Value("${spring.datasource.hikari.data-source-properties.prepStmtCacheSqlLimit:" + DatabaseConfig.PREP_STMT_CACHE_SQL_LIMIT + "}")
+    private int prepStmtCacheSqlLimit;
+
+    @Value("${spring.datasource.replica.read-your-writes-window:5000}")
+    private long readYourWritesWindow;
+
+    @Value("${exam.sql.slow-query-threshold-ms:" + DatabaseConfig.SLOW_QUERY_THRESHOLD_MS + "}")
+    private long slowQueryThresholdMs;
+
+    @Value("${exam.sql.trace-buffer-size:" + DatabaseConfig.SQL_TRACE_BUFFER_SIZE + "}")
+    private int traceBufferSize;
+
+    @Value("${exam.tx.max-attempts:" + DatabaseConfig.TX_MAX_ATTEMPTS + "}")
+    private int txMaxAttempts;
+
+    @Value("${exam.tx.base-backoff-ms:" + DatabaseConfig.TX_BASE_BACKOFF_MS + "}")
+    private long txBaseBackoffMs;
+
+    @Value("${exam.tx.max-backoff-ms:" + DatabaseConfig.TX_MAX_BACKOFF_MS + "}")
+    private long txMaxBackoffMs;
+
+    /**
+     * 主连接池 (读写)
+     */
+    @Bean(destroyMethod = "close")
+    @Primary
+    public HikariDataSource dataSource() {
+        HikariDataSource dataSource = new HikariDataSource(
+                poolConfig(url, username, password, DatabaseConfig.POOL_NAME));
+        DatabaseUtil.setDataSource(dataSource);
+        ReadWriteRouting.setReadYourWritesWindow(readYourWritesWindow);
+        SqlTimingLog.setSlowThreshold(slowQueryThresholdMs);
+        SqlTimingLog.setBufferSize(traceBufferSize);
+        TransactionTemplate.configure(txMaxAttempts, txBaseBackoffMs, txMaxBackoffMs);
+        return dataSource;
+    }
+
+    /**
+     * 只读副本连接池 (仅在配置了 spring.datasource.replica.url 时创建)
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "spring.datasource.replica", name = "url")
+    public HikariDataSource replicaDataSource(
+            @Value("${spring.datasource.replica.url}") String replicaUrl,
+            @Value("${spring.datasource.replica.username:${spring.datasource.username:" + DatabaseConfig.DB_USER + "}}") String replicaUsername,
+            @Value("${spring.datasource.replica.password:${spring.datasource.password:" + DatabaseConfig.DB_PASSWORD + "}}") String replicaPassword) {
+        HikariConfig config = poolConfig(replicaUrl, replicaUsername, replicaPassword,
+                DatabaseConfig.POOL_NAME + "-replica");
+        config.setReadOnly(true);
+
+        HikariDataSource replica = new HikariDataSource(config);
+        DatabaseUtil.setReplicaDataSource(replica);
+        return replica;
+    }
+
+    private HikariConfig poolConfig(String jdbcUrl, String user, String pass, String poolName) {
+        HikariConfig config = DatabaseConfig.newPoolConfig();
+        config.setPoolName(poolName);
+        config.setJdbcUrl(jdbcUrl);
+        config.setUsername(user);
+        config.setPassword(pass);
+        config.setDriverClassName(driverClassName);
+        config.setMaximumPoolSize(maximumPoolSize);
+        config.setMinimumIdle(minimumIdle);
+        config.setConnectionTimeout(connectionTimeout);
+        config.setMaxLifetime(maxLifetime);
+        config.setConnectionTestQuery(connectionTestQuery);
+        config.setAutoCommit(autoCommit);
+        config.addDataSourceProperty("prepStmtCacheSize", String.valueOf(prepStmtCacheSize));
+        config.addDataSourceProperty("prepStmtCacheSqlLimit", String.valueOf(prepStmtCacheSqlLimit));
+        return config;
+    }
+}
@@ -1,5 +1,7 @@
 package com.zekai.config;
 
+import com.zaxxer.hikari.HikariConfig;
+
 /**
  * ========================================
  * DATABASE CONFIGURATION
@@ -23,7 +25,8 @@ public class DatabaseConfig {
             "useSSL=false&" +
             "serverTimezone=UTC&" +
             "allowPublicKeyRetrieval=true&" +
-            "characterEncoding=UTF-8";
+            "characterEncoding=UTF-8&" +
+            "useCursorFetch=true";
 
     /**
      * Database username
@@ -60,7 +63,12 @@ public class DatabaseConfig {
      */
     public static final int DB_PORT = 3306;
 
-    // ==================== Connection Pool Settings (Optional) ====================
+    // ==================== Connection Pool Settings ====================
+
+    /**
+     * Name of the HikariCP pool (shows up in logs and JMX)
+     */
+    public static final String POOL_NAME = "exam-system-pool";
 
     /**
      * Maximum number of connections in the pool
@@ -87,12 +95,51 @@ public class DatabaseConfig {
      */
     public static final String VALIDATION_QUERY = "SELECT 1";
 
+    /**
+     * Server-side prepared statements cached per connection by the driver
+     * (should exceed the number of entries in SqlCatalog)
+     */
+    public static final int PREP_STMT_CACHE_SIZE = 256;
+
+    /**
+     * Longest SQL text (characters) the driver will cache
+     */
+    public static final int PREP_STMT_CACHE_SQL_LIMIT = 2048;
+
+    /**
+     * Rows fetched per round trip by the streaming query helpers
+     * (requires useCursorFetch=true in the URL to bound memory)
+     */
+    public static final int STREAM_FETCH_SIZE = 500;
+
     // ==================== Application Settings ====================
 
     /**
-     * Enable debug mode for detailed SQL logging
+     * Statements slower than this (ms) are written to the log
+     * and kept in the slow-query buffer (see SqlTimingLog)
+     */
+    public static final long SLOW_QUERY_THRESHOLD_MS = 200;
+
+    /**
+     * Number of recent statements kept in the SQL timing ring buffer
+     */
+    public static final int SQL_TRACE_BUFFER_SIZE = 1024;
+
+    /**
+     * Attempts (including the first) for a transaction that hits
+     * a deadlock or lock wait timeout (see TransactionTemplate)
+     */
+    public static final int TX_MAX_ATTEMPTS = 4;
+
+    /**
+     * Backoff ceiling (ms) before the first retry; doubles per attempt
+     */
+    public static final long TX_BASE_BACKOFF_MS = 10;
+
+    /**
+     * Upper bound (ms) for a single retry backoff
      */
-    public static final boolean DEBUG_MODE = true;
+    public static final long TX_MAX_BACKOFF_MS = 200;
 
     /**
      * Enable transaction auto-commit
@@ -130,6 +177,35 @@ public class DatabaseConfig {
         return true;
     }
 
+    /**
+     * Build a HikariCP configuration from the defaults above.
+     * The Spring application overrides these from application.yml,
+     * standalone runners (Main, JUnit) use them as-is.
+     *
+     * @return Pool configuration with URL, credentials and pool limits set
+     */
+    public static HikariConfig newPoolConfig() {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName(POOL_NAME);
+        config.setDriverClassName(DB_DRIVER);
+        config.setJdbcUrl(DB_URL);
+        config.setUsername(DB_USER);
+        config.setPassword(DB_PASSWORD);
+        config.setMaximumPoolSize(MAX_POOL_SIZE);
+        config.setMinimumIdle(MIN_IDLE);
+        config.setConnectionTimeout(CONNECTION_TIMEOUT);
+        config.setMaxLifetime(MAX_LIFETIME);
+        config.setConnectionTestQuery(VALIDATION_QUERY);
+        config.setAutoCommit(AUTO_COMMIT);
+
+        // Server-side prepared statements, cached per connection by Connector/J
+        config.addDataSourceProperty("useServerPrepStmts", "true");
+        config.addDataSourceProperty("cachePrepStmts", "true");
+        config.addDataSourceProperty("prepStmtCacheSize", String.valueOf(PREP_STMT_CACHE_SIZE));
+        config.addDataSourceProperty("prepStmtCacheSqlLimit", String.valueOf(PREP_STMT_CACHE_SQL_LIMIT));
+        return config;
+    }
+
     /**
      * Print configuration summary (for debugging)
      */
@@ -142,7 +218,8 @@ public class DatabaseConfig {
         System.out.println("Database: " + DB_NAME);
         System.out.println("User:     " + DB_USER);
         System.out.println("URL:      " + getDisplayUrl());
-        System.out.println("Debug:    " + DEBUG_MODE);
+        System.out.println("Pool:     " + MIN_IDLE + "-" + MAX_POOL_SIZE + " connections");
+        System.out.println("Slow SQL: >= " + SLOW_QUERY_THRESHOLD_MS + " ms");
         System.out.println("========================================");
     }
 }
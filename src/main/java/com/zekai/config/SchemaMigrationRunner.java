@@ -0,0 +1,68 @@
+package com.zekai.config;
+
+import com.zekai.util.SchemaMigrator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ========================================
+ * SCHEMA MIGRATION RUNNER
+ * ========================================
+ *
+ * 应用启动时执行 db/migration 下尚未执行的版本化脚本 (SchemaMigrator)。
+ * 迁移在连接池创建后、本 bean 初始化时执行，早于 Web 服务器开始接收请求，
+ * 也早于 SqlCatalogPreparer 校验语句；构造时就启动后台线程的服务
+ * (GradingJobService、SubmissionGradingQueue、AnswerWriter) 用 @DependsOn 依赖本 bean，
+ * 线程开始访问数据库时表和索引已就绪。
+ * 本次启动执行了哪些版本写入日志，并可通过 /admin/schema/migrations 查看
+ *
+ * 配置: exam.schema.migrate-on-startup (默认 true)
+ *
+ * @author Exam System Team
+ */
+@Component(SchemaMigrationRunner.BEAN_NAME)
+@DependsOn("dataSource")
+public class SchemaMigrationRunner implements InitializingBean {
+
+    /** 需要已迁移 schema 的 bean 通过 @DependsOn(SchemaMigrationRunner.BEAN_NAME) 声明 */
+    public static final String BEAN_NAME = "schemaMigrationRunner";
+
+    private static final Logger log = LoggerFactory.getLogger(SchemaMigrationRunner.class);
+
+    @Value("${exam.schema.migrate-on-startup:true}")
+    private boolean migrateOnStartup;
+
+    private volatile List<Map<String, Object>> appliedAtStartup = Collections.emptyList();
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        if (!migrateOnStartup) {
+            log.info("Schema migration disabled (exam.schema.migrate-on-startup=false)");
+            return;
+        }
+
+        List<Map<String, Object>> applied = SchemaMigrator.migrate();
+        appliedAtStartup = Collections.unmodifiableList(applied);
+        if (applied.isEmpty()) {
+            log.info("Schema is up to date, no migrations applied");
+        } else {
+            log.info("Applied {} schema migration(s): {}", applied.size(),
+                    applied.stream().map(m -> "V" + m.get("version") + "__" + m.get("description")).toList());
+        }
+    }
+
+    /**
+     * @return 本次启动执行的迁移 (version, description, statements, executionMs)
+     */
+    public List<Map<String, Object>> getAppliedAtStartup() {
+        return appliedAtStartup;
+    }
+}
@@ -0,0 +1,135 @@
+package com.zekai.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ========================================
+ * CONCURRENT HISTOGRAM
+ * ========================================
+ *
+ * Lock-free log-linear histogram for non-negative long values
+ * (latencies in microseconds, statement counts, ...).
+ *
+ * Each power of two is split into 8 linear sub-buckets, so any recorded
+ * value is reported with at most ~12.5% relative error. Recording is a
+ * single atomic increment plus two striped adders; request threads never
+ * block each other.
+ *
+ * @author Exam System Team
+ */
+public class ConcurrentHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Record one value (negative values are clamped to 0)
+     *
+     * @param value Value to record
+     */
+    public void record(long value) {
+        long v = Math.max(0, value);
+        buckets.incrementAndGet(bucketIndex(v));
+        count.increment();
+        sum.add(v);
+        max.accumulate(v);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Value at the given quantile (upper bound of the matching bucket)
+     *
+     * @param quantile Quantile between 0.0 and 1.0
+     * @return Estimated value, 0 if nothing was recorded
+     */
+    public long valueAtQuantile(double quantile) {
+        long total = 0;
+        long[] snapshot = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = buckets.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long target = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += snapshot[i];
+            if (seen >= target) {
+                return Math.min(bucketUpperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Summary for JSON output: count, mean, p50, p90, p99, max
+     *
+     * @param divisor Unit conversion applied to value fields (e.g. 1000.0 for µs → ms)
+     * @return Ordered map of summary statistics
+     */
+    public Map<String, Object> snapshot(double divisor) {
+        long n = count.sum();
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("count", n);
+        data.put("mean", n == 0 ? 0.0 : round(sum.sum() / (double) n / divisor));
+        data.put("p50", round(valueAtQuantile(0.50) / divisor));
+        data.put("p90", round(valueAtQuantile(0.90) / divisor));
+        data.put("p99", round(valueAtQuantile(0.99) / divisor));
+        data.put("max", round(max.get() / divisor));
+        return data;
+    }
+
+    /**
+     * Clear all recorded values
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+
+    // ==================== Bucket Math ====================
+
+    static int bucketIndex(long v) {
+        if (v < SUB_BUCKETS) {
+            return (int) v;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(v);
+        int sub = (int) ((v >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int sub = index % SUB_BUCKETS;
+        int shift = exponent - SUB_BUCKET_BITS;
+        long lower = ((long) (SUB_BUCKETS + sub)) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100.0) / 100.0;
+    }
+}
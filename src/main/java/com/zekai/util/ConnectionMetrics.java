@@ -0,0 +1,155 @@
+package com.zekai.util;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ========================================
+ * CONNECTION METRICS
+ * ========================================
+ *
+ * Per-endpoint telemetry for pooled connections:
+ * - acquire wait: time spent inside the pool's getConnection()
+ * - hold time:    time between acquire and close()
+ * - statements:   statements executed on the connection before close()
+ *
+ * The endpoint tag is a thread-local set by the web layer
+ * (e.g. "StudentController.startQuiz"); connections acquired outside a
+ * request are recorded under {@link #NO_ENDPOINT}.
+ *
+ * High acquire wait with normal hold time means pool starvation;
+ * normal wait with high hold time means slow SQL inside that endpoint.
+ *
+ * @author Exam System Team
+ */
+public class ConnectionMetrics {
+
+    public static final String NO_ENDPOINT = "(none)";
+
+    private static final ThreadLocal<String> CURRENT_ENDPOINT = new ThreadLocal<>();
+    private static final Map<String, EndpointStats> ENDPOINTS = new ConcurrentHashMap<>();
+
+    private ConnectionMetrics() {
+    }
+
+    // ==================== Endpoint Tagging ====================
+
+    /**
+     * Tag connections acquired on this thread with an endpoint name
+     * @param endpoint Endpoint name, e.g. "StudentController.startQuiz"
+     */
+    public static void setCurrentEndpoint(String endpoint) {
+        CURRENT_ENDPOINT.set(endpoint);
+    }
+
+    /**
+     * Remove the endpoint tag from this thread
+     */
+    public static void clearCurrentEndpoint() {
+        CURRENT_ENDPOINT.remove();
+    }
+
+    /**
+     * @return Endpoint tag of this thread, or {@link #NO_ENDPOINT}
+     */
+    public static String currentEndpoint() {
+        String endpoint = CURRENT_ENDPOINT.get();
+        return endpoint != null ? endpoint : NO_ENDPOINT;
+    }
+
+    // ==================== Recording ====================
+
+    static EndpointStats statsFor(String endpoint) {
+        return ENDPOINTS.computeIfAbsent(endpoint, k -> new EndpointStats());
+    }
+
+    /**
+     * Record a failed acquire (pool timeout or database unreachable)
+     */
+    static void recordAcquireFailure(String endpoint, long waitNanos) {
+        EndpointStats stats = statsFor(endpoint);
+        stats.acquireWaitMicros.record(waitNanos / 1000);
+        stats.acquireFailures.increment();
+    }
+
+    static void recordAcquire(String endpoint, long waitNanos) {
+        statsFor(endpoint).acquireWaitMicros.record(waitNanos / 1000);
+    }
+
+    static void recordRelease(String endpoint, long holdNanos, long statements) {
+        EndpointStats stats = statsFor(endpoint);
+        stats.holdMicros.record(holdNanos / 1000);
+        stats.statementsPerConnection.record(statements);
+    }
+
+    // ==================== Reporting ====================
+
+    /**
+     * Snapshot of pool gauges and per-endpoint histograms (times in ms)
+     *
+     * @param dataSource Pool to read gauges from
+     * @return Map ready for JSON serialization
+     */
+    public static Map<String, Object> snapshot(DataSource dataSource) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("pool", poolSnapshot(dataSource));
+
+        Map<String, Object> endpoints = new TreeMap<>();
+        ENDPOINTS.forEach((endpoint, stats) -> endpoints.put(endpoint, stats.snapshot()));
+        data.put("endpoints", endpoints);
+        return data;
+    }
+
+    /**
+     * Live gauges of a HikariCP pool
+     */
+    public static Map<String, Object> poolSnapshot(DataSource dataSource) {
+        Map<String, Object> pool = new LinkedHashMap<>();
+        if (dataSource instanceof HikariDataSource) {
+            HikariDataSource hikari = (HikariDataSource) dataSource;
+            HikariPoolMXBean mxBean = hikari.getHikariPoolMXBean();
+            pool.put("name", hikari.getPoolName());
+            pool.put("maximumPoolSize", hikari.getMaximumPoolSize());
+            if (mxBean != null) {
+                pool.put("active", mxBean.getActiveConnections());
+                pool.put("idle", mxBean.getIdleConnections());
+                pool.put("total", mxBean.getTotalConnections());
+                pool.put("threadsAwaiting", mxBean.getThreadsAwaitingConnection());
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Clear all per-endpoint histograms
+     */
+    public static void reset() {
+        ENDPOINTS.clear();
+    }
+
+    /**
+     * Histograms for one endpoint
+     */
+    static class EndpointStats {
+        final ConcurrentHistogram acquireWaitMicros = new ConcurrentHistogram();
+        final ConcurrentHistogram holdMicros = new ConcurrentHistogram();
+        final ConcurrentHistogram statementsPerConnection = new ConcurrentHistogram();
+        final LongAdder acquireFailures = new LongAdder();
+
+        Map<String, Object> snapshot() {
+            Map<String, Object> data = new LinkedHashMap<>();
+            data.put("acquireWaitMs", acquireWaitMicros.snapshot(1000.0));
+            data.put("holdMs", holdMicros.snapshot(1000.0));
+            data.put("statementsPerConnection", statementsPerConnection.snapshot(1.0));
+            data.put("acquireFailures", acquireFailures.sum());
+            return data;
+        }
+    }
+}
@@ -8,7 +8,10 @@ package com.zekai.util;
  */
 
 
+import com.zaxxer.hikari.HikariDataSource;
 import com.zekai.config.DatabaseConfig;
+
+import javax.sql.DataSource;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
@@ -19,7 +22,7 @@ import java.util.List;
  * ========================================
  *
  * Provides common database operations including:
- * - Connection management
+ * - Connection management (pooled via HikariCP)
  * - Resource cleanup
  * - DDL execution
  * - Query helpers
@@ -33,39 +36,118 @@ public class DatabaseUtil {
     // ==================== Connection Management ====================
 
     /**
-     * Get a database connection
+     * Shared connection pool. Installed by {@link com.zekai.config.DataSourceConfig}
+     * when running inside Spring; created lazily from {@link DatabaseConfig} otherwise.
+     */
+    private static volatile DataSource dataSource;
+
+    /**
+     * Optional read replica pool. Null means all reads go to the primary.
+     */
+    private static volatile DataSource replicaDataSource;
+
+    /**
+     * Install the pool that {@link #getConnection()} hands out connections from
      *
-     * @return Connection object
-     * @throws SQLException if connection fails
+     * @param ds DataSource to use for all connections
      */
-    public static Connection getConnection() throws SQLException {
-        try {
-            // Load JDBC driver
-            Class.forName(DatabaseConfig.DB_DRIVER);
+    public static void setDataSource(DataSource ds) {
+        dataSource = ds;
+    }
 
-            if (DatabaseConfig.DEBUG_MODE) {
-                System.out.println("→ Connecting to database: " + DatabaseConfig.DB_NAME);
+    /**
+     * Install the replica pool used by {@link #getReadConnection()}
+     *
+     * @param ds Replica DataSource, or null to read from the primary
+     */
+    public static void setReplicaDataSource(DataSource ds) {
+        replicaDataSource = ds;
+    }
+
+    /**
+     * @return Replica pool, or null if no replica is configured
+     */
+    public static DataSource getReplicaDataSource() {
+        return replicaDataSource;
+    }
+
+    /**
+     * Get the shared pool, creating it from {@link DatabaseConfig} on first use
+     *
+     * @return Pooled DataSource
+     */
+    public static DataSource getDataSource() {
+        DataSource ds = dataSource;
+        if (ds == null) {
+            synchronized (DatabaseUtil.class) {
+                ds = dataSource;
+                if (ds == null) {
+                    ds = new HikariDataSource(DatabaseConfig.newPoolConfig());
+                    dataSource = ds;
+                }
             }
+        }
+        return ds;
+    }
 
-            // Create connection
-            Connection conn = DriverManager.getConnection(
-                    DatabaseConfig.DB_URL,
-                    DatabaseConfig.DB_USER,
-                    DatabaseConfig.DB_PASSWORD
-            );
+    /**
+     * Get a database connection from the pool.
+     * Closing the connection returns it to the pool.
+     * Acquire wait, hold time and statement count are recorded in
+     * {@link ConnectionMetrics} under the current endpoint tag.
+     *
+     * @return Connection object
+     * @throws SQLException if no connection is available within the pool timeout
+     */
+    public static Connection getConnection() throws SQLException {
+        return acquire(getDataSource(), ConnectionMetrics.currentEndpoint());
+    }
 
-            // Set auto-commit mode
-            conn.setAutoCommit(DatabaseConfig.AUTO_COMMIT);
+    /**
+     * Get a connection for a read-only request.
+     * Goes to the replica when one is configured, unless the current user
+     * wrote recently (see {@link ReadWriteRouting}), in which case the
+     * primary is used so the user reads their own writes.
+     *
+     * @return Connection object (replica or primary)
+     * @throws SQLException if no connection is available within the pool timeout
+     */
+    public static Connection getReadConnection() throws SQLException {
+        DataSource replica = replicaDataSource;
+        if (replica == null || ReadWriteRouting.mustReadPrimary()) {
+            return getConnection();
+        }
+        return acquire(replica, ConnectionMetrics.currentEndpoint() + "@replica");
+    }
 
-            if (DatabaseConfig.DEBUG_MODE) {
-                System.out.println("✓ Database connection established");
-            }
+    private static Connection acquire(DataSource ds, String endpoint) throws SQLException {
+        long start = System.nanoTime();
+        Connection conn;
+        try {
+            conn = ds.getConnection();
+        } catch (SQLException e) {
+            ConnectionMetrics.recordAcquireFailure(endpoint, System.nanoTime() - start);
+            throw e;
+        }
+        long acquiredAt = System.nanoTime();
+        ConnectionMetrics.recordAcquire(endpoint, acquiredAt - start);
 
-            return conn;
+        return InstrumentedConnection.wrap(conn, endpoint, acquiredAt);
+    }
 
-        } catch (ClassNotFoundException e) {
-            throw new SQLException("MySQL JDBC Driver not found. " +
-                    "Please add mysql-connector-java to your classpath.", e);
+    /**
+     * Close the shared pool (standalone runners only; Spring closes its own bean)
+     */
+    public static void shutdownPool() {
+        DataSource ds = dataSource;
+        DataSource replica = replicaDataSource;
+        dataSource = null;
+        replicaDataSource = null;
+        if (ds instanceof HikariDataSource) {
+            ((HikariDataSource) ds).close();
+        }
+        if (replica instanceof HikariDataSource) {
+            ((HikariDataSource) replica).close();
         }
     }
 
@@ -136,16 +218,13 @@ public class DatabaseUtil {
     }
 
     /**
-     * Close Connection safely
+     * Close Connection safely (returns pooled connections to the pool)
      * @param conn Connection to close
      */
     public static void closeConnection(Connection conn) {
         if (conn != null) {
             try {
                 conn.close();
-                if (DatabaseConfig.DEBUG_MODE) {
-                    System.out.println("✓ Database connection closed");
-                }
             } catch (SQLException e) {
                 System.err.println("Error closing Connection: " + e.getMessage());
             }
@@ -168,24 +247,12 @@ public class DatabaseUtil {
             conn = getConnection();
             stmt = conn.createStatement();
 
-            if (DatabaseConfig.DEBUG_MODE) {
-                System.out.println("→ Executing DDL: " +
-                        sql.substring(0, Math.min(60, sql.length())) + "...");
-            }
-
             stmt.execute(sql);
 
-            if (DatabaseConfig.DEBUG_MODE) {
-                System.out.println("✓ DDL executed successfully");
-            }
-
             return true;
 
         } catch (SQLException e) {
             System.err.println("✗ DDL Execution Error: " + e.getMessage());
-            if (DatabaseConfig.DEBUG_MODE) {
-                e.printStackTrace();
-            }
             return false;
 
         } finally {
@@ -214,23 +281,109 @@ public class DatabaseUtil {
     // ==================== Query Helpers ====================
 
     /**
-     * Execute a SELECT query and return ResultSet
-     * Note: Caller is responsible for closing resources!
+     * Stream the rows of a SELECT through a callback on a pooled connection.
+     * Statement, ResultSet and connection are always closed before returning.
+     *
+     * @param sql      SELECT SQL statement with ? placeholders
+     * @param callback Invoked once per row
+     * @param params   Values bound to the placeholders in order
+     * @return Number of rows processed
+     * @throws SQLException if query fails
+     */
+    public static long forEachRow(String sql, RowCallback callback, Object... params) throws SQLException {
+        try (Connection conn = getConnection()) {
+            return forEachRow(conn, sql, DatabaseConfig.STREAM_FETCH_SIZE, callback, params);
+        }
+    }
+
+    /**
+     * Stream the rows of a SELECT through a callback on the caller's connection.
+     * The cursor is forward-only and read-only; with {@code useCursorFetch=true}
+     * in the JDBC URL the driver holds at most {@code fetchSize} rows in memory,
+     * and {@code Integer.MIN_VALUE} streams row by row. A fetch size of 0 reads
+     * the whole result into memory (driver default).
+     *
+     * The statement and ResultSet are closed before returning; the connection is not.
+     *
+     * @param conn      Connection to run on
+     * @param sql       SELECT SQL statement with ? placeholders
+     * @param fetchSize Rows fetched per round trip
+     * @param callback  Invoked once per row
+     * @param params    Values bound to the placeholders in order
+     * @return Number of rows processed
+     * @throws SQLException if query fails
+     */
+    public static long forEachRow(Connection conn, String sql, int fetchSize,
+                                  RowCallback callback, Object... params) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(sql,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            pstmt.setFetchSize(fetchSize);
+            bindParams(pstmt, params);
+
+            long rows = 0;
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    callback.processRow(rs);
+                    rows++;
+                }
+            }
+            return rows;
+        }
+    }
+
+    /**
+     * Run a SELECT and map every row into a list (for small, bounded results)
      *
-     * @param sql SELECT SQL statement
-     * @return ResultSet with query results
+     * @param conn   Connection to run on
+     * @param sql    SELECT SQL statement with ? placeholders
+     * @param mapper Maps one row
+     * @param params Values bound to the placeholders in order
+     * @return Mapped rows in result order
      * @throws SQLException if query fails
      */
-    public static ResultSet executeQuery(String sql) throws SQLException {
-        Connection conn = getConnection();
-        Statement stmt = conn.createStatement();
+    public static <T> List<T> queryList(Connection conn, String sql, RowMapper<T> mapper,
+                                        Object... params) throws SQLException {
+        List<T> results = new ArrayList<>();
+        forEachRow(conn, sql, 0, rs -> results.add(mapper.mapRow(rs)), params);
+        return results;
+    }
 
-        if (DatabaseConfig.DEBUG_MODE) {
-            System.out.println("→ Executing Query: " +
-                    sql.substring(0, Math.min(60, sql.length())) + "...");
+    /**
+     * Run a SELECT and map the first row
+     *
+     * @param conn   Connection to run on
+     * @param sql    SELECT SQL statement with ? placeholders
+     * @param mapper Maps one row
+     * @param params Values bound to the placeholders in order
+     * @return Mapped first row, or null if the query returned no rows
+     * @throws SQLException if query fails
+     */
+    public static <T> T queryOne(Connection conn, String sql, RowMapper<T> mapper,
+                                 Object... params) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            bindParams(pstmt, params);
+            pstmt.setMaxRows(1);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? mapper.mapRow(rs) : null;
+            }
         }
+    }
 
-        return stmt.executeQuery(sql);
+    /**
+     * Bind positional parameters; null values are bound as SQL NULL
+     *
+     * @param pstmt  Statement to bind
+     * @param params Values in placeholder order
+     * @throws SQLException if binding fails
+     */
+    public static void bindParams(PreparedStatement pstmt, Object... params) throws SQLException {
+        for (int i = 0; i < params.length; i++) {
+            if (params[i] == null) {
+                pstmt.setNull(i + 1, Types.NULL);
+            } else {
+                pstmt.setObject(i + 1, params[i]);
+            }
+        }
     }
 
     /**
@@ -248,17 +401,8 @@ public class DatabaseUtil {
             conn = getConnection();
             stmt = conn.createStatement();
 
-            if (DatabaseConfig.DEBUG_MODE) {
-                System.out.println("→ Executing Update: " +
-                        sql.substring(0, Math.min(60, sql.length())) + "...");
-            }
-
             int affectedRows = stmt.executeUpdate(sql);
 
-            if (DatabaseConfig.DEBUG_MODE) {
-                System.out.println("✓ Affected rows: " + affectedRows);
-            }
-
             return affectedRows;
 
         } finally {
@@ -399,19 +543,16 @@ public class DatabaseUtil {
     }
 
     /**
-     * Get row count from ResultSet
+     * Count the rows a SELECT returns by streaming through them.
+     * Prefer SELECT COUNT(*) where possible; this is for ad-hoc checks.
      *
-     * @param rs ResultSet
+     * @param sql    SELECT SQL statement with ? placeholders
+     * @param params Values bound to the placeholders in order
      * @return Number of rows
      * @throws SQLException if counting fails
      */
-    public static int getRowCount(ResultSet rs) throws SQLException {
-        int count = 0;
-        while (rs.next()) {
-            count++;
-        }
-        rs.beforeFirst(); // Reset cursor
-        return count;
+    public static long countRows(String sql, Object... params) throws SQLException {
+        return forEachRow(sql, rs -> { }, params);
     }
 
     // ==================== Transaction Management ====================
@@ -423,9 +564,6 @@ public class DatabaseUtil {
      */
     public static void beginTransaction(Connection conn) throws SQLException {
         conn.setAutoCommit(false);
-        if (DatabaseConfig.DEBUG_MODE) {
-            System.out.println("→ Transaction started");
-        }
     }
 
     /**
@@ -435,9 +573,6 @@ public class DatabaseUtil {
      */
     public static void commitTransaction(Connection conn) throws SQLException {
         conn.commit();
-        if (DatabaseConfig.DEBUG_MODE) {
-            System.out.println("✓ Transaction committed");
-        }
     }
 
     /**
@@ -448,9 +583,6 @@ public class DatabaseUtil {
         if (conn != null) {
             try {
                 conn.rollback();
-                if (DatabaseConfig.DEBUG_MODE) {
-                    System.out.println("⚠ Transaction rolled back");
-                }
             } catch (SQLException e) {
                 System.err.println("Error rolling back transaction: " + e.getMessage());
             }
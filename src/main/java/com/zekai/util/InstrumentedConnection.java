@@ -0,0 +1,118 @@
+package com.zekai.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ========================================
+ * INSTRUMENTED CONNECTION
+ * ========================================
+ *
+ * Dynamic proxy around a pooled connection that counts executed statements
+ * and reports hold time to {@link ConnectionMetrics} when it is closed.
+ * Statements created from the connection are proxied too, so every
+ * execute/executeQuery/executeUpdate/executeBatch call is counted and
+ * timed into {@link SqlTimingLog}. The SQL text of a prepared statement
+ * is captured when it is prepared.
+ *
+ * @author Exam System Team
+ */
+class InstrumentedConnection implements InvocationHandler {
+
+    private final Connection delegate;
+    private final String endpoint;
+    private final long acquiredAt;
+    private final AtomicLong statements = new AtomicLong();
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private InstrumentedConnection(Connection delegate, String endpoint, long acquiredAt) {
+        this.delegate = delegate;
+        this.endpoint = endpoint;
+        this.acquiredAt = acquiredAt;
+    }
+
+    /**
+     * Wrap a freshly acquired connection
+     *
+     * @param delegate   Connection from the pool
+     * @param endpoint   Endpoint tag to record under
+     * @param acquiredAt System.nanoTime() when the pool returned the connection
+     * @return Proxied connection
+     */
+    static Connection wrap(Connection delegate, String endpoint, long acquiredAt) {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new InstrumentedConnection(delegate, endpoint, acquiredAt));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+
+        if ("close".equals(name)) {
+            if (closed.compareAndSet(false, true)) {
+                ConnectionMetrics.recordRelease(endpoint, System.nanoTime() - acquiredAt, statements.get());
+            }
+        }
+
+        Object result;
+        try {
+            result = method.invoke(delegate, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+
+        if (result instanceof Statement) {
+            // prepareStatement/prepareCall take the SQL as first argument
+            String preparedSql = args != null && args.length > 0 && args[0] instanceof String
+                    ? (String) args[0] : null;
+            if (result instanceof CallableStatement) {
+                return wrapStatement((Statement) result, CallableStatement.class, preparedSql);
+            } else if (result instanceof PreparedStatement) {
+                return wrapStatement((Statement) result, PreparedStatement.class, preparedSql);
+            }
+            return wrapStatement((Statement) result, Statement.class, null);
+        }
+        return result;
+    }
+
+    private Object wrapStatement(Statement statement, Class<? extends Statement> type, String preparedSql) {
+        return Proxy.newProxyInstance(
+                type.getClassLoader(),
+                new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    if (!method.getName().startsWith("execute")) {
+                        try {
+                            return method.invoke(statement, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    }
+
+                    statements.incrementAndGet();
+                    // plain Statement.execute*(sql, ...) carries the SQL in the call itself
+                    String sql = preparedSql != null ? preparedSql
+                            : args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+                    long start = System.nanoTime();
+                    boolean failed = true;
+                    try {
+                        Object result = method.invoke(statement, args);
+                        failed = false;
+                        return result;
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    } finally {
+                        SqlTimingLog.record(sql, endpoint, System.nanoTime() - start, failed);
+                    }
+                });
+    }
+}
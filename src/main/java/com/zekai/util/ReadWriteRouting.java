@@ -0,0 +1,153 @@
+package com.zekai.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ========================================
+ * READ/WRITE ROUTING
+ * ========================================
+ *
+ * Decides whether a read-only request may go to the replica.
+ *
+ * The web layer binds the authenticated user to the request thread and
+ * calls {@link #markWrite()} around every modifying request. For the
+ * configured window after a write, reads from that user stay on the
+ * primary so they always see their own writes despite replication lag.
+ *
+ * The pin is kept in two places: in this JVM, keyed by user, and with the
+ * client as a wall-clock deadline ({@link #primaryUntilMillis()}) that the
+ * web layer sends back as a cookie and binds with
+ * {@link #setClientPrimaryUntil(long)}. The client copy is what makes the
+ * guarantee hold behind a load balancer without sticky sessions: the next
+ * read may land on another instance that has never seen the write. Nodes
+ * compare that deadline against their own clock, so clock skew between
+ * instances must stay well below the window, and a write that takes longer
+ * than the window is only covered by the instance that served it.
+ *
+ * @author Exam System Team
+ */
+public class ReadWriteRouting {
+
+    private static final int CLEANUP_THRESHOLD = 10_000;
+
+    private static final ThreadLocal<Long> CURRENT_SESSION = new ThreadLocal<>();
+    private static final ThreadLocal<Long> CLIENT_PRIMARY_UNTIL = new ThreadLocal<>();
+    private static final Map<Long, Long> PRIMARY_UNTIL = new ConcurrentHashMap<>();
+
+    private static volatile long readYourWritesWindowNanos = 5_000_000_000L;
+
+    private ReadWriteRouting() {
+    }
+
+    /**
+     * Set how long reads stick to the primary after a write
+     * @param windowMillis Window in milliseconds
+     */
+    public static void setReadYourWritesWindow(long windowMillis) {
+        readYourWritesWindowNanos = windowMillis * 1_000_000L;
+    }
+
+    /**
+     * Bind the authenticated user (userId) to the request thread
+     * @param sessionKey User ID, or null for anonymous requests
+     */
+    public static void setCurrentSession(Long sessionKey) {
+        if (sessionKey == null) {
+            CURRENT_SESSION.remove();
+        } else {
+            CURRENT_SESSION.set(sessionKey);
+        }
+    }
+
+    /**
+     * Bind the primary-until deadline the client sent back with the request.
+     * Deadlines further ahead than one window are clamped, so a forged value
+     * cannot pin a client to the primary for longer than a real write would.
+     * @param epochMillis Deadline from {@link #primaryUntilMillis()}, or 0 if none
+     */
+    public static void setClientPrimaryUntil(long epochMillis) {
+        if (epochMillis <= 0) {
+            CLIENT_PRIMARY_UNTIL.remove();
+        } else {
+            CLIENT_PRIMARY_UNTIL.set(Math.min(epochMillis, primaryUntilMillis()));
+        }
+    }
+
+    /**
+     * @return Wall-clock deadline to hand to the client after a write
+     */
+    public static long primaryUntilMillis() {
+        return System.currentTimeMillis() + readYourWritesWindowMillis();
+    }
+
+    /**
+     * @return Read-your-writes window in milliseconds
+     */
+    public static long readYourWritesWindowMillis() {
+        return readYourWritesWindowNanos / 1_000_000L;
+    }
+
+    /**
+     * Unbind the user and the client deadline from the request thread
+     */
+    public static void clearCurrentSession() {
+        CURRENT_SESSION.remove();
+        CLIENT_PRIMARY_UNTIL.remove();
+    }
+
+    /**
+     * Record that the current user just wrote; their reads stay on the
+     * primary until the window has passed
+     */
+    public static void markWrite() {
+        Long session = CURRENT_SESSION.get();
+        if (session == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        PRIMARY_UNTIL.put(session, now + readYourWritesWindowNanos);
+
+        if (PRIMARY_UNTIL.size() > CLEANUP_THRESHOLD) {
+            PRIMARY_UNTIL.values().removeIf(until -> until - now < 0);
+        }
+    }
+
+    /**
+     * @return true if the current user wrote within the window, on this
+     * instance or (per the client's deadline) on another one
+     */
+    public static boolean mustReadPrimary() {
+        Long clientUntil = CLIENT_PRIMARY_UNTIL.get();
+        if (clientUntil != null && clientUntil > System.currentTimeMillis()) {
+            return true;
+        }
+        Long session = CURRENT_SESSION.get();
+        if (session == null) {
+            return false;
+        }
+        Long until = PRIMARY_UNTIL.get(session);
+        if (until == null) {
+            return false;
+        }
+        if (until - System.nanoTime() < 0) {
+            PRIMARY_UNTIL.remove(session, until);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return Number of users currently pinned to the primary
+     */
+    public static int pinnedSessions() {
+        long now = System.nanoTime();
+        int pinned = 0;
+        for (Long until : PRIMARY_UNTIL.values()) {
+            if (until - now >= 0) {
+                pinned++;
+            }
+        }
+        return pinned;
+    }
+}
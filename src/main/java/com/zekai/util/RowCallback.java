@@ -0,0 +1,23 @@
+package com.zekai.util;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Callback invoked once per row by the streaming query helpers in
+ * {@link DatabaseUtil}. The ResultSet is positioned on the current row
+ * and must not be advanced or closed by the callback.
+ *
+ * @author Exam System Team
+ */
+@FunctionalInterface
+public interface RowCallback {
+
+    /**
+     * Process the current row
+     *
+     * @param rs ResultSet positioned on the row
+     * @throws SQLException if reading the row fails
+     */
+    void processRow(ResultSet rs) throws SQLException;
+}
@@ -0,0 +1,24 @@
+package com.zekai.util;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Maps the current row of a ResultSet to an object.
+ * Used by {@link DatabaseUtil#queryList} and {@link DatabaseUtil#queryOne}.
+ *
+ * @param <T> Result type
+ * @author Exam System Team
+ */
+@FunctionalInterface
+public interface RowMapper<T> {
+
+    /**
+     * Map the current row
+     *
+     * @param rs ResultSet positioned on the row
+     * @return Mapped object
+     * @throws SQLException if reading the row fails
+     */
+    T mapRow(ResultSet rs) throws SQLException;
+}
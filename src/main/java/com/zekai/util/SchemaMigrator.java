@@ -0,0 +1,268 @@
+package com.zekai.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * ========================================
+ * SCHEMA MIGRATOR
+ * ========================================
+ *
+ * Owns the database schema. Versioned scripts live on the classpath as
+ * db/migration/V{version}__{description}.sql and are applied in version
+ * order; each applied version is recorded in schema_migrations together
+ * with a checksum of the script.
+ *
+ * Used by the API at startup (SchemaMigrationRunner) and by the test
+ * bases, so every environment runs the same DDL.
+ *
+ * Migrations are serialized across processes with GET_LOCK, so several
+ * instances starting at once apply each script exactly once.
+ *
+ * @author Exam System Team
+ */
+public class SchemaMigrator {
+
+    private static final Logger log = LoggerFactory.getLogger(SchemaMigrator.class);
+
+    public static final String HISTORY_TABLE = "schema_migrations";
+
+    private static final String LOCATION = "classpath*:db/migration/V*__*.sql";
+    private static final Pattern FILE_NAME = Pattern.compile("V(\\d+)__(.+)\\.sql");
+    private static final String LOCK_NAME = "exam_system.schema_migrations";
+    private static final int LOCK_TIMEOUT_SECONDS = 60;
+
+    private SchemaMigrator() {
+    }
+
+    /**
+     * One migration script found on the classpath
+     */
+    private static final class Script {
+        final int version;
+        final String description;
+        final String sql;
+        final long checksum;
+
+        Script(int version, String description, String sql) {
+            this.version = version;
+            this.description = description;
+            this.sql = sql;
+            CRC32 crc = new CRC32();
+            crc.update(sql.getBytes(StandardCharsets.UTF_8));
+            this.checksum = crc.getValue();
+        }
+    }
+
+    // ==================== Migration ====================
+
+    /**
+     * Apply all pending migrations on a fresh pooled connection
+     *
+     * @return Migrations applied by this call (version, description, statements, executionMs)
+     * @throws SQLException if a script fails; later scripts are not applied
+     */
+    public static List<Map<String, Object>> migrate() throws SQLException {
+        try (Connection conn = DatabaseUtil.getConnection()) {
+            return migrate(conn);
+        }
+    }
+
+    /**
+     * Apply all pending migrations on the given connection
+     *
+     * @param conn Connection to the target schema (auto-commit is enabled while migrating)
+     * @return Migrations applied by this call (version, description, statements, executionMs)
+     * @throws SQLException if a script fails; later scripts are not applied
+     */
+    public static List<Map<String, Object>> migrate(Connection conn) throws SQLException {
+        List<Script> scripts = loadScripts();
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(true);
+
+        acquireLock(conn);
+        try {
+            createHistoryTable(conn);
+            Map<Integer, Long> applied = appliedChecksums(conn);
+
+            List<Map<String, Object>> ran = new ArrayList<>();
+            for (Script script : scripts) {
+                Long checksum = applied.get(script.version);
+                if (checksum != null) {
+                    if (checksum != script.checksum) {
+                        log.warn("Migration V{}__{} was modified after it was applied (checksum {} != {})",
+                                script.version, script.description, checksum, script.checksum);
+                    }
+                    continue;
+                }
+                ran.add(apply(conn, script));
+            }
+            return ran;
+        } finally {
+            releaseLock(conn);
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * @return Rows of schema_migrations in version order
+     */
+    public static List<Map<String, Object>> history(Connection conn) throws SQLException {
+        return DatabaseUtil.queryList(conn,
+                "SELECT version, description, checksum, statements, execution_ms, installed_at " +
+                "FROM " + HISTORY_TABLE + " ORDER BY version",
+                rs -> {
+                    Map<String, Object> row = new LinkedHashMap<>();
+                    row.put("version", rs.getInt("version"));
+                    row.put("description", rs.getString("description"));
+                    row.put("checksum", rs.getLong("checksum"));
+                    row.put("statements", rs.getInt("statements"));
+                    row.put("executionMs", rs.getLong("execution_ms"));
+                    row.put("installedAt", rs.getTimestamp("installed_at"));
+                    return row;
+                });
+    }
+
+    private static Map<String, Object> apply(Connection conn, Script script) throws SQLException {
+        List<String> statements = splitStatements(script.sql);
+        long start = System.nanoTime();
+
+        try (Statement stmt = conn.createStatement()) {
+            for (String sql : statements) {
+                try {
+                    stmt.execute(sql);
+                } catch (SQLException e) {
+                    throw new SQLException("Migration V" + script.version + "__" + script.description +
+                            " failed: " + e.getMessage() + "\n" + sql, e.getSQLState(), e.getErrorCode(), e);
+                }
+            }
+        }
+        long executionMs = (System.nanoTime() - start) / 1_000_000;
+
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "INSERT INTO " + HISTORY_TABLE + " (version, description, checksum, statements, execution_ms) " +
+                "VALUES (?, ?, ?, ?, ?)")) {
+            DatabaseUtil.bindParams(pstmt, script.version, script.description, script.checksum,
+                    statements.size(), executionMs);
+            pstmt.executeUpdate();
+        }
+        log.info("Applied migration V{}__{} ({} statements, {} ms)",
+                script.version, script.description, statements.size(), executionMs);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("version", script.version);
+        result.put("description", script.description);
+        result.put("statements", statements.size());
+        result.put("executionMs", executionMs);
+        return result;
+    }
+
+    // ==================== Scripts ====================
+
+    private static List<Script> loadScripts() throws SQLException {
+        List<Script> scripts = new ArrayList<>();
+        try {
+            Resource[] resources = new PathMatchingResourcePatternResolver().getResources(LOCATION);
+            for (Resource resource : resources) {
+                Matcher m = FILE_NAME.matcher(Objects.requireNonNull(resource.getFilename()));
+                if (!m.matches()) {
+                    continue;
+                }
+                try (InputStream in = resource.getInputStream()) {
+                    String sql = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+                    scripts.add(new Script(Integer.parseInt(m.group(1)), m.group(2), sql));
+                }
+            }
+        } catch (IOException e) {
+            throw new SQLException("Cannot read migration scripts: " + e.getMessage(), e);
+        }
+
+        scripts.sort(Comparator.comparingInt(s -> s.version));
+        for (int i = 1; i < scripts.size(); i++) {
+            if (scripts.get(i).version == scripts.get(i - 1).version) {
+                throw new SQLException("Duplicate migration version V" + scripts.get(i).version);
+            }
+        }
+        return scripts;
+    }
+
+    /**
+     * Split a script into statements: "--" comment lines are dropped and
+     * a statement ends with ';' at the end of a line
+     */
+    static List<String> splitStatements(String script) {
+        List<String> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (String line : script.split("\\R")) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("--")) {
+                continue;
+            }
+            if (trimmed.endsWith(";")) {
+                current.append(trimmed, 0, trimmed.length() - 1);
+                statements.add(current.toString().trim());
+                current.setLength(0);
+            } else {
+                current.append(trimmed).append(' ');
+            }
+        }
+        if (current.length() > 0 && !current.toString().isBlank()) {
+            statements.add(current.toString().trim());
+        }
+        return statements;
+    }
+
+    // ==================== History & Locking ====================
+
+    private static void createHistoryTable(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS " + HISTORY_TABLE + " (" +
+                    "version INT PRIMARY KEY, " +
+                    "description VARCHAR(200) NOT NULL, " +
+                    "checksum BIGINT NOT NULL, " +
+                    "statements INT NOT NULL, " +
+                    "execution_ms BIGINT NOT NULL, " +
+                    "installed_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP" +
+                    ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4");
+        }
+    }
+
+    private static Map<Integer, Long> appliedChecksums(Connection conn) throws SQLException {
+        Map<Integer, Long> applied = new HashMap<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT version, checksum FROM " + HISTORY_TABLE)) {
+            while (rs.next()) {
+                applied.put(rs.getInt(1), rs.getLong(2));
+            }
+        }
+        return applied;
+    }
+
+    private static void acquireLock(Connection conn) throws SQLException {
+        Integer locked = DatabaseUtil.queryOne(conn, "SELECT GET_LOCK(?, ?)",
+                rs -> rs.getObject(1) == null ? null : rs.getInt(1), LOCK_NAME, LOCK_TIMEOUT_SECONDS);
+        if (locked == null || locked != 1) {
+            throw new SQLException("Timed out waiting for migration lock " + LOCK_NAME);
+        }
+    }
+
+    private static void releaseLock(Connection conn) {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            pstmt.setString(1, LOCK_NAME);
+            pstmt.executeQuery().close();
+        } catch (SQLException e) {
+            log.warn("Could not release migration lock: {}", e.getMessage());
+        }
+    }
+}
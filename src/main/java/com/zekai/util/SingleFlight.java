@@ -0,0 +1,102 @@
+package com.zekai.util;
+
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ========================================
+ * SINGLE FLIGHT
+ * ========================================
+ *
+ * Coalesces concurrent loads of the same key: the first caller runs the
+ * loader, callers arriving while it is in flight wait for and share its
+ * result (or its exception). Once the load finishes the key is released,
+ * so the next call loads again; pair it with a cache for reuse.
+ *
+ * Loaders should acquire their own connection, so waiters do not hold a
+ * pooled connection while they wait.
+ *
+ * @param <K> Key type
+ * @param <V> Result type
+ * @author Exam System Team
+ */
+public class SingleFlight<K, V> {
+
+    /**
+     * Loads the value for one key
+     */
+    @FunctionalInterface
+    public interface Loader<V> {
+        V load() throws SQLException;
+    }
+
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * Run the loader for key, or wait for the load already running for it
+     *
+     * @param key    Key to coalesce on
+     * @param loader Loader, run only if no load for key is in flight
+     * @return Loaded value (shared by all callers of the same flight)
+     * @throws SQLException thrown by the loader (rethrown to every waiter)
+     */
+    public V execute(K key, Loader<V> loader) throws SQLException {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            coalesced.increment();
+            return await(existing);
+        }
+
+        loads.increment();
+        try {
+            V value = loader.load();
+            flight.complete(value);
+            return value;
+        } catch (SQLException | RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    /**
+     * @return Loads run, calls that joined another call's load, and loads in flight now
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("loads", loads.sum());
+        data.put("coalesced", coalesced.sum());
+        data.put("inFlight", inFlight.size());
+        return data;
+    }
+
+    private static <V> V await(CompletableFuture<V> flight) throws SQLException {
+        try {
+            return flight.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a concurrent load", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new SQLException(cause);
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.zekai.util;
+
+import com.zekai.config.DatabaseConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ========================================
+ * SQL TIMING LOG
+ * ========================================
+ *
+ * Low-overhead replacement for the old DEBUG_MODE console output.
+ * Every statement executed through {@link DatabaseUtil} connections is
+ * timed and recorded into:
+ * - a lock-free ring buffer of the last N statements
+ * - a smaller ring buffer of the last slow statements
+ * - a latency histogram per SQL text
+ *
+ * Only statements slower than the threshold are written to the log, so
+ * request threads no longer serialize on the console.
+ *
+ * @author Exam System Team
+ */
+public class SqlTimingLog {
+
+    private static final Logger log = LoggerFactory.getLogger(SqlTimingLog.class);
+
+    private static final int SLOW_BUFFER_SIZE = 128;
+    private static final int MAX_DISTINCT_STATEMENTS = 512;
+    private static final String OTHER_STATEMENTS = "(other)";
+
+    private static volatile Ring recent = new Ring(DatabaseConfig.SQL_TRACE_BUFFER_SIZE);
+    private static final Ring slow = new Ring(SLOW_BUFFER_SIZE);
+    private static final Map<String, ConcurrentHistogram> BY_STATEMENT = new ConcurrentHashMap<>();
+    private static final LongAdder slowCount = new LongAdder();
+    private static final LongAdder errorCount = new LongAdder();
+
+    private static volatile long slowThresholdNanos = DatabaseConfig.SLOW_QUERY_THRESHOLD_MS * 1_000_000L;
+
+    private SqlTimingLog() {
+    }
+
+    // ==================== Configuration ====================
+
+    /**
+     * @param thresholdMillis Statements at or above this are logged and kept as slow
+     */
+    public static void setSlowThreshold(long thresholdMillis) {
+        slowThresholdNanos = thresholdMillis * 1_000_000L;
+    }
+
+    /**
+     * Resize the recent-statement buffer (rounded up to a power of two).
+     * Drops the current buffer contents.
+     *
+     * @param size Number of statements to keep
+     */
+    public static void setBufferSize(int size) {
+        recent = new Ring(size);
+    }
+
+    // ==================== Recording ====================
+
+    /**
+     * Record one executed statement
+     *
+     * @param sql         SQL text (null if unknown)
+     * @param endpoint    Endpoint tag of the connection
+     * @param nanos       Execution time
+     * @param failed      true if the statement threw
+     */
+    static void record(String sql, String endpoint, long nanos, boolean failed) {
+        String text = sql != null ? sql : "(unknown)";
+        Entry entry = new Entry(System.currentTimeMillis(), text, endpoint, nanos / 1000, failed);
+        recent.add(entry);
+
+        ConcurrentHistogram histogram = BY_STATEMENT.get(text);
+        if (histogram == null) {
+            String key = BY_STATEMENT.size() < MAX_DISTINCT_STATEMENTS ? text : OTHER_STATEMENTS;
+            histogram = BY_STATEMENT.computeIfAbsent(key, k -> new ConcurrentHistogram());
+        }
+        histogram.record(nanos / 1000);
+
+        if (failed) {
+            errorCount.increment();
+        }
+        if (nanos >= slowThresholdNanos) {
+            slowCount.increment();
+            slow.add(entry);
+            log.warn("Slow SQL ({} ms) [{}]: {}", nanos / 1_000_000, endpoint, text);
+        }
+    }
+
+    // ==================== Reporting ====================
+
+    /**
+     * @param limit Maximum number of entries
+     * @return Most recent statements, newest first
+     */
+    public static List<Map<String, Object>> recentStatements(int limit) {
+        return recent.newestFirst(limit);
+    }
+
+    /**
+     * @param limit Maximum number of entries
+     * @return Most recent slow statements, newest first
+     */
+    public static List<Map<String, Object>> slowStatements(int limit) {
+        return slow.newestFirst(limit);
+    }
+
+    /**
+     * @return Latency summary (ms) per SQL text
+     */
+    public static Map<String, Map<String, Object>> statementSummaries() {
+        Map<String, Map<String, Object>> summaries = new LinkedHashMap<>();
+        BY_STATEMENT.forEach((sql, histogram) -> summaries.put(sql, histogram.snapshot(1000.0)));
+        return summaries;
+    }
+
+    public static long getSlowCount() {
+        return slowCount.sum();
+    }
+
+    public static long getErrorCount() {
+        return errorCount.sum();
+    }
+
+    public static long getSlowThresholdMillis() {
+        return slowThresholdNanos / 1_000_000L;
+    }
+
+    /**
+     * Clear buffers and histograms
+     */
+    public static void reset() {
+        recent = new Ring(recent.capacity());
+        slow.clear();
+        BY_STATEMENT.clear();
+        slowCount.reset();
+        errorCount.reset();
+    }
+
+    // ==================== Ring Buffer ====================
+
+    /**
+     * One timed statement (immutable, safe to publish through the ring)
+     */
+    private static final class Entry {
+        final long timestamp;
+        final String sql;
+        final String endpoint;
+        final long micros;
+        final boolean failed;
+
+        Entry(long timestamp, String sql, String endpoint, long micros, boolean failed) {
+            this.timestamp = timestamp;
+            this.sql = sql;
+            this.endpoint = endpoint;
+            this.micros = micros;
+            this.failed = failed;
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> data = new LinkedHashMap<>();
+            data.put("timestamp", timestamp);
+            data.put("endpoint", endpoint);
+            data.put("durationMs", micros / 1000.0);
+            data.put("failed", failed);
+            data.put("sql", sql);
+            return data;
+        }
+    }
+
+    /**
+     * Fixed-size ring; writers claim a slot with one getAndIncrement and
+     * overwrite the oldest entry, readers take a best-effort snapshot
+     */
+    private static final class Ring {
+        private final AtomicReferenceArray<Entry> slots;
+        private final AtomicLong sequence = new AtomicLong();
+        private final int mask;
+
+        Ring(int size) {
+            int capacity = Integer.highestOneBit(Math.max(2, size - 1)) << 1;
+            this.slots = new AtomicReferenceArray<>(capacity);
+            this.mask = capacity - 1;
+        }
+
+        int capacity() {
+            return slots.length();
+        }
+
+        void add(Entry entry) {
+            slots.set((int) (sequence.getAndIncrement() & mask), entry);
+        }
+
+        void clear() {
+            for (int i = 0; i < slots.length(); i++) {
+                slots.set(i, null);
+            }
+            sequence.set(0);
+        }
+
+        List<Map<String, Object>> newestFirst(int limit) {
+            long end = sequence.get();
+            long start = Math.max(0, end - Math.min(limit, slots.length()));
+            List<Map<String, Object>> entries = new ArrayList<>();
+            for (long seq = end - 1; seq >= start; seq--) {
+                Entry entry = slots.get((int) (seq & mask));
+                if (entry != null) {
+                    entries.add(entry.toMap());
+                }
+            }
+            return entries;
+        }
+    }
+}
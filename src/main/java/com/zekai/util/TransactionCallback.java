@@ -0,0 +1,25 @@
+package com.zekai.util;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Unit of work run by {@link TransactionTemplate}. It may be invoked more
+ * than once when the transaction is retried, so it must not have side
+ * effects outside the database connection it is given.
+ *
+ * @param <T> Result type
+ * @author Exam System Team
+ */
+@FunctionalInterface
+public interface TransactionCallback<T> {
+
+    /**
+     * Run the work inside an open transaction
+     *
+     * @param conn Connection with auto-commit disabled; do not commit or close it
+     * @return Result handed back to the caller after commit
+     * @throws SQLException if a statement fails (rolls the transaction back)
+     */
+    T doInTransaction(Connection conn) throws SQLException;
+}
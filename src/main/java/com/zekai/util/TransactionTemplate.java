@@ -0,0 +1,212 @@
+package com.zekai.util;
+
+import com.zekai.config.DatabaseConfig;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientConnectionException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ========================================
+ * TRANSACTION TEMPLATE
+ * ========================================
+ *
+ * Runs a unit of work in one transaction on a pooled connection and
+ * retries it when MySQL picks it as a deadlock victim (1213) or a lock
+ * wait times out (1205). Between attempts the thread sleeps for a
+ * randomized ("full jitter") exponential backoff so competing
+ * transactions do not collide again in lockstep.
+ *
+ * Retry counts are kept per endpoint and reported through
+ * {@link #snapshot()}.
+ *
+ * @author Exam System Team
+ */
+public class TransactionTemplate {
+
+    /** ER_LOCK_DEADLOCK */
+    private static final int ER_LOCK_DEADLOCK = 1213;
+
+    /** ER_LOCK_WAIT_TIMEOUT */
+    private static final int ER_LOCK_WAIT_TIMEOUT = 1205;
+
+    private static volatile int maxAttempts = DatabaseConfig.TX_MAX_ATTEMPTS;
+    private static volatile long baseBackoffMillis = DatabaseConfig.TX_BASE_BACKOFF_MS;
+    private static volatile long maxBackoffMillis = DatabaseConfig.TX_MAX_BACKOFF_MS;
+
+    private static final Map<String, EndpointStats> ENDPOINTS = new ConcurrentHashMap<>();
+
+    private TransactionTemplate() {
+    }
+
+    // ==================== Configuration ====================
+
+    /**
+     * @param attempts       Total attempts including the first (at least 1)
+     * @param baseBackoffMs  Backoff ceiling for the first retry
+     * @param maxBackoffMs   Upper bound for any single backoff
+     */
+    public static void configure(int attempts, long baseBackoffMs, long maxBackoffMs) {
+        maxAttempts = Math.max(1, attempts);
+        baseBackoffMillis = Math.max(1, baseBackoffMs);
+        maxBackoffMillis = Math.max(baseBackoffMillis, maxBackoffMs);
+    }
+
+    // ==================== Execution ====================
+
+    /**
+     * Run the callback in a transaction on a primary connection,
+     * retrying on deadlock / lock wait timeout
+     *
+     * @param work Unit of work (may run more than once)
+     * @return Result of the successful attempt
+     * @throws SQLException the last error if all attempts fail, or any non-retryable error
+     */
+    public static <T> T execute(TransactionCallback<T> work) throws SQLException {
+        EndpointStats stats = ENDPOINTS.computeIfAbsent(ConnectionMetrics.currentEndpoint(), k -> new EndpointStats());
+        stats.transactions.increment();
+
+        for (int attempt = 1; ; attempt++) {
+            try (Connection conn = DatabaseUtil.getConnection()) {
+                boolean autoCommit = conn.getAutoCommit();
+                if (autoCommit) {
+                    conn.setAutoCommit(false);
+                }
+                try {
+                    T result = work.doInTransaction(conn);
+                    conn.commit();
+                    return result;
+                } catch (SQLException | RuntimeException e) {
+                    DatabaseUtil.rollbackTransaction(conn);
+                    throw e;
+                } finally {
+                    if (autoCommit) {
+                        conn.setAutoCommit(true);
+                    }
+                }
+            } catch (SQLException e) {
+                int errorCode = lockErrorCode(e);
+                if (errorCode == 0) {
+                    throw e;
+                }
+                if (errorCode == ER_LOCK_DEADLOCK) {
+                    stats.deadlocks.increment();
+                } else {
+                    stats.lockWaitTimeouts.increment();
+                }
+                if (attempt >= maxAttempts) {
+                    stats.exhausted.increment();
+                    throw e;
+                }
+                stats.retries.increment();
+                backoff(attempt);
+            }
+        }
+    }
+
+    /**
+     * @return 1213 / 1205 if the exception (or a cause / chained exception)
+     *         is a deadlock or lock wait timeout, 0 otherwise
+     */
+    static int lockErrorCode(Throwable t) {
+        for (Throwable cur = t; cur != null; cur = cur.getCause()) {
+            if (cur instanceof SQLException) {
+                for (SQLException sql = (SQLException) cur; sql != null; sql = sql.getNextException()) {
+                    if (sql.getErrorCode() == ER_LOCK_DEADLOCK || sql.getErrorCode() == ER_LOCK_WAIT_TIMEOUT) {
+                        return sql.getErrorCode();
+                    }
+                }
+            }
+            if (cur.getCause() == cur) {
+                break;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return true if the failure says nothing about the rows themselves:
+     *         a lock conflict (1213 / 1205) or a lost / unavailable connection
+     *         (SQLState class 08, pool timeout). Retrying the same rows later may succeed
+     */
+    public static boolean isTransient(Throwable t) {
+        if (lockErrorCode(t) != 0) {
+            return true;
+        }
+        for (Throwable cur = t; cur != null; cur = cur.getCause()) {
+            if (cur instanceof SQLTransientConnectionException
+                    || cur instanceof SQLNonTransientConnectionException
+                    || cur instanceof SQLRecoverableException) {
+                return true;
+            }
+            if (cur instanceof SQLException) {
+                String state = ((SQLException) cur).getSQLState();
+                if (state != null && state.startsWith("08")) {
+                    return true;
+                }
+            }
+            if (cur.getCause() == cur) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    private static void backoff(int attempt) throws SQLException {
+        long ceiling = Math.min(maxBackoffMillis, baseBackoffMillis << Math.min(attempt - 1, 16));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting to retry transaction", e);
+        }
+    }
+
+    // ==================== Reporting ====================
+
+    /**
+     * @return Per-endpoint transaction and retry counters
+     */
+    public static Map<String, Object> snapshot() {
+        Map<String, Object> endpoints = new LinkedHashMap<>();
+        ENDPOINTS.forEach((endpoint, stats) -> {
+            Map<String, Object> data = new LinkedHashMap<>();
+            data.put("transactions", stats.transactions.sum());
+            data.put("retries", stats.retries.sum());
+            data.put("deadlocks", stats.deadlocks.sum());
+            data.put("lockWaitTimeouts", stats.lockWaitTimeouts.sum());
+            data.put("exhausted", stats.exhausted.sum());
+            endpoints.put(endpoint, data);
+        });
+
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("maxAttempts", maxAttempts);
+        snapshot.put("endpoints", endpoints);
+        return snapshot;
+    }
+
+    /**
+     * Clear all counters
+     */
+    public static void reset() {
+        ENDPOINTS.clear();
+    }
+
+    /**
+     * Counters for one endpoint
+     */
+    private static class EndpointStats {
+        final LongAdder transactions = new LongAdder();
+        final LongAdder retries = new LongAdder();
+        final LongAdder deadlocks = new LongAdder();
+        final LongAdder lockWaitTimeouts = new LongAdder();
+        final LongAdder exhausted = new LongAdder();
+    }
+}
@@ -0,0 +1,157 @@
+-- ========================================
+-- V1: 基线表结构 Baseline schema
+-- ========================================
+-- 14 张业务表，与原测试基类中的建表语句一致。
+-- 使用 IF NOT EXISTS，已有数据库执行时不受影响。
+
+CREATE TABLE IF NOT EXISTS users (
+    user_id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    username VARCHAR(50) NOT NULL UNIQUE,
+    password_hash VARCHAR(255) NOT NULL,
+    email VARCHAR(100) NOT NULL,
+    full_name VARCHAR(100) NOT NULL,
+    role ENUM('admin','teacher','student') NOT NULL DEFAULT 'student',
+    is_active BOOLEAN NOT NULL DEFAULT TRUE,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    last_login TIMESTAMP NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+CREATE TABLE IF NOT EXISTS teachers (
+    teacher_id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    user_id BIGINT NOT NULL UNIQUE,
+    department VARCHAR(100),
+    hire_date DATE,
+    phone VARCHAR(20),
+    office VARCHAR(100),
+    FOREIGN KEY (user_id) REFERENCES users(user_id) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+CREATE TABLE IF NOT EXISTS students (
+    student_id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    user_id BIGINT NOT NULL UNIQUE,
+    student_number VARCHAR(50) NOT NULL UNIQUE,
+    grade VARCHAR(20),
+    major VARCHAR(100),
+    enrollment_date DATE NOT NULL,
+    FOREIGN KEY (user_id) REFERENCES users(user_id) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+CREATE TABLE IF NOT EXISTS courses (
+    course_id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    course_code VARCHAR(20) NOT NULL UNIQUE,
+    course_name VARCHAR(200) NOT NULL,
+    description TEXT,
+    credit_hours INT NOT NULL,
+    created_by BIGINT NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+CREATE TABLE IF NOT EXISTS classrooms (
+    classroom_id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    course_id BIGINT NOT NULL,
+    teacher_id BIGINT NOT NULL,
+    class_name VARCHAR(50),
+    semester VARCHAR(20) NOT NULL,
+    year INT NOT NULL,
+    max_students INT NOT NULL DEFAULT 50,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+CREATE TABLE IF NOT EXISTS enrollments (
+    enrollment_id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    student_id BIGINT NOT NULL,
+    classroom_id BIGINT NOT NULL,
+    enrollment_date TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    status ENUM('active','dropped','completed') NOT NULL DEFAULT 'active',
+    final_grade DECIMAL(5,2),
+    UNIQUE KEY uk_student_class (student_id, classroom_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+CREATE TABLE IF NOT EXISTS subjects (
+    subject_id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    subject_name VARCHAR(100) NOT NULL,
+    description TEXT,
+    parent_subject_id BIGINT,
+    level INT NOT NULL DEFAULT 1,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+CREATE TABLE IF NOT EXISTS questions (
+    question_id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    subject_id BIGINT NOT NULL,
+    question_text LONGTEXT NOT NULL,
+    question_type ENUM('multiple_choice','true_false','essay','fill_blank','short_answer') NOT NULL,
+    difficulty_level INT NOT NULL DEFAULT 3,
+    created_by BIGINT NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    times_used INT NOT NULL DEFAULT 0,
+    correct_count INT NOT NULL DEFAULT 0,
+    total_attempts INT NOT NULL DEFAULT 0,
+    is_deleted BOOLEAN NOT NULL DEFAULT FALSE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+CREATE TABLE IF NOT EXISTS question_options (
+    option_id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    question_id BIGINT NOT NULL,
+    option_text LONGTEXT NOT NULL,
+    is_correct BOOLEAN NOT NULL DEFAULT FALSE,
+    option_order INT NOT NULL,
+    UNIQUE KEY uk_question_order (question_id, option_order)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+CREATE TABLE IF NOT EXISTS quizzes (
+    quiz_id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    classroom_id BIGINT NOT NULL,
+    title VARCHAR(200) NOT NULL,
+    description TEXT,
+    created_by BIGINT NOT NULL,
+    start_time DATETIME NOT NULL,
+    end_time DATETIME NOT NULL,
+    duration_minutes INT NOT NULL,
+    total_points INT NOT NULL DEFAULT 100,
+    passing_score INT NOT NULL DEFAULT 60,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+CREATE TABLE IF NOT EXISTS quiz_questions (
+    quiz_question_id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    quiz_id BIGINT NOT NULL,
+    question_id BIGINT NOT NULL,
+    question_order INT NOT NULL,
+    points INT NOT NULL,
+    UNIQUE KEY uk_quiz_question (quiz_id, question_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+CREATE TABLE IF NOT EXISTS quiz_settings (
+    setting_id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    quiz_id BIGINT NOT NULL UNIQUE,
+    shuffle_questions BOOLEAN NOT NULL DEFAULT FALSE,
+    shuffle_options BOOLEAN NOT NULL DEFAULT FALSE,
+    show_results_immediately BOOLEAN NOT NULL DEFAULT FALSE,
+    allow_review BOOLEAN NOT NULL DEFAULT TRUE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+CREATE TABLE IF NOT EXISTS student_quizzes (
+    student_quiz_id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    quiz_id BIGINT NOT NULL,
+    student_id BIGINT NOT NULL,
+    start_time DATETIME NOT NULL,
+    submit_time DATETIME,
+    score DECIMAL(10,2),
+    percentage DECIMAL(5,2),
+    graded BOOLEAN NOT NULL DEFAULT FALSE,
+    published BOOLEAN NOT NULL DEFAULT FALSE,
+    status ENUM('in_progress','submitted','grading','completed') NOT NULL DEFAULT 'in_progress',
+    UNIQUE KEY uk_student_quiz (quiz_id, student_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+CREATE TABLE IF NOT EXISTS student_answers (
+    answer_id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    student_quiz_id BIGINT NOT NULL,
+    question_id BIGINT NOT NULL,
+    selected_option_id BIGINT,
+    answer_text LONGTEXT,
+    is_correct BOOLEAN,
+    points_earned DECIMAL(10,2),
+    UNIQUE KEY uk_student_question (student_quiz_id, question_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
@@ -0,0 +1,45 @@
+-- ========================================
+-- V2: 热点查询索引 Indexes for hot queries
+-- ========================================
+-- 每个索引注明服务的 SqlCatalog 语句。
+-- 尽量做成覆盖索引，使查询只读二级索引、不回表。
+
+-- QUESTION_UPDATE_STATISTICS: 按 question_id 统计作答次数/正确次数/参与测验数
+CREATE INDEX idx_sa_question_correct
+    ON student_answers (question_id, is_correct, student_quiz_id);
+
+-- STUDENT_AVAILABLE_QUIZZES / STUDENT_PUBLISHED_GRADES / CLASS_GRADES: classrooms → quizzes
+CREATE INDEX idx_quizzes_classroom
+    ON quizzes (classroom_id, quiz_id);
+
+-- TEACHER_QUIZZES: WHERE q.created_by = ?
+CREATE INDEX idx_quizzes_created_by
+    ON quizzes (created_by, quiz_id, classroom_id);
+
+-- CLASSROOM_ACTIVE_STUDENTS: WHERE e.classroom_id = ? AND e.status = 'active'
+CREATE INDEX idx_enrollments_classroom_status
+    ON enrollments (classroom_id, status, student_id);
+
+-- STUDENT_AVAILABLE_QUIZZES: WHERE e.student_id = ? AND e.status = 'active'
+CREATE INDEX idx_enrollments_student_status
+    ON enrollments (student_id, status, classroom_id);
+
+-- STUDENT_PUBLISHED_GRADES: WHERE sq.student_id = ? AND sq.published = TRUE AND sq.graded = TRUE
+CREATE INDEX idx_sq_student_published
+    ON student_quizzes (student_id, published, graded, quiz_id);
+
+-- CLASS_GRADES / GRADE_REPORT: WHERE sq.quiz_id = ? AND sq.graded = TRUE ORDER BY sq.score DESC
+CREATE INDEX idx_sq_quiz_graded_score
+    ON student_quizzes (quiz_id, graded, score);
+
+-- QUIZ_PAPER: WHERE qq.quiz_id = ? ORDER BY qq.question_order (整张试卷的单个 JOIN 查询)
+CREATE INDEX idx_qq_quiz_order
+    ON quiz_questions (quiz_id, question_order, question_id, points);
+
+-- QUESTION_RANDOM* / QUESTION_STATISTICS[subject*]: WHERE subject_id = ? AND is_deleted = FALSE [AND type/difficulty]
+CREATE INDEX idx_questions_subject
+    ON questions (subject_id, is_deleted, question_type, difficulty_level);
+
+-- QUESTION_RANKING[times_used] / QUESTION_DIFFICULTY_RATING: WHERE is_deleted = FALSE AND times_used >= ?
+CREATE INDEX idx_questions_usage
+    ON questions (is_deleted, times_used);
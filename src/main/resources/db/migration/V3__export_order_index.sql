@@ -0,0 +1,9 @@
+-- ========================================
+-- V3: 导出排序索引 Index for ordered answer export
+-- ========================================
+-- QUIZ_ANSWERS_EXPORT: WHERE sq.quiz_id = ? ORDER BY sq.student_quiz_id, sa.question_id
+-- 二级索引隐含主键后缀，(quiz_id) 即按 (quiz_id, student_quiz_id) 有序；
+-- 再经 uk_student_question (student_quiz_id, question_id) 连接 student_answers，
+-- 结果天然有序，不需要 filesort (由 QueryPlanTests 检查)
+CREATE INDEX idx_sq_quiz
+    ON student_quizzes (quiz_id);
@@ -0,0 +1,7 @@
+-- ========================================
+-- V4: 测验开始时间索引 Index for exam pre-warming
+-- ========================================
+-- QUIZ_UPCOMING: WHERE start_time BETWEEN ? AND ? AND end_time > NOW() ORDER BY start_time
+-- ExamWarmupService 定时扫描即将开始的测验，按开始时间范围查找并排序
+CREATE INDEX idx_quizzes_start_time
+    ON quizzes (start_time);
@@ -0,0 +1,8 @@
+-- ========================================
+-- V5: 待评分提交索引 Index for quiz-wide batch grading
+-- ========================================
+-- QUIZ_UNGRADED_SUBMISSIONS: WHERE quiz_id = ? AND graded = FALSE AND status = 'submitted' ORDER BY student_quiz_id
+-- 三列等值条件后二级索引按隐含的主键后缀有序，覆盖查询且不需要 filesort；
+-- 中断后重新评分只读取尚未评分的提交
+CREATE INDEX idx_sq_quiz_ungraded
+    ON student_quizzes (quiz_id, graded, status);
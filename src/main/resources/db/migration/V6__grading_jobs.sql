@@ -0,0 +1,26 @@
+-- ========================================
+-- V6: 评分任务队列 Durable grading job queue
+-- ========================================
+-- 提交测验和全测验评分时写入一行任务，各节点的评分线程以
+-- SELECT ... FOR UPDATE SKIP LOCKED 认领 (互不等待)，评分与标记完成在同一事务中。
+-- 认领后超过 lease_until 仍未完成的任务 (节点崩溃) 由任意节点放回 pending。
+--
+-- GRADING_JOBS_CLAIM_SELECT: WHERE status = 'pending' ORDER BY job_id   → idx_grading_jobs_status (隐含主键后缀有序)
+-- GRADING_JOBS_REAP:         WHERE status = 'running' AND lease_until < NOW()
+-- GRADING_JOBS_QUIZ_COUNTS:  WHERE quiz_id = ? GROUP BY status          → idx_grading_jobs_quiz
+CREATE TABLE IF NOT EXISTS grading_jobs (
+    job_id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    student_quiz_id BIGINT NOT NULL,
+    quiz_id BIGINT NOT NULL,
+    status ENUM('pending','running','done','failed') NOT NULL DEFAULT 'pending',
+    attempts INT NOT NULL DEFAULT 0,
+    claim_token CHAR(36),
+    claimed_by VARCHAR(128),
+    lease_until DATETIME,
+    last_error VARCHAR(500),
+    created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    finished_at DATETIME,
+    UNIQUE KEY uk_grading_jobs_submission (student_quiz_id),
+    KEY idx_grading_jobs_status (status),
+    KEY idx_grading_jobs_quiz (quiz_id, status)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
@@ -0,0 +1,7 @@
+-- ========================================
+-- V7: 删除导出排序索引 Drop the answer export index
+-- ========================================
+-- V3 的 idx_sq_quiz 只服务于已移除的答题导出 (QUIZ_ANSWERS_EXPORT)；
+-- 按 quiz_id 的查询由 idx_sq_quiz_graded_score / idx_sq_quiz_ungraded 的 (quiz_id) 前缀覆盖，
+-- 多余的索引只增加 student_quizzes 的写入开销
+DROP INDEX idx_sq_quiz ON student_quizzes;
@@ -0,0 +1,96 @@
+package com.zekai.comment;
+
+import com.zekai.api.service.AnswerWriter;
+import org.junit.jupiter.api.*;
+
+import java.sql.SQLException;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ========================================
+ * ANSWER FLUSH FALLBACK TESTS - 刷新失败隔离测试
+ * ========================================
+ *
+ * 用触发器让数据库拒绝 question_id = 999 的作答 (SIGNAL 45000)：
+ * 一次刷新中的一行坏数据不应让其他学生的答案留在缓冲区无限重试，
+ * 被拒绝的行丢弃并计数，同一会话的其余答案照常写入、提交不失败。
+ *
+ * @author Exam System Team
+ * @version 2.0
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class AnswerFlushFallbackTests extends ExamSystemTestBase {
+
+    private static final long REJECTED_QUESTION = 999;
+
+    @BeforeAll
+    @Override
+    public void setupAll() throws SQLException {
+        super.setupAll();
+        executeUpdate("DROP TRIGGER IF EXISTS reject_answer");
+        executeUpdate("CREATE TRIGGER reject_answer BEFORE INSERT ON student_answers FOR EACH ROW " +
+                "BEGIN IF NEW.question_id = " + REJECTED_QUESTION + " THEN " +
+                "SIGNAL SQLSTATE '45000' SET MESSAGE_TEXT = 'rejected answer'; END IF; END");
+    }
+
+    @AfterAll
+    public void dropTrigger() throws SQLException {
+        executeUpdate("DROP TRIGGER IF EXISTS reject_answer");
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("一行被拒绝不拖累其他会话 | A rejected row does not block other sessions")
+    void testRejectedRowIsolated() throws Exception {
+        System.out.println("┌─ FLUSH: rejected row");
+        executeUpdate("DELETE FROM student_answers");
+        AnswerWriter writer = new AnswerWriter("write-behind", Integer.MAX_VALUE);
+        for (long s = 1; s <= 3; s++) {
+            for (long q = 1; q <= 3; q++) {
+                writer.save(new AnswerWriter.Answer(s, q, q, null));
+            }
+        }
+        writer.save(new AnswerWriter.Answer(2, REJECTED_QUESTION, 1L, null));
+
+        assertEquals(9, writer.flushAll());
+        Map<String, Object> stats = writer.stats();
+        assertEquals(0, stats.get("pending"), "被拒绝的行不放回缓冲区");
+        assertEquals(1L, stats.get("rejectedRows"));
+        assertEquals(1L, stats.get("fallbacks"));
+        assertEquals(9, countAnswers("1 = 1"));
+
+        // 下一次刷新没有可写的答案
+        assertEquals(0, writer.flushAll());
+        writer.shutdown();
+        System.out.println("  ✓ " + stats.get("rejectedRows") + " row dropped, others written\n");
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("提交前刷新不因坏行失败 | flushSession writes the rest of the session")
+    void testFlushSessionWithRejectedRow() throws Exception {
+        System.out.println("┌─ FLUSH: session with a rejected row");
+        executeUpdate("DELETE FROM student_answers");
+        AnswerWriter writer = new AnswerWriter("write-behind", Integer.MAX_VALUE);
+        writer.save(new AnswerWriter.Answer(4, 1, 1L, null));
+        writer.save(new AnswerWriter.Answer(4, REJECTED_QUESTION, 1L, null));
+        writer.save(new AnswerWriter.Answer(4, 2, null, "essay"));
+        writer.save(new AnswerWriter.Answer(5, 1, 1L, null));
+
+        assertEquals(2, writer.flushSession(4));
+        assertEquals(2, countAnswers("student_quiz_id = 4"));
+        assertEquals(1, writer.stats().get("pending"), "其他会话的答案留在缓冲区");
+
+        writer.shutdown();
+        assertEquals(1, countAnswers("student_quiz_id = 5"));
+        System.out.println("  ✓ Session flushed without the rejected row\n");
+    }
+
+    private int countAnswers(String where) throws SQLException {
+        rs = conn.createStatement().executeQuery("SELECT COUNT(*) FROM student_answers WHERE " + where);
+        rs.next();
+        return rs.getInt(1);
+    }
+}
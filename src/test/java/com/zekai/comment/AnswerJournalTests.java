@@ -0,0 +1,224 @@
+package com.zekai.comment;
+
+import com.zekai.api.service.AnswerJournal;
+import com.zekai.api.service.AnswerWriter;
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ========================================
+ * ANSWER JOURNAL TESTS - 答案本地日志测试
+ * ========================================
+ *
+ * 用很小的段触发轮转；把段文件复制到另一个目录模拟 JVM 崩溃时留在磁盘上的状态
+ * (不刷新、不关闭)，再从复制的目录恢复并写库。
+ *
+ * @author Exam System Team
+ * @version 2.0
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class AnswerJournalTests extends ExamSystemTestBase {
+
+    private static final int SEGMENT_BYTES = 4096;
+    private static final int SESSIONS = 5;
+    private static final int QUESTIONS = 20;
+    private static final int VERSIONS = 3;
+
+    private final List<Path> dirs = new ArrayList<>();
+
+    @AfterAll
+    public void deleteDirs() throws IOException {
+        for (Path dir : dirs) {
+            try (Stream<Path> files = Files.walk(dir)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("崩溃后恢复 | Replay acknowledged answers after a crash")
+    void testReplayAfterCrash() throws Exception {
+        System.out.println("┌─ JOURNAL: crash replay");
+        executeUpdate("DELETE FROM student_answers");
+
+        Path dir = tempDir();
+        AnswerJournal journal = new AnswerJournal(dir, SEGMENT_BYTES, true);
+        // flushSize 足够大，保存期间不写库
+        AnswerWriter writer = new AnswerWriter("write-behind", Integer.MAX_VALUE, journal);
+        saveAll(writer);
+        assertTrue(segmentFiles(dir).size() > 1, "小段应已轮转");
+
+        Path crashed = crashImage(dir);
+        AnswerJournal recovered = new AnswerJournal(crashed, SEGMENT_BYTES, true);
+        // 只含被覆盖作答的段已在崩溃前删除，其余段中的记录全部恢复
+        assertTrue(recovered.recovered().size() >= SESSIONS * QUESTIONS, "每道题的最后一次作答都应在日志中");
+
+        AnswerWriter restarted = new AnswerWriter("write-behind", Integer.MAX_VALUE, recovered);
+        assertEquals(SESSIONS * QUESTIONS, restarted.stats().get("pending"), "同一题目只保留最后一次作答");
+        assertEquals(SESSIONS * QUESTIONS, restarted.flushAll());
+
+        pstmt = conn.prepareStatement("SELECT COUNT(*), SUM(answer_text = ?) FROM student_answers");
+        pstmt.setString(1, "答案 v" + VERSIONS);
+        rs = pstmt.executeQuery();
+        rs.next();
+        assertEquals(SESSIONS * QUESTIONS, rs.getInt(1));
+        assertEquals(SESSIONS * QUESTIONS, rs.getInt(2), "写库的应是最后一次作答");
+
+        // 恢复的段全部写库后删除，只剩新的活动段
+        assertEquals(1, segmentFiles(crashed).size());
+        System.out.println("  → " + restarted.stats().get("journal"));
+
+        restarted.shutdown();
+        journal.close();
+        System.out.println("  ✓ Replayed\n");
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("写了一半的记录 | Torn tail is ignored")
+    void testTornTail() throws Exception {
+        System.out.println("┌─ JOURNAL: torn tail");
+        Path dir = tempDir();
+        AnswerJournal journal = new AnswerJournal(dir, SEGMENT_BYTES, false);
+        AnswerWriter writer = new AnswerWriter("write-behind", Integer.MAX_VALUE, journal);
+        writer.save(new AnswerWriter.Answer(1, 1, 11L, null));
+        writer.save(new AnswerWriter.Answer(1, 2, null, "essay"));
+
+        Path crashed = crashImage(dir);
+        Path segment = segmentFiles(crashed).get(0);
+        byte[] bytes = Files.readAllBytes(segment);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int last = 0;
+        for (int position = 0; buffer.getInt(position) > 0; position += 8 + buffer.getInt(position)) {
+            last = position;
+        }
+        // 破坏最后一条记录的内容，CRC 不再匹配
+        bytes[last + 8 + 8] ^= 0x7f;
+        Files.write(segment, bytes);
+
+        AnswerJournal recovered = new AnswerJournal(crashed, SEGMENT_BYTES, false);
+        assertEquals(1, recovered.recovered().size(), "只恢复完整的记录");
+        recovered.close();
+        journal.close();
+        System.out.println("  ✓ Torn record skipped\n");
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("写库后删除段 | Segments are deleted once flushed")
+    void testSegmentsDeletedAfterFlush() throws Exception {
+        System.out.println("┌─ JOURNAL: segment cleanup");
+        executeUpdate("DELETE FROM student_answers");
+        Path dir = tempDir();
+        AnswerJournal journal = new AnswerJournal(dir, SEGMENT_BYTES, true);
+        AnswerWriter writer = new AnswerWriter("write-behind", Integer.MAX_VALUE, journal);
+        saveAll(writer);
+        writer.flushAll();
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> stats = (Map<String, Object>) writer.stats().get("journal");
+        assertEquals(0, stats.get("liveRecords"));
+        assertEquals(1, segmentFiles(dir).size(), "已封存的段应全部删除");
+        assertTrue((double) stats.get("recordsPerSync") >= 1.0);
+
+        writer.shutdown();
+        assertTrue(segmentFiles(dir).isEmpty(), "关闭时空的活动段也应删除");
+        System.out.println("  ✓ Segments deleted\n");
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("新段先释放时保留 | Newer segment outlives an older live one")
+    void testSupersededRecordNotReplayedOverNewer() throws Exception {
+        System.out.println("┌─ JOURNAL: segment deletion order");
+        executeUpdate("DELETE FROM student_answers");
+        Path dir = tempDir();
+        AnswerJournal journal = new AnswerJournal(dir, SEGMENT_BYTES, true);
+        AnswerWriter writer = new AnswerWriter("write-behind", Integer.MAX_VALUE, journal);
+        String filler = "x".repeat(3000);
+
+        // 段 0: (1,1) v1、会话 2 未写库的作答、(1,2)；段 1: (1,3)、(1,1) v2；段 2 (活动): (1,4)
+        writer.save(new AnswerWriter.Answer(1, 1, 1L, "答案 v1"));
+        writer.save(new AnswerWriter.Answer(2, 1, 1L, "会话 2"));
+        writer.save(new AnswerWriter.Answer(1, 2, null, filler));
+        writer.save(new AnswerWriter.Answer(1, 3, null, filler));
+        writer.save(new AnswerWriter.Answer(1, 1, 2L, "答案 v2"));
+        writer.save(new AnswerWriter.Answer(1, 4, null, filler));
+        assertEquals(3, segmentFiles(dir).size());
+
+        // 会话 1 提交前写库：段 1 的记录全部释放，但段 0 还有会话 2 的记录
+        assertEquals(4, writer.flushSession(1));
+        assertEquals(3, segmentFiles(dir).size(), "段 0 未删除时段 1 应保留");
+
+        Path crashed = crashImage(dir);
+        AnswerJournal recovered = new AnswerJournal(crashed, SEGMENT_BYTES, true);
+        AnswerWriter restarted = new AnswerWriter("write-behind", Integer.MAX_VALUE, recovered);
+        restarted.flushAll();
+
+        rs = conn.createStatement().executeQuery(
+                "SELECT answer_text FROM student_answers WHERE student_quiz_id = 1 AND question_id = 1");
+        assertTrue(rs.next());
+        assertEquals("答案 v2", rs.getString(1), "被覆盖的旧作答不应在恢复后写回");
+        rs = conn.createStatement().executeQuery(
+                "SELECT COUNT(*) FROM student_answers WHERE student_quiz_id = 2");
+        rs.next();
+        assertEquals(1, rs.getInt(1));
+
+        // 会话 2 写库后段 0 释放，连同已释放的段 1 一起删除
+        writer.flushAll();
+        assertEquals(1, segmentFiles(dir).size());
+
+        restarted.shutdown();
+        writer.shutdown();
+        System.out.println("  ✓ Superseded answer not replayed\n");
+    }
+
+    // ==================== 辅助方法 ====================
+
+    private void saveAll(AnswerWriter writer) throws Exception {
+        for (int v = 1; v <= VERSIONS; v++) {
+            for (long s = 1; s <= SESSIONS; s++) {
+                for (long q = 1; q <= QUESTIONS; q++) {
+                    writer.save(new AnswerWriter.Answer(s, q, (long) v, "答案 v" + v));
+                }
+            }
+        }
+    }
+
+    private Path tempDir() throws IOException {
+        Path dir = Files.createTempDirectory("answer-journal");
+        dirs.add(dir);
+        return dir;
+    }
+
+    /**
+     * 复制段文件 (不含目录锁)，相当于进程崩溃时留在磁盘上的内容
+     */
+    private Path crashImage(Path dir) throws IOException {
+        Path copy = tempDir();
+        for (Path segment : segmentFiles(dir)) {
+            Files.copy(segment, copy.resolve(segment.getFileName()));
+        }
+        return copy;
+    }
+
+    private static List<Path> segmentFiles(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(path -> path.toString().endsWith(".journal")).sorted().toList();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.zekai.comment;
+
+import com.zekai.api.service.AnswerWriter;
+import com.zekai.api.service.AnswerWriter.SaveResult;
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ========================================
+ * ANSWER SEQUENCE TESTS - 自动保存序号测试
+ * ========================================
+ *
+ * 客户端重试和乱序到达的自动保存：过期的保存被拒绝、重复的保存不写库，
+ * 最终落库的是序号最大的作答。
+ *
+ * @author Exam System Team
+ * @version 2.0
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class AnswerSequenceTests extends ExamSystemTestBase {
+
+    @Test
+    @Order(1)
+    @DisplayName("重试与乱序 | Retries and reordering")
+    void testStaleAndDuplicate() throws Exception {
+        System.out.println("┌─ SEQUENCE: stale and duplicate saves");
+        executeUpdate("DELETE FROM student_answers");
+        AnswerWriter writer = new AnswerWriter("sync", 500);
+
+        assertEquals(SaveResult.SAVED, writer.save(answer(1, 1, "seq 2"), 2L));
+        assertEquals(SaveResult.DUPLICATE, writer.save(answer(1, 1, "seq 2"), 2L), "重试应视为重复");
+        assertEquals(SaveResult.STALE, writer.save(answer(1, 1, "seq 1"), 1L), "迟到的旧作答应被拒绝");
+        assertEquals(SaveResult.SAVED, writer.save(answer(1, 1, "seq 3"), 3L));
+        // 其他题目的序号互不影响
+        assertEquals(SaveResult.SAVED, writer.save(answer(1, 2, "seq 1"), 1L));
+
+        assertEquals("seq 3", answerText(1, 1));
+        Map<String, Object> stats = writer.stats();
+        assertEquals(3L, stats.get("saves"), "只有被接受的保存写库");
+        @SuppressWarnings("unchecked")
+        Map<String, Object> sequences = (Map<String, Object>) stats.get("sequences");
+        assertEquals(1L, sequences.get("duplicates"));
+        assertEquals(1L, sequences.get("stale"));
+
+        // 提交后释放序号表，只保留已提交标记：迟到的重试不再写入
+        writer.sessionSubmitted(1);
+        assertEquals(SaveResult.STALE, writer.save(answer(1, 1, "after submit"), 4L), "提交后的保存应被拒绝");
+        assertEquals(SaveResult.STALE, writer.saveAll(1,
+                Collections.singletonList(answer(1, 3, "after submit")), Collections.singletonList(1L)).get(0));
+        assertEquals("seq 3", answerText(1, 1));
+        assertNull(answerText(1, 3));
+        assertEquals(1L, sequences(writer).get("submittedSessions"));
+        assertEquals(0L, sequences(writer).get("entries"));
+        System.out.println("  ✓ Stale rejected, duplicate no-op\n");
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("并发乱序保存 | Concurrent out-of-order saves")
+    void testConcurrentReordering() throws Exception {
+        System.out.println("┌─ SEQUENCE: concurrent reordered saves");
+        executeUpdate("DELETE FROM student_answers");
+        int versions = 200;
+        List<Integer> order = new ArrayList<>();
+        for (int v = 1; v <= versions; v++) {
+            order.add(v);
+        }
+        Collections.shuffle(order);
+
+        for (String mode : Arrays.asList("sync", "write-behind")) {
+            AnswerWriter writer = new AnswerWriter(mode, 500);
+            ExecutorService pool = Executors.newFixedThreadPool(16);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int v : order) {
+                futures.add(pool.submit(() -> writer.save(answer(2, 1, mode + " seq " + v), (long) v)));
+            }
+            for (Future<?> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+            pool.shutdown();
+            writer.flushAll();
+
+            assertEquals(mode + " seq " + versions, answerText(2, 1), mode + ": 最终应是序号最大的作答");
+            System.out.println("  → " + mode + ": " + sequences(writer));
+        }
+        System.out.println("  ✓ Highest sequence wins\n");
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("批量保存的序号 | Sequence numbers in bulk saves")
+    void testBulk() throws Exception {
+        System.out.println("┌─ SEQUENCE: bulk");
+        executeUpdate("DELETE FROM student_answers");
+        AnswerWriter writer = new AnswerWriter("sync", 500);
+        writer.save(answer(3, 1, "seq 5"), 5L);
+
+        List<SaveResult> results = writer.saveAll(3,
+                Arrays.asList(answer(3, 1, "seq 4"), answer(3, 2, "seq 2"), answer(3, 2, "seq 1"),
+                        answer(3, 3, "no seq"), answer(3, 2, "seq 2")),
+                Arrays.asList(4L, 2L, 1L, null, 2L));
+
+        assertEquals(Arrays.asList(SaveResult.STALE, SaveResult.SAVED, SaveResult.STALE,
+                SaveResult.SAVED, SaveResult.DUPLICATE), results);
+        assertEquals("seq 5", answerText(3, 1));
+        assertEquals("seq 2", answerText(3, 2));
+        assertEquals("no seq", answerText(3, 3));
+        System.out.println("  ✓ Bulk results per item\n");
+    }
+
+    // ==================== 辅助方法 ====================
+
+    private static AnswerWriter.Answer answer(long studentQuizId, long questionId, String text) {
+        return new AnswerWriter.Answer(studentQuizId, questionId, null, text);
+    }
+
+    private String answerText(long studentQuizId, long questionId) throws Exception {
+        pstmt = conn.prepareStatement(
+                "SELECT answer_text FROM student_answers WHERE student_quiz_id = ? AND question_id = ?");
+        pstmt.setLong(1, studentQuizId);
+        pstmt.setLong(2, questionId);
+        rs = pstmt.executeQuery();
+        return rs.next() ? rs.getString(1) : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> sequences(AnswerWriter writer) {
+        return (Map<String, Object>) writer.stats().get("sequences");
+    }
+}
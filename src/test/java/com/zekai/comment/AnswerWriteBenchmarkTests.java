@@ -0,0 +1,147 @@
+package com.zekai.comment;
+
+import com.zekai.api.service.AnswerWriter;
+import org.junit.jupiter.api.*;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ========================================
+ * ANSWER WRITE BENCHMARK - 答案写入对比
+ * ========================================
+ *
+ * 模拟考试高峰的自动保存：每名学生一个线程，每道题连续保存多次 (突发)，
+ * 分别用 sync、group-commit 和 write-behind 三种模式写入，输出吞吐量、保存延迟和提交次数，
+ * 并校验各模式最终落库的都是每道题的最后一次作答。
+ *
+ * @author Exam System Team
+ * @version 2.0
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class AnswerWriteBenchmarkTests extends ExamSystemTestBase {
+
+    private static final int STUDENTS = 20;
+    private static final int QUESTIONS = 30;
+    private static final int SAVES_PER_QUESTION = 4;
+
+    private final Map<String, Map<String, Object>> results = new LinkedHashMap<>();
+
+    @Test
+    @Order(1)
+    @DisplayName("同步写入 | Synchronous autosave")
+    void testSyncMode() throws Exception {
+        System.out.println("┌─ ANSWER WRITES: sync (one transaction per save)");
+        run("sync");
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("延迟批量写入 | Write-behind autosave")
+    void testWriteBehindMode() throws Exception {
+        System.out.println("┌─ ANSWER WRITES: write-behind (buffered, multi-row flush)");
+        run("write-behind");
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("组提交 | Group-commit autosave")
+    void testGroupCommitMode() throws Exception {
+        System.out.println("┌─ ANSWER WRITES: group-commit (concurrent saves share one transaction)");
+        run("group-commit");
+        int saves = STUDENTS * QUESTIONS * SAVES_PER_QUESTION;
+        assertTrue((int) results.get("group-commit").get("commits") <= saves / 4,
+                "并发保存应合并提交，提交次数应远少于保存次数");
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("模式对比 | Mode comparison")
+    void testCompare() {
+        assertEquals(3, results.size(), "三种模式都应已运行");
+        System.out.println("┌─ ANSWER WRITES: comparison");
+        results.forEach((mode, r) -> System.out.printf("  → %-13s %8.0f saves/s  p50 %6.3f ms  p99 %7.3f ms  %5d commits%n",
+                mode, r.get("throughput"), r.get("p50"), r.get("p99"), r.get("commits")));
+        System.out.println("  ✓ Compared\n");
+    }
+
+    // ==================== 辅助方法 ====================
+
+    private void run(String mode) throws Exception {
+        executeUpdate("DELETE FROM student_answers");
+        AnswerWriter writer = new AnswerWriter(mode, 500);
+
+        // write-behind 模式下模拟定时刷新
+        ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor();
+        flusher.scheduleWithFixedDelay(writer::flushScheduled, 200, 200, TimeUnit.MILLISECONDS);
+
+        ExecutorService students = Executors.newFixedThreadPool(STUDENTS);
+        List<Future<?>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        try {
+            for (int s = 1; s <= STUDENTS; s++) {
+                long studentQuizId = s;
+                futures.add(students.submit(() -> {
+                    for (int q = 1; q <= QUESTIONS; q++) {
+                        for (int v = 1; v <= SAVES_PER_QUESTION; v++) {
+                            writer.save(new AnswerWriter.Answer(studentQuizId, q, (long) v, "v" + v));
+                        }
+                    }
+                    // 提交测验前刷新本会话
+                    writer.flushSession(studentQuizId);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(5, TimeUnit.MINUTES);
+            }
+        } finally {
+            students.shutdownNow();
+            flusher.shutdownNow();
+            writer.shutdown();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        // 每道题落库的都应是最后一次作答
+        pstmt = conn.prepareStatement("SELECT COUNT(*), SUM(answer_text = ?) FROM student_answers");
+        pstmt.setString(1, "v" + SAVES_PER_QUESTION);
+        rs = pstmt.executeQuery();
+        rs.next();
+        assertEquals(STUDENTS * QUESTIONS, rs.getInt(1), "每道题一行");
+        assertEquals(STUDENTS * QUESTIONS, rs.getInt(2), "最后一次作答应覆盖之前的作答");
+
+        Map<String, Object> stats = writer.stats();
+        assertEquals(0, stats.get("pending"), "提交后不应有待写答案");
+        @SuppressWarnings("unchecked")
+        Map<String, Object> latency = (Map<String, Object>) stats.get("saveLatency");
+        int saves = STUDENTS * QUESTIONS * SAVES_PER_QUESTION;
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("throughput", saves / seconds);
+        result.put("p50", latency.get("p50"));
+        result.put("p99", latency.get("p99"));
+        result.put("commits", commits(mode, saves, stats));
+        results.put(mode, result);
+
+        System.out.printf("  → %d saves in %.2f s (%.0f saves/s), latency %s%n", saves, seconds, saves / seconds, latency);
+        System.out.println("  ✓ Final answers persisted\n");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int commits(String mode, int saves, Map<String, Object> stats) {
+        switch (mode) {
+            case "sync":
+                return saves;
+            case "group-commit":
+                return ((Number) ((Map<String, Object>) stats.get("groupCommit")).get("commits")).intValue();
+            default:
+                return ((Number) stats.get("flushes")).intValue();
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package com.zekai.comment;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zekai.api.service.EncodedPaper;
+import com.zekai.api.service.ExamPaperService;
+import org.junit.jupiter.api.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ========================================
+ * EXAM PAPER LOADING TESTS - 试卷加载测试
+ * ========================================
+ *
+ * 验证 ExamPaperService (Feature 21 开始测验使用):
+ * - 整张试卷只执行一条语句，与题目数量无关
+ * - 题目和选项的顺序与内容正确，无选项的题目得到空列表
+ * - 缓存命中时不访问数据库，题目或测验变更后失效
+ * - 预编码 (含 gzip) 的响应与 Jackson 编码的内容一致
+ * - 冷缓存下的并发请求只加载一次
+ *
+ * @author Exam System Team
+ * @version 2.0
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class ExamPaperLoadingTests extends ExamSystemTestBase {
+
+    private static final int LARGE_PAPER_QUESTIONS = 50;
+
+    private final ExamPaperService examPaperService = new ExamPaperService();
+
+    private long smallQuizId;
+    private long largeQuizId;
+
+    @BeforeAll
+    @Override
+    public void setupAll() throws SQLException {
+        super.setupAll();
+
+        createTeacherAccount();
+        createCourseAndClassroom();
+        createSubject();
+
+        // 小试卷：3 道选择题
+        createQuestionWithOptions("Q1", new String[]{"A", "B", "C", "D"}, new boolean[]{true, false, false, false});
+        questionId1 = getLastQuestionId();
+        createQuestionWithOptions("Q2", new String[]{"A", "B"}, new boolean[]{false, true});
+        questionId2 = getLastQuestionId();
+        createQuestionWithOptions("Q3", new String[]{"A", "B", "C"}, new boolean[]{false, false, true});
+        questionId3 = getLastQuestionId();
+        createQuiz();
+        addQuestionsToQuiz();
+        smallQuizId = quizId;
+
+        // 大试卷：49 道选择题 + 1 道无选项的简答题
+        createQuiz();
+        largeQuizId = quizId;
+        for (int i = 1; i < LARGE_PAPER_QUESTIONS; i++) {
+            createQuestionWithOptions("Large Q" + i, new String[]{"A", "B", "C", "D"},
+                    new boolean[]{i % 4 == 0, i % 4 == 1, i % 4 == 2, i % 4 == 3});
+            addQuestionToQuiz(largeQuizId, getLastQuestionId(), i);
+        }
+        executeUpdate("INSERT INTO questions (subject_id, question_text, question_type, difficulty_level, created_by) " +
+                "VALUES (" + subjectId + ", 'Explain B-trees', 'essay', 3, " + teacherId + ")");
+        addQuestionToQuiz(largeQuizId, getLastQuestionId(), LARGE_PAPER_QUESTIONS);
+    }
+
+    // ==================================================================================
+    // 语句数量 | Statement count
+    // ==================================================================================
+
+    @Test
+    @Order(1)
+    @DisplayName("试卷加载语句数与题目数无关 | Constant statement count per paper")
+    void testConstantStatementCount() throws SQLException {
+        System.out.println("┌─ EXAM PAPER: statement count per paper");
+
+        AtomicInteger smallCount = new AtomicInteger();
+        List<Map<String, Object>> small = examPaperService.loadPaper(counting(conn, smallCount), smallQuizId);
+
+        AtomicInteger largeCount = new AtomicInteger();
+        List<Map<String, Object>> large = examPaperService.loadPaper(counting(conn, largeCount), largeQuizId);
+
+        assertEquals(3, small.size());
+        assertEquals(LARGE_PAPER_QUESTIONS, large.size());
+        assertEquals(1, smallCount.get(), "3 题试卷应只执行一条语句");
+        assertEquals(smallCount.get(), largeCount.get(), "语句数不应随题目数增长");
+
+        System.out.println("  → 3 questions: " + smallCount.get() + " statement(s), " +
+                LARGE_PAPER_QUESTIONS + " questions: " + largeCount.get() + " statement(s)");
+        System.out.println("  ✓ Statement count is constant\n");
+    }
+
+    // ==================================================================================
+    // 内容正确性 | Paper content
+    // ==================================================================================
+
+    @Test
+    @Order(2)
+    @DisplayName("试卷内容与顺序 | Paper content and order")
+    @SuppressWarnings("unchecked")
+    void testPaperContent() throws SQLException {
+        System.out.println("┌─ EXAM PAPER: content and ordering");
+
+        List<Map<String, Object>> small = examPaperService.loadPaper(conn, smallQuizId);
+        int[] expectedOptions = {4, 2, 3};
+        for (int i = 0; i < small.size(); i++) {
+            Map<String, Object> question = small.get(i);
+            assertEquals(i + 1, question.get("questionOrder"));
+            List<Map<String, Object>> options = (List<Map<String, Object>>) question.get("options");
+            assertEquals(expectedOptions[i], options.size(), "Q" + (i + 1) + " 选项数");
+            for (int j = 0; j < options.size(); j++) {
+                assertEquals(j + 1, options.get(j).get("optionOrder"));
+                assertFalse(options.get(j).containsKey("isCorrect"), "试卷不应包含正确答案");
+            }
+        }
+
+        List<Map<String, Object>> large = examPaperService.loadPaper(conn, largeQuizId);
+        Map<String, Object> essay = large.get(LARGE_PAPER_QUESTIONS - 1);
+        assertEquals("essay", essay.get("questionType"));
+        assertTrue(((List<?>) essay.get("options")).isEmpty(), "简答题应没有选项");
+
+        System.out.println("  ✓ Questions and options assembled in order\n");
+    }
+
+    // ==================================================================================
+    // 缓存 | Paper cache
+    // ==================================================================================
+
+    @Test
+    @Order(3)
+    @DisplayName("试卷缓存命中与失效 | Paper cache hits and invalidation")
+    void testPaperCache() throws SQLException {
+        System.out.println("┌─ EXAM PAPER: cache hits and invalidation");
+
+        ExamPaperService cached = new ExamPaperService(2, 300);
+        AtomicInteger count = new AtomicInteger();
+        Connection countingConn = counting(conn, count);
+
+        List<Map<String, Object>> first = cached.getPaper(countingConn, smallQuizId);
+        for (int i = 0; i < 10; i++) {
+            assertSame(first, cached.getPaper(countingConn, smallQuizId));
+        }
+        assertEquals(1, count.get(), "命中缓存时不应访问数据库");
+        assertThrows(UnsupportedOperationException.class, () -> first.remove(0), "缓存的试卷不可修改");
+
+        // 题目变更使包含它的试卷失效，其他试卷不受影响
+        cached.getPaper(countingConn, largeQuizId);
+        assertEquals(2, count.get());
+        cached.invalidateQuestion(questionId1);
+        cached.getPaper(countingConn, largeQuizId);
+        assertEquals(2, count.get(), "大试卷不含 Q1，不应失效");
+        cached.getPaper(countingConn, smallQuizId);
+        assertEquals(3, count.get(), "小试卷包含 Q1，应重新加载");
+
+        // 测验变更
+        cached.invalidateQuiz(largeQuizId);
+        cached.getPaper(countingConn, largeQuizId);
+        assertEquals(4, count.get());
+
+        Map<String, Object> stats = cached.stats();
+        assertEquals(2, stats.get("size"));
+        assertEquals(2L, stats.get("invalidations"));
+
+        System.out.println("  → " + stats);
+        System.out.println("  ✓ Cached paper served without queries, invalidated on change\n");
+    }
+
+    // ==================================================================================
+    // 预编码 | Pre-encoded response
+    // ==================================================================================
+
+    @Test
+    @Order(4)
+    @DisplayName("预编码试卷响应 | Pre-encoded paper response")
+    @SuppressWarnings("unchecked")
+    void testEncodedPaper() throws SQLException, IOException {
+        System.out.println("┌─ EXAM PAPER: pre-encoded response bytes");
+
+        ObjectMapper mapper = new ObjectMapper();
+        ExamPaperService encoding = new ExamPaperService(2, 300, true, true, mapper);
+
+        EncodedPaper paper = encoding.getEncodedPaper(conn, largeQuizId);
+        assertSame(paper, encoding.getEncodedPaper(conn, largeQuizId), "编码只应进行一次");
+        assertTrue(paper.hasGzip());
+
+        byte[] json = paper.toJson(4242, 1700000000000L);
+        byte[] gunzipped = new GZIPInputStream(new ByteArrayInputStream(paper.toGzip(4242, 1700000000000L))).readAllBytes();
+        assertArrayEquals(json, gunzipped, "gzip 解压后应与未压缩版本一致");
+
+        Map<String, Object> response = mapper.readValue(json, Map.class);
+        Map<String, Object> data = (Map<String, Object>) response.get("data");
+        assertEquals(200, response.get("code"));
+        assertEquals(1700000000000L, response.get("timestamp"));
+        assertEquals(4242, data.get("studentQuizId"));
+        assertEquals("in_progress", data.get("status"));
+        assertEquals(mapper.readValue(mapper.writeValueAsBytes(encoding.getPaper(conn, largeQuizId)), List.class),
+                data.get("questions"), "题目应与 Jackson 编码一致");
+
+        assertTrue(EncodedPaper.acceptsGzip("gzip, deflate, br"));
+        assertTrue(EncodedPaper.acceptsGzip("br;q=1.0, GZIP;q=0.5"));
+        assertTrue(EncodedPaper.acceptsGzip("*"));
+        assertFalse(EncodedPaper.acceptsGzip("gzip;q=0"), "q=0 表示拒绝 gzip");
+        assertFalse(EncodedPaper.acceptsGzip("*, gzip;q=0.0"), "显式的 gzip;q=0 优先于 *");
+        assertFalse(EncodedPaper.acceptsGzip("identity"));
+        assertFalse(EncodedPaper.acceptsGzip("x-gzipped"));
+        assertFalse(EncodedPaper.acceptsGzip(null));
+
+        System.out.println("  → " + json.length + " bytes JSON, " + paper.gzipSize() + " bytes pre-gzipped paper");
+        System.out.println("  ✓ Pre-encoded response matches Jackson output\n");
+    }
+
+    // ==================================================================================
+    // 并发加载合并 | Single-flight loading
+    // ==================================================================================
+
+    @Test
+    @Order(5)
+    @DisplayName("冷缓存并发开考只加载一次 | Burst on a cold cache loads once")
+    @SuppressWarnings("unchecked")
+    void testConcurrentLoadsCoalesce() throws Exception {
+        System.out.println("┌─ EXAM PAPER: burst of concurrent starts on a cold cache");
+
+        int callers = 200;
+        ExamPaperService cold = new ExamPaperService(16, 300);
+        AtomicInteger count = new AtomicInteger();
+        // 只有加载者会使用连接，因此所有线程可以共用一个 (慢) 连接
+        Connection slowConn = counting(conn, count, 300);
+
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        CountDownLatch ready = new CountDownLatch(callers);
+        CountDownLatch go = new CountDownLatch(1);
+        List<Future<List<Map<String, Object>>>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < callers; i++) {
+                results.add(pool.submit(() -> {
+                    ready.countDown();
+                    go.await();
+                    return cold.getPaper(slowConn, largeQuizId);
+                }));
+            }
+            ready.await();
+            go.countDown();
+
+            List<Map<String, Object>> first = results.get(0).get(30, TimeUnit.SECONDS);
+            for (Future<List<Map<String, Object>>> result : results) {
+                assertSame(first, result.get(30, TimeUnit.SECONDS), "所有请求应共享同一份试卷");
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(1, count.get(), callers + " 个并发请求应只访问一次数据库");
+        Map<String, Object> loads = (Map<String, Object>) cold.stats().get("loads");
+        assertEquals(1L, loads.get("loads"));
+
+        System.out.println("  → " + callers + " concurrent callers, " + count.get() + " DB load, stats " + loads);
+        System.out.println("  ✓ Concurrent loads coalesced into one\n");
+    }
+
+    // ==================== 辅助方法 ====================
+
+    private void addQuestionToQuiz(long quiz, long question, int order) throws SQLException {
+        executeUpdate("INSERT INTO quiz_questions (quiz_id, question_id, question_order, points) " +
+                "VALUES (" + quiz + ", " + question + ", " + order + ", 2)");
+    }
+
+    private static Connection counting(Connection target, AtomicInteger executions) {
+        return counting(target, executions, 0);
+    }
+
+    /**
+     * 包装连接，统计经其执行的语句数；delayMillis > 0 时每条语句先等待，模拟慢查询
+     */
+    private static Connection counting(Connection target, AtomicInteger executions, long delayMillis) {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    Object result = invoke(target, method, args);
+                    if (result instanceof PreparedStatement) {
+                        PreparedStatement statement = (PreparedStatement) result;
+                        return Proxy.newProxyInstance(
+                                PreparedStatement.class.getClassLoader(),
+                                new Class<?>[]{PreparedStatement.class},
+                                (p, m, a) -> {
+                                    if (m.getName().startsWith("execute")) {
+                                        executions.incrementAndGet();
+                                        if (delayMillis > 0) {
+                                            Thread.sleep(delayMillis);
+                                        }
+                                    }
+                                    return invoke(statement, m, a);
+                                });
+                    }
+                    if (result instanceof Statement) {
+                        fail("试卷加载应只使用 PreparedStatement");
+                    }
+                    return result;
+                });
+    }
+
+    private static Object invoke(Object target, java.lang.reflect.Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
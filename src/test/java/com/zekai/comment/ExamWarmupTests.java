@@ -0,0 +1,141 @@
+package com.zekai.comment;
+
+import com.zekai.api.service.ExamPaperService;
+import com.zekai.api.service.ExamWarmupService;
+import org.junit.jupiter.api.*;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ========================================
+ * EXAM WARMUP TESTS - 考前预热测试
+ * ========================================
+ *
+ * 测验的时间窗口用 SQL 相对 NOW() 设置，与服务使用的数据库时钟一致：
+ * - 扫描预热即将开始的测验，就绪状态报告试卷和会话已加载
+ * - 数据库时钟校准后 now() 与 NOW() 一致，时间窗口按它判断
+ * - 已结束的测验在扫描时移除
+ * - 在读学生集合每次扫描重新读取 (模拟在其他实例上退课)
+ *
+ * @author Exam System Team
+ * @version 2.0
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class ExamWarmupTests extends ExamSystemTestBase {
+
+    private final ExamPaperService examPaperService = new ExamPaperService();
+
+    @BeforeAll
+    @Override
+    public void setupAll() throws SQLException {
+        super.setupAll();
+        createTeacherAccount();
+        createStudentAccount();
+        createCourseAndClassroom();
+        enrollStudent();
+        createSubject();
+        createQuiz();
+        createQuestionWithOptions("Q1", new String[]{"A", "B"}, new boolean[]{true, false});
+        executeUpdate("INSERT INTO quiz_questions (quiz_id, question_id, question_order, points) " +
+                "VALUES (" + quizId + ", " + getLastQuestionId() + ", 1, 100)");
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("扫描预热即将开始的测验 | Scan warms upcoming exams")
+    @SuppressWarnings("unchecked")
+    void testScanWarmsUpcoming() throws Exception {
+        System.out.println("┌─ WARMUP: scan");
+        setWindow("NOW() + INTERVAL 5 MINUTE", "NOW() + INTERVAL 1 HOUR");
+        ExamWarmupService warmup = service();
+        warmup.warmUpcoming();
+
+        Map<String, Object> readiness = warmup.readiness(conn);
+        List<Map<String, Object>> exams = (List<Map<String, Object>>) readiness.get("exams");
+        Map<String, Object> exam = exams.stream()
+                .filter(e -> e.get("quizId").equals(quizId)).findFirst().orElseThrow();
+        assertEquals(true, exam.get("warm"));
+        assertEquals(1, exam.get("enrolledStudents"));
+        assertTrue(examPaperService.isCached(quizId));
+        assertNull(readiness.get("lastScanError"));
+
+        assertFalse(warmup.session(conn, quizId).isOpen(warmup.now()), "尚未开始");
+        System.out.println("  ✓ Warmed " + readiness.get("warmed") + " exam(s)\n");
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("时间窗口按数据库时钟判断 | Window follows the database clock")
+    void testWindowUsesDatabaseClock() throws Exception {
+        System.out.println("┌─ WARMUP: clock");
+        setWindow("NOW() - INTERVAL 1 MINUTE", "NOW() + INTERVAL 1 HOUR");
+        ExamWarmupService warmup = service();
+        warmup.warmUpcoming();
+
+        rs = conn.createStatement().executeQuery("SELECT NOW()");
+        rs.next();
+        long dbNow = rs.getTimestamp(1).getTime();
+        // NOW() 精确到秒
+        assertEquals(dbNow, warmup.now(), 2000, "now() 应与数据库的 NOW() 一致");
+
+        ExamWarmupService.QuizSession session = warmup.session(conn, quizId);
+        assertTrue(session.isOpen(warmup.now()));
+        assertFalse(session.isOpen(warmup.now() + 2 * 3600 * 1000L), "结束后不在窗口内");
+        System.out.println("  → offset " + warmup.readiness(conn).get("clockOffsetMs") + " ms");
+        System.out.println("  ✓ Open by database time\n");
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("已结束的测验移除 | Ended exams are evicted")
+    void testEndedEvicted() throws Exception {
+        System.out.println("┌─ WARMUP: eviction");
+        setWindow("NOW() - INTERVAL 1 MINUTE", "NOW() + INTERVAL 1 HOUR");
+        ExamWarmupService warmup = service();
+        warmup.warmUpcoming();
+        assertEquals(1, warmup.readiness(conn).get("sessions"));
+
+        setWindow("NOW() - INTERVAL 2 HOUR", "NOW() - INTERVAL 1 SECOND");
+        // 缓存的会话仍是旧的时间窗口；重新加载后按新的结束时间移除
+        ExamWarmupService fresh = service();
+        assertTrue(fresh.session(conn, quizId).hasEnded(fresh.now()));
+        fresh.warmUpcoming();
+        assertEquals(0, fresh.readiness(conn).get("sessions"));
+        System.out.println("  ✓ Ended exam evicted\n");
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("扫描刷新在读学生 | Enrollment set is refreshed on scan")
+    void testEnrollmentRefreshed() throws Exception {
+        System.out.println("┌─ WARMUP: enrollment refresh");
+        setWindow("NOW() - INTERVAL 1 MINUTE", "NOW() + INTERVAL 1 HOUR");
+        ExamWarmupService warmup = service();
+        warmup.warmUpcoming();
+        ExamWarmupService.QuizSession session = warmup.session(conn, quizId);
+        assertTrue(warmup.isEnrolled(conn, session, studentId));
+
+        // 在另一个实例上退课：本实例没有收到 enrollmentChanged
+        executeUpdate("UPDATE enrollments SET status = 'dropped' WHERE student_id = " + studentId);
+        warmup.warmUpcoming();
+        assertFalse(warmup.isEnrolled(conn, session, studentId), "扫描后退课应生效");
+
+        executeUpdate("UPDATE enrollments SET status = 'active' WHERE student_id = " + studentId);
+        warmup.enrollmentChanged(classroomId, studentId, true);
+        assertTrue(warmup.isEnrolled(conn, session, studentId));
+        System.out.println("  ✓ Drop on another node seen after one scan\n");
+    }
+
+    private ExamWarmupService service() {
+        return new ExamWarmupService(examPaperService, true, 600, true);
+    }
+
+    private void setWindow(String start, String end) throws SQLException {
+        executeUpdate("UPDATE quizzes SET start_time = " + start + ", end_time = " + end +
+                " WHERE quiz_id = " + quizId);
+    }
+}
@@ -0,0 +1,307 @@
+package com.zekai.comment;
+
+import com.zekai.api.service.GradingService;
+import com.zekai.util.TransactionTemplate;
+import org.junit.jupiter.api.*;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ========================================
+ * GRADING ENGINE TESTS - 评分引擎测试
+ * ========================================
+ *
+ * 一场 20 道选择题 + 1 道简答题的测验，{@value #SUBMISSIONS} 份提交：
+ * 先用原来的 UPDATE ... JOIN / 相关子查询逐份评分作为基准，
+ * 清空评分后用 GradingService 批量评分，逐题结果和总分应与基准一致。
+ * 全测验并行评分中断后重跑只评分剩余的提交；修正答案键后的增量重新评分与全部重新评分一致。
+ *
+ * @author Exam System Team
+ * @version 2.0
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class GradingEngineTests extends ExamSystemTestBase {
+
+    private static final int SUBMISSIONS = 1000;
+    private static final int CHOICE_QUESTIONS = 20;
+    private static final int BATCH = 500;
+
+    /** 原实现的逐题评分语句 (基准) */
+    private static final String LEGACY_GRADE_ANSWERS =
+            "UPDATE student_answers sa " +
+            "INNER JOIN question_options qo ON sa.selected_option_id = qo.option_id " +
+            "INNER JOIN quiz_questions qq ON sa.question_id = qq.question_id " +
+            "SET sa.is_correct = qo.is_correct, " +
+            "    sa.points_earned = CASE WHEN qo.is_correct THEN qq.points ELSE 0 END " +
+            "WHERE sa.student_quiz_id = ? AND qq.quiz_id = ?";
+
+    /** 原实现的总分语句 (基准；测验 total_points 为 100，百分比与新实现一致) */
+    private static final String LEGACY_TOTAL_SCORE =
+            "UPDATE student_quizzes sq " +
+            "SET sq.score = (SELECT COALESCE(SUM(points_earned), 0) FROM student_answers WHERE student_quiz_id = ?), " +
+            "    sq.percentage = (SELECT COALESCE(SUM(points_earned), 0) * 100.0 / 100 FROM student_answers WHERE student_quiz_id = ?), " +
+            "    sq.graded = TRUE, sq.status = 'completed' " +
+            "WHERE sq.student_quiz_id = ?";
+
+    private final GradingService gradingService = new GradingService();
+    private final List<Long> submissions = new ArrayList<>();
+    /** 每道选择题的 [questionId, 选项1..4 的 option_id] */
+    private final List<long[]> options = new ArrayList<>();
+    private long essayQuestionId;
+
+    @BeforeAll
+    @Override
+    public void setupAll() throws SQLException {
+        super.setupAll();
+
+        createTeacherAccount();
+        createCourseAndClassroom();
+        createSubject();
+        createQuiz();
+
+        for (int q = 1; q <= CHOICE_QUESTIONS; q++) {
+            createQuestionWithOptions("Choice Q" + q, new String[]{"A", "B", "C", "D"},
+                    new boolean[]{q % 4 == 0, q % 4 == 1, q % 4 == 2 || q % 5 == 0, q % 4 == 3});
+            long questionId = getLastQuestionId();
+            executeUpdate("INSERT INTO quiz_questions (quiz_id, question_id, question_order, points) " +
+                    "VALUES (" + quizId + ", " + questionId + ", " + q + ", 5)");
+            options.add(optionIds(questionId));
+        }
+        executeUpdate("INSERT INTO questions (subject_id, question_text, question_type, difficulty_level, created_by) " +
+                "VALUES (" + subjectId + ", 'Explain B-trees', 'essay', 3, " + teacherId + ")");
+        essayQuestionId = getLastQuestionId();
+        executeUpdate("INSERT INTO quiz_questions (quiz_id, question_id, question_order, points) " +
+                "VALUES (" + quizId + ", " + essayQuestionId + ", " + (CHOICE_QUESTIONS + 1) + ", 10)");
+
+        StringBuilder sql = new StringBuilder(
+                "INSERT INTO student_quizzes (quiz_id, student_id, start_time, submit_time, status) VALUES ");
+        for (int s = 1; s <= SUBMISSIONS; s++) {
+            sql.append(s > 1 ? ", " : "").append("(").append(quizId).append(", ").append(s)
+                    .append(", NOW(), NOW(), 'submitted')");
+        }
+        executeUpdate(sql.toString());
+        rs = conn.createStatement().executeQuery(
+                "SELECT student_quiz_id FROM student_quizzes WHERE quiz_id = " + quizId + " ORDER BY student_quiz_id");
+        while (rs.next()) {
+            submissions.add(rs.getLong(1));
+        }
+
+        // 作答：伪随机选项，部分题目未作答，简答题部分已人工评分
+        for (int from = 0; from < SUBMISSIONS; from += 100) {
+            sql = new StringBuilder("INSERT INTO student_answers " +
+                    "(student_quiz_id, question_id, selected_option_id, answer_text, points_earned) VALUES ");
+            boolean first = true;
+            for (int s = from; s < from + 100; s++) {
+                long studentQuizId = submissions.get(s);
+                for (int q = 0; q < CHOICE_QUESTIONS; q++) {
+                    if ((s + q) % 10 == 0) {
+                        continue;
+                    }
+                    long[] questionOptions = options.get(q);
+                    long questionId = questionOptions[0];
+                    long optionId = questionOptions[1 + (s * 7 + q) % 4];
+                    sql.append(first ? "" : ", ").append("(").append(studentQuizId).append(", ").append(questionId)
+                            .append(", ").append(optionId).append(", NULL, NULL)");
+                    first = false;
+                }
+                sql.append(", (").append(studentQuizId).append(", ").append(essayQuestionId)
+                        .append(", NULL, 'essay', ").append(s % 2 == 0 ? "7" : "NULL").append(")");
+            }
+            executeUpdate(sql.toString());
+        }
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("批量评分与原实现一致 | Engine matches the legacy statements")
+    void testMatchesLegacyGrading() throws Exception {
+        System.out.println("┌─ GRADING: engine vs legacy UPDATE ... JOIN");
+
+        long start = System.nanoTime();
+        for (long studentQuizId : submissions) {
+            TransactionTemplate.execute(c -> {
+                try (PreparedStatement answers = c.prepareStatement(LEGACY_GRADE_ANSWERS);
+                     PreparedStatement total = c.prepareStatement(LEGACY_TOTAL_SCORE)) {
+                    answers.setLong(1, studentQuizId);
+                    answers.setLong(2, quizId);
+                    answers.executeUpdate();
+                    total.setLong(1, studentQuizId);
+                    total.setLong(2, studentQuizId);
+                    total.setLong(3, studentQuizId);
+                    return total.executeUpdate();
+                }
+            });
+        }
+        double legacyMs = (System.nanoTime() - start) / 1e6;
+        List<String> expectedAnswers = answerSnapshot();
+        List<String> expectedScores = scoreSnapshot();
+
+        resetGrades();
+        start = System.nanoTime();
+        GradingService.AnswerKey key = TransactionTemplate.execute(c -> gradingService.loadAnswerKey(c, quizId));
+        assertEquals(CHOICE_QUESTIONS + 1, key.getQuestionCount());
+        for (int from = 0; from < submissions.size(); from += BATCH) {
+            List<Long> batch = submissions.subList(from, Math.min(submissions.size(), from + BATCH));
+            TransactionTemplate.execute(c -> gradingService.grade(c, key, batch));
+        }
+        double engineMs = (System.nanoTime() - start) / 1e6;
+
+        assertEquals(expectedAnswers, answerSnapshot(), "逐题评分应与原实现一致");
+        assertEquals(expectedScores, scoreSnapshot(), "总分应与原实现一致");
+
+        System.out.printf("  → %d submissions: legacy %.0f ms, engine %.0f ms%n", SUBMISSIONS, legacyMs, engineMs);
+        System.out.println("  ✓ Identical results\n");
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("单份提交评分 | Grade one submission")
+    void testGradeSubmission() throws Exception {
+        System.out.println("┌─ GRADING: single submission");
+        long studentQuizId = submissions.get(1);
+        resetGrades();
+
+        GradingService.GradeResult result = gradingService.gradeSubmission(studentQuizId);
+        assertNotNull(result);
+        assertEquals(CHOICE_QUESTIONS - 2, result.getGradedAnswers(), "每份提交有两道选择题未作答");
+
+        pstmt = conn.prepareStatement("SELECT score, percentage, graded, status FROM student_quizzes WHERE student_quiz_id = ?");
+        pstmt.setLong(1, studentQuizId);
+        rs = pstmt.executeQuery();
+        assertTrue(rs.next());
+        assertEquals(0, result.getScore().compareTo(rs.getBigDecimal("score")));
+        assertEquals(0, result.getPercentage().compareTo(rs.getBigDecimal("percentage")));
+        assertTrue(rs.getBoolean("graded"));
+        assertEquals("completed", rs.getString("status"));
+
+        assertNull(gradingService.gradeSubmission(-1), "不存在的提交");
+        System.out.println("  ✓ Graded: score " + result.getScore() + "\n");
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("全测验并行评分可重跑 | Quiz-wide grading resumes")
+    void testGradeQuizResumes() throws Exception {
+        System.out.println("┌─ GRADING: quiz-wide, interrupted and resumed");
+        GradingService parallel = new GradingService(4, 64);
+        try {
+            resetGrades();
+            List<Map<String, Object>> events = new CopyOnWriteArrayList<>();
+            Map<String, Object> done = parallel.gradeQuiz(quizId, events::add).get(5, TimeUnit.MINUTES);
+            assertEquals(SUBMISSIONS, done.get("total"));
+            assertEquals(SUBMISSIONS, done.get("graded"));
+            assertEquals(0, done.get("failed"));
+            assertEquals(done.get("chunks"), events.size(), "每块一个进度事件");
+            List<String> expectedScores = scoreSnapshot();
+
+            // 中断：只有前 300 份已评分提交，重跑只取剩余的提交
+            resetGrades();
+            GradingService.AnswerKey key = TransactionTemplate.execute(c -> parallel.loadAnswerKey(c, quizId));
+            TransactionTemplate.execute(c -> parallel.grade(c, key, submissions.subList(0, 300)));
+            done = parallel.gradeQuiz(quizId, null).get(5, TimeUnit.MINUTES);
+            assertEquals(SUBMISSIONS - 300, done.get("total"));
+            assertEquals(expectedScores, scoreSnapshot(), "重跑后与一次评完的结果一致");
+
+            done = parallel.gradeQuiz(quizId, null).get(5, TimeUnit.MINUTES);
+            assertEquals(0, done.get("total"), "全部已评分");
+            assertNull(parallel.gradeQuiz(-1, null), "不存在的测验");
+        } finally {
+            parallel.shutdown();
+        }
+        System.out.println("  ✓ Resumed from ungraded submissions\n");
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("修正答案键后增量重新评分 | Incremental regrade after a key fix")
+    void testRegradeQuestion() throws Exception {
+        System.out.println("┌─ GRADING: incremental regrade");
+        gradeAll();
+        long[] question = options.get(0);
+
+        // 第 1 题的正确选项从 B 改为 D
+        assertEquals(4, gradingService.updateCorrectOptions(question[0], List.of(question[4])));
+        long start = System.nanoTime();
+        Map<String, Object> result = gradingService.regradeQuestion(question[0]);
+        double regradeMs = (System.nanoTime() - start) / 1e6;
+        List<String> incrementalAnswers = answerSnapshot();
+        List<String> incrementalScores = scoreSnapshot();
+
+        resetGrades();
+        gradeAll();
+        assertEquals(answerSnapshot(), incrementalAnswers, "逐题结果应与全部重新评分一致");
+        assertEquals(scoreSnapshot(), incrementalScores, "总分应与全部重新评分一致");
+        assertTrue((Integer) result.get("answersChanged") < SUBMISSIONS, "只写回结果变化的作答");
+
+        Map<String, Object> again = gradingService.regradeQuestion(question[0]);
+        assertEquals(0, again.get("answersChanged"), "答案键未变时不写库");
+        assertThrows(IllegalArgumentException.class,
+                () -> gradingService.updateCorrectOptions(question[0], List.of(options.get(1)[1])));
+        System.out.printf("  → %s in %.0f ms%n", result, regradeMs);
+        System.out.println("  ✓ Incremental regrade matches a full regrade\n");
+    }
+
+    // ==================== 辅助方法 ====================
+
+    private void gradeAll() throws SQLException {
+        GradingService.AnswerKey key = TransactionTemplate.execute(c -> gradingService.loadAnswerKey(c, quizId));
+        for (int from = 0; from < submissions.size(); from += BATCH) {
+            List<Long> batch = submissions.subList(from, Math.min(submissions.size(), from + BATCH));
+            TransactionTemplate.execute(c -> gradingService.grade(c, key, batch));
+        }
+    }
+
+    /**
+     * @return [questionId, 选项1..4 的 option_id]
+     */
+    private long[] optionIds(long questionId) throws SQLException {
+        long[] ids = new long[5];
+        ids[0] = questionId;
+        rs = conn.createStatement().executeQuery("SELECT option_id FROM question_options WHERE question_id = "
+                + questionId + " ORDER BY option_order");
+        for (int i = 1; rs.next(); i++) {
+            ids[i] = rs.getLong(1);
+        }
+        return ids;
+    }
+
+    /**
+     * 清除选择题的评分结果 (简答题的人工得分保留)
+     */
+    private void resetGrades() throws SQLException {
+        executeUpdate("UPDATE student_answers SET is_correct = NULL, points_earned = NULL " +
+                "WHERE selected_option_id IS NOT NULL");
+        executeUpdate("UPDATE student_quizzes SET score = NULL, percentage = NULL, graded = FALSE, " +
+                "status = 'submitted' WHERE quiz_id = " + quizId);
+    }
+
+    private List<String> answerSnapshot() throws SQLException {
+        List<String> rows = new ArrayList<>();
+        rs = conn.createStatement().executeQuery(
+                "SELECT student_quiz_id, question_id, is_correct, points_earned FROM student_answers " +
+                "ORDER BY student_quiz_id, question_id");
+        while (rs.next()) {
+            rows.add(rs.getLong(1) + "/" + rs.getLong(2) + "/" + rs.getString(3) + "/" + rs.getString(4));
+        }
+        return rows;
+    }
+
+    private List<String> scoreSnapshot() throws SQLException {
+        List<String> rows = new ArrayList<>();
+        rs = conn.createStatement().executeQuery(
+                "SELECT student_quiz_id, score, percentage, graded, status FROM student_quizzes " +
+                "WHERE quiz_id = " + quizId + " ORDER BY student_quiz_id");
+        while (rs.next()) {
+            rows.add(rs.getLong(1) + "/" + rs.getString(2) + "/" + rs.getString(3) + "/"
+                    + rs.getBoolean(4) + "/" + rs.getString(5));
+        }
+        return rows;
+    }
+}
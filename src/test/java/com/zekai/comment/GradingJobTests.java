@@ -0,0 +1,125 @@
+package com.zekai.comment;
+
+import com.zekai.api.service.GradingJobService;
+import com.zekai.api.service.GradingService;
+import org.junit.jupiter.api.*;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ========================================
+ * GRADING JOB TESTS - 评分任务队列测试
+ * ========================================
+ *
+ * 多个"节点" (各自的 GradingJobService，不启动后台线程) 并发认领同一张任务表：
+ * 每个任务只被认领、评分一次；认领后崩溃的任务在租约过期后重新评分。
+ *
+ * @author Exam System Team
+ * @version 2.0
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class GradingJobTests extends ExamSystemTestBase {
+
+    private static final int SUBMISSIONS = 300;
+    private static final int NODES = 4;
+
+    private final GradingService gradingService = new GradingService();
+
+    @BeforeAll
+    @Override
+    public void setupAll() throws SQLException {
+        super.setupAll();
+        createAllCorrectSubmissions(SUBMISSIONS);
+    }
+
+    @AfterAll
+    void shutdownGrading() {
+        gradingService.shutdown();
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("多节点认领不重复 | Concurrent nodes claim each job once")
+    void testConcurrentClaims() throws Exception {
+        System.out.println("┌─ GRADING JOBS: " + NODES + " nodes");
+        Map<String, Object> queued = node().enqueueQuiz(quizId);
+        assertEquals((long) SUBMISSIONS, queued.get("pending"));
+
+        List<GradingJobService> nodes = new ArrayList<>();
+        ExecutorService pool = Executors.newFixedThreadPool(NODES);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < NODES; i++) {
+            GradingJobService node = node();
+            nodes.add(node);
+            futures.add(pool.submit(() -> {
+                while (node.runOnce() > 0) {
+                    // 认领直到没有待评分任务
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(2, TimeUnit.MINUTES);
+        }
+        pool.shutdown();
+
+        long claimed = 0;
+        for (GradingJobService node : nodes) {
+            claimed += (Long) node.stats().get("claimed");
+        }
+        assertEquals(SUBMISSIONS, claimed, "每个任务只被认领一次");
+        assertEquals((long) SUBMISSIONS, node().quizStatus(quizId).get("done"));
+        assertEquals(SUBMISSIONS, countGraded());
+        System.out.println("  ✓ " + claimed + " jobs claimed once across nodes\n");
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("崩溃节点的任务超时后重新评分 | Expired leases return to the queue")
+    void testExpiredLease() throws Exception {
+        System.out.println("┌─ GRADING JOBS: crashed worker");
+        executeUpdate("UPDATE student_quizzes SET score = NULL, percentage = NULL, graded = FALSE, " +
+                "status = 'submitted' WHERE quiz_id = " + quizId);
+        GradingJobService node = node();
+        node.enqueueQuiz(quizId);
+        // 模拟认领后崩溃的节点：10 个任务 running 且租约已过期
+        executeUpdate("UPDATE grading_jobs SET status = 'running', claim_token = 'crashed', attempts = 1, " +
+                "lease_until = NOW() - INTERVAL 1 MINUTE ORDER BY job_id LIMIT 10");
+
+        while (node.runOnce() > 0) {
+            // 评分其余任务
+        }
+        assertEquals(SUBMISSIONS - 10, countGraded(), "租约未放回前不评分");
+
+        node.reap();
+        while (node.runOnce() > 0) {
+            // 评分放回的任务
+        }
+        assertEquals(SUBMISSIONS, countGraded());
+        assertEquals(10L, node.stats().get("reaped"));
+        System.out.println("  ✓ Expired jobs re-graded\n");
+    }
+
+    /**
+     * 一个"节点"：不启动后台线程，由测试调用 runOnce；各节点共享一个 GradingService (及其 ForkJoinPool)
+     */
+    private GradingJobService node() {
+        return new GradingJobService(gradingService, true, 0, 50, 60, 500, 3, 24);
+    }
+
+    private int countGraded() throws SQLException {
+        rs = conn.createStatement().executeQuery(
+                "SELECT COUNT(*) FROM student_quizzes WHERE quiz_id = " + quizId + " AND graded = TRUE");
+        rs.next();
+        return rs.getInt(1);
+    }
+}
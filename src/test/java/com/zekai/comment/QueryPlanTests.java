@@ -0,0 +1,316 @@
+package com.zekai.comment;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mysql.cj.jdbc.JdbcConnection;
+import com.zekai.api.sql.SqlCatalog;
+import org.junit.jupiter.api.*;
+
+import java.sql.*;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ========================================
+ * QUERY PLAN TESTS - 执行计划回归测试
+ * ========================================
+ *
+ * 生成一份按比例放大的数据集，对 SqlCatalog 中每条 SELECT/UPDATE/DELETE
+ * (即三个 Controller 使用的全部SQL) 执行 EXPLAIN FORMAT=JSON：
+ * - 大表 (student_answers, student_quizzes, questions) 上出现全表扫描 (access_type = ALL)
+ * - 或以大表为驱动表的 filesort
+ * 即判定失败。全库统计类语句在 ALLOWLIST 中登记并说明原因。
+ *
+ * 新增的语句若没有合适的索引 (例如 ORDER BY RAND())，在这里就会失败，
+ * 而不是等到考试当天才暴露。
+ *
+ * @author Exam System Team
+ * @version 2.0
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class QueryPlanTests extends ExamSystemTestBase {
+
+    // 数据规模
+    private static final int STUDENTS = 400;
+    private static final int CLASSROOMS = 10;
+    private static final int SUBJECTS = 20;
+    private static final int QUESTIONS = 4000;
+    private static final int OPTIONS_PER_QUESTION = 4;
+    private static final int QUIZZES_PER_CLASSROOM = 5;
+    private static final int QUESTIONS_PER_QUIZ = 40;
+
+    private static final Set<String> LARGE_TABLES = Set.of("student_answers", "student_quizzes", "questions");
+
+    /**
+     * 允许扫描大表的统计/维护类语句 (名称 → 原因)
+     */
+    private static final Map<String, String> ALLOWLIST = Map.of(
+            "QUESTION_UPDATE_STATISTICS", "后台批量维护任务，按设计遍历全部作答记录",
+            "QUESTION_DIFFICULTY_RATING", "全题库统计报表",
+            "QUESTION_STATISTICS", "全题库统计报表 (无过滤条件)",
+            "QUESTION_STATISTICS[difficulty]", "全题库统计报表 (仅按难度过滤，选择性低)",
+            "QUESTION_RANKING[total_attempts]", "管理后台排名，全题库排序",
+            "QUESTION_RANKING[correct_rate]", "管理后台排名，按计算列排序",
+            "DASHBOARD_QUESTION_COUNT", "系统总览，全题库计数",
+            "DASHBOARD_SUBMISSION_STATS", "系统总览，全部已评分测验统计"
+    );
+
+    /**
+     * 需要非数字参数的语句；其余语句的每个占位符都绑定 1
+     */
+    private static final Map<String, Object[]> PARAMS = Map.of(
+            "AUTH_LOGIN_STUDENT", new Object[]{"plan_s1", "x"},
+            "AUTH_LOGIN_TEACHER", new Object[]{"plan_t1", "x"},
+            "AUTH_LOGIN_ADMIN", new Object[]{"plan_t1", "x"},
+            "USER_LIST[role]", new Object[]{"student"},
+            "USER_LIST[role,active]", new Object[]{"student", true},
+            "QUESTION_RANDOM_IDS[type]", new Object[]{1L, "multiple_choice"},
+            "QUESTION_RANDOM_IDS[type,difficulty]", new Object[]{1L, "multiple_choice", 3}
+    );
+
+    private static final Pattern TABLE_REF = Pattern.compile(
+            "(?i)\\b(?:FROM|JOIN|UPDATE)\\s+(\\w+)(?:\\s+(?:AS\\s+)?(\\w+))?");
+    private static final Set<String> NOT_ALIASES = Set.of(
+            "where", "on", "join", "left", "right", "inner", "set", "group", "order", "limit");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @BeforeAll
+    @Override
+    public void setupAll() throws SQLException {
+        super.setupAll();
+        seedScaledData();
+    }
+
+    // ==================================================================================
+    // 执行计划检查 | Plan checks
+    // ==================================================================================
+
+    @Test
+    @Order(1)
+    @DisplayName("EXPLAIN: 大表无全表扫描/filesort | No full scans or filesorts on large tables")
+    void testCatalogPlans() throws Exception {
+        System.out.println("┌─ QUERY PLANS: EXPLAIN FORMAT=JSON on every catalogued statement");
+
+        List<String> violations = new ArrayList<>();
+        int explained = 0;
+
+        for (Map.Entry<String, String> entry : SqlCatalog.statements().entrySet()) {
+            String name = entry.getKey();
+            String sql = entry.getValue();
+            if (!isExplainable(sql)) {
+                continue;
+            }
+
+            JsonNode plan = explain(name, sql);
+            explained++;
+
+            List<String> problems = new ArrayList<>();
+            collectProblems(plan, largeTableNames(sql), problems);
+            if (problems.isEmpty()) {
+                continue;
+            }
+            if (ALLOWLIST.containsKey(name)) {
+                System.out.println("  → " + name + " allowed (" + ALLOWLIST.get(name) + "): " + problems);
+            } else {
+                violations.add(name + ": " + problems);
+            }
+        }
+
+        System.out.println("  → " + explained + " statements explained");
+        assertTrue(violations.isEmpty(), "执行计划回归 | Plan regressions:\n  " + String.join("\n  ", violations));
+        System.out.println("  ✓ No full table scans or filesorts on large tables\n");
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("EXPLAIN: 白名单条目均存在 | Allowlist entries exist")
+    void testAllowlistIsCurrent() {
+        for (String name : ALLOWLIST.keySet()) {
+            assertTrue(SqlCatalog.statements().containsKey(name), "白名单中的语句已不存在: " + name);
+        }
+        for (String name : PARAMS.keySet()) {
+            assertTrue(SqlCatalog.statements().containsKey(name), "参数表中的语句已不存在: " + name);
+        }
+    }
+
+    // ==================================================================================
+    // EXPLAIN 辅助方法 | EXPLAIN helpers
+    // ==================================================================================
+
+    private boolean isExplainable(String sql) {
+        String verb = sql.trim().split("\\s+", 2)[0].toUpperCase(Locale.ROOT);
+        return verb.equals("SELECT") || verb.equals("UPDATE") || verb.equals("DELETE");
+    }
+
+    private JsonNode explain(String name, String sql) throws Exception {
+        // 客户端预编译：参数以字面量代入，服务端看到的是完整语句
+        JdbcConnection mysql = conn.unwrap(JdbcConnection.class);
+        try (PreparedStatement explain = mysql.clientPrepareStatement("EXPLAIN FORMAT=JSON " + sql)) {
+            Object[] params = PARAMS.get(name);
+            int count = (int) sql.chars().filter(c -> c == '?').count();
+            for (int i = 1; i <= count; i++) {
+                Object value = params != null && i <= params.length ? params[i - 1] : 1L;
+                explain.setObject(i, value);
+            }
+            try (ResultSet plan = explain.executeQuery()) {
+                assertTrue(plan.next(), "EXPLAIN returned no plan for " + name);
+                return objectMapper.readTree(plan.getString(1));
+            }
+        }
+    }
+
+    /**
+     * SQL 中引用大表所用的名字 (别名或表名)，EXPLAIN 的 table_name 使用这些名字
+     */
+    private Set<String> largeTableNames(String sql) {
+        Set<String> names = new HashSet<>();
+        Matcher m = TABLE_REF.matcher(sql);
+        while (m.find()) {
+            String table = m.group(1).toLowerCase(Locale.ROOT);
+            if (!LARGE_TABLES.contains(table)) {
+                continue;
+            }
+            String alias = m.group(2);
+            if (alias != null && !NOT_ALIASES.contains(alias.toLowerCase(Locale.ROOT))) {
+                names.add(alias.toLowerCase(Locale.ROOT));
+            } else {
+                names.add(table);
+            }
+        }
+        return names;
+    }
+
+    private void collectProblems(JsonNode node, Set<String> largeNames, List<String> problems) {
+        if (node.isObject()) {
+            if (node.path("using_filesort").asBoolean(false)) {
+                String driving = firstTableName(node);
+                if (driving != null && largeNames.contains(driving.toLowerCase(Locale.ROOT))) {
+                    problems.add("filesort driven by " + driving);
+                }
+            }
+            JsonNode table = node.get("table");
+            if (table != null && table.isObject()) {
+                String tableName = table.path("table_name").asText("");
+                if ("ALL".equals(table.path("access_type").asText())
+                        && largeNames.contains(tableName.toLowerCase(Locale.ROOT))) {
+                    problems.add("full scan of " + tableName);
+                }
+            }
+        }
+        for (JsonNode child : node) {
+            collectProblems(child, largeNames, problems);
+        }
+    }
+
+    private String firstTableName(JsonNode node) {
+        JsonNode table = node.get("table");
+        if (table != null && table.has("table_name")) {
+            return table.get("table_name").asText();
+        }
+        for (JsonNode child : node) {
+            String name = firstTableName(child);
+            if (name != null) {
+                return name;
+            }
+        }
+        return null;
+    }
+
+    // ==================================================================================
+    // 数据准备 | Scaled dataset
+    // ==================================================================================
+
+    /**
+     * 用递归 CTE (INSERT ... WITH RECURSIVE ... SELECT) 在服务端批量生成数据，ID 从 1 开始连续
+     * (setupAll 已重建全部表)
+     */
+    private void seedScaledData() throws SQLException {
+        int quizzes = CLASSROOMS * QUIZZES_PER_CLASSROOM;
+        int studentQuizzes = STUDENTS * QUIZZES_PER_CLASSROOM;
+
+        executeUpdate("SET SESSION cte_max_recursion_depth = 1000000");
+
+        // 用户：1 名教师 (user_id 1)，学生 user_id = student_id + 1
+        executeUpdate("INSERT INTO users (username, password_hash, email, full_name, role) " +
+                "VALUES ('plan_t1', SHA2('x', 256), 'plan_t1@test.com', 'Plan Teacher', 'teacher')");
+        executeUpdate("INSERT INTO teachers (user_id, department, hire_date) VALUES (1, 'CS', CURRENT_DATE)");
+        executeUpdate("INSERT INTO users (username, password_hash, email, full_name, role) " +
+                seq(STUDENTS) + "SELECT CONCAT('plan_s', n), SHA2('x', 256), CONCAT('plan_s', n, '@test.com'), " +
+                "CONCAT('Student ', n), 'student' FROM seq");
+        executeUpdate("INSERT INTO students (user_id, student_number, grade, major, enrollment_date) " +
+                "SELECT user_id, CONCAT('PS', user_id), 'Sophomore', 'CS', CURRENT_DATE " +
+                "FROM users WHERE role = 'student' ORDER BY user_id");
+
+        // 课程/教室/选课：学生 s 在教室 (s-1) % CLASSROOMS + 1
+        executeUpdate("INSERT INTO courses (course_code, course_name, credit_hours, created_by) " +
+                seq(CLASSROOMS) + "SELECT CONCAT('PLAN', n), CONCAT('Course ', n), 3, 1 FROM seq");
+        executeUpdate("INSERT INTO classrooms (course_id, teacher_id, class_name, semester, year) " +
+                seq(CLASSROOMS) + "SELECT n, 1, CONCAT('Class ', n), 'Fall', 2025 FROM seq");
+        executeUpdate("INSERT INTO enrollments (student_id, classroom_id, status) " +
+                seq(STUDENTS) + "SELECT n, (n - 1) % " + CLASSROOMS + " + 1, 'active' FROM seq");
+
+        // 题库
+        executeUpdate("INSERT INTO subjects (subject_name, level) " +
+                seq(SUBJECTS) + "SELECT CONCAT('Subject ', n), 1 FROM seq");
+        executeUpdate("INSERT INTO questions (subject_id, question_text, question_type, " +
+                "difficulty_level, created_by, times_used, total_attempts, correct_count, is_deleted) " +
+                seq(QUESTIONS) + "SELECT (n - 1) % " + SUBJECTS + " + 1, CONCAT('Question ', n), " +
+                "ELT((n - 1) % 3 + 1, 'multiple_choice', 'true_false', 'short_answer'), " +
+                "(n - 1) % 5 + 1, 1, n % 7, n % 11, n % 5, n % 50 = 0 FROM seq");
+        executeUpdate("INSERT INTO question_options " +
+                "(question_id, option_text, is_correct, option_order) " +
+                seq(QUESTIONS * OPTIONS_PER_QUESTION) + "SELECT (n - 1) DIV " + OPTIONS_PER_QUESTION + " + 1, CONCAT('Option ', n), " +
+                "(n - 1) % " + OPTIONS_PER_QUESTION + " = 0, (n - 1) % " + OPTIONS_PER_QUESTION + " + 1 FROM seq");
+
+        // 测验：每个教室 QUIZZES_PER_CLASSROOM 个，每个 QUESTIONS_PER_QUIZ 道题
+        executeUpdate("INSERT INTO quizzes (classroom_id, title, created_by, start_time, " +
+                "end_time, duration_minutes, total_points, passing_score) " +
+                seq(quizzes) + "SELECT (n - 1) DIV " + QUIZZES_PER_CLASSROOM + " + 1, CONCAT('Quiz ', n), 1, " +
+                "NOW() - INTERVAL 1 DAY, NOW() + INTERVAL 1 DAY, 60, " + (QUESTIONS_PER_QUIZ * 2) + ", 48 FROM seq");
+        executeUpdate("INSERT INTO quiz_settings (quiz_id) " + seq(quizzes) + "SELECT n FROM seq");
+        executeUpdate("INSERT INTO quiz_questions " +
+                "(quiz_id, question_id, question_order, points) " +
+                seq(quizzes * QUESTIONS_PER_QUIZ) + "SELECT (n - 1) DIV " + QUESTIONS_PER_QUIZ + " + 1, (n - 1) % " + QUESTIONS + " + 1, " +
+                "(n - 1) % " + QUESTIONS_PER_QUIZ + " + 1, 2 FROM seq");
+
+        // 作答：每名学生参加所在教室的全部测验，每道题都作答
+        executeUpdate("INSERT INTO student_quizzes (quiz_id, student_id, start_time, " +
+                "submit_time, score, percentage, graded, published, status) " +
+                seq(studentQuizzes) + "SELECT (((n - 1) DIV " + QUIZZES_PER_CLASSROOM + ") % " + CLASSROOMS + ") * " + QUIZZES_PER_CLASSROOM +
+                " + (n - 1) % " + QUIZZES_PER_CLASSROOM + " + 1, (n - 1) DIV " + QUIZZES_PER_CLASSROOM + " + 1, " +
+                "NOW() - INTERVAL 2 HOUR, NOW() - INTERVAL 1 HOUR, n % 80, n % 80 * 1.25, " +
+                "n % 3 > 0, n % 3 = 2, IF(n % 3 > 0, 'completed', 'submitted') FROM seq");
+        executeUpdate("INSERT INTO student_answers (student_quiz_id, question_id, selected_option_id, " +
+                "is_correct, points_earned) " +
+                "SELECT sq.student_quiz_id, qq.question_id, " +
+                "(qq.question_id - 1) * " + OPTIONS_PER_QUESTION + " + sq.student_quiz_id % " + OPTIONS_PER_QUESTION + " + 1, " +
+                "sq.student_quiz_id % " + OPTIONS_PER_QUESTION + " = 0, " +
+                "IF(sq.student_quiz_id % " + OPTIONS_PER_QUESTION + " = 0, qq.points, 0) " +
+                "FROM student_quizzes sq JOIN quiz_questions qq ON qq.quiz_id = sq.quiz_id");
+
+        executeUpdate("ANALYZE TABLE users, students, teachers, courses, classrooms, enrollments, subjects, " +
+                "questions, question_options, quizzes, quiz_settings, quiz_questions, student_quizzes, student_answers");
+
+        pstmt = conn.prepareStatement("SELECT COUNT(*) FROM student_answers");
+        rs = pstmt.executeQuery();
+        rs.next();
+        System.out.println("  → Seeded " + QUESTIONS + " questions, " + studentQuizzes +
+                " student quizzes, " + rs.getLong(1) + " answers");
+    }
+
+    private static String seq(int count) {
+        return "WITH RECURSIVE seq (n) AS (SELECT 1 UNION ALL SELECT n + 1 FROM seq WHERE n < " + count + ") ";
+    }
+
+    @Override
+    protected int executeUpdate(String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+            return stmt.getUpdateCount();
+        }
+    }
+}
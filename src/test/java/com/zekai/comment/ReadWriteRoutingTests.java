@@ -0,0 +1,133 @@
+package com.zekai.comment;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zekai.config.DatabaseConfig;
+import com.zekai.util.DatabaseUtil;
+import com.zekai.util.ReadWriteRouting;
+import org.junit.jupiter.api.*;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ========================================
+ * READ/WRITE ROUTING TESTS - 读写分离路由测试
+ * ========================================
+ *
+ * 同一MySQL上的两个schema分别充当主库 (exam_system) 和副本 (exam_system_replica)，
+ * 用 SELECT DATABASE() 判断 getReadConnection() 实际连到哪一个：
+ * - 没有写入的用户读副本
+ * - 用户写入后在窗口期内读主库，其他用户不受影响，窗口过后回到副本
+ * - 客户端带回的截止时间 (其他实例上的写入) 同样让读请求走主库，远期截止时间被截断为一个窗口
+ *
+ * @author Exam System Team
+ * @version 2.0
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class ReadWriteRoutingTests extends ExamSystemTestBase {
+
+    private static final String PRIMARY_SCHEMA = "exam_system";
+    private static final String REPLICA_SCHEMA = "exam_system_replica";
+
+    private HikariDataSource replica;
+
+    @BeforeAll
+    @Override
+    public void setupAll() throws SQLException {
+        super.setupAll();
+        executeUpdate("CREATE DATABASE IF NOT EXISTS " + REPLICA_SCHEMA);
+        HikariConfig config = DatabaseConfig.newPoolConfig();
+        config.setPoolName(DatabaseConfig.POOL_NAME + "-replica-test");
+        config.setJdbcUrl(DatabaseConfig.DB_URL.replace("/" + PRIMARY_SCHEMA + "?", "/" + REPLICA_SCHEMA + "?"));
+        replica = new HikariDataSource(config);
+        DatabaseUtil.setReplicaDataSource(replica);
+    }
+
+    @AfterAll
+    public void removeReplica() {
+        ReadWriteRouting.clearCurrentSession();
+        ReadWriteRouting.setReadYourWritesWindow(5000);
+        DatabaseUtil.setReplicaDataSource(null);
+        replica.close();
+    }
+
+    @AfterEach
+    public void unbind() {
+        ReadWriteRouting.clearCurrentSession();
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("没有写入时读副本 | Reads go to the replica")
+    void testReadsGoToReplica() throws SQLException {
+        System.out.println("┌─ ROUTING: no writes");
+        assertEquals(REPLICA_SCHEMA, readSchema(), "匿名请求读副本");
+        ReadWriteRouting.setCurrentSession(101L);
+        assertEquals(REPLICA_SCHEMA, readSchema(), "未写入的用户读副本");
+        try (Connection write = DatabaseUtil.getConnection()) {
+            assertEquals(PRIMARY_SCHEMA, schema(write), "写连接总是主库");
+        }
+        System.out.println("  ✓ Reads on " + REPLICA_SCHEMA + "\n");
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("写入后在窗口期内读主库 | Reads stick to the primary after a write")
+    void testReadYourWrites() throws Exception {
+        System.out.println("┌─ ROUTING: read your writes");
+        ReadWriteRouting.setReadYourWritesWindow(500);
+        ReadWriteRouting.setCurrentSession(102L);
+        ReadWriteRouting.markWrite();
+        assertEquals(PRIMARY_SCHEMA, readSchema(), "刚写入的用户读主库");
+        assertTrue(ReadWriteRouting.pinnedSessions() >= 1);
+
+        ReadWriteRouting.setCurrentSession(103L);
+        assertEquals(REPLICA_SCHEMA, readSchema(), "其他用户不受影响");
+
+        Thread.sleep(700);
+        ReadWriteRouting.setCurrentSession(102L);
+        assertEquals(REPLICA_SCHEMA, readSchema(), "窗口过后回到副本");
+        System.out.println("  ✓ Pinned for the window only\n");
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("客户端带回的截止时间 | Deadline carried by the client")
+    void testClientDeadline() throws Exception {
+        System.out.println("┌─ ROUTING: client deadline");
+        ReadWriteRouting.setReadYourWritesWindow(500);
+        // 写入发生在另一个实例：本实例没有该用户的记录，只有客户端带回的截止时间
+        ReadWriteRouting.setCurrentSession(104L);
+        ReadWriteRouting.setClientPrimaryUntil(ReadWriteRouting.primaryUntilMillis());
+        assertEquals(PRIMARY_SCHEMA, readSchema(), "其他实例上的写入也应读主库");
+
+        ReadWriteRouting.setClientPrimaryUntil(System.currentTimeMillis() - 1);
+        assertEquals(REPLICA_SCHEMA, readSchema(), "已过期的截止时间不影响路由");
+
+        // 远期截止时间被截断为一个窗口
+        ReadWriteRouting.setClientPrimaryUntil(System.currentTimeMillis() + 3_600_000L);
+        assertEquals(PRIMARY_SCHEMA, readSchema());
+        Thread.sleep(700);
+        assertEquals(REPLICA_SCHEMA, readSchema(), "截断后的截止时间已过");
+        System.out.println("  ✓ Client deadline honoured and clamped\n");
+    }
+
+    private String readSchema() throws SQLException {
+        try (Connection read = DatabaseUtil.getReadConnection()) {
+            return schema(read);
+        }
+    }
+
+    private static String schema(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet result = stmt.executeQuery("SELECT DATABASE()")) {
+            result.next();
+            return result.getString(1);
+        }
+    }
+}
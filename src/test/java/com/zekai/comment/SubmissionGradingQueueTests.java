@@ -0,0 +1,105 @@
+package com.zekai.comment;
+
+import com.zekai.api.service.GradingService;
+import com.zekai.api.service.SubmissionGradingQueue;
+import com.zekai.api.service.SubmissionGradingQueue.State;
+import org.junit.jupiter.api.*;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ========================================
+ * SUBMISSION GRADING QUEUE TESTS - 提交后异步评分测试
+ * ========================================
+ *
+ * 提交入队后由后台线程评分；队列满时提交不等待，标记为 deferred。
+ *
+ * @author Exam System Team
+ * @version 2.0
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class SubmissionGradingQueueTests extends ExamSystemTestBase {
+
+    private static final int SUBMISSIONS = 200;
+
+    private final List<Long> submissions = new ArrayList<>();
+    private final GradingService gradingService = new GradingService();
+
+    @BeforeAll
+    @Override
+    public void setupAll() throws SQLException {
+        super.setupAll();
+        submissions.addAll(createAllCorrectSubmissions(SUBMISSIONS));
+    }
+
+    @AfterAll
+    void shutdownGrading() {
+        gradingService.shutdown();
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("提交后后台评分 | Graded off the request thread")
+    void testGradedInBackground() throws Exception {
+        System.out.println("┌─ GRADING QUEUE: background grading");
+        SubmissionGradingQueue queue = new SubmissionGradingQueue(gradingService, true, 2, 1000, 50, 30);
+        try {
+            long start = System.nanoTime();
+            for (long studentQuizId : submissions) {
+                assertEquals(State.QUEUED, queue.enqueue(studentQuizId));
+            }
+            double enqueueMs = (System.nanoTime() - start) / 1e6;
+
+            long deadline = System.currentTimeMillis() + 60_000;
+            while (countGraded() < SUBMISSIONS && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            assertEquals(SUBMISSIONS, countGraded());
+            for (long studentQuizId : submissions) {
+                assertEquals("graded", queue.status(studentQuizId).get("state"));
+            }
+            rs = conn.createStatement().executeQuery(
+                    "SELECT MIN(score), MAX(score) FROM student_quizzes WHERE quiz_id = " + quizId);
+            assertTrue(rs.next());
+            assertEquals(100, rs.getInt(1));
+            assertEquals(100, rs.getInt(2));
+
+            Map<String, Object> stats = queue.stats();
+            assertTrue((Long) stats.get("batches") < SUBMISSIONS, "工作线程应批量评分");
+            System.out.printf("  → enqueue %d: %.1f ms, %s%n", SUBMISSIONS, enqueueMs, stats);
+        } finally {
+            queue.shutdown();
+        }
+        System.out.println("  ✓ All submissions graded\n");
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("队列满时不阻塞 | Backpressure defers instead of blocking")
+    void testBackpressure() {
+        System.out.println("┌─ GRADING QUEUE: backpressure");
+        // 没有工作线程消费，容量 5
+        SubmissionGradingQueue queue = new SubmissionGradingQueue(gradingService, true, 0, 5, 50, 30);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i < 5 ? State.QUEUED : State.DEFERRED, queue.enqueue(submissions.get(i)));
+        }
+        assertEquals(State.QUEUED, queue.enqueue(submissions.get(0)), "已在队列中的提交不重复入队");
+        assertEquals(5, queue.stats().get("queued"));
+
+        queue.shutdown();
+        assertEquals("deferred", queue.status(submissions.get(0)).get("state"), "停止时队列中的提交留给 grade-all");
+        System.out.println("  ✓ Deferred when full\n");
+    }
+
+    private int countGraded() throws SQLException {
+        rs = conn.createStatement().executeQuery(
+                "SELECT COUNT(*) FROM student_quizzes WHERE quiz_id = " + quizId + " AND graded = TRUE");
+        rs.next();
+        return rs.getInt(1);
+    }
+}
@@ -0,0 +1,219 @@
+package com.zekai.comment;
+
+import com.zekai.config.DatabaseConfig;
+import com.zekai.util.ConnectionMetrics;
+import com.zekai.util.DatabaseUtil;
+import com.zekai.util.TransactionTemplate;
+import org.junit.jupiter.api.*;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ========================================
+ * TRANSACTION RETRY TESTS - 死锁重试测试
+ * ========================================
+ *
+ * 在真实的MySQL上制造锁冲突，验证 TransactionTemplate 的重试路径：
+ * - 两个事务按相反顺序锁两行 → 一个被选为死锁牺牲者 (1213)，重试后两个都提交
+ * - 行被另一个连接一直持有 → 锁等待超时 (1205)，重试次数有上限，用完后抛出原错误
+ * - 非锁错误 (唯一键冲突) 不重试
+ * 每项检查 snapshot() 中按接口统计的计数。
+ *
+ * @author Exam System Team
+ * @version 2.0
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class TransactionRetryTests extends ExamSystemTestBase {
+
+    private static final String TABLE = "tx_retry_test";
+
+    @BeforeAll
+    @Override
+    public void setupAll() throws SQLException {
+        super.setupAll();
+        executeUpdate("DROP TABLE IF EXISTS " + TABLE);
+        executeUpdate("CREATE TABLE " + TABLE + " (id INT PRIMARY KEY, v INT NOT NULL) ENGINE=InnoDB");
+        executeUpdate("INSERT INTO " + TABLE + " (id, v) VALUES (1, 0), (2, 0)");
+    }
+
+    @AfterAll
+    public void dropTable() throws SQLException {
+        executeUpdate("DROP TABLE IF EXISTS " + TABLE);
+        TransactionTemplate.configure(DatabaseConfig.TX_MAX_ATTEMPTS,
+                DatabaseConfig.TX_BASE_BACKOFF_MS, DatabaseConfig.TX_MAX_BACKOFF_MS);
+    }
+
+    @BeforeEach
+    public void resetStats() {
+        TransactionTemplate.reset();
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("相反顺序加锁的死锁被重试 | Deadlock from opposite lock order is retried")
+    void testDeadlockRetried() throws Exception {
+        System.out.println("┌─ TX: deadlock");
+        TransactionTemplate.configure(4, 5, 50);
+        String endpoint = "test:deadlock";
+        AtomicInteger attempts = new AtomicInteger();
+        // 两个事务都持有第一行的锁后才去锁第二行，保证形成环；重试时不再等待
+        CyclicBarrier bothLocked = new CyclicBarrier(2);
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        Future<?> forward = pool.submit(() -> lockInOrder(endpoint, 1, 2, attempts, bothLocked));
+        Future<?> backward = pool.submit(() -> lockInOrder(endpoint, 2, 1, attempts, bothLocked));
+        forward.get(1, TimeUnit.MINUTES);
+        backward.get(1, TimeUnit.MINUTES);
+        pool.shutdown();
+
+        Map<String, Object> stats = endpointStats(endpoint);
+        assertEquals(2L, stats.get("transactions"));
+        assertEquals(1L, stats.get("deadlocks"), "只有一个事务是牺牲者");
+        assertEquals(1L, stats.get("retries"));
+        assertEquals(0L, stats.get("exhausted"));
+        assertEquals(3, attempts.get(), "牺牲者重试一次");
+        assertEquals(4, value(1) + value(2), "两个事务都已提交");
+        System.out.println("  → " + stats);
+        System.out.println("  ✓ Victim retried, both committed\n");
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("锁等待超时的重试次数有上限 | Lock wait timeout retries are bounded")
+    void testLockWaitTimeoutBounded() throws Exception {
+        System.out.println("┌─ TX: lock wait timeout");
+        TransactionTemplate.configure(2, 5, 50);
+        String endpoint = "test:lock-wait";
+        AtomicInteger attempts = new AtomicInteger();
+
+        try (Connection holder = DatabaseUtil.getConnection()) {
+            holder.setAutoCommit(false);
+            try (Statement stmt = holder.createStatement()) {
+                stmt.executeQuery("SELECT v FROM " + TABLE + " WHERE id = 1 FOR UPDATE").close();
+            }
+
+            ConnectionMetrics.setCurrentEndpoint(endpoint);
+            SQLException error;
+            try {
+                error = assertThrows(SQLException.class, () -> TransactionTemplate.execute(conn -> {
+                    attempts.incrementAndGet();
+                    try (Statement stmt = conn.createStatement()) {
+                        stmt.execute("SET SESSION innodb_lock_wait_timeout = 1");
+                        try {
+                            stmt.executeUpdate("UPDATE " + TABLE + " SET v = v + 1 WHERE id = 1");
+                        } finally {
+                            // 连接会回到池中
+                            stmt.execute("SET SESSION innodb_lock_wait_timeout = DEFAULT");
+                        }
+                    }
+                    return null;
+                }));
+            } finally {
+                ConnectionMetrics.clearCurrentEndpoint();
+                holder.rollback();
+                holder.setAutoCommit(true);
+            }
+
+            assertEquals(1205, error.getErrorCode(), "用完次数后抛出原错误");
+            assertTrue(TransactionTemplate.isTransient(error));
+        }
+
+        Map<String, Object> stats = endpointStats(endpoint);
+        assertEquals(2, attempts.get(), "最多尝试 maxAttempts 次");
+        assertEquals(2L, stats.get("lockWaitTimeouts"));
+        assertEquals(1L, stats.get("retries"));
+        assertEquals(1L, stats.get("exhausted"));
+        assertEquals(0L, stats.get("deadlocks"));
+        System.out.println("  → " + stats);
+        System.out.println("  ✓ Gave up after " + attempts.get() + " attempts\n");
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("非锁错误不重试 | Other errors are not retried")
+    void testOtherErrorsNotRetried() throws Exception {
+        System.out.println("┌─ TX: non-lock error");
+        TransactionTemplate.configure(4, 5, 50);
+        String endpoint = "test:duplicate";
+        AtomicInteger attempts = new AtomicInteger();
+
+        ConnectionMetrics.setCurrentEndpoint(endpoint);
+        SQLException error;
+        try {
+            error = assertThrows(SQLException.class, () -> TransactionTemplate.execute(conn -> {
+                attempts.incrementAndGet();
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.executeUpdate("INSERT INTO " + TABLE + " (id, v) VALUES (1, 0)");
+                }
+                return null;
+            }));
+        } finally {
+            ConnectionMetrics.clearCurrentEndpoint();
+        }
+
+        assertEquals(1062, error.getErrorCode());
+        assertFalse(TransactionTemplate.isTransient(error));
+        assertEquals(1, attempts.get());
+        Map<String, Object> stats = endpointStats(endpoint);
+        assertEquals(0L, stats.get("retries"));
+        assertEquals(0L, stats.get("deadlocks"));
+        assertEquals(0L, stats.get("lockWaitTimeouts"));
+        System.out.println("  ✓ Duplicate key failed on the first attempt\n");
+    }
+
+    // ==================== 辅助方法 ====================
+
+    private Void lockInOrder(String endpoint, int first, int second,
+                             AtomicInteger attempts, CyclicBarrier bothLocked) throws Exception {
+        ConnectionMetrics.setCurrentEndpoint(endpoint);
+        try {
+            return TransactionTemplate.execute(conn -> {
+                boolean firstAttempt = attempts.incrementAndGet() <= 2;
+                increment(conn, first);
+                if (firstAttempt) {
+                    try {
+                        bothLocked.await(30, TimeUnit.SECONDS);
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+                increment(conn, second);
+                return null;
+            });
+        } finally {
+            ConnectionMetrics.clearCurrentEndpoint();
+        }
+    }
+
+    private static void increment(Connection connection, int id) throws SQLException {
+        try (PreparedStatement update = connection.prepareStatement(
+                "UPDATE " + TABLE + " SET v = v + 1 WHERE id = ?")) {
+            update.setInt(1, id);
+            update.executeUpdate();
+        }
+    }
+
+    private int value(int id) throws SQLException {
+        rs = conn.createStatement().executeQuery("SELECT v FROM " + TABLE + " WHERE id = " + id);
+        rs.next();
+        return rs.getInt(1);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> endpointStats(String endpoint) {
+        Map<String, Object> endpoints = (Map<String, Object>) TransactionTemplate.snapshot().get("endpoints");
+        return (Map<String, Object>) endpoints.get(endpoint);
+    }
+}